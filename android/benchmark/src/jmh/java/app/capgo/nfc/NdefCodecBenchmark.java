@@ -0,0 +1,72 @@
+package app.capgo.nfc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parse and encode throughput of {@link NdefCodec} by message size. Run with the {@code gc} profiler to see the
+ * bytes allocated per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NdefCodecBenchmark {
+
+    @Param({ "16", "240", "888", "8192" })
+    public int payloadSize;
+
+    @Param({ "1", "3" })
+    public int recordCount;
+
+    private List<NdefCodec.Record> records;
+    private byte[] encoded;
+    private byte[] chunked;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            byte[] payload = new byte[payloadSize];
+            random.nextBytes(payload);
+            records.add(NdefCodec.Record.of(NdefCodec.TNF_MIME_MEDIA, "application/octet-stream".getBytes(), null, payload));
+        }
+        encoded = NdefCodec.encode(records);
+        chunked = NdefCodec.encode(records, 128);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws NdefCodec.MalformedMessageException {
+        for (NdefCodec.Record record : NdefCodec.parse(encoded)) {
+            blackhole.consume(record.payloadLength);
+        }
+    }
+
+    @Benchmark
+    public void parseChunked(Blackhole blackhole) throws NdefCodec.MalformedMessageException {
+        for (NdefCodec.Record record : NdefCodec.parse(chunked)) {
+            blackhole.consume(record.payloadLength);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return NdefCodec.encode(records);
+    }
+
+    @Benchmark
+    public byte[] roundTrip() throws NdefCodec.MalformedMessageException {
+        return NdefCodec.encode(NdefCodec.parse(encoded));
+    }
+}
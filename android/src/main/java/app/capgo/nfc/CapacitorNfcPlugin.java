@@ -1,21 +1,31 @@
 package app.capgo.nfc;
 
 import android.app.Activity;
+import android.app.PendingIntent;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.nfc.FormatException;
 import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.NfcAdapter;
 import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
 import android.nfc.tech.MifareUltralight;
 import android.nfc.tech.Ndef;
 import android.nfc.tech.NdefFormatable;
 import android.nfc.tech.NfcA;
+import android.nfc.tech.NfcF;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import com.getcapacitor.JSArray;
@@ -24,15 +34,24 @@ import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 @CapacitorPlugin(name = "CapacitorNfc")
 public class CapacitorNfcPlugin extends Plugin {
@@ -45,16 +64,51 @@ public class CapacitorNfcPlugin extends Plugin {
         NfcAdapter.FLAG_READER_NFC_F |
         NfcAdapter.FLAG_READER_NFC_V |
         NfcAdapter.FLAG_READER_NO_PLATFORM_SOUNDS;
+    static final int DEFAULT_PRESENCE_CHECK_DELAY = 100;
+    static final String WRITE_STRATEGY_FULL = "full";
+    static final String WRITE_STRATEGY_DIFFERENTIAL = "differential";
+    static final int DEFAULT_OPERATION_TIMEOUT_MS = 5000;
+    private static final String INVALID_NDEF_MESSAGE = "Invalid NDEF message.";
+    // Marks NFC intents that were already reported; the platform extras stay for the app
+    private static final String EXTRA_HANDLED = "app.capgo.nfc.HANDLED";
 
     private NfcAdapter adapter;
-    private final AtomicReference<Tag> lastTag = new AtomicReference<>(null);
-    private final AtomicReference<NdefMessage> lastMessage = new AtomicReference<>(null);
+    // Target of tag operations called without a handle
+    private final AtomicReference<TagSession> lastSession = new AtomicReference<>(null);
+    private final TagSessionRegistry sessions = new TagSessionRegistry();
     private boolean readerModeRequested = false;
     private boolean readerModeActive = false;
+    // Foreground dispatch replaces reader mode while scanning when androidForegroundDispatch is set
+    private volatile boolean foregroundDispatch = false;
+    private boolean foregroundDispatchActive = false;
     private int readerModeFlags = DEFAULT_READER_FLAGS;
+    // Without the platform NDEF check no tag lists Ndef, so the raw readers are the only way to the message
+    private volatile boolean skipNdefCheck = false;
+    private volatile PayloadEncoding payloadEncoding = PayloadEncoding.ARRAY;
+    private volatile NdefRecordDecoder.Mode recordDecoding = NdefRecordDecoder.Mode.NONE;
+    private volatile boolean journalEnabled = false;
+    // Opened, used and closed on journalExecutor only
+    private ScanJournal journal = null;
+    private long journalSegmentBytes = ScanJournal.DEFAULT_SEGMENT_BYTES;
+    private final ExecutorService journalExecutor = Executors.newSingleThreadExecutor();
+    // Reads tags delivered by intents off the main thread, like reader mode callbacks
+    private final ExecutorService intentExecutor = Executors.newSingleThreadExecutor();
+    private volatile boolean fastReadEnabled = false;
+    private volatile boolean lazyRead = false;
+    private volatile EventBatcher<PendingEvent> eventBatcher = null;
+    private volatile TagLayoutCache layoutCache = null;
+    private volatile Type4TagReader.CapabilityCache capabilityCache = null;
+    private volatile TapDeduplicator deduplicator = null;
+    private volatile DiscoveryFilter discoveryFilter = null;
+    private volatile int presenceCheckDelay = DEFAULT_PRESENCE_CHECK_DELAY;
     private NdefMessage sharedMessage = null;
     private NfcStateReceiver stateReceiver;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final TagIoScheduler scheduler = new TagIoScheduler();
+    private final TagPresenceMonitor presenceMonitor = new TagPresenceMonitor(scheduler, this::onTagLost);
+    private final WriteJobQueue writeQueue = new WriteJobQueue();
+    private final PhaseMetrics metrics = new PhaseMetrics();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TagEventBuffer<JSObject> eventBuffer = new TagEventBuffer<>();
 
     private final NfcAdapter.ReaderCallback readerCallback = this::onTagDiscovered;
 
@@ -63,13 +117,37 @@ public class CapacitorNfcPlugin extends Plugin {
         adapter = NfcAdapter.getDefaultAdapter(getContext());
         registerStateReceiver();
         emitStateChange(adapter != null && adapter.isEnabled() ? NfcAdapter.STATE_ON : NfcAdapter.STATE_OFF);
+
+        // A tap that launched the app is reported from the intent extras; the event waits in the buffer for a listener
+        Activity activity = getActivity();
+        if (activity != null) {
+            handleLaunchIntent(activity.getIntent());
+        }
+    }
+
+    @Override
+    protected void handleOnNewIntent(Intent intent) {
+        super.handleOnNewIntent(intent);
+        Tag tag = consumeIntentTag(intent);
+        if (tag != null) {
+            // The tag was tapped while the app is running, so it is usually still in the field and can be read
+            intentExecutor.execute(() -> onTagDiscovered(tag));
+        }
     }
 
     @Override
     protected void handleOnDestroy() {
         super.handleOnDestroy();
         unregisterStateReceiver();
-        executor.shutdownNow();
+        presenceMonitor.shutdown();
+        scheduler.shutdown();
+        intentExecutor.shutdown();
+        journalExecutor.execute(() -> {
+            if (journal != null) {
+                journal.close();
+            }
+        });
+        journalExecutor.shutdown();
     }
 
     @Override
@@ -78,6 +156,7 @@ public class CapacitorNfcPlugin extends Plugin {
         if (readerModeActive) {
             disableReaderMode(false);
         }
+        presenceMonitor.stop();
     }
 
     @Override
@@ -94,7 +173,56 @@ public class CapacitorNfcPlugin extends Plugin {
             return;
         }
 
+        // Every option is validated before any is applied, so a rejected call leaves the running scan untouched
+        PayloadEncoding encoding;
+        NdefRecordDecoder.Mode decoding;
+        int bufferSize = call.getInt("androidEventBufferSize", TagEventBuffer.DEFAULT_CAPACITY);
+        String bufferOverflow = call.getString("androidEventBufferOverflow", TagEventBuffer.OVERFLOW_DROP_OLDEST);
+        TapDeduplicator dedup = null;
+        DiscoveryFilter filter;
+        try {
+            encoding = PayloadEncoding.fromString(call.getString("payloadEncoding"));
+            decoding = NdefRecordDecoder.Mode.fromString(call.getString("androidDecodeRecords"));
+            TagEventBuffer.checkOverflow(bufferOverflow);
+            int dedupWindowMs = call.getInt("androidDedupWindowMs", 0);
+            if (dedupWindowMs > 0) {
+                dedup = new TapDeduplicator(dedupWindowMs, call.getString("androidDedupKey", TapDeduplicator.KEY_UID));
+            }
+            filter = DiscoveryFilter.compile(call.getObject("androidFilters"));
+        } catch (IllegalArgumentException ex) {
+            call.reject(ex.getMessage());
+            return;
+        }
+        payloadEncoding = encoding;
+        recordDecoding = decoding;
+        eventBuffer.configure(bufferSize, bufferOverflow);
+        deduplicator = dedup;
+        discoveryFilter = filter;
+
         readerModeFlags = call.getInt("androidReaderModeFlags", DEFAULT_READER_FLAGS);
+        if (call.getBoolean("androidSkipNdefCheck", false)) {
+            readerModeFlags |= NfcAdapter.FLAG_READER_SKIP_NDEF_CHECK;
+        }
+        presenceCheckDelay = Math.max(1, call.getInt("androidPresenceCheckDelay", DEFAULT_PRESENCE_CHECK_DELAY));
+        fastReadEnabled = call.getBoolean("androidFastRead", false);
+        lazyRead = call.getBoolean("androidLazyRead", false);
+        foregroundDispatch = call.getBoolean("androidForegroundDispatch", false);
+        skipNdefCheck = !foregroundDispatch && (readerModeFlags & NfcAdapter.FLAG_READER_SKIP_NDEF_CHECK) != 0;
+        configureJournal(
+            call.getBoolean("androidJournal", false),
+            call.getLong("androidJournalSegmentBytes", ScanJournal.DEFAULT_SEGMENT_BYTES)
+        );
+        int batchWindowMs = call.getInt("androidEventBatchWindowMs", 0);
+        eventBatcher = batchWindowMs > 0 ? new EventBatcher<>(batchWindowMs, EventBatcher.DEFAULT_MAX_SIZE) : null;
+        metrics.setTracing(call.getBoolean("androidTrace", false));
+        sessions.configure(
+            call.getInt("androidSessionCapacity", TagSessionRegistry.DEFAULT_CAPACITY),
+            call.getLong("androidSessionTtlMs", TagSessionRegistry.DEFAULT_TTL_MS)
+        );
+        configureLayoutCache(
+            call.getInt("androidLayoutCacheSize", TagLayoutCache.DEFAULT_CAPACITY),
+            call.getBoolean("androidPersistLayoutCache", false)
+        );
         readerModeRequested = true;
         enableReaderMode(readerModeFlags);
         call.resolve();
@@ -103,79 +231,332 @@ public class CapacitorNfcPlugin extends Plugin {
     @PluginMethod
     public void stopScanning(PluginCall call) {
         readerModeRequested = false;
+        presenceMonitor.stop();
+        scheduler.cancelAll("Scanning was stopped.", TagIoScheduler.CODE_CANCELLED);
         disableReaderMode(true);
         call.resolve();
     }
 
     @PluginMethod
     public void write(PluginCall call) {
-        JSONArray records = call.getArray("records");
         boolean allowFormat = call.getBoolean("allowFormat", true);
+        String strategy = call.getString("androidWriteStrategy", WRITE_STRATEGY_FULL);
+        if (!WRITE_STRATEGY_FULL.equals(strategy) && !WRITE_STRATEGY_DIFFERENTIAL.equals(strategy)) {
+            call.reject("Unsupported androidWriteStrategy: " + strategy);
+            return;
+        }
 
-        if (records == null) {
-            call.reject("records is required");
+        if (!hasMessageOptions(call.getData())) {
+            call.reject("records or message is required");
             return;
         }
 
-        Tag tag = lastTag.get();
-        if (tag == null) {
-            call.reject("No NFC tag available. Call startScanning and tap a tag before attempting to write.");
+        TagSession session = sessionForCall(call, "No NFC tag available. Call startScanning and tap a tag before attempting to write.");
+        if (session == null) {
             return;
         }
 
         try {
-            NdefMessage message = NfcJsonConverter.jsonArrayToMessage(records);
-            performWrite(call, tag, message, allowFormat);
-        } catch (JSONException e) {
+            NdefMessage message = messageFromOptions(call.getData());
+            performWrite(call, session, message, allowFormat, WRITE_STRATEGY_DIFFERENTIAL.equals(strategy));
+        } catch (JSONException | FormatException e) {
             call.reject("Invalid NDEF records payload", e);
         }
     }
 
     @PluginMethod
     public void erase(PluginCall call) {
-        Tag tag = lastTag.get();
-        if (tag == null) {
-            call.reject("No NFC tag available. Call startScanning and tap a tag before attempting to erase.");
+        TagSession session = sessionForCall(call, "No NFC tag available. Call startScanning and tap a tag before attempting to erase.");
+        if (session == null) {
             return;
         }
 
-        NdefRecord empty = new NdefRecord(NdefRecord.TNF_EMPTY, new byte[0], new byte[0], new byte[0]);
-        NdefMessage message = new NdefMessage(new NdefRecord[] { empty });
-        performWrite(call, tag, message, true);
+        performWrite(call, session, emptyMessage(), true, false);
     }
 
     @PluginMethod
     public void makeReadOnly(PluginCall call) {
-        Tag tag = lastTag.get();
-        if (tag == null) {
-            call.reject("No NFC tag available. Scan a tag before attempting to lock it.");
+        TagSession session = sessionForCall(call, "No NFC tag available. Scan a tag before attempting to lock it.");
+        if (session == null) {
             return;
         }
 
-        executor.execute(() -> {
-            Ndef ndef = Ndef.get(tag);
-            if (ndef == null) {
-                call.reject("Tag does not support NDEF.");
-                return;
+        submitTagOperation(call, session, (operation) -> {
+            NdefTagWriter writer = new NdefTagWriter(session.tag());
+            operation.setCanceller(writer::abort);
+            try {
+                writer.makeReadOnly();
+                call.resolve();
+            } finally {
+                writer.close();
             }
+        });
+    }
 
+    @PluginMethod
+    public void readNdef(PluginCall call) {
+        TagSession session = sessionForCall(call, "No NFC tag available. Scan a tag before reading it.");
+        if (session == null) {
+            return;
+        }
+
+        PayloadEncoding encoding = payloadEncoding;
+        NdefRecordDecoder.Mode decoding = recordDecoding;
+        if (session.hasContent()) {
+            // Already read at discovery or by an earlier call, or just written: no tag I/O needed
+            byte[] ndef = session.ndef();
             try {
-                ndef.connect();
-                boolean success = ndef.makeReadOnly();
-                ndef.close();
-                if (success) {
-                    call.resolve();
-                } else {
-                    call.reject("Failed to make the tag read only.");
+                List<NdefCodec.Record> records = ndef != null ? NdefCodec.parse(ndef) : null;
+                call.resolve(readNdefResult(session, records, null, true, encoding, decoding));
+            } catch (NdefCodec.MalformedMessageException e) {
+                call.reject(INVALID_NDEF_MESSAGE, e);
+            }
+            return;
+        }
+
+        submitTagOperation(call, session, (operation) -> {
+            Tag tag = session.tag();
+            NdefContent content = readNdefContent(tag, PhaseMetrics.techOf(tag.getTechList()));
+            ReadStats readStats = content.readStats;
+            if (content.ndef == null && readStats != null && readStats.getFailure() != null) {
+                throw new NfcOperationException(readStats.getFailure());
+            }
+            session.setContent(content.ndef, content.type2Image);
+            call.resolve(readNdefResult(session, content.records, readStats, false, encoding, decoding));
+        });
+    }
+
+    private static JSObject readNdefResult(
+        TagSession session,
+        List<NdefCodec.Record> records,
+        ReadStats readStats,
+        boolean buffered,
+        PayloadEncoding encoding,
+        NdefRecordDecoder.Mode decoding
+    ) {
+        JSObject tagJson = NfcJsonConverter.tagToJSObject(session.tag(), records, encoding, decoding);
+        tagJson.put("handle", session.handle);
+        if (readStats != null) {
+            tagJson.put("readStats", readStats.toJSObject());
+        }
+        JSObject result = new JSObject();
+        result.put("tag", tagJson);
+        result.put("buffered", buffered);
+        return result;
+    }
+
+    @PluginMethod
+    public void runTransaction(PluginCall call) {
+        JSONArray stepsJson = call.getData().optJSONArray("steps");
+        if (stepsJson == null || stepsJson.length() == 0) {
+            call.reject("steps must be a non-empty array");
+            return;
+        }
+
+        List<TagTransaction.Step> steps = new ArrayList<>(stepsJson.length());
+        for (int i = 0; i < stepsJson.length(); i++) {
+            JSONObject step = stepsJson.optJSONObject(i);
+            String op = step != null ? step.optString("op", "") : "";
+            switch (op) {
+                case TagTransaction.STEP_WRITE:
+                    if (!hasMessageOptions(step)) {
+                        call.reject("Step " + i + ": write requires records or message");
+                        return;
+                    }
+                    try {
+                        steps.add(new TagTransaction.Step(op, messageFromOptions(step), step.optBoolean("allowFormat", true)));
+                    } catch (JSONException | FormatException e) {
+                        call.reject("Invalid NDEF records payload in step " + i, e);
+                        return;
+                    }
+                    break;
+                case TagTransaction.STEP_ERASE:
+                    steps.add(new TagTransaction.Step(op, emptyMessage(), true));
+                    break;
+                case TagTransaction.STEP_READ:
+                case TagTransaction.STEP_VERIFY:
+                case TagTransaction.STEP_MAKE_READ_ONLY:
+                    steps.add(new TagTransaction.Step(op, null, false));
+                    break;
+                default:
+                    call.reject("Step " + i + ": unsupported op " + op);
+                    return;
+            }
+        }
+        String invalid = TagTransaction.validate(steps);
+        if (invalid != null) {
+            call.reject(invalid);
+            return;
+        }
+
+        TagSession session = sessionForCall(call, "No NFC tag available. Scan a tag before running a transaction.");
+        if (session == null) {
+            return;
+        }
+
+        PayloadEncoding encoding = payloadEncoding;
+        NdefRecordDecoder.Mode decoding = recordDecoding;
+        submitTagOperation(call, session, (operation) -> {
+            long start = System.nanoTime();
+            NdefTagWriter writer = new NdefTagWriter(session.tag());
+            operation.setCanceller(writer::abort);
+            List<TagTransaction.StepResult> results;
+            try {
+                results = TagTransaction.run(writer, steps);
+            } finally {
+                writer.close();
+            }
+
+            JSArray stepResults = new JSArray();
+            NdefMessage written = null;
+            for (int i = 0; i < results.size(); i++) {
+                TagTransaction.StepResult item = results.get(i);
+                JSObject entry = new JSObject();
+                entry.put("op", item.op);
+                entry.put("success", item.error == null);
+                if (item.error != null) {
+                    // An aborted step fails with an I/O error; report why it was aborted instead
+                    entry.put("error", operation.isCancelled() ? operation.cancelMessage() : item.error);
+                } else if (steps.get(i).writes()) {
+                    written = steps.get(i).message;
+                }
+                if (item.message != null) {
+                    entry.put("message", NfcJsonConverter.messageToJSONArray(item.message, encoding, decoding));
                 }
-            } catch (SecurityException | IllegalStateException e) {
-                call.reject("Tag connection lost.", e);
-            } catch (IOException e) {
-                call.reject("Failed to make the tag read only.", e);
+                entry.put("durationMs", item.durationMs);
+                stepResults.put(entry);
             }
+            if (written != null) {
+                session.setContent(written.toByteArray(), null);
+            }
+
+            JSObject result = new JSObject();
+            result.put("steps", stepResults);
+            result.put("completed", results.size() == steps.size() && results.get(results.size() - 1).error == null);
+            result.put("durationMs", elapsedMs(start));
+            call.resolve(result);
         });
     }
 
+    @PluginMethod
+    public void transceiveBatch(PluginCall call) {
+        String tech = call.getString("tech");
+        if (tech == null || !TagTransceiver.isSupportedTech(tech)) {
+            call.reject("Unsupported tech: " + tech);
+            return;
+        }
+
+        JSONArray commandsJson = call.getData().optJSONArray("commands");
+        if (commandsJson == null || commandsJson.length() == 0) {
+            call.reject("commands must be a non-empty array");
+            return;
+        }
+        List<byte[]> commands = new ArrayList<>(commandsJson.length());
+        try {
+            for (int i = 0; i < commandsJson.length(); i++) {
+                commands.add(NfcJsonConverter.valueToBytes(commandsJson.get(i), "commands[" + i + "]"));
+            }
+        } catch (JSONException e) {
+            call.reject(e.getMessage(), e);
+            return;
+        }
+        boolean stopOnError = call.getBoolean("stopOnError", true);
+
+        TagSession session = sessionForCall(call, "No NFC tag available. Scan a tag before sending commands.");
+        if (session == null) {
+            return;
+        }
+
+        PayloadEncoding encoding = payloadEncoding;
+        submitTagOperation(call, session, (operation) -> {
+            long start = System.nanoTime();
+            TagTransceiver transceiver = TagTransceiver.get(session.tag(), tech);
+            operation.setCanceller(transceiver::close);
+            try {
+                try {
+                    transceiver.connect();
+                } catch (IOException | SecurityException | IllegalStateException e) {
+                    throw new NfcOperationException("Tag connection lost.", e);
+                }
+                long remainingMs = operation.remainingMs();
+                if (remainingMs > 0) {
+                    transceiver.setTimeout((int) Math.min(Integer.MAX_VALUE, remainingMs));
+                }
+                List<TransceiveBatch.Result> results = TransceiveBatch.run(transceiver, commands, stopOnError);
+                if (operation.rejectIfCancelled()) {
+                    return;
+                }
+
+                JSArray responses = new JSArray();
+                int succeeded = 0;
+                for (TransceiveBatch.Result item : results) {
+                    JSObject entry = new JSObject();
+                    if (item.error == null) {
+                        entry.put("response", encoding.encode(item.response));
+                        succeeded++;
+                    } else {
+                        entry.put("error", item.error);
+                    }
+                    entry.put("durationMs", item.durationMs);
+                    responses.put(entry);
+                }
+                JSObject result = new JSObject();
+                result.put("responses", responses);
+                result.put("completed", succeeded == commands.size());
+                result.put("durationMs", elapsedMs(start));
+                call.resolve(result);
+            } finally {
+                transceiver.close();
+            }
+        });
+    }
+
+    @PluginMethod
+    public void enqueueWriteJobs(PluginCall call) {
+        JSONArray jobs = call.getData().optJSONArray("jobs");
+        if (jobs == null || jobs.length() == 0) {
+            call.reject("jobs must be a non-empty array");
+            return;
+        }
+
+        boolean allowFormat = call.getBoolean("allowFormat", true);
+        boolean verify = call.getBoolean("verify", false);
+        boolean makeReadOnly = call.getBoolean("makeReadOnly", false);
+        List<WriteJobQueue.Spec> specs = new ArrayList<>(jobs.length());
+        for (int i = 0; i < jobs.length(); i++) {
+            JSONObject job = jobs.optJSONObject(i);
+            if (job == null || !hasMessageOptions(job)) {
+                call.reject("Write job " + i + " requires records or message");
+                return;
+            }
+            try {
+                specs.add(
+                    new WriteJobQueue.Spec(
+                        messageFromOptions(job),
+                        job.optBoolean("allowFormat", allowFormat),
+                        job.optBoolean("verify", verify),
+                        job.optBoolean("makeReadOnly", makeReadOnly)
+                    )
+                );
+            } catch (JSONException | FormatException e) {
+                call.reject("Invalid NDEF records payload in write job " + i, e);
+                return;
+            }
+        }
+
+        JSObject result = new JSObject();
+        result.put("firstIndex", writeQueue.enqueue(specs));
+        result.put("pending", writeQueue.size());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void clearWriteJobs(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("cleared", writeQueue.clear());
+        call.resolve(result);
+    }
+
     @PluginMethod
     public void share(PluginCall call) {
         if (!ensureAdapterAvailable(call)) {
@@ -187,14 +568,13 @@ public class CapacitorNfcPlugin extends Plugin {
             return;
         }
 
-        JSArray records = call.getArray("records");
-        if (records == null) {
-            call.reject("records is required");
+        if (!hasMessageOptions(call.getData())) {
+            call.reject("records or message is required");
             return;
         }
 
         try {
-            NdefMessage message = NfcJsonConverter.jsonArrayToMessage(records);
+            NdefMessage message = messageFromOptions(call.getData());
             Activity activity = getActivity();
             if (activity == null) {
                 call.reject("Unable to access activity context.");
@@ -215,7 +595,7 @@ public class CapacitorNfcPlugin extends Plugin {
                     call.reject("NDEF push is not available on this device.");
                 }
             });
-        } catch (JSONException e) {
+        } catch (JSONException | FormatException e) {
             call.reject("Invalid NDEF records payload", e);
         }
     }
@@ -274,6 +654,124 @@ public class CapacitorNfcPlugin extends Plugin {
         call.resolve();
     }
 
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject result = new JSObject();
+        TagLayoutCache cache = layoutCache;
+        result.put("layoutCache", cache != null ? cache.toJSObject() : JSObject.NULL);
+        TapDeduplicator dedup = deduplicator;
+        result.put("dedup", dedup != null ? dedup.toJSObject() : JSObject.NULL);
+        DiscoveryFilter filter = discoveryFilter;
+        result.put("filters", filter != null ? filter.toJSObject() : JSObject.NULL);
+        EventBatcher<PendingEvent> batcher = eventBatcher;
+        result.put("eventBatch", batcher != null ? batcher.toJSObject() : JSObject.NULL);
+        result.put("eventBuffer", eventBuffer.toJSObject());
+        result.put("sessions", sessions.toJSObject());
+        result.put("scheduler", scheduler.toJSObject());
+        result.put("phases", metrics.toJSObject());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        metrics.reset();
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void drainTagHistory(PluginCall call) {
+        JSArray events = new JSArray();
+        for (JSObject event : eventBuffer.drain(call.getInt("max", 0))) {
+            events.put(event);
+        }
+        JSObject result = new JSObject();
+        result.put("events", events);
+        result.put("remaining", eventBuffer.size());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void queryJournal(PluginCall call) {
+        String cursor = call.getString("cursor");
+        int limit = call.getInt("limit", 100);
+        long sinceMs = call.getLong("sinceMs", 0L);
+        String uid = call.getString("uid");
+        PayloadEncoding encoding = payloadEncoding;
+        runJournalTask(call, (scanJournal) -> {
+            String uidFilter = uid != null ? uid.toLowerCase(Locale.ROOT) : null;
+            ScanJournal.Page page = scanJournal.query(cursor, limit, (entry) ->
+                entry.timestampMs >= sinceMs && (uidFilter == null || uidFilter.equals(PayloadEncoding.toHex(entry.uid)))
+            );
+            JSArray entries = new JSArray();
+            for (ScanJournal.Entry entry : page.entries) {
+                JSObject item = new JSObject();
+                item.put("uid", encoding.encode(entry.uid));
+                item.put("timestamp", entry.timestampMs);
+                item.put("tech", entry.tech);
+                item.put("ndef", entry.ndef != null ? encoding.encode(entry.ndef) : JSObject.NULL);
+                entries.put(item);
+            }
+            JSObject result = new JSObject();
+            result.put("payloadEncoding", encoding.jsName());
+            result.put("entries", entries);
+            result.put("nextCursor", page.nextCursor != null ? page.nextCursor : JSObject.NULL);
+            call.resolve(result);
+        });
+    }
+
+    @PluginMethod
+    public void exportJournal(PluginCall call) {
+        File file = new File(getContext().getCacheDir(), "nfc-journal-" + System.currentTimeMillis() + ".jsonl");
+        runJournalTask(call, (scanJournal) -> {
+            int count;
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                count = scanJournal.exportJsonLines(writer);
+            }
+            JSObject result = new JSObject();
+            result.put("path", file.getAbsolutePath());
+            result.put("count", count);
+            call.resolve(result);
+        });
+    }
+
+    @PluginMethod
+    public void compactJournal(PluginCall call) {
+        runJournalTask(call, (scanJournal) -> {
+            JSObject result = new JSObject();
+            result.put("removed", scanJournal.compact());
+            call.resolve(result);
+        });
+    }
+
+    @PluginMethod
+    public void clearJournal(PluginCall call) {
+        runJournalTask(call, (scanJournal) -> {
+            scanJournal.clear();
+            call.resolve();
+        });
+    }
+
+    /**
+     * Replays buffered discovery events once a listener that can receive them attaches.
+     */
+    @Override
+    @PluginMethod(returnType = PluginMethod.RETURN_CALLBACK)
+    public void addListener(PluginCall call) {
+        super.addListener(call);
+        String eventName = call.getString("eventName");
+        if ("nfcEventBatch".equals(eventName)) {
+            List<JSObject> events = eventBuffer.drain(0);
+            if (!events.isEmpty()) {
+                notifyListeners("nfcEventBatch", batchPayload(events));
+            }
+        } else if ("nfcEvent".equals(eventName) || isDiscoveryEvent(eventName)) {
+            // Events that still have no listener stay buffered
+            for (JSObject event : eventBuffer.drain(0, this::hasDiscoveryListener)) {
+                emitEvents(event.getString("type"), event, null);
+            }
+        }
+    }
+
     @PluginMethod
     public void getPluginVersion(PluginCall call) {
         JSObject result = new JSObject();
@@ -288,44 +786,232 @@ public class CapacitorNfcPlugin extends Plugin {
         call.resolve(result);
     }
 
-    private void performWrite(PluginCall call, Tag tag, NdefMessage message, boolean allowFormat) {
-        executor.execute(() -> {
-            Ndef ndef = Ndef.get(tag);
-            try {
-                if (ndef != null) {
-                    ndef.connect();
-                    if (!ndef.isWritable()) {
-                        call.reject("Tag is read only.");
-                    } else if (ndef.getMaxSize() < message.toByteArray().length) {
-                        call.reject("Tag capacity is insufficient for the provided message.");
-                    } else {
-                        ndef.writeNdefMessage(message);
-                        call.resolve();
-                    }
-                    if (ndef.isConnected()) {
-                        ndef.close();
+    private static NdefMessage emptyMessage() {
+        NdefRecord empty = new NdefRecord(NdefRecord.TNF_EMPTY, new byte[0], new byte[0], new byte[0]);
+        return new NdefMessage(new NdefRecord[] { empty });
+    }
+
+    private boolean hasMessageOptions(JSONObject options) {
+        return options.opt("message") instanceof String || options.optJSONArray("records") != null;
+    }
+
+    /**
+     * Builds the message to write from either a pre-encoded base64 {@code message} or the {@code records} array.
+     * Reads straight from the call data so records are not copied into intermediate JS objects first.
+     */
+    private NdefMessage messageFromOptions(JSONObject options) throws JSONException, FormatException {
+        Object encodedMessage = options.opt("message");
+        if (encodedMessage instanceof String) {
+            return NfcJsonConverter.base64ToMessage((String) encodedMessage);
+        }
+        return NfcJsonConverter.jsonArrayToMessage(options.optJSONArray("records"));
+    }
+
+    /**
+     * Resolves the tag targeted by {@code call}: the session named by its {@code handle} option, or the most recently
+     * discovered tag when no handle is given. Rejects the call without any tag I/O when there is no such tag.
+     */
+    private TagSession sessionForCall(PluginCall call, String noTagMessage) {
+        String handle = call.getString("handle");
+        if (handle == null) {
+            TagSession session = lastSession.get();
+            if (session == null) {
+                call.reject(noTagMessage);
+            }
+            return session;
+        }
+        TagSession session = sessions.get(handle, SystemClock.elapsedRealtime());
+        if (session == null) {
+            call.reject("Tag handle is stale or unknown. The tag left the field or the handle expired.", "STALE_HANDLE");
+        }
+        return session;
+    }
+
+    /**
+     * Queues tag I/O for {@code call} on the scheduler with the deadline from its {@code timeout} option.
+     * The operation resolves the call itself; failures and cancellations reject it.
+     */
+    private void submitTagOperation(PluginCall call, TagSession session, TagOperation body) {
+        int timeoutMs = Math.max(0, call.getInt("timeout", DEFAULT_OPERATION_TIMEOUT_MS));
+        scheduler.submit(
+            TagIoScheduler.PRIORITY_NORMAL,
+            timeoutMs,
+            session,
+            (operation) -> {
+                try {
+                    body.run(operation);
+                } catch (NfcOperationException e) {
+                    // An aborted operation fails with an I/O error; report why it was aborted instead
+                    if (!operation.rejectIfCancelled()) {
+                        rejectOperation(call, e);
                     }
-                } else if (allowFormat) {
-                    NdefFormatable formatable = NdefFormatable.get(tag);
-                    if (formatable != null) {
-                        formatable.connect();
-                        formatable.format(message);
-                        formatable.close();
-                        call.resolve();
-                    } else {
-                        call.reject("Tag does not support NDEF formatting.");
+                }
+            },
+            call::reject
+        );
+    }
+
+    private void performWrite(PluginCall call, TagSession session, NdefMessage message, boolean allowFormat, boolean differential) {
+        submitTagOperation(call, session, (operation) -> {
+            // Resolved here so a re-discovery while the write was queued is picked up
+            Tag tag = session.tag();
+            String tech = PhaseMetrics.techOf(tag.getTechList());
+            NdefTagWriter writer = new NdefTagWriter(tag);
+            operation.setCanceller(writer::abort);
+            PhaseMetrics.Span writeSpan = metrics.begin(PhaseMetrics.PHASE_WRITE);
+            try {
+                JSObject result = differential ? writeDifferential(operation, session, tag, message) : null;
+                if (result == null) {
+                    if (writeType5(operation, tag, message) < 0 && writeType3(operation, tag, message) < 0) {
+                        writer.write(message, allowFormat);
                     }
-                } else {
-                    call.reject("Tag does not support NDEF.");
+                    session.setContent(message.toByteArray(), null);
+                    result = new JSObject();
+                    result.put("strategy", WRITE_STRATEGY_FULL);
                 }
-            } catch (SecurityException | IllegalStateException e) {
-                call.reject("Tag connection lost.", e);
-            } catch (IOException | FormatException e) {
-                call.reject("Failed to write NDEF message.", e);
+                call.resolve(result);
+            } catch (NfcOperationException e) {
+                metrics.recordFailure(tech, operation.isCancelled() ? operation.cancelMessage() : e.getMessage());
+                throw e;
+            } finally {
+                writer.close();
+                writeSpan.end(tech);
             }
         });
     }
 
+    /**
+     * Writes only what changed compared to the last known content of the session's tag, or nothing when it already
+     * holds {@code message}.
+     *
+     * @return the write result, or {@code null} when the previous content is unknown and a full write is needed.
+     */
+    private JSObject writeDifferential(TagIoScheduler.Operation operation, TagSession session, Tag tag, NdefMessage message)
+        throws NfcOperationException {
+        byte[] ndef = message.toByteArray();
+        Type2TagImage image = session.type2Image();
+        MifareUltralight mifare = MifareUltralight.get(tag);
+        if (image != null && mifare != null && image.belongsTo(tag.getId())) {
+            Type2DiffWriter.Plan plan = Type2DiffWriter.plan(image, ndef);
+            if (plan != null) {
+                operation.setCanceller(() -> closeQuietly(mifare));
+                Type2DiffWriter.apply(mifare, plan, (int) Math.min(Integer.MAX_VALUE, operation.remainingMs()));
+                session.setContent(ndef, plan.result);
+                return writeResult(plan.writes.size(), plan.pagesSkipped);
+            }
+        }
+
+        // Without the raw pages only an identical message can be handled, by skipping the write
+        if (Arrays.equals(session.ndef(), ndef)) {
+            return writeResult(0, -1);
+        }
+        return null;
+    }
+
+    /**
+     * Writes {@code message} to a Type 5 tag with raw block commands.
+     *
+     * @return the number of blocks written, or {@code -1} when the tag is not an NDEF formatted Type 5 tag or rejected
+     *     the first block write, and the platform writer must be used.
+     */
+    private int writeType5(TagIoScheduler.Operation operation, Tag tag, NdefMessage message) throws NfcOperationException {
+        NfcV nfcV = NfcV.get(tag);
+        if (nfcV == null) {
+            return -1;
+        }
+        operation.setCanceller(() -> closeQuietly(nfcV));
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_BLOCKS);
+        Type5TagReader reader = new Type5TagReader(nfcV::transceive, tag.getId(), nfcV.getMaxTransceiveLength(), stats);
+        try {
+            nfcV.connect();
+            return new Type5TagWriter(reader, tag.getId()).write(message.toByteArray());
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        } finally {
+            closeQuietly(nfcV);
+        }
+    }
+
+    /**
+     * Writes {@code message} to a Type 3 tag with batched Update commands.
+     *
+     * @return the number of Update commands sent, or {@code -1} when the tag is not an NDEF formatted Type 3 tag and
+     *     the platform writer must be used.
+     */
+    private int writeType3(TagIoScheduler.Operation operation, Tag tag, NdefMessage message) throws NfcOperationException {
+        NfcF nfcF = NfcF.get(tag);
+        if (nfcF == null) {
+            return -1;
+        }
+        operation.setCanceller(() -> closeQuietly(nfcF));
+        ReadStats stats = new ReadStats(ReadStats.METHOD_CHECK);
+        int maxTransceiveLength = nfcF.getMaxTransceiveLength();
+        Type3TagReader reader = new Type3TagReader(nfcF::transceive, tag.getId(), maxTransceiveLength, stats);
+        try {
+            nfcF.connect();
+            int timeoutMs = (int) Math.min(Integer.MAX_VALUE, operation.remainingMs());
+            if (timeoutMs > 0) {
+                nfcF.setTimeout(timeoutMs);
+            }
+            return new Type3TagWriter(reader, tag.getId(), maxTransceiveLength).write(message.toByteArray());
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        } finally {
+            closeQuietly(nfcF);
+        }
+    }
+
+    private static JSObject writeResult(int pagesWritten, int pagesSkipped) {
+        JSObject result = new JSObject();
+        result.put("strategy", WRITE_STRATEGY_DIFFERENTIAL);
+        result.put("skipped", pagesWritten == 0);
+        result.put("pagesWritten", pagesWritten);
+        if (pagesSkipped >= 0) {
+            result.put("pagesSkipped", pagesSkipped);
+        }
+        return result;
+    }
+
+    private static void closeQuietly(TagTechnology technology) {
+        try {
+            technology.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+
+    private static void rejectOperation(PluginCall call, NfcOperationException e) {
+        Exception cause = e.getCauseException();
+        if (cause != null) {
+            call.reject(e.getMessage(), cause);
+        } else {
+            call.reject(e.getMessage());
+        }
+    }
+
+    private void configureLayoutCache(int capacity, boolean persist) {
+        TagLayoutCache current = layoutCache;
+        if (capacity <= 0) {
+            layoutCache = null;
+            capabilityCache = null;
+            return;
+        }
+        if (current != null && current.capacity() == capacity && current.isPersistent() == persist) {
+            // Keep the warm cache across stop/start cycles
+            return;
+        }
+        capabilityCache = new Type4TagReader.CapabilityCache(capacity);
+        Context context = getContext();
+        SharedPreferences preferences = persist && context != null
+            ? context.getSharedPreferences(TagLayoutCache.PREFERENCES_NAME, Context.MODE_PRIVATE)
+            : null;
+        layoutCache = new TagLayoutCache(capacity, preferences);
+    }
+
     private void enableReaderMode(int flags) {
         Activity activity = getActivity();
         if (activity == null || adapter == null) {
@@ -333,11 +1019,24 @@ public class CapacitorNfcPlugin extends Plugin {
         }
 
         Bundle extras = new Bundle();
-        extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, 100);
+        extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, presenceCheckDelay);
 
+        boolean dispatch = foregroundDispatch;
         activity.runOnUiThread(() -> {
             try {
-                adapter.enableReaderMode(activity, readerCallback, flags, extras);
+                // Reader mode and foreground dispatch exclude each other, so leave the mode that is no longer wanted
+                if (dispatch) {
+                    if (readerModeActive && !foregroundDispatchActive) {
+                        adapter.disableReaderMode(activity);
+                    }
+                    adapter.enableForegroundDispatch(activity, foregroundDispatchIntent(activity), null, null);
+                } else {
+                    if (foregroundDispatchActive) {
+                        adapter.disableForegroundDispatch(activity);
+                    }
+                    adapter.enableReaderMode(activity, readerCallback, flags, extras);
+                }
+                foregroundDispatchActive = dispatch;
                 readerModeActive = true;
             } catch (IllegalStateException ex) {
                 Log.w(TAG, "Failed to enable reader mode", ex);
@@ -345,6 +1044,19 @@ public class CapacitorNfcPlugin extends Plugin {
         });
     }
 
+    /**
+     * Delivers every tag to this activity through {@code onNewIntent}; a null filter list matches all tags.
+     */
+    private static PendingIntent foregroundDispatchIntent(Activity activity) {
+        Intent intent = new Intent(activity, activity.getClass()).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            // The NFC service adds the tag extras, so the intent must stay mutable
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        return PendingIntent.getActivity(activity, 0, intent, flags);
+    }
+
     private void disableReaderMode(boolean clearRequested) {
         Activity activity = getActivity();
         if (activity == null || adapter == null) {
@@ -353,11 +1065,16 @@ public class CapacitorNfcPlugin extends Plugin {
 
         activity.runOnUiThread(() -> {
             try {
-                adapter.disableReaderMode(activity);
+                if (foregroundDispatchActive) {
+                    adapter.disableForegroundDispatch(activity);
+                } else {
+                    adapter.disableReaderMode(activity);
+                }
             } catch (IllegalStateException ex) {
                 Log.w(TAG, "Failed to disable reader mode", ex);
             } finally {
                 readerModeActive = false;
+                foregroundDispatchActive = false;
                 if (clearRequested) {
                     readerModeRequested = false;
                 }
@@ -370,7 +1087,74 @@ public class CapacitorNfcPlugin extends Plugin {
             return;
         }
 
-        NdefMessage message = null;
+        PhaseMetrics.Span discover = metrics.begin(PhaseMetrics.PHASE_DISCOVER);
+        String tech = PhaseMetrics.techOf(tag.getTechList());
+
+        // Filtered tags are ignored entirely; a watched tag that left the field is still reported by its presence check
+        DiscoveryFilter filter = discoveryFilter;
+        if (filter != null && !filter.acceptsTag(tag.getTechList(), tag.getId())) {
+            discover.end(tech);
+            return;
+        }
+
+        // Make sure no presence check holds a connection while the tag is read
+        presenceMonitor.suspend();
+
+        // Refreshing the session keeps the fresh Tag object so operations target the live connection
+        TagSession session = sessions.register(tag.getId(), tag, SystemClock.elapsedRealtime());
+        lastSession.set(session);
+
+        // Encoding mode: write the next queued message while the tag is still in the field, skipping the read. The
+        // queue is checked before the duplicate filter so a re-tap retries a job that failed on the same tag; the
+        // queue itself keeps a written tag from receiving the next job.
+        WriteJobQueue.Job job = writeQueue.next(tag.getId());
+        if (job != null) {
+            discover.end(tech);
+            boolean written = runWriteJob(tag, tech, session.handle, job);
+            session.setContent(written ? job.message.toByteArray() : null, null);
+            watchPresence(tag);
+            return;
+        }
+
+        TapDeduplicator dedup = deduplicator;
+        if (dedup != null && dedup.isDuplicateTap(tag.getId(), SystemClock.elapsedRealtime())) {
+            discover.end(tech);
+            watchPresence(tag);
+            return;
+        }
+        discover.end(tech);
+
+        if (lazyRead) {
+            emitLazyTagEvent(tag, tech, session, dedup, filter);
+            return;
+        }
+
+        NdefContent content = readNdefContent(tag, tech);
+        session.setContent(content.ndef, content.type2Image);
+
+        // A tag dropped by the record filter is not watched, so it never produces a tagLost event
+        if (filter != null && !filter.acceptsRecords(content.records)) {
+            presenceMonitor.resume();
+            return;
+        }
+        watchPresence(tag);
+        if (dedup != null && dedup.includesContent()) {
+            if (dedup.isDuplicateContent(tag.getId(), content.ndef, SystemClock.elapsedRealtime())) {
+                return;
+            }
+        }
+        journalScan(tag, tech, content.ndef);
+        emitTagEvent(tag, tech, session.handle, content.records, content.readStats);
+    }
+
+    /**
+     * Reads and decodes the NDEF content of {@code tag} with the fastest path its technologies allow.
+     */
+    private NdefContent readNdefContent(Tag tag, String tech) {
+        PhaseMetrics.Span read = metrics.begin(PhaseMetrics.PHASE_READ);
+        byte[] ndefBytes = null;
+        Type2TagImage type2Image = null;
+        ReadStats readStats = null;
         String[] techList = tag.getTechList();
 
         // Check tech list first - if MIFARE Ultralight is present, prioritize it
@@ -381,242 +1165,626 @@ public class CapacitorNfcPlugin extends Plugin {
             // Try MIFARE Ultralight first - read immediately before tag becomes stale
             MifareUltralight mifare = MifareUltralight.get(tag);
             if (mifare != null) {
-                message = readNdefFromMifareUltralight(mifare);
+                readStats = new ReadStats(ReadStats.METHOD_READ_PAGES);
+                Type2TagReader reader = new Type2TagReader(mifare, fastReadEnabled, layoutCache, readStats);
+                ndefBytes = reader.read();
+                type2Image = reader.image();
             }
         }
 
         // If no message from MIFARE, try standard NDEF
-        if (message == null) {
+        if (ndefBytes == null) {
             Ndef ndef = Ndef.get(tag);
+            NdefMessage message = null;
+
+            // The platform NDEF check already read the message of every tag listing Ndef, and tags that do not list
+            // it hold none, so the raw readers only run when the check is skipped and the tech list cannot tell
+            if (ndef == null && skipNdefCheck) {
+                // Type 4 tags are read with raw APDUs sized from their capability container
+                if (Arrays.asList(techList).contains("android.nfc.tech.IsoDep")) {
+                    readStats = new ReadStats(ReadStats.METHOD_ISO_DEP);
+                    ndefBytes = readType4(tag, readStats);
+                } else if (Arrays.asList(techList).contains("android.nfc.tech.NfcV")) {
+                    // Type 5 tags are read with raw block commands, several blocks at a time when the CC allows it
+                    readStats = new ReadStats(ReadStats.METHOD_READ_BLOCKS);
+                    ndefBytes = readType5(tag, readStats);
+                } else if (Arrays.asList(techList).contains("android.nfc.tech.NfcF")) {
+                    // Type 3 tags are read with Check commands batching as many blocks as the AIB allows
+                    readStats = new ReadStats(ReadStats.METHOD_CHECK);
+                    ndefBytes = readType3(tag, readStats);
+                }
+            }
+
             if (ndef != null) {
+                readStats = new ReadStats(ReadStats.METHOD_CACHED);
                 // First try to get cached message (fast path)
                 try {
                     message = ndef.getCachedNdefMessage();
                 } catch (Exception ex) {
                     // Ignore - will try to read directly
                 }
+                ndefBytes = message != null ? message.toByteArray() : null;
+            }
 
-                // If no cached message, read it synchronously while tag is in range
-                if (message == null) {
+            // If no cached message, read it synchronously while tag is in range
+            if (ndefBytes == null && ndef != null) {
+                readStats.setMethod(ReadStats.METHOD_NDEF);
+                try {
+                    long connectStart = System.nanoTime();
+                    ndef.connect();
+                    readStats.recordConnect(System.nanoTime() - connectStart);
+                    message = ndef.getNdefMessage();
+                    ndef.close();
+                } catch (IOException | FormatException ex) {
+                    readStats.setFailure(ex instanceof FormatException ? INVALID_NDEF_MESSAGE : "Failed to read NDEF message.");
                     try {
-                        ndef.connect();
-                        message = ndef.getNdefMessage();
                         ndef.close();
-                    } catch (IOException | FormatException ex) {
-                        try {
-                            ndef.close();
-                        } catch (IOException closeEx) {
-                            // Ignore close errors
-                        }
+                    } catch (IOException closeEx) {
+                        // Ignore close errors
                     }
                 }
+                ndefBytes = message != null ? message.toByteArray() : null;
             }
         }
 
-        lastTag.set(tag);
-        lastMessage.set(message);
-        emitTagEvent(tag, message);
+        List<NdefCodec.Record> records = null;
+        if (ndefBytes != null) {
+            long parseStart = System.nanoTime();
+            try {
+                records = NdefCodec.parse(ndefBytes);
+            } catch (NdefCodec.MalformedMessageException ex) {
+                Log.w(TAG, "Ignoring malformed NDEF message: " + ex.getMessage());
+                readStats.setFailure(INVALID_NDEF_MESSAGE);
+                ndefBytes = null;
+            }
+            readStats.recordParse(System.nanoTime() - parseStart);
+        }
+        if (readStats != null) {
+            readStats.finish();
+        }
+        read.endTrace();
+        metrics.recordRead(tech, readStats);
+        return new NdefContent(ndefBytes, type2Image, records, readStats);
     }
 
     /**
-     * Reads NDEF message from MIFARE Ultralight tag by reading raw pages.
-     *
-     * Based on NFC Forum Type 2 Tag Operation specification:
-     * - NDEF data is stored in TLV (Type-Length-Value) format starting at page 4
-     * - TLV Type 0x03 indicates NDEF message
-     * - Length encoding: single byte if < 0xFF, or 0xFF + 2-byte length if >= 0xFF
+     * Reads the NDEF file of a Type 4 tag over {@link IsoDep}.
      *
-     * References:
-     * - Android MifareUltralight API: https://developer.android.com/reference/android/nfc/tech/MifareUltralight
-     * - NFC Forum Type 2 Tag Operation specification
+     * @return the encoded message, or {@code null} when the tag has none or the read failed.
      */
-    private NdefMessage readNdefFromMifareUltralight(MifareUltralight mifare) {
+    private byte[] readType4(Tag tag, ReadStats readStats) {
+        IsoDep isoDep = IsoDep.get(tag);
+        if (isoDep == null) {
+            return null;
+        }
         try {
-            // Connect immediately - tag can become stale quickly
-            mifare.connect();
-
-            // Log tag variant for debugging
-            int tagType = mifare.getType();
-            String variantName;
-            switch (tagType) {
-                case MifareUltralight.TYPE_ULTRALIGHT:
-                    variantName = "MIFARE Ultralight (standard, 64 bytes)";
-                    break;
-                case MifareUltralight.TYPE_ULTRALIGHT_C:
-                    variantName = "MIFARE Ultralight C (up to 192 bytes)";
-                    break;
-                default:
-                    variantName = "MIFARE Ultralight (type: " + tagType + ", unknown variant)";
-                    break;
+            long connectStart = System.nanoTime();
+            isoDep.connect();
+            readStats.recordConnect(System.nanoTime() - connectStart);
+            Type4TagReader reader = new Type4TagReader(
+                isoDep::transceive,
+                isoDep.getMaxTransceiveLength(),
+                isoDep.isExtendedLengthApduSupported(),
+                capabilityCache,
+                readStats
+            );
+            byte[] message = reader.read(PayloadEncoding.toHex(tag.getId()));
+            Log.d(TAG, "Type 4 read " + readStats);
+            return message;
+        } catch (IOException | SecurityException ex) {
+            readStats.setFailure(ex instanceof SecurityException ? "Tag connection lost." : "Failed to read NDEF message.");
+            return null;
+        } finally {
+            try {
+                isoDep.close();
+            } catch (IOException closeEx) {
+                // Ignore close errors
             }
-            Log.d(TAG, "MIFARE Ultralight tag variant: " + variantName);
+        }
+    }
 
-            // Read pages 4-7 first (readPages reads 4 pages = 16 bytes at a time)
-            // This contains the TLV header
-            byte[] firstPages = mifare.readPages(4);
-            if (firstPages == null || firstPages.length < 4) {
-                mifare.close();
-                return null;
-            }
+    /**
+     * Reads the NDEF TLV of a Type 5 tag over {@link NfcV}.
+     *
+     * @return the encoded message, or {@code null} when the tag has none or the read failed.
+     */
+    private byte[] readType5(Tag tag, ReadStats readStats) {
+        NfcV nfcV = NfcV.get(tag);
+        if (nfcV == null) {
+            return null;
+        }
+        Type5TagReader reader = new Type5TagReader(nfcV::transceive, tag.getId(), nfcV.getMaxTransceiveLength(), readStats);
+        try {
+            long connectStart = System.nanoTime();
+            nfcV.connect();
+            readStats.recordConnect(System.nanoTime() - connectStart);
+            byte[] message = reader.read();
+            Log.d(TAG, "Type 5 read " + readStats);
+            return message;
+        } catch (IOException | SecurityException ex) {
+            readStats.setFailure(ex instanceof SecurityException ? "Tag connection lost." : "Failed to read NDEF message.");
+            return null;
+        } finally {
+            readStats.setMethod(reader.usedMultipleBlockRead() ? ReadStats.METHOD_READ_MULTIPLE_BLOCKS : ReadStats.METHOD_READ_BLOCKS);
+            closeQuietly(nfcV);
+        }
+    }
 
-            // Check for NDEF TLV (Type = 0x03 per NFC Forum spec)
-            if (firstPages[0] != 0x03) {
-                mifare.close();
-                return null;
-            }
+    /**
+     * Reads the NDEF data of a Type 3 tag over {@link NfcF}.
+     *
+     * @return the encoded message, or {@code null} when the tag has none or the read failed.
+     */
+    private byte[] readType3(Tag tag, ReadStats readStats) {
+        NfcF nfcF = NfcF.get(tag);
+        if (nfcF == null) {
+            return null;
+        }
+        try {
+            long connectStart = System.nanoTime();
+            nfcF.connect();
+            readStats.recordConnect(System.nanoTime() - connectStart);
+            byte[] message = new Type3TagReader(nfcF::transceive, tag.getId(), nfcF.getMaxTransceiveLength(), readStats).read();
+            Log.d(TAG, "Type 3 read " + readStats);
+            return message;
+        } catch (IOException | SecurityException ex) {
+            readStats.setFailure(ex instanceof SecurityException ? "Tag connection lost." : "Failed to read NDEF message.");
+            return null;
+        } finally {
+            closeQuietly(nfcF);
+        }
+    }
 
-            // Parse TLV length field
-            int ndefLength;
-            int tlvHeaderSize;
-            if ((firstPages[1] & 0xFF) < 0xFF) {
-                // Short format: single byte length
-                ndefLength = firstPages[1] & 0xFF;
-                tlvHeaderSize = 2; // Type (1 byte) + Length (1 byte)
-            } else {
-                // Extended format: 0xFF + 2-byte length
-                if (firstPages.length < 4) {
-                    mifare.close();
-                    return null;
-                }
-                ndefLength = ((firstPages[2] & 0xFF) << 8) | (firstPages[3] & 0xFF);
-                tlvHeaderSize = 4; // Type (1 byte) + 0xFF (1 byte) + Length (2 bytes)
-            }
+    /**
+     * Writes, optionally verifies and locks {@code job} on the reader thread, then reports the outcome.
+     *
+     * @return {@code true} when every step succeeded and the job left the queue.
+     */
+    private boolean runWriteJob(Tag tag, String tech, String handle, WriteJobQueue.Job job) {
+        long start = System.nanoTime();
+        // Run as a transaction so a blank tag is formatted and locked in one command, and its verify is satisfied
+        // by the format: a freshly formatted tag cannot be reopened as Ndef on the same tap
+        List<TagTransaction.Step> steps = new ArrayList<>(3);
+        steps.add(new TagTransaction.Step(TagTransaction.STEP_WRITE, job.message, job.allowFormat));
+        if (job.verify) {
+            steps.add(new TagTransaction.Step(TagTransaction.STEP_VERIFY, null, false));
+        }
+        if (job.makeReadOnly) {
+            steps.add(new TagTransaction.Step(TagTransaction.STEP_MAKE_READ_ONLY, null, false));
+        }
 
-            if (ndefLength == 0 || ndefLength > 1024) {
-                // Reasonable upper limit
-                mifare.close();
-                return null;
+        NdefTagWriter writer = new NdefTagWriter(tag);
+        PhaseMetrics.Span span = metrics.begin(PhaseMetrics.PHASE_WRITE);
+        List<TagTransaction.StepResult> results;
+        try {
+            results = TagTransaction.run(writer, steps);
+        } finally {
+            writer.close();
+            span.endTrace();
+        }
+
+        JSObject timing = new JSObject();
+        String error = null;
+        for (TagTransaction.StepResult result : results) {
+            String phase = writeJobPhase(result.op);
+            if (result.durationMs > 0) {
+                // Steps merged into a format report no duration of their own
+                metrics.record(tech, phase, (long) (result.durationMs * 1_000_000));
             }
+            timing.put(phase + "Ms", result.durationMs);
+            error = result.error;
+        }
+        if (error == null) {
+            writeQueue.complete(job, tag.getId());
+        } else {
+            metrics.recordFailure(tech, error);
+            Log.d(TAG, "Write job " + job.index + " failed: " + error);
+        }
+        timing.put("totalMs", elapsedMs(start));
 
-            // Calculate total bytes needed (TLV header + NDEF data)
-            int totalBytesNeeded = tlvHeaderSize + ndefLength;
-            int totalPagesNeeded = (totalBytesNeeded + 3) / 4; // Round up to pages
+        JSObject event = new JSObject();
+        event.put("index", job.index);
+        event.put("id", payloadEncoding.encode(tag.getId()));
+        event.put("handle", handle);
+        event.put("success", error == null);
+        if (error != null) {
+            event.put("error", error);
+        }
+        event.put("attempts", job.attempts);
+        event.put("pending", writeQueue.size());
+        event.put("timing", timing);
 
-            // Read all necessary pages sequentially
-            // Standard MIFARE Ultralight: pages 4-15 (48 bytes)
-            // MIFARE Ultralight EV1: up to 256 pages (1024 bytes)
-            // MIFARE Ultralight C: up to 256 pages (1024 bytes)
-            byte[] allData = new byte[totalPagesNeeded * 4];
-            int bytesRead = 0;
-            int currentPage = 4;
+        Activity activity = getActivity();
+        if (activity != null) {
+            activity.runOnUiThread(() -> notifyListeners("writeJobResult", event, true));
+        }
+        return error == null;
+    }
 
-            // Copy first 16 bytes we already read
-            int bytesToCopy = Math.min(firstPages.length, allData.length);
-            System.arraycopy(firstPages, 0, allData, 0, bytesToCopy);
-            bytesRead = bytesToCopy;
-            currentPage += 4; // Move to page 8
+    private static String writeJobPhase(String op) {
+        switch (op) {
+            case TagTransaction.STEP_VERIFY:
+                return PhaseMetrics.PHASE_VERIFY;
+            case TagTransaction.STEP_MAKE_READ_ONLY:
+                return PhaseMetrics.PHASE_LOCK;
+            default:
+                return PhaseMetrics.PHASE_WRITE;
+        }
+    }
 
-            // Read remaining pages if needed
-            // Support up to page 256 (MIFARE Ultralight EV1/C maximum)
-            while (bytesRead < totalBytesNeeded && currentPage < 260) {
-                try {
-                    byte[] pages = mifare.readPages(currentPage);
-                    if (pages == null || pages.length == 0) {
-                        // No more pages available - tag might not support this many pages
-                        break;
-                    }
+    private static double elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
 
-                    int bytesNeeded = totalBytesNeeded - bytesRead;
-                    int bytesToRead = Math.min(pages.length, bytesNeeded);
-                    System.arraycopy(pages, 0, allData, bytesRead, bytesToRead);
-                    bytesRead += bytesToRead;
-                    currentPage += 4; // readPages reads 4 pages at a time
-                } catch (IOException e) {
-                    // Tag might not support reading beyond this page
-                    // This is normal for tags with fewer pages than needed
-                    break;
-                }
-            }
+    private void watchPresence(Tag tag) {
+        if (hasListeners("tagLost")) {
+            presenceMonitor.watch(tag, presenceCheckDelay);
+        } else {
+            presenceMonitor.stop();
+        }
+    }
 
-            mifare.close();
+    private void onTagLost(Tag tag) {
+        TagSession last = lastSession.get();
+        if (last != null && last.tag() == tag) {
+            lastSession.compareAndSet(last, null);
+        }
+        TagSession lost = sessions.invalidate(tag.getId(), tag);
+        scheduler.cancelForTag(tag.getId(), "Tag connection lost.", TagIoScheduler.CODE_TAG_LOST);
 
-            // Check if we have enough data
-            if (bytesRead < totalBytesNeeded) {
-                // Incomplete read - tag might not have enough pages or was removed
-                Log.w(
-                    TAG,
-                    String.format(
-                        "Incomplete NDEF read: read %d bytes, needed %d bytes (stopped at page %d, variant: %s)",
-                        bytesRead,
-                        totalBytesNeeded,
-                        currentPage,
-                        variantName
-                    )
-                );
-                return null;
-            }
+        JSObject event = new JSObject();
+        event.put("id", payloadEncoding.encode(tag.getId()));
+        if (lost != null) {
+            event.put("handle", lost.handle);
+        }
+        event.put("techTypes", new JSArray(Arrays.asList(tag.getTechList())));
 
-            // Extract NDEF data (skip TLV header)
-            byte[] ndefData = new byte[ndefLength];
-            System.arraycopy(allData, tlvHeaderSize, ndefData, 0, ndefLength);
+        Activity activity = getActivity();
+        if (activity == null) {
+            return;
+        }
+        activity.runOnUiThread(() -> notifyListeners("tagLost", event));
+    }
 
-            // Parse NDEF message
+    private void emitTagEvent(Tag tag, String tech, String handle, List<NdefCodec.Record> records, ReadStats readStats) {
+        PhaseMetrics.Span serialize = metrics.begin(PhaseMetrics.PHASE_SERIALIZE);
+        JSObject tagJson = NfcJsonConverter.tagToJSObject(tag, records, payloadEncoding, recordDecoding);
+        tagJson.put("handle", handle);
+        if (readStats != null) {
+            tagJson.put("readStats", readStats.toJSObject());
+        }
+        dispatchTagEvent(tech, PayloadEncoding.toHex(tag.getId()), determineEventType(tag, records), tagJson, serialize);
+    }
+
+    /**
+     * Emits a discovery event without reading the tag: the UID, technologies and NDEF attributes are known from
+     * discovery, and the message is left for {@code readNdef}. A message Android already cached during discovery
+     * is buffered in the session so {@code readNdef} can return it without I/O.
+     */
+    private void emitLazyTagEvent(Tag tag, String tech, TagSession session, TapDeduplicator dedup, DiscoveryFilter filter) {
+        byte[] buffered = cachedNdefBytes(tag);
+        if (buffered != null) {
+            session.setContent(buffered, null);
+        } else {
+            session.clearContent();
+        }
+
+        List<NdefCodec.Record> records = null;
+        if (buffered != null) {
             try {
-                return new NdefMessage(ndefData);
-            } catch (FormatException e) {
-                Log.w(TAG, "Failed to parse NDEF message from MIFARE Ultralight", e);
-                return null;
+                records = NdefCodec.parse(buffered);
+            } catch (NdefCodec.MalformedMessageException ex) {
+                // Reported by readNdef
             }
-        } catch (SecurityException e) {
-            // Tag became stale - this happens if tag is removed or too much time passed
+        }
+        // Only the cached message is known here, so record filters drop tags Android did not read during discovery.
+        // Dropped tags are not watched.
+        if (filter != null && !filter.acceptsRecords(records)) {
+            presenceMonitor.resume();
+            return;
+        }
+        watchPresence(tag);
+        if (dedup != null && dedup.includesContent() && buffered != null) {
+            if (dedup.isDuplicateContent(tag.getId(), buffered, SystemClock.elapsedRealtime())) {
+                return;
+            }
+        }
+        journalScan(tag, tech, buffered);
+
+        PhaseMetrics.Span serialize = metrics.begin(PhaseMetrics.PHASE_SERIALIZE);
+        String eventType;
+        if (buffered != null) {
+            eventType = determineEventType(tag, records);
+        } else {
+            eventType = Ndef.get(tag) != null ? "ndef" : determineEventType(tag, null);
+        }
+        JSObject tagJson = NfcJsonConverter.tagToJSObject(tag, null, payloadEncoding, NdefRecordDecoder.Mode.NONE);
+        tagJson.put("handle", session.handle);
+        if (buffered != null) {
+            tagJson.put("ndefSize", buffered.length);
+        }
+        dispatchTagEvent(tech, PayloadEncoding.toHex(tag.getId()), eventType, tagJson, serialize);
+    }
+
+    /**
+     * Reports the tag that launched the app from the extras Android attached to the intent. The tag has usually left
+     * the field by the time the plugin loads, so nothing is read from it: the message comes from
+     * {@code EXTRA_NDEF_MESSAGES} or the message Android cached during discovery.
+     */
+    private void handleLaunchIntent(Intent intent) {
+        NdefMessage message = intentNdefMessage(intent);
+        Tag tag = consumeIntentTag(intent);
+        if (tag == null) {
+            return;
+        }
+        String tech = PhaseMetrics.techOf(tag.getTechList());
+        DiscoveryFilter filter = discoveryFilter;
+        if (filter != null && !filter.acceptsTag(tag.getTechList(), tag.getId())) {
+            return;
+        }
+
+        TagSession session = sessions.register(tag.getId(), tag, SystemClock.elapsedRealtime());
+        lastSession.set(session);
+        byte[] ndef = message != null ? message.toByteArray() : cachedNdefBytes(tag);
+        if (ndef != null) {
+            session.setContent(ndef, null);
+        } else {
+            session.clearContent();
+        }
+
+        List<NdefCodec.Record> records = null;
+        if (ndef != null) {
             try {
-                mifare.close();
-            } catch (Exception closeEx) {
-                // Ignore close errors
+                records = NdefCodec.parse(ndef);
+            } catch (NdefCodec.MalformedMessageException ex) {
+                // Reported by readNdef
             }
+        }
+        if (filter != null && !filter.acceptsRecords(records)) {
+            return;
+        }
+        journalScan(tag, tech, ndef);
+        emitTagEvent(tag, tech, session.handle, records, null);
+    }
+
+    /**
+     * Returns the tag of an NFC discovery intent and marks the intent as handled, so an activity that is recreated
+     * with the same intent does not report the tap twice. {@code EXTRA_TAG} and {@code EXTRA_NDEF_MESSAGES} are left
+     * in place for the app and other plugins.
+     */
+    private static Tag consumeIntentTag(Intent intent) {
+        if (intent == null) {
             return null;
-        } catch (IOException e) {
+        }
+        String action = intent.getAction();
+        if (
+            !NfcAdapter.ACTION_NDEF_DISCOVERED.equals(action) &&
+            !NfcAdapter.ACTION_TECH_DISCOVERED.equals(action) &&
+            !NfcAdapter.ACTION_TAG_DISCOVERED.equals(action)
+        ) {
+            return null;
+        }
+        if (intent.getBooleanExtra(EXTRA_HANDLED, false)) {
+            return null;
+        }
+        Tag tag;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG, Tag.class);
+        } else {
+            tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+        }
+        intent.putExtra(EXTRA_HANDLED, true);
+        return tag;
+    }
+
+    private static NdefMessage intentNdefMessage(Intent intent) {
+        if (intent == null) {
+            return null;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            NdefMessage[] messages = intent.getParcelableArrayExtra(NfcAdapter.EXTRA_NDEF_MESSAGES, NdefMessage.class);
+            return messages != null && messages.length > 0 ? messages[0] : null;
+        }
+        Parcelable[] messages = intent.getParcelableArrayExtra(NfcAdapter.EXTRA_NDEF_MESSAGES);
+        return messages != null && messages.length > 0 ? (NdefMessage) messages[0] : null;
+    }
+
+    private static byte[] cachedNdefBytes(Tag tag) {
+        Ndef ndef = Ndef.get(tag);
+        if (ndef == null) {
+            return null;
+        }
+        try {
+            NdefMessage message = ndef.getCachedNdefMessage();
+            return message != null ? message.toByteArray() : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private void configureJournal(boolean enabled, long segmentBytes) {
+        journalEnabled = enabled;
+        journalExecutor.execute(() -> {
+            if (journal != null && journalSegmentBytes != segmentBytes) {
+                journal.close();
+                journal = null;
+            }
+            journalSegmentBytes = segmentBytes;
+        });
+    }
+
+    /**
+     * Appends the scan to the journal when {@code androidJournal} is set. The write runs on the journal thread so
+     * disk I/O never delays the tag event.
+     */
+    private void journalScan(Tag tag, String tech, byte[] ndef) {
+        if (!journalEnabled) {
+            return;
+        }
+        ScanJournal.Entry entry = new ScanJournal.Entry(System.currentTimeMillis(), tag.getId(), tech, ndef);
+        journalExecutor.execute(() -> {
             try {
-                mifare.close();
-            } catch (IOException closeEx) {
-                // Ignore close errors
+                openJournal().append(entry);
+            } catch (IOException ex) {
+                Log.w(TAG, "Failed to journal scan", ex);
             }
-            return null;
+        });
+    }
+
+    /** Must run on {@code journalExecutor}. */
+    private ScanJournal openJournal() throws IOException {
+        if (journal == null) {
+            journal = new ScanJournal(new File(getContext().getFilesDir(), "nfc-journal"), journalSegmentBytes);
         }
+        return journal;
     }
 
-    private void emitTagEvent(Tag tag, NdefMessage message) {
-        JSObject tagJson = NfcJsonConverter.tagToJSObject(tag, message);
-        String eventType = determineEventType(tag, message);
+    /**
+     * Runs {@code task} on the journal thread, after every scan queued before it was written.
+     */
+    private void runJournalTask(PluginCall call, JournalTask task) {
+        journalExecutor.execute(() -> {
+            try {
+                task.run(openJournal());
+            } catch (IllegalArgumentException ex) {
+                call.reject(ex.getMessage());
+            } catch (IOException ex) {
+                call.reject("Scan journal I/O failed.", ex);
+            }
+        });
+    }
+
+    private void dispatchTagEvent(String tech, String uid, String eventType, JSObject tagJson, PhaseMetrics.Span serialize) {
         JSObject event = new JSObject();
         event.put("type", eventType);
         event.put("tag", tagJson);
+        serialize.end(tech);
 
         Activity activity = getActivity();
         if (activity == null) {
             return;
         }
 
-        activity.runOnUiThread(() -> emitEvents(eventType, event));
+        long dispatchStart = System.nanoTime();
+        EventBatcher<PendingEvent> batcher = eventBatcher;
+        if (batcher != null) {
+            switch (batcher.add(new PendingEvent(tech, uid, event, dispatchStart))) {
+                case SCHEDULE:
+                    mainHandler.postDelayed(() -> flushEventBatch(batcher), batcher.windowMs());
+                    break;
+                case FLUSH:
+                    mainHandler.post(() -> flushEventBatch(batcher));
+                    break;
+                default:
+                    break;
+            }
+            return;
+        }
+
+        activity.runOnUiThread(() -> {
+            // The dispatch phase began on the reader thread, so only the UI thread part is traced
+            PhaseMetrics.Span dispatch = metrics.begin(PhaseMetrics.PHASE_DISPATCH);
+            emitEvents(eventType, event, uid);
+            dispatch.endTrace();
+            metrics.record(tech, PhaseMetrics.PHASE_DISPATCH, System.nanoTime() - dispatchStart);
+        });
+    }
+
+    /**
+     * Delivers every event of the batch in a single {@code nfcEventBatch} notification. Runs on the main thread.
+     */
+    private void flushEventBatch(EventBatcher<PendingEvent> batcher) {
+        List<PendingEvent> batch = batcher.drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+        PhaseMetrics.Span dispatch = metrics.begin(PhaseMetrics.PHASE_DISPATCH);
+        if (hasListeners("nfcEventBatch")) {
+            List<JSObject> events = new ArrayList<>(batch.size());
+            for (PendingEvent pending : batch) {
+                events.add(pending.payload);
+            }
+            notifyListeners("nfcEventBatch", batchPayload(events));
+        } else {
+            for (PendingEvent pending : batch) {
+                eventBuffer.add(pending.uid, pending.payload);
+            }
+        }
+        // One section covers the whole delivery; each event records its own latency without touching it
+        long end = System.nanoTime();
+        for (PendingEvent pending : batch) {
+            metrics.record(pending.tech, PhaseMetrics.PHASE_DISPATCH, end - pending.dispatchStart);
+        }
+        dispatch.endTrace();
+    }
+
+    private static JSObject batchPayload(List<JSObject> events) {
+        JSArray array = new JSArray();
+        for (JSObject event : events) {
+            array.put(event);
+        }
+        JSObject payload = new JSObject();
+        payload.put("events", array);
+        return payload;
+    }
+
+    /**
+     * Notifies the catch-all {@code nfcEvent} and the type-specific event, skipping events nobody listens to. When no
+     * listener is registered yet, the event goes to the bounded {@link TagEventBuffer} instead of being retained by
+     * Capacitor without limit.
+     */
+    private void emitEvents(String eventType, JSObject payload, String uid) {
+        String specificEvent = specificEventName(eventType);
+        boolean generic = hasListeners("nfcEvent");
+        boolean specific = specificEvent != null && hasListeners(specificEvent);
+        if (!generic && !specific) {
+            eventBuffer.add(uid, payload);
+            return;
+        }
+        if (generic) {
+            notifyListeners("nfcEvent", payload);
+        }
+        if (specific) {
+            notifyListeners(specificEvent, payload);
+        }
+    }
+
+    private boolean hasDiscoveryListener(JSObject event) {
+        String specificEvent = specificEventName(event.getString("type"));
+        return hasListeners("nfcEvent") || (specificEvent != null && hasListeners(specificEvent));
+    }
+
+    private static boolean isDiscoveryEvent(String eventName) {
+        return (
+            "tagDiscovered".equals(eventName) ||
+            "ndefDiscovered".equals(eventName) ||
+            "ndefMimeDiscovered".equals(eventName) ||
+            "ndefFormatableDiscovered".equals(eventName)
+        );
     }
 
-    private void emitEvents(String eventType, JSObject payload) {
-        notifyListeners("nfcEvent", payload, true);
+    private static String specificEventName(String eventType) {
         switch (eventType) {
             case "tag":
-                notifyListeners("tagDiscovered", payload, true);
-                break;
+                return "tagDiscovered";
             case "ndef":
-                notifyListeners("ndefDiscovered", payload, true);
-                break;
+                return "ndefDiscovered";
             case "ndef-mime":
-                notifyListeners("ndefMimeDiscovered", payload, true);
-                break;
+                return "ndefMimeDiscovered";
             case "ndef-formatable":
-                notifyListeners("ndefFormatableDiscovered", payload, true);
-                break;
+                return "ndefFormatableDiscovered";
             default:
-                break;
+                return null;
         }
     }
 
-    private String determineEventType(Tag tag, NdefMessage message) {
+    private String determineEventType(Tag tag, List<NdefCodec.Record> records) {
         if (tag == null) {
             return "tag";
         }
 
-        if (message != null) {
-            if (Arrays.stream(message.getRecords()).anyMatch((record) -> record.getTnf() == NdefRecord.TNF_MIME_MEDIA)) {
+        if (records != null) {
+            if (records.stream().anyMatch((record) -> record.tnf == NdefCodec.TNF_MIME_MEDIA)) {
                 return "ndef-mime";
             }
             return "ndef";
@@ -736,4 +1904,44 @@ public class CapacitorNfcPlugin extends Plugin {
     private interface StateCallback {
         void onStateChanged(int state);
     }
+
+    /** Outcome of {@link #readNdefContent}. */
+    private static final class NdefContent {
+
+        final byte[] ndef;
+        final Type2TagImage type2Image;
+        final List<NdefCodec.Record> records;
+        final ReadStats readStats;
+
+        NdefContent(byte[] ndef, Type2TagImage type2Image, List<NdefCodec.Record> records, ReadStats readStats) {
+            this.ndef = ndef;
+            this.type2Image = type2Image;
+            this.records = records;
+            this.readStats = readStats;
+        }
+    }
+
+    /** A discovery event waiting for its batch to be delivered. */
+    private static final class PendingEvent {
+
+        final String tech;
+        final String uid;
+        final JSObject payload;
+        final long dispatchStart;
+
+        PendingEvent(String tech, String uid, JSObject payload, long dispatchStart) {
+            this.tech = tech;
+            this.uid = uid;
+            this.payload = payload;
+            this.dispatchStart = dispatchStart;
+        }
+    }
+
+    private interface JournalTask {
+        void run(ScanJournal journal) throws IOException;
+    }
+
+    private interface TagOperation {
+        void run(TagIoScheduler.Operation operation) throws NfcOperationException;
+    }
 }
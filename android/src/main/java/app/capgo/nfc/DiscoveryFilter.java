@@ -0,0 +1,373 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Drops discovered tags the app is not interested in before they cost I/O or serialization.
+ *
+ * The {@code androidFilters} option is compiled once into a list of rules, and a tag must pass every rule. Tag rules
+ * ({@code techTypes}, {@code uidPrefixes}, {@code uidMask}) only look at what discovery already knows, so they run
+ * before any tag I/O. Record rules ({@code ndefTypes}, {@code mimeTypes}, {@code uriPrefixes}) run after the read and
+ * before the tag is converted to JSON; they pass when at least one record matches, so a tag without an NDEF message
+ * never passes them.
+ *
+ * Each rule counts the tags it dropped. A tag is only counted by the first rule it fails.
+ */
+final class DiscoveryFilter {
+
+    static final String RULE_TECH_TYPES = "techTypes";
+    static final String RULE_UID_PREFIXES = "uidPrefixes";
+    static final String RULE_UID_MASK = "uidMask";
+    static final String RULE_NDEF_TYPES = "ndefTypes";
+    static final String RULE_MIME_TYPES = "mimeTypes";
+    static final String RULE_URI_PREFIXES = "uriPrefixes";
+
+    /** One compiled rule. Exactly one of the two {@code matches} methods is used, depending on {@link #beforeRead}. */
+    abstract static class Rule {
+
+        final String name;
+        final boolean beforeRead;
+        private long dropped;
+
+        Rule(String name, boolean beforeRead) {
+            this.name = name;
+            this.beforeRead = beforeRead;
+        }
+
+        boolean matchesTag(String[] techList, byte[] uid) {
+            return true;
+        }
+
+        boolean matchesRecord(NdefCodec.Record record) {
+            return true;
+        }
+
+        /** Passes when the tag exposes one of {@code techTypes}, given as {@code NfcA} or {@code android.nfc.tech.NfcA}. */
+        static Rule techTypes(List<String> techTypes) {
+            Set<String> names = new HashSet<>();
+            for (String tech : techTypes) {
+                names.add(simpleName(tech));
+            }
+            return new Rule(RULE_TECH_TYPES, true) {
+                @Override
+                boolean matchesTag(String[] techList, byte[] uid) {
+                    if (techList != null) {
+                        for (String tech : techList) {
+                            if (names.contains(simpleName(tech))) {
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /** Passes when the UID starts with one of {@code prefixes}. */
+        static Rule uidPrefixes(List<byte[]> prefixes) {
+            return new Rule(RULE_UID_PREFIXES, true) {
+                @Override
+                boolean matchesTag(String[] techList, byte[] uid) {
+                    for (byte[] prefix : prefixes) {
+                        if (uid != null && uid.length >= prefix.length && startsWith(uid, prefix)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /** Passes when the leading UID bytes, masked with {@code mask}, equal {@code value} masked the same way. */
+        static Rule uidMask(byte[] value, byte[] mask) {
+            if (value.length != mask.length) {
+                throw new IllegalArgumentException("androidFilters.uidMask value and mask must have the same length.");
+            }
+            return new Rule(RULE_UID_MASK, true) {
+                @Override
+                boolean matchesTag(String[] techList, byte[] uid) {
+                    if (uid == null || uid.length < mask.length) {
+                        return false;
+                    }
+                    for (int i = 0; i < mask.length; i++) {
+                        if (((uid[i] ^ value[i]) & mask[i]) != 0) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Passes when a record has one of the TNF and type pairs. A {@code null} type matches any type of that TNF.
+         */
+        static Rule ndefTypes(short[] tnfs, List<byte[]> types) {
+            return new Rule(RULE_NDEF_TYPES, false) {
+                @Override
+                boolean matchesRecord(NdefCodec.Record record) {
+                    for (int i = 0; i < tnfs.length; i++) {
+                        byte[] type = types.get(i);
+                        if (record.tnf == tnfs[i] && (type == null || typeEquals(record, type))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Passes when a MIME record has one of {@code mimeTypes}. Matching ignores case and parameters, and
+         * {@code image/*} matches every image type.
+         */
+        static Rule mimeTypes(List<String> mimeTypes) {
+            List<String> patterns = new ArrayList<>(mimeTypes.size());
+            for (String mimeType : mimeTypes) {
+                patterns.add(normalizeMimeType(mimeType));
+            }
+            return new Rule(RULE_MIME_TYPES, false) {
+                @Override
+                boolean matchesRecord(NdefCodec.Record record) {
+                    if (record.tnf != NdefCodec.TNF_MIME_MEDIA) {
+                        return false;
+                    }
+                    String type = new String(record.buffer, record.typeOffset, record.typeLength, StandardCharsets.US_ASCII);
+                    String mimeType = normalizeMimeType(type);
+                    for (String pattern : patterns) {
+                        boolean wildcard = pattern.endsWith("/*");
+                        if (wildcard ? mimeType.startsWith(pattern.substring(0, pattern.length() - 1)) : pattern.equals(mimeType)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /** Passes when a URI record, with its abbreviation expanded, starts with one of {@code prefixes}. */
+        static Rule uriPrefixes(List<String> prefixes) {
+            return new Rule(RULE_URI_PREFIXES, false) {
+                @Override
+                boolean matchesRecord(NdefCodec.Record record) {
+                    String uri = NdefCodec.uri(record);
+                    if (uri == null) {
+                        return false;
+                    }
+                    for (String prefix : prefixes) {
+                        if (uri.startsWith(prefix)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private final List<Rule> rules;
+    private final boolean hasRecordRules;
+    private long passed;
+
+    DiscoveryFilter(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        boolean recordRules = false;
+        for (Rule rule : rules) {
+            recordRules |= !rule.beforeRead;
+        }
+        this.hasRecordRules = recordRules;
+    }
+
+    /**
+     * Compiles the {@code androidFilters} option.
+     *
+     * @return the filter, or {@code null} when {@code options} has no rules.
+     * @throws IllegalArgumentException when a rule is unknown or malformed.
+     */
+    static DiscoveryFilter compile(JSObject options) {
+        if (options == null) {
+            return null;
+        }
+        List<Rule> rules = new ArrayList<>();
+        Iterator<String> keys = options.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            switch (key) {
+                case RULE_TECH_TYPES:
+                    rules.add(Rule.techTypes(strings(options, key)));
+                    break;
+                case RULE_UID_PREFIXES:
+                    List<byte[]> prefixes = new ArrayList<>();
+                    for (String prefix : strings(options, key)) {
+                        prefixes.add(PayloadEncoding.fromHex(prefix));
+                    }
+                    rules.add(Rule.uidPrefixes(prefixes));
+                    break;
+                case RULE_UID_MASK:
+                    JSONObject uidMask = options.optJSONObject(key);
+                    if (uidMask == null) {
+                        throw new IllegalArgumentException("androidFilters.uidMask must be an object with value and mask.");
+                    }
+                    byte[] value = PayloadEncoding.fromHex(uidMask.optString("value"));
+                    rules.add(Rule.uidMask(value, PayloadEncoding.fromHex(uidMask.optString("mask"))));
+                    break;
+                case RULE_NDEF_TYPES:
+                    rules.add(ndefTypes(options.optJSONArray(key)));
+                    break;
+                case RULE_MIME_TYPES:
+                    rules.add(Rule.mimeTypes(strings(options, key)));
+                    break;
+                case RULE_URI_PREFIXES:
+                    rules.add(Rule.uriPrefixes(strings(options, key)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported androidFilters rule: " + key);
+            }
+        }
+        return rules.isEmpty() ? null : new DiscoveryFilter(rules);
+    }
+
+    boolean hasRecordRules() {
+        return hasRecordRules;
+    }
+
+    /**
+     * Checked before any tag I/O.
+     */
+    synchronized boolean acceptsTag(String[] techList, byte[] uid) {
+        for (Rule rule : rules) {
+            if (rule.beforeRead && !rule.matchesTag(techList, uid)) {
+                rule.dropped++;
+                return false;
+            }
+        }
+        if (!hasRecordRules) {
+            passed++;
+        }
+        return true;
+    }
+
+    /**
+     * Checked after the tag was read and before it is serialized.
+     *
+     * @param records the decoded message, or {@code null} when the tag has none.
+     */
+    synchronized boolean acceptsRecords(List<NdefCodec.Record> records) {
+        if (!hasRecordRules) {
+            return true;
+        }
+        for (Rule rule : rules) {
+            if (!rule.beforeRead && !anyRecordMatches(rule, records)) {
+                rule.dropped++;
+                return false;
+            }
+        }
+        passed++;
+        return true;
+    }
+
+    synchronized long droppedCount(String name) {
+        long count = 0;
+        for (Rule rule : rules) {
+            if (rule.name.equals(name)) {
+                count += rule.dropped;
+            }
+        }
+        return count;
+    }
+
+    synchronized long passedCount() {
+        return passed;
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject dropped = new JSObject();
+        for (Rule rule : rules) {
+            dropped.put(rule.name, rule.dropped);
+        }
+        JSObject result = new JSObject();
+        result.put("passed", passed);
+        result.put("dropped", dropped);
+        return result;
+    }
+
+    private static boolean anyRecordMatches(Rule rule, List<NdefCodec.Record> records) {
+        if (records != null) {
+            for (NdefCodec.Record record : records) {
+                if (rule.matchesRecord(record)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Rule ndefTypes(JSONArray entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("androidFilters.ndefTypes must be an array.");
+        }
+        short[] tnfs = new short[entries.length()];
+        List<byte[]> types = new ArrayList<>(entries.length());
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.optJSONObject(i);
+            if (entry == null || !entry.has("tnf")) {
+                throw new IllegalArgumentException("androidFilters.ndefTypes entries must have a tnf.");
+            }
+            tnfs[i] = (short) entry.optInt("tnf");
+            types.add(entry.has("type") ? entry.optString("type").getBytes(StandardCharsets.UTF_8) : null);
+        }
+        return Rule.ndefTypes(tnfs, types);
+    }
+
+    private static List<String> strings(JSObject options, String key) {
+        JSONArray array = options.optJSONArray(key);
+        if (array == null) {
+            throw new IllegalArgumentException("androidFilters." + key + " must be an array of strings.");
+        }
+        List<String> values = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            values.add(array.optString(i));
+        }
+        return values;
+    }
+
+    static String simpleName(String tech) {
+        return tech.substring(tech.lastIndexOf('.') + 1);
+    }
+
+    static String normalizeMimeType(String mimeType) {
+        int parameters = mimeType.indexOf(';');
+        return (parameters >= 0 ? mimeType.substring(0, parameters) : mimeType).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean startsWith(byte[] uid, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (uid[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean typeEquals(NdefCodec.Record record, byte[] type) {
+        if (record.typeLength != type.length) {
+            return false;
+        }
+        for (int i = 0; i < type.length; i++) {
+            if (record.buffer[record.typeOffset + i] != type[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects discovery events arriving within a time window so they reach JavaScript in one {@code nfcEventBatch}
+ * delivery instead of one UI thread post and bridge call per tag.
+ *
+ * The first event of a batch opens the window; the caller schedules a single {@link #drain()} when it closes. A
+ * batch that reaches {@link #maxSize} is flushed right away so a burst cannot grow one delivery without bound.
+ */
+final class EventBatcher<T> {
+
+    static final int DEFAULT_MAX_SIZE = 64;
+
+    /** What the caller must do after {@link #add}. */
+    enum Action {
+        /** The event joined a batch whose flush is already scheduled. */
+        NONE,
+        /** The event opened a batch: schedule a flush in {@link #windowMs()}. */
+        SCHEDULE,
+        /** The batch is full: flush it now. */
+        FLUSH
+    }
+
+    private final long windowMs;
+    private final int maxSize;
+    private List<T> pending = new ArrayList<>();
+    private boolean scheduled;
+    private long batches;
+    private long events;
+    private int largestBatch;
+
+    EventBatcher(long windowMs, int maxSize) {
+        this.windowMs = windowMs;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    long windowMs() {
+        return windowMs;
+    }
+
+    synchronized Action add(T event) {
+        pending.add(event);
+        if (pending.size() >= maxSize) {
+            return Action.FLUSH;
+        }
+        if (scheduled) {
+            return Action.NONE;
+        }
+        scheduled = true;
+        return Action.SCHEDULE;
+    }
+
+    /**
+     * @return the pending events, oldest first, or an empty list when a previous drain already took them.
+     */
+    synchronized List<T> drain() {
+        scheduled = false;
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> batch = pending;
+        pending = new ArrayList<>();
+        batches++;
+        events += batch.size();
+        largestBatch = Math.max(largestBatch, batch.size());
+        return batch;
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("windowMs", windowMs);
+        result.put("batches", batches);
+        result.put("events", events);
+        result.put("largestBatch", largestBatch);
+        return result;
+    }
+}
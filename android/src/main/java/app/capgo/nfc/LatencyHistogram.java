@@ -0,0 +1,130 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of durations.
+ *
+ * Values are counted in microseconds in log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so a percentile is off by at most 1/16 of its value while the whole
+ * histogram stays at {@value #BUCKET_COUNT} counters. Recording is a few atomic increments and never allocates,
+ * which keeps it cheap enough for the reader thread.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Longest duration that is told apart, about 36 minutes; longer ones land in the last bucket. */
+    static final long MAX_TRACKED_MICROS = (1L << 31) - 1;
+    static final int BUCKET_COUNT = bucketIndex(MAX_TRACKED_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /** Immutable copy of the counters, used to compute percentiles. */
+    static final class Snapshot {
+
+        private final long[] counts;
+        final long count;
+        final long totalMicros;
+        final long maxMicros;
+
+        private Snapshot(long[] counts, long totalMicros, long maxMicros) {
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        /**
+         * @param percentile between 0 and 100.
+         * @return the estimated value in microseconds, or {@code 0} when nothing was recorded.
+         */
+        long percentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMidpoint(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        double meanMicros() {
+            return count == 0 ? 0 : totalMicros / (double) count;
+        }
+
+        JSObject toJSObject() {
+            JSObject result = new JSObject();
+            result.put("count", count);
+            result.put("meanMs", meanMicros() / 1000.0);
+            result.put("p50Ms", percentileMicros(50) / 1000.0);
+            result.put("p95Ms", percentileMicros(95) / 1000.0);
+            result.put("p99Ms", percentileMicros(99) / 1000.0);
+            result.put("maxMs", maxMicros / 1000.0);
+            return result;
+        }
+    }
+
+    void recordNanos(long nanos) {
+        long micros = Math.min(Math.max(nanos / 1000, 0), MAX_TRACKED_MICROS);
+        counts.incrementAndGet(bucketIndex(micros));
+        totalMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Copies the counters. Values recorded concurrently may or may not be included.
+     */
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, totalMicros.get(), maxMicros.get());
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    private static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return bucketLowerBound(index) + (1L << shift) / 2;
+    }
+}
@@ -0,0 +1,407 @@
+package app.capgo.nfc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * NDEF message parser and encoder that does not depend on {@code android.nfc}.
+ *
+ * {@link #parse} returns records that point into the source array instead of copying their type, id and payload,
+ * which is what {@code android.nfc.NdefRecord} does on construction and again on every getter call. Only chunked
+ * records are reassembled into a new buffer. {@link #encode} sizes the output exactly, picks the short record
+ * format for payloads under 256 bytes and can split large payloads into chunks.
+ *
+ * Pure Java so it runs in JVM unit tests and in the JMH benchmarks under {@code android/benchmark}.
+ */
+final class NdefCodec {
+
+    static final short TNF_EMPTY = 0x00;
+    static final short TNF_WELL_KNOWN = 0x01;
+    static final short TNF_MIME_MEDIA = 0x02;
+    static final short TNF_ABSOLUTE_URI = 0x03;
+    static final short TNF_EXTERNAL_TYPE = 0x04;
+    static final short TNF_UNKNOWN = 0x05;
+    static final short TNF_UNCHANGED = 0x06;
+    static final short TNF_RESERVED = 0x07;
+
+    static final int FLAG_MB = 0x80;
+    static final int FLAG_ME = 0x40;
+    static final int FLAG_CF = 0x20;
+    static final int FLAG_SR = 0x10;
+    static final int FLAG_IL = 0x08;
+
+    /** Refuses payloads larger than this, like the platform parser, so a corrupt length cannot trigger a huge allocation. */
+    static final int MAX_PAYLOAD_SIZE = 10 * (1 << 20);
+
+    /** Abbreviations of the NFC Forum URI Record Type Definition, indexed by the first payload byte. */
+    static final String[] URI_PREFIXES = {
+        "",
+        "http://www.",
+        "https://www.",
+        "http://",
+        "https://",
+        "tel:",
+        "mailto:",
+        "ftp://anonymous:anonymous@",
+        "ftp://ftp.",
+        "ftps://",
+        "sftp://",
+        "smb://",
+        "nfs://",
+        "ftp://",
+        "dav://",
+        "news:",
+        "telnet://",
+        "imap:",
+        "rtsp://",
+        "urn:",
+        "pop:",
+        "sip:",
+        "sips:",
+        "tftp:",
+        "btspp://",
+        "btl2cap://",
+        "btgoep://",
+        "tcpobex://",
+        "irdaobex://",
+        "file://",
+        "urn:epc:id:",
+        "urn:epc:tag:",
+        "urn:epc:pat:",
+        "urn:epc:raw:",
+        "urn:epc:",
+        "urn:nfc:",
+    };
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /** Thrown when the bytes are not a well-formed NDEF message. */
+    static final class MalformedMessageException extends Exception {
+
+        MalformedMessageException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * One record. Its type, id and payload are ranges of {@link #buffer}; the accessors without an offset copy them.
+     */
+    static final class Record {
+
+        final short tnf;
+        final byte[] buffer;
+        final int typeOffset;
+        final int typeLength;
+        final int idOffset;
+        final int idLength;
+        final int payloadOffset;
+        final int payloadLength;
+
+        Record(
+            short tnf,
+            byte[] buffer,
+            int typeOffset,
+            int typeLength,
+            int idOffset,
+            int idLength,
+            int payloadOffset,
+            int payloadLength
+        ) {
+            this.tnf = tnf;
+            this.buffer = buffer;
+            this.typeOffset = typeOffset;
+            this.typeLength = typeLength;
+            this.idOffset = idOffset;
+            this.idLength = idLength;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        /** Record over separate arrays, e.g. built from JavaScript input. {@code null} fields are empty. */
+        static Record of(short tnf, byte[] type, byte[] id, byte[] payload) {
+            type = type != null ? type : EMPTY;
+            id = id != null ? id : EMPTY;
+            payload = payload != null ? payload : EMPTY;
+            byte[] buffer = new byte[type.length + id.length + payload.length];
+            System.arraycopy(type, 0, buffer, 0, type.length);
+            System.arraycopy(id, 0, buffer, type.length, id.length);
+            System.arraycopy(payload, 0, buffer, type.length + id.length, payload.length);
+            return new Record(tnf, buffer, 0, type.length, type.length, id.length, type.length + id.length, payload.length);
+        }
+
+        byte[] type() {
+            return Arrays.copyOfRange(buffer, typeOffset, typeOffset + typeLength);
+        }
+
+        byte[] id() {
+            return Arrays.copyOfRange(buffer, idOffset, idOffset + idLength);
+        }
+
+        byte[] payload() {
+            return Arrays.copyOfRange(buffer, payloadOffset, payloadOffset + payloadLength);
+        }
+    }
+
+    private NdefCodec() {}
+
+    static List<Record> parse(byte[] data) throws MalformedMessageException {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parses the message stored in {@code data[offset, offset + length)}. Bytes after the record flagged ME are
+     * ignored.
+     *
+     * @return records that share {@code data}; the caller must not modify it while they are in use.
+     */
+    static List<Record> parse(byte[] data, int offset, int length) throws MalformedMessageException {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " outside of " + data.length + " bytes");
+        }
+        int end = offset + length;
+        int position = offset;
+        List<Record> records = new ArrayList<>(4);
+        // Chunks of the record being reassembled
+        List<Record> chunks = null;
+        boolean first = true;
+        while (true) {
+            if (position >= end) {
+                throw new MalformedMessageException("Truncated NDEF message: missing ME record");
+            }
+            int header = data[position++] & 0xFF;
+            short tnf = (short) (header & 0x07);
+            boolean mb = (header & FLAG_MB) != 0;
+            boolean me = (header & FLAG_ME) != 0;
+            boolean cf = (header & FLAG_CF) != 0;
+            boolean sr = (header & FLAG_SR) != 0;
+            boolean il = (header & FLAG_IL) != 0;
+
+            if (first != mb) {
+                throw new MalformedMessageException(first ? "First record must have the MB flag" : "Unexpected MB flag");
+            }
+            first = false;
+
+            int headerLength = 1 + (sr ? 1 : 4) + (il ? 1 : 0);
+            if (position + headerLength > end) {
+                throw new MalformedMessageException("Truncated NDEF record header");
+            }
+            int typeLength = data[position++] & 0xFF;
+            long payloadLength;
+            if (sr) {
+                payloadLength = data[position++] & 0xFF;
+            } else {
+                payloadLength =
+                    ((long) (data[position] & 0xFF) << 24) |
+                    ((data[position + 1] & 0xFF) << 16) |
+                    ((data[position + 2] & 0xFF) << 8) |
+                    (data[position + 3] & 0xFF);
+                position += 4;
+            }
+            int idLength = il ? data[position++] & 0xFF : 0;
+            if (payloadLength > MAX_PAYLOAD_SIZE) {
+                throw new MalformedMessageException(
+                    "Payload of " + payloadLength + " bytes exceeds the " + MAX_PAYLOAD_SIZE + " byte limit"
+                );
+            }
+            if (position + typeLength + idLength + payloadLength > end) {
+                throw new MalformedMessageException("Truncated NDEF record");
+            }
+
+            boolean middleChunk = chunks != null;
+            if (middleChunk && (tnf != TNF_UNCHANGED || typeLength != 0 || il)) {
+                throw new MalformedMessageException("Chunk continuation must have TNF_UNCHANGED and no type or id");
+            }
+            if (!middleChunk && tnf == TNF_UNCHANGED) {
+                throw new MalformedMessageException("TNF_UNCHANGED outside of a chunked record");
+            }
+            if (tnf == TNF_EMPTY && (typeLength != 0 || idLength != 0 || payloadLength != 0)) {
+                throw new MalformedMessageException("TNF_EMPTY record must have empty type, id and payload");
+            }
+            if (tnf == TNF_RESERVED) {
+                throw new MalformedMessageException("TNF_RESERVED is not allowed");
+            }
+
+            int typeOffset = position;
+            int idOffset = typeOffset + typeLength;
+            int payloadOffset = idOffset + idLength;
+            position = payloadOffset + (int) payloadLength;
+            Record record = new Record(tnf, data, typeOffset, typeLength, idOffset, idLength, payloadOffset, (int) payloadLength);
+
+            if (cf) {
+                if (me) {
+                    throw new MalformedMessageException("Last record cannot be a chunk");
+                }
+                if (chunks == null) {
+                    chunks = new ArrayList<>();
+                }
+                chunks.add(record);
+            } else if (chunks != null) {
+                chunks.add(record);
+                records.add(joinChunks(chunks));
+                chunks = null;
+            } else {
+                records.add(record);
+            }
+            if (me) {
+                return Collections.unmodifiableList(records);
+            }
+        }
+    }
+
+    /**
+     * Parses the remaining bytes of {@code buffer} without changing its position. Heap buffers are not copied.
+     */
+    static List<Record> parse(ByteBuffer buffer) throws MalformedMessageException {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return parse(copy, 0, copy.length);
+    }
+
+    static byte[] encode(List<Record> records) {
+        return encode(records, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encodes {@code records} as one message.
+     *
+     * @param maxChunkSize payloads larger than this are split into chunked records.
+     */
+    static byte[] encode(List<Record> records, int maxChunkSize) {
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("An NDEF message needs at least one record");
+        }
+        if (maxChunkSize <= 0) {
+            throw new IllegalArgumentException("maxChunkSize must be positive");
+        }
+        byte[] out = new byte[encodedSize(records, maxChunkSize)];
+        int position = 0;
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            boolean firstRecord = i == 0;
+            boolean lastRecord = i == records.size() - 1;
+            int chunkCount = chunkCount(record, maxChunkSize);
+            int payloadPosition = record.payloadOffset;
+            int payloadRemaining = record.payloadLength;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                boolean firstChunk = chunk == 0;
+                boolean lastChunk = chunk == chunkCount - 1;
+                int chunkLength = Math.min(payloadRemaining, maxChunkSize);
+                int typeLength = firstChunk ? record.typeLength : 0;
+                int idLength = firstChunk ? record.idLength : 0;
+                boolean sr = chunkLength < 256;
+                boolean il = idLength > 0;
+
+                int header = firstChunk ? record.tnf : TNF_UNCHANGED;
+                if (firstRecord && firstChunk) {
+                    header |= FLAG_MB;
+                }
+                if (lastRecord && lastChunk) {
+                    header |= FLAG_ME;
+                }
+                if (!lastChunk) {
+                    header |= FLAG_CF;
+                }
+                if (sr) {
+                    header |= FLAG_SR;
+                }
+                if (il) {
+                    header |= FLAG_IL;
+                }
+                out[position++] = (byte) header;
+                out[position++] = (byte) typeLength;
+                if (sr) {
+                    out[position++] = (byte) chunkLength;
+                } else {
+                    out[position++] = (byte) (chunkLength >>> 24);
+                    out[position++] = (byte) (chunkLength >>> 16);
+                    out[position++] = (byte) (chunkLength >>> 8);
+                    out[position++] = (byte) chunkLength;
+                }
+                if (il) {
+                    out[position++] = (byte) idLength;
+                }
+                System.arraycopy(record.buffer, record.typeOffset, out, position, typeLength);
+                position += typeLength;
+                System.arraycopy(record.buffer, record.idOffset, out, position, idLength);
+                position += idLength;
+                System.arraycopy(record.buffer, payloadPosition, out, position, chunkLength);
+                position += chunkLength;
+                payloadPosition += chunkLength;
+                payloadRemaining -= chunkLength;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return the number of bytes {@link #encode(List, int)} produces for {@code records}.
+     */
+    static int encodedSize(List<Record> records, int maxChunkSize) {
+        int size = 0;
+        for (Record record : records) {
+            int chunkCount = chunkCount(record, maxChunkSize);
+            int remaining = record.payloadLength;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int chunkLength = Math.min(remaining, maxChunkSize);
+                size += 2 + (chunkLength < 256 ? 1 : 4) + chunkLength;
+                if (chunk == 0) {
+                    size += record.typeLength + record.idLength + (record.idLength > 0 ? 1 : 0);
+                }
+                remaining -= chunkLength;
+            }
+        }
+        return size;
+    }
+
+    private static int chunkCount(Record record, int maxChunkSize) {
+        if (record.payloadLength <= maxChunkSize) {
+            return 1;
+        }
+        return (int) (((long) record.payloadLength + maxChunkSize - 1) / maxChunkSize);
+    }
+
+    private static Record joinChunks(List<Record> chunks) {
+        Record head = chunks.get(0);
+        int payloadLength = 0;
+        for (Record chunk : chunks) {
+            payloadLength += chunk.payloadLength;
+        }
+        byte[] buffer = new byte[head.typeLength + head.idLength + payloadLength];
+        System.arraycopy(head.buffer, head.typeOffset, buffer, 0, head.typeLength);
+        System.arraycopy(head.buffer, head.idOffset, buffer, head.typeLength, head.idLength);
+        int position = head.typeLength + head.idLength;
+        for (Record chunk : chunks) {
+            System.arraycopy(chunk.buffer, chunk.payloadOffset, buffer, position, chunk.payloadLength);
+            position += chunk.payloadLength;
+        }
+        int idOffset = head.typeLength;
+        return new Record(head.tnf, buffer, 0, head.typeLength, idOffset, head.idLength, idOffset + head.idLength, payloadLength);
+    }
+
+    /**
+     * @return the URI of a Well Known {@code U} record with its prefix expanded, the type of an Absolute URI record,
+     *     or {@code null} for other records.
+     */
+    static String uri(Record record) {
+        if (record.tnf == TNF_ABSOLUTE_URI) {
+            return new String(record.buffer, record.typeOffset, record.typeLength, StandardCharsets.UTF_8);
+        }
+        if (record.tnf != TNF_WELL_KNOWN || record.typeLength != 1 || record.buffer[record.typeOffset] != 'U') {
+            return null;
+        }
+        if (record.payloadLength == 0) {
+            return "";
+        }
+        int code = record.buffer[record.payloadOffset] & 0xFF;
+        // Reserved codes are kept as no prefix, like the platform does
+        String prefix = code < URI_PREFIXES.length ? URI_PREFIXES[code] : "";
+        return prefix + new String(record.buffer, record.payloadOffset + 1, record.payloadLength - 1, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package app.capgo.nfc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Decodes the NFC Forum well-known records (URI, Text, Smart Poster) and MIME records into typed fields, so
+ * JavaScript does not have to take payload bytes apart in the WebView.
+ *
+ * Strings are decoded straight from the record buffer; URI abbreviations come from {@link NdefCodec#URI_PREFIXES}.
+ * Smart Poster payloads are parsed in place as nested messages, down to {@link #MAX_DEPTH} levels.
+ */
+final class NdefRecordDecoder {
+
+    /** How JavaScript receives record payloads. */
+    enum Mode {
+        /** Raw {@code tnf}, {@code type}, {@code id} and {@code payload} only. */
+        NONE("none"),
+        /** Raw fields plus the decoded ones. */
+        DECODED("decoded"),
+        /** Decoded fields; {@code payload} is only kept for records that could not be decoded or fully expanded. */
+        DECODED_ONLY("decodedOnly");
+
+        private final String jsName;
+
+        Mode(String jsName) {
+            this.jsName = jsName;
+        }
+
+        static Mode fromString(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            for (Mode mode : values()) {
+                if (mode.jsName.equals(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported androidDecodeRecords: " + value);
+        }
+    }
+
+    static final int MAX_DEPTH = 4;
+
+    private static final int TEXT_UTF16 = 0x80;
+    private static final int TEXT_LANGUAGE_LENGTH_MASK = 0x3F;
+
+    /** Typed fields of one record. Fields that do not apply are {@code null}. */
+    static final class Decoded {
+
+        String uri;
+        String text;
+        String lang;
+        String mimeType;
+        /** Records of a Smart Poster. */
+        List<NdefCodec.Record> records;
+    }
+
+    private NdefRecordDecoder() {}
+
+    /**
+     * @param decoded the fields decoded from a record nested {@code depth} levels deep, or {@code null}.
+     * @return whether the raw payload is reported next to the decoded fields. {@link Mode#DECODED_ONLY} drops it
+     *     unless nothing replaces it: undecoded records and Smart Posters whose records are past {@link #MAX_DEPTH}.
+     */
+    static boolean keepsPayload(Mode mode, Decoded decoded, int depth) {
+        return mode != Mode.DECODED_ONLY || decoded == null || (decoded.records != null && depth >= MAX_DEPTH);
+    }
+
+    /**
+     * @return the decoded fields, or {@code null} when {@code record} is not a type this class knows or is malformed.
+     */
+    static Decoded decode(NdefCodec.Record record) {
+        switch (record.tnf) {
+            case NdefCodec.TNF_ABSOLUTE_URI: {
+                Decoded decoded = new Decoded();
+                decoded.uri = NdefCodec.uri(record);
+                return decoded;
+            }
+            case NdefCodec.TNF_MIME_MEDIA: {
+                Decoded decoded = new Decoded();
+                decoded.mimeType = new String(record.buffer, record.typeOffset, record.typeLength, StandardCharsets.US_ASCII);
+                return decoded;
+            }
+            case NdefCodec.TNF_WELL_KNOWN:
+                return decodeWellKnown(record);
+            default:
+                return null;
+        }
+    }
+
+    private static Decoded decodeWellKnown(NdefCodec.Record record) {
+        if (isType(record, 'U')) {
+            Decoded decoded = new Decoded();
+            decoded.uri = NdefCodec.uri(record);
+            return decoded;
+        }
+        if (isType(record, 'T')) {
+            return decodeText(record);
+        }
+        if (isType(record, 'S', 'p')) {
+            try {
+                Decoded decoded = new Decoded();
+                decoded.records = NdefCodec.parse(record.buffer, record.payloadOffset, record.payloadLength);
+                // The poster's URI and first title, so simple consumers need not walk the nested records
+                for (NdefCodec.Record nested : decoded.records) {
+                    if (decoded.uri == null && isType(nested, 'U')) {
+                        decoded.uri = NdefCodec.uri(nested);
+                    } else if (decoded.text == null && isType(nested, 'T')) {
+                        Decoded title = decodeText(nested);
+                        if (title != null) {
+                            decoded.text = title.text;
+                            decoded.lang = title.lang;
+                        }
+                    }
+                }
+                return decoded;
+            } catch (NdefCodec.MalformedMessageException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Text record: a status byte (UTF-16 flag and language code length), the IANA language code, then the text.
+     */
+    static Decoded decodeText(NdefCodec.Record record) {
+        if (record.payloadLength == 0) {
+            return null;
+        }
+        int status = record.buffer[record.payloadOffset] & 0xFF;
+        int languageLength = status & TEXT_LANGUAGE_LENGTH_MASK;
+        int textOffset = record.payloadOffset + 1 + languageLength;
+        int textLength = record.payloadLength - 1 - languageLength;
+        if (textLength < 0) {
+            return null;
+        }
+        Decoded decoded = new Decoded();
+        decoded.lang = new String(record.buffer, record.payloadOffset + 1, languageLength, StandardCharsets.US_ASCII);
+        // UTF_16 honours a byte order mark and defaults to big endian, as the RTD requires
+        decoded.text = new String(
+            record.buffer,
+            textOffset,
+            textLength,
+            (status & TEXT_UTF16) != 0 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8
+        );
+        return decoded;
+    }
+
+    private static boolean isType(NdefCodec.Record record, char... type) {
+        if (record.tnf != NdefCodec.TNF_WELL_KNOWN || record.typeLength != type.length) {
+            return false;
+        }
+        for (int i = 0; i < type.length; i++) {
+            if (record.buffer[record.typeOffset + i] != type[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package app.capgo.nfc;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.Tag;
+import android.nfc.tech.Ndef;
+import android.nfc.tech.NdefFormatable;
+import java.io.IOException;
+
+/**
+ * Writes, reads back and locks the NDEF content of one tag over a single connection.
+ *
+ * The connection is opened by the first operation and kept until {@link #close()}, so a write followed by a
+ * verification read and a lock costs one connect. Not thread safe: use it from the thread that owns the tag, except
+ * for {@link #abort()}.
+ */
+final class NdefTagWriter implements TagTransaction.Target {
+
+    private final Tag tag;
+    private volatile Ndef ndef;
+    private volatile NdefFormatable formatable;
+    private boolean formatted;
+
+    NdefTagWriter(Tag tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Writes {@code message}, formatting the tag first when it is not NDEF formatted yet and {@code allowFormat} is set.
+     */
+    @Override
+    public void write(NdefMessage message, boolean allowFormat) throws NfcOperationException {
+        try {
+            Ndef connected = connectNdef();
+            if (connected != null) {
+                if (!connected.isWritable()) {
+                    throw new NfcOperationException("Tag is read only.");
+                }
+                if (connected.getMaxSize() < message.toByteArray().length) {
+                    throw new NfcOperationException("Tag capacity is insufficient for the provided message.");
+                }
+                connected.writeNdefMessage(message);
+            } else if (allowFormat) {
+                formatable = NdefFormatable.get(tag);
+                if (formatable == null) {
+                    throw new NfcOperationException("Tag does not support NDEF formatting.");
+                }
+                formatable.connect();
+                try {
+                    formatable.format(message);
+                    formatted = true;
+                } finally {
+                    formatable.close();
+                }
+            } else {
+                throw new NfcOperationException("Tag does not support NDEF.");
+            }
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException | FormatException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        }
+    }
+
+    /**
+     * Reads the NDEF message from the tag, bypassing the copy Android cached at discovery.
+     */
+    @Override
+    public NdefMessage read() throws NfcOperationException {
+        try {
+            return requireNdef().getNdefMessage();
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException | FormatException e) {
+            throw new NfcOperationException("Failed to read NDEF message.", e);
+        }
+    }
+
+    @Override
+    public void makeReadOnly() throws NfcOperationException {
+        boolean success;
+        try {
+            success = requireNdef().makeReadOnly();
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to make the tag read only.", e);
+        }
+        if (!success) {
+            throw new NfcOperationException("Failed to make the tag read only.");
+        }
+    }
+
+    void close() {
+        Ndef current = ndef;
+        if (current != null && current.isConnected()) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+
+    @Override
+    public boolean needsFormat() {
+        return ndef == null && Ndef.get(tag) == null && NdefFormatable.get(tag) != null;
+    }
+
+    /**
+     * Formats the tag with {@code message} and locks it in a single command.
+     */
+    @Override
+    public void formatReadOnly(NdefMessage message) throws NfcOperationException {
+        formatable = NdefFormatable.get(tag);
+        if (formatable == null) {
+            throw new NfcOperationException("Tag does not support NDEF formatting.");
+        }
+        try {
+            formatable.connect();
+            try {
+                formatable.formatReadOnly(message);
+                formatted = true;
+            } finally {
+                formatable.close();
+            }
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException | FormatException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        }
+    }
+
+    /**
+     * Closes the open connection from another thread, making blocked I/O fail with an {@link IOException}.
+     */
+    void abort() {
+        close();
+        NdefFormatable current = formatable;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+
+    private Ndef requireNdef() throws NfcOperationException, IOException {
+        if (formatted) {
+            // The Tag object still describes the unformatted tag until it is discovered again
+            throw new NfcOperationException("Tag was just formatted. Tap it again to access its NDEF content.");
+        }
+        Ndef connected = connectNdef();
+        if (connected == null) {
+            throw new NfcOperationException("Tag does not support NDEF.");
+        }
+        return connected;
+    }
+
+    private Ndef connectNdef() throws IOException {
+        if (ndef == null) {
+            ndef = Ndef.get(tag);
+            if (ndef == null) {
+                return null;
+            }
+        }
+        if (!ndef.isConnected()) {
+            ndef.connect();
+        }
+        return ndef;
+    }
+}
@@ -1,14 +1,18 @@
 package app.capgo.nfc;
 
+import android.nfc.FormatException;
 import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.Tag;
 import android.nfc.tech.Ndef;
+import android.util.Base64;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import java.util.Arrays;
+import java.util.List;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 final class NfcJsonConverter {
 
@@ -16,10 +20,15 @@ final class NfcJsonConverter {
 
     private NfcJsonConverter() {}
 
-    static JSObject tagToJSObject(Tag tag, NdefMessage cachedMessage) {
+    /**
+     * @param records decoded NDEF message of the tag, or {@code null} when it has none.
+     * @param decoding whether records also carry the fields of {@link NdefRecordDecoder}.
+     */
+    static JSObject tagToJSObject(Tag tag, List<NdefCodec.Record> records, PayloadEncoding encoding, NdefRecordDecoder.Mode decoding) {
         JSObject result = new JSObject();
+        result.put("payloadEncoding", encoding.jsName());
         if (tag != null) {
-            result.put("id", byteArrayToJSONArray(tag.getId()));
+            result.put("id", encoding.encode(tag.getId()));
             result.put("techTypes", techTypesToArray(tag.getTechList()));
         }
 
@@ -37,43 +46,72 @@ final class NfcJsonConverter {
             }
         }
 
-        if (cachedMessage != null) {
-            result.put("ndefMessage", messageToJSONArray(cachedMessage));
+        if (records != null) {
+            result.put("ndefMessage", recordsToJSONArray(records, encoding, decoding));
         }
 
         return result;
     }
 
-    static JSONArray messageToJSONArray(NdefMessage message) {
+    static JSONArray messageToJSONArray(NdefMessage message, PayloadEncoding encoding, NdefRecordDecoder.Mode decoding) {
         if (message == null) {
             return null;
         }
+        // One encoded copy instead of the type, id and payload copies NdefRecord makes per getter call
+        try {
+            return recordsToJSONArray(NdefCodec.parse(message.toByteArray()), encoding, decoding);
+        } catch (NdefCodec.MalformedMessageException e) {
+            throw new IllegalStateException("NdefMessage encoded an invalid message", e);
+        }
+    }
+
+    static JSONArray recordsToJSONArray(List<NdefCodec.Record> records, PayloadEncoding encoding, NdefRecordDecoder.Mode decoding) {
+        return recordsToJSONArray(records, encoding, decoding, 0);
+    }
 
+    private static JSONArray recordsToJSONArray(
+        List<NdefCodec.Record> records,
+        PayloadEncoding encoding,
+        NdefRecordDecoder.Mode decoding,
+        int depth
+    ) {
         JSArray array = new JSArray();
-        for (NdefRecord record : message.getRecords()) {
-            array.put(recordToJSObject(record));
+        for (NdefCodec.Record record : records) {
+            array.put(recordToJSObject(record, encoding, decoding, depth));
         }
         return array;
     }
 
-    static JSObject recordToJSObject(NdefRecord record) {
+    private static JSObject recordToJSObject(
+        NdefCodec.Record record,
+        PayloadEncoding encoding,
+        NdefRecordDecoder.Mode decoding,
+        int depth
+    ) {
         JSObject obj = new JSObject();
-        obj.put("tnf", record.getTnf());
-        obj.put("type", byteArrayToJSONArray(record.getType()));
-        obj.put("id", byteArrayToJSONArray(record.getId()));
-        obj.put("payload", byteArrayToJSONArray(record.getPayload()));
+        obj.put("tnf", record.tnf);
+        obj.put("type", encoding.encode(record.buffer, record.typeOffset, record.typeLength));
+        obj.put("id", encoding.encode(record.buffer, record.idOffset, record.idLength));
+        NdefRecordDecoder.Decoded decoded = decoding != NdefRecordDecoder.Mode.NONE ? NdefRecordDecoder.decode(record) : null;
+        if (NdefRecordDecoder.keepsPayload(decoding, decoded, depth)) {
+            obj.put("payload", encoding.encode(record.buffer, record.payloadOffset, record.payloadLength));
+        }
+        if (decoded != null) {
+            putIfPresent(obj, "uri", decoded.uri);
+            putIfPresent(obj, "text", decoded.text);
+            putIfPresent(obj, "lang", decoded.lang);
+            putIfPresent(obj, "mimeType", decoded.mimeType);
+            if (decoded.records != null && depth < NdefRecordDecoder.MAX_DEPTH) {
+                obj.put("records", recordsToJSONArray(decoded.records, encoding, decoding, depth + 1));
+            }
+        }
         return obj;
     }
 
-    static JSONArray byteArrayToJSONArray(byte[] bytes) {
-        if (bytes == null) {
-            return null;
-        }
-        JSArray array = new JSArray();
-        for (byte aByte : bytes) {
-            array.put(aByte & 0xFF);
+    private static void putIfPresent(JSObject obj, String key, String value) {
+        if (value != null) {
+            obj.put(key, value);
         }
-        return array;
     }
 
     private static JSArray techTypesToArray(String[] techTypes) {
@@ -108,29 +146,65 @@ final class NfcJsonConverter {
         }
         NdefRecord[] ndefRecords = new NdefRecord[records.length()];
         for (int i = 0; i < records.length(); i++) {
-            JSObject record = JSObject.fromJSONObject(records.getJSONObject(i));
-            Integer tnfValue = record.getInteger("tnf");
-            if (tnfValue == null) {
+            JSONObject record = records.getJSONObject(i);
+            if (!record.has("tnf")) {
                 throw new JSONException("Each record must include a tnf field.");
             }
-            short tnf = (short) tnfValue.intValue();
-            byte[] type = jsonArrayToBytes(record.optJSONArray("type"));
-            byte[] id = jsonArrayToBytes(record.optJSONArray("id"));
-            byte[] payload = jsonArrayToBytes(record.optJSONArray("payload"));
+            short tnf = (short) record.getInt("tnf");
+            byte[] type = valueToBytes(record.opt("type"), "type");
+            byte[] id = valueToBytes(record.opt("id"), "id");
+            byte[] payload = valueToBytes(record.opt("payload"), "payload");
             ndefRecords[i] = new NdefRecord(tnf, type, id, payload);
         }
         return new NdefMessage(ndefRecords);
     }
 
+    /**
+     * Parses a complete NDEF message that JavaScript already encoded, passed as a base64 string.
+     */
+    static NdefMessage base64ToMessage(String encodedMessage) throws JSONException, FormatException {
+        byte[] bytes = base64ToBytes(encodedMessage, "message");
+        if (bytes.length == 0) {
+            throw new JSONException("message must not be empty");
+        }
+        return new NdefMessage(bytes);
+    }
+
+    /**
+     * Converts a record byte field to a byte array. Accepts the legacy array of numbers or a base64 string.
+     */
+    static byte[] valueToBytes(Object value, String field) throws JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            return new byte[0];
+        }
+        if (value instanceof String) {
+            return base64ToBytes((String) value, field);
+        }
+        if (value instanceof JSONArray) {
+            return jsonArrayToBytes((JSONArray) value);
+        }
+        throw new JSONException(field + " must be an array of numbers or a base64 string.");
+    }
+
     static byte[] jsonArrayToBytes(JSONArray array) throws JSONException {
         if (array == null) {
             return new byte[0];
         }
-        byte[] bytes = new byte[array.length()];
-        for (int i = 0; i < array.length(); i++) {
-            int value = array.getInt(i);
-            bytes[i] = (byte) (value & 0xFF);
+        int length = array.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            Object value = array.get(i);
+            int intValue = value instanceof Number ? ((Number) value).intValue() : array.getInt(i);
+            bytes[i] = (byte) (intValue & 0xFF);
         }
         return bytes;
     }
+
+    private static byte[] base64ToBytes(String value, String field) throws JSONException {
+        try {
+            return Base64.decode(value, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(field + " is not valid base64.");
+        }
+    }
 }
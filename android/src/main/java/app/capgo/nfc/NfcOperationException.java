@@ -0,0 +1,23 @@
+package app.capgo.nfc;
+
+/**
+ * A failed tag operation. The message is user facing and is passed to {@code call.reject} or event payloads as is.
+ */
+final class NfcOperationException extends Exception {
+
+    NfcOperationException(String message) {
+        super(message);
+    }
+
+    NfcOperationException(String message, Exception cause) {
+        super(message, cause);
+    }
+
+    /**
+     * @return the underlying exception, or {@code null} when the failure was detected by the plugin itself.
+     */
+    Exception getCauseException() {
+        Throwable cause = getCause();
+        return cause instanceof Exception ? (Exception) cause : null;
+    }
+}
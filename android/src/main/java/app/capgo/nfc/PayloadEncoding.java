@@ -0,0 +1,97 @@
+package app.capgo.nfc;
+
+import android.util.Base64;
+import com.getcapacitor.JSArray;
+
+/**
+ * Wire format used for byte fields (tag id, record type, id and payload) in events sent to JavaScript.
+ *
+ * {@link #ARRAY} keeps the legacy Cordova-compatible shape of one JSON number per byte. {@link #BASE64} and
+ * {@link #HEX} emit a single string per field, which is far cheaper to build and to push across the bridge.
+ */
+enum PayloadEncoding {
+    ARRAY("array"),
+    BASE64("base64"),
+    HEX("hex");
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String jsName;
+
+    PayloadEncoding(String jsName) {
+        this.jsName = jsName;
+    }
+
+    String jsName() {
+        return jsName;
+    }
+
+    static PayloadEncoding fromString(String value) {
+        if (value == null) {
+            return ARRAY;
+        }
+        for (PayloadEncoding encoding : values()) {
+            if (encoding.jsName.equalsIgnoreCase(value)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported payloadEncoding: " + value);
+    }
+
+    Object encode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        return encode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Encodes {@code bytes[offset, offset + length)} without copying the range first.
+     */
+    Object encode(byte[] bytes, int offset, int length) {
+        switch (this) {
+            case BASE64:
+                return Base64.encodeToString(bytes, offset, length, Base64.NO_WRAP);
+            case HEX:
+                return toHex(bytes, offset, length);
+            case ARRAY:
+            default:
+                JSArray array = new JSArray();
+                for (int i = offset; i < offset + length; i++) {
+                    array.put(bytes[i] & 0xFF);
+                }
+                return array;
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    static String toHex(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int value = bytes[offset + i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[value >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    static byte[] fromHex(String hex) {
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Hex string must have an even number of characters.");
+        }
+        byte[] bytes = new byte[length / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex character in \"" + hex + "\".");
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
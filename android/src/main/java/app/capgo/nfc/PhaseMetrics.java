@@ -0,0 +1,259 @@
+package app.capgo.nfc;
+
+import android.os.Trace;
+import com.getcapacitor.JSObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of each phase between a tag entering the field and the JavaScript listener running, per tag technology.
+ *
+ * Phases of a discovery:
+ * - {@code discover}: reader callback entry until tag I/O starts (session bookkeeping, deduplication);
+ * - {@code connect}, {@code read}, {@code parse}: connecting, fetching the NDEF bytes and decoding them with
+ *   {@link NdefCodec}. The platform {@code Ndef} API also decodes while reading; that part stays under {@code read};
+ * - {@code serialize}: converting the tag to JSON;
+ * - {@code dispatch}: the hop to the UI thread plus {@code notifyListeners}.
+ *
+ * Tag operations add {@code write}, {@code verify} and {@code lock}. Failures are counted by reason.
+ *
+ * Recording is lock-free so it can run on the reader thread. When tracing is enabled, phases that start and end on
+ * the same thread are also emitted as {@link Trace} sections for systrace and Perfetto.
+ */
+final class PhaseMetrics {
+
+    /** Receives the trace sections of the phases. */
+    interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    private static final Tracer PLATFORM_TRACER = new Tracer() {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+    };
+
+    /**
+     * A phase timed from {@link #begin}. Its trace section is closed exactly once, by the first {@link #end} or
+     * {@link #endTrace}, which must run on the thread that began it. Not thread-safe.
+     */
+    final class Span {
+
+        final String phase;
+        final long startNanos;
+        private boolean traceOpen;
+        private boolean ended;
+
+        private Span(String phase, long startNanos, boolean traceOpen) {
+            this.phase = phase;
+            this.startNanos = startNanos;
+            this.traceOpen = traceOpen;
+        }
+
+        /**
+         * Closes the trace section, if still open, without recording anything. For phases that began on another
+         * thread or whose latency is recorded per item with {@link #record}.
+         */
+        void endTrace() {
+            if (traceOpen) {
+                traceOpen = false;
+                tracer.endSection();
+            }
+        }
+
+        /**
+         * Closes the trace section and records the time since {@link #startNanos}. Later calls do nothing.
+         */
+        void end(String tech) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            long nanos = System.nanoTime() - startNanos;
+            endTrace();
+            record(tech, phase, nanos);
+        }
+    }
+
+    static final String PHASE_DISCOVER = "discover";
+    static final String PHASE_CONNECT = "connect";
+    static final String PHASE_READ = "read";
+    static final String PHASE_PARSE = "parse";
+    static final String PHASE_SERIALIZE = "serialize";
+    static final String PHASE_DISPATCH = "dispatch";
+    static final String PHASE_WRITE = "write";
+    static final String PHASE_VERIFY = "verify";
+    static final String PHASE_LOCK = "lock";
+
+    static final String TECH_UNKNOWN = "unknown";
+
+    private static final String TRACE_PREFIX = "CapacitorNfc:";
+
+    // Most specific first: an NTAG also reports NfcA, a DESFire also reports NfcA and IsoDep
+    private static final String[] TECH_PRIORITY = {
+        "MifareClassic",
+        "MifareUltralight",
+        "IsoDep",
+        "NfcV",
+        "NfcF",
+        "NfcBarcode",
+        "NfcB",
+        "NfcA",
+        "Ndef",
+    };
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LatencyHistogram>> latency = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicLong>> failures = new ConcurrentHashMap<>();
+    private final Tracer tracer;
+    private volatile boolean tracing;
+
+    PhaseMetrics() {
+        this(PLATFORM_TRACER);
+    }
+
+    PhaseMetrics(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * @return the most specific technology in {@code techList}, without the {@code android.nfc.tech.} prefix.
+     */
+    static String techOf(String[] techList) {
+        if (techList == null) {
+            return TECH_UNKNOWN;
+        }
+        for (String candidate : TECH_PRIORITY) {
+            for (String tech : techList) {
+                if (tech.endsWith("." + candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return techList.length > 0 ? techList[0].substring(techList[0].lastIndexOf('.') + 1) : TECH_UNKNOWN;
+    }
+
+    /**
+     * Opens a trace section for {@code phase} when tracing is enabled and starts timing it.
+     *
+     * @return the span to end on the same thread.
+     */
+    Span begin(String phase) {
+        boolean traced = tracing;
+        if (traced) {
+            tracer.beginSection(TRACE_PREFIX + phase);
+        }
+        return new Span(phase, System.nanoTime(), traced);
+    }
+
+    /**
+     * Records the connect, read and parse phases measured by {@code stats}, plus its failure if any.
+     *
+     * @param stats counters of the read, or {@code null} when the tag exposed no NDEF technology.
+     */
+    void recordRead(String tech, ReadStats stats) {
+        if (stats == null) {
+            return;
+        }
+        long connect = stats.getConnectNanos();
+        long parse = stats.getParseNanos();
+        if (connect > 0) {
+            record(tech, PHASE_CONNECT, connect);
+        }
+        if (parse > 0) {
+            record(tech, PHASE_PARSE, parse);
+        }
+        record(tech, PHASE_READ, Math.max(0, stats.getDurationNanos() - connect - parse));
+        if (stats.getFailure() != null) {
+            recordFailure(tech, stats.getFailure());
+        }
+    }
+
+    void record(String tech, String phase, long nanos) {
+        latency
+            .computeIfAbsent(tech, (key) -> new ConcurrentHashMap<>())
+            .computeIfAbsent(phase, (key) -> new LatencyHistogram())
+            .recordNanos(nanos);
+    }
+
+    void recordFailure(String tech, String reason) {
+        failures
+            .computeIfAbsent(tech, (key) -> new ConcurrentHashMap<>())
+            .computeIfAbsent(reason, (key) -> new AtomicLong())
+            .incrementAndGet();
+    }
+
+    LatencyHistogram.Snapshot snapshot(String tech, String phase) {
+        Map<String, LatencyHistogram> phases = latency.get(tech);
+        LatencyHistogram histogram = phases != null ? phases.get(phase) : null;
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    long failureCount(String tech, String reason) {
+        Map<String, AtomicLong> reasons = failures.get(tech);
+        AtomicLong count = reasons != null ? reasons.get(reason) : null;
+        return count != null ? count.get() : 0;
+    }
+
+    void reset() {
+        // Counters are zeroed rather than dropped so concurrent recorders keep a valid reference
+        for (Map<String, LatencyHistogram> phases : latency.values()) {
+            for (LatencyHistogram histogram : phases.values()) {
+                histogram.reset();
+            }
+        }
+        for (Map<String, AtomicLong> reasons : failures.values()) {
+            for (AtomicLong count : reasons.values()) {
+                count.set(0);
+            }
+        }
+    }
+
+    /**
+     * @return {@code {latency: {tech: {phase: stats}}, failures: {tech: {reason: count}}}}, omitting empty entries.
+     */
+    JSObject toJSObject() {
+        JSObject latencyJson = new JSObject();
+        for (Map.Entry<String, ConcurrentHashMap<String, LatencyHistogram>> tech : latency.entrySet()) {
+            JSObject phases = new JSObject();
+            for (Map.Entry<String, LatencyHistogram> phase : tech.getValue().entrySet()) {
+                LatencyHistogram.Snapshot snapshot = phase.getValue().snapshot();
+                if (snapshot.count > 0) {
+                    phases.put(phase.getKey(), snapshot.toJSObject());
+                }
+            }
+            if (phases.length() > 0) {
+                latencyJson.put(tech.getKey(), phases);
+            }
+        }
+        JSObject failuresJson = new JSObject();
+        for (Map.Entry<String, ConcurrentHashMap<String, AtomicLong>> tech : failures.entrySet()) {
+            JSObject reasons = new JSObject();
+            for (Map.Entry<String, AtomicLong> reason : tech.getValue().entrySet()) {
+                long count = reason.getValue().get();
+                if (count > 0) {
+                    reasons.put(reason.getKey(), count);
+                }
+            }
+            if (reasons.length() > 0) {
+                failuresJson.put(tech.getKey(), reasons);
+            }
+        }
+        JSObject result = new JSObject();
+        result.put("latency", latencyJson);
+        result.put("failures", failuresJson);
+        return result;
+    }
+}
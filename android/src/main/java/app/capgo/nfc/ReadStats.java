@@ -0,0 +1,130 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.util.Locale;
+
+/**
+ * Counters describing how the NDEF content of a single tap was read.
+ *
+ * Reported to JavaScript as {@code tag.readStats} so apps can confirm how many RF round trips a read needed.
+ */
+final class ReadStats {
+
+    static final String METHOD_FAST_READ = "fastRead";
+    static final String METHOD_READ_PAGES = "readPages";
+    static final String METHOD_NDEF = "ndef";
+    static final String METHOD_ISO_DEP = "isoDep";
+    static final String METHOD_READ_MULTIPLE_BLOCKS = "readMultipleBlocks";
+    static final String METHOD_READ_BLOCKS = "readBlocks";
+    static final String METHOD_CHECK = "check";
+    static final String METHOD_CACHED = "cached";
+
+    private final long startNanos = System.nanoTime();
+    private String method;
+    private int transceiveCount;
+    private int bytesRead;
+    private long durationNanos = -1;
+    private long connectNanos;
+    private long parseNanos;
+    private String failure;
+
+    ReadStats(String method) {
+        this.method = method;
+    }
+
+    void setMethod(String method) {
+        this.method = method;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Records one command/response exchange with the tag.
+     */
+    void recordTransceive(int responseLength) {
+        transceiveCount++;
+        bytesRead += Math.max(responseLength, 0);
+    }
+
+    int getTransceiveCount() {
+        return transceiveCount;
+    }
+
+    int getBytesRead() {
+        return bytesRead;
+    }
+
+    /** Time spent connecting to the tag, part of the total duration. */
+    void recordConnect(long nanos) {
+        connectNanos += nanos;
+    }
+
+    /** Time spent decoding the NDEF bytes, part of the total duration. */
+    void recordParse(long nanos) {
+        parseNanos += nanos;
+    }
+
+    long getConnectNanos() {
+        return connectNanos;
+    }
+
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    /** @param reason why the read failed; reported in the metrics only. */
+    void setFailure(String reason) {
+        failure = reason;
+    }
+
+    String getFailure() {
+        return failure;
+    }
+
+    long getDurationNanos() {
+        return durationNanos >= 0 ? durationNanos : System.nanoTime() - startNanos;
+    }
+
+    void finish() {
+        if (durationNanos < 0) {
+            durationNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    double getDurationMs() {
+        return getDurationNanos() / 1_000_000.0;
+    }
+
+    /** Read throughput over the whole duration, connect time included. */
+    double getBytesPerSecond() {
+        long nanos = getDurationNanos();
+        return nanos > 0 ? bytesRead * 1_000_000_000.0 / nanos : 0;
+    }
+
+    JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("method", method);
+        // The generic Ndef path hides its RF exchanges, so counts are only meaningful for raw reads.
+        if (transceiveCount > 0) {
+            result.put("transceiveCount", transceiveCount);
+            result.put("bytesRead", bytesRead);
+            result.put("bytesPerSecond", Math.round(getBytesPerSecond()));
+        }
+        result.put("durationMs", getDurationMs());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            Locale.US,
+            "%s: %d transceive(s), %d bytes in %.1f ms",
+            method,
+            transceiveCount,
+            bytesRead,
+            getDurationMs()
+        );
+    }
+}
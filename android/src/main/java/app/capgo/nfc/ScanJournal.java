@@ -0,0 +1,434 @@
+package app.capgo.nfc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of scanned tags, kept in rotating segment files so high-volume sessions do not depend on
+ * every result reaching JavaScript.
+ *
+ * Each record is a 4-byte body length, the body and a CRC-32 of the body. The body holds a format version, the
+ * timestamp, the UID, the technology name and the encoded NDEF message (length {@code -1} when the tag had none).
+ * Records are written through a buffered stream that is flushed after every append, so they survive a WebView or
+ * process crash. A record torn by a crash fails its length or CRC check; it is cut off when the journal is reopened.
+ *
+ * Segments are named {@code segment-NNNNNNNN.journal} and a new one is started once the active segment reaches
+ * {@code segmentBytes}. Positions are exposed as {@code "segment:offset"} cursors for paged queries.
+ */
+final class ScanJournal {
+
+    static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    // Larger bodies can only come from a corrupt length field
+    private static final int MAX_BODY_SIZE = 1 + 8 + 1 + 255 + 1 + 255 + 4 + NdefCodec.MAX_PAYLOAD_SIZE;
+
+    /** One journaled scan. */
+    static final class Entry {
+
+        final long timestampMs;
+        final byte[] uid;
+        final String tech;
+        /** Encoded NDEF message, or {@code null} when the tag had none. */
+        final byte[] ndef;
+
+        Entry(long timestampMs, byte[] uid, String tech, byte[] ndef) {
+            this.timestampMs = timestampMs;
+            this.uid = uid != null ? uid : new byte[0];
+            this.tech = tech != null ? tech : "";
+            this.ndef = ndef;
+        }
+    }
+
+    /** One page of a query. */
+    static final class Page {
+
+        final List<Entry> entries;
+        /** Cursor of the next page, or {@code null} when the journal was read to its end. */
+        final String nextCursor;
+
+        Page(List<Entry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    /** Selects entries in {@link #query}. */
+    interface Filter {
+        boolean accept(Entry entry);
+    }
+
+    private final File directory;
+    private final long segmentBytes;
+
+    private int activeSegment;
+    private long activeSize;
+    private DataOutputStream output;
+    private long appended;
+
+    /**
+     * Opens the journal in {@code directory}, creating it when needed, and cuts off a record torn by a crash.
+     */
+    ScanJournal(File directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(1024, segmentBytes);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        int[] segments = segments();
+        activeSegment = segments.length > 0 ? segments[segments.length - 1] : 0;
+        File active = segmentFile(activeSegment);
+        if (active.exists()) {
+            long valid = validLength(active);
+            if (valid < active.length()) {
+                try (RandomAccessFile file = new RandomAccessFile(active, "rw")) {
+                    file.setLength(valid);
+                }
+            }
+            activeSize = valid;
+        }
+    }
+
+    synchronized void append(Entry entry) throws IOException {
+        byte[] body = encode(entry);
+        if (activeSize > 0 && activeSize + body.length + 8 > segmentBytes) {
+            closeOutput();
+            activeSegment++;
+            activeSize = 0;
+        }
+        if (output == null) {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(activeSegment), true)));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        output.writeInt(body.length);
+        output.write(body);
+        output.writeInt((int) crc.getValue());
+        output.flush();
+        activeSize += body.length + 8;
+        appended++;
+    }
+
+    /**
+     * Reads up to {@code limit} entries accepted by {@code filter}, starting at {@code cursor}.
+     *
+     * @param cursor a {@link Page#nextCursor}, or {@code null} to start at the oldest entry.
+     * @throws IllegalArgumentException when {@code cursor} is malformed.
+     */
+    synchronized Page query(String cursor, int limit, Filter filter) throws IOException {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int[] segments = segments();
+        int segment = segments.length > 0 ? segments[0] : 0;
+        long offset = 0;
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            try {
+                segment = Integer.parseInt(cursor.substring(0, separator));
+                offset = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid journal cursor: " + cursor);
+            }
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(size, 64));
+        for (int index : segments) {
+            if (index < segment) {
+                continue;
+            }
+            long position = index == segment ? offset : 0;
+            try (CountingInput input = open(segmentFile(index), position)) {
+                Entry entry;
+                while ((entry = readEntry(input)) != null) {
+                    if (filter == null || filter.accept(entry)) {
+                        entries.add(entry);
+                        if (entries.size() == size) {
+                            return new Page(entries, index + ":" + (position + input.count));
+                        }
+                    }
+                }
+            }
+        }
+        return new Page(entries, null);
+    }
+
+    /**
+     * Writes every entry as one JSON object per line, with the UID and message in hex.
+     *
+     * @return the number of entries written.
+     */
+    synchronized int exportJsonLines(Writer writer) throws IOException {
+        int count = 0;
+        for (int index : segments()) {
+            try (CountingInput input = open(segmentFile(index), 0)) {
+                Entry entry;
+                while ((entry = readEntry(input)) != null) {
+                    writer.write("{\"uid\":\"");
+                    writer.write(PayloadEncoding.toHex(entry.uid));
+                    writer.write("\",\"timestamp\":");
+                    writer.write(Long.toString(entry.timestampMs));
+                    writer.write(",\"tech\":\"");
+                    writer.write(entry.tech);
+                    writer.write("\",\"ndef\":");
+                    writer.write(entry.ndef != null ? "\"" + PayloadEncoding.toHex(entry.ndef) + "\"" : "null");
+                    writer.write("}\n");
+                    count++;
+                }
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Rewrites the journal keeping only the latest entry per UID, in the order of their latest scan.
+     *
+     * The compacted entries are written to new segments before the old ones are deleted, so a crash during
+     * compaction leaves duplicates rather than losing scans.
+     *
+     * @return the number of entries removed.
+     */
+    synchronized int compact() throws IOException {
+        int[] old = segments();
+        LinkedHashMap<String, Entry> latest = new LinkedHashMap<>();
+        int total = 0;
+        for (int index : old) {
+            try (CountingInput input = open(segmentFile(index), 0)) {
+                Entry entry;
+                while ((entry = readEntry(input)) != null) {
+                    String key = PayloadEncoding.toHex(entry.uid);
+                    latest.remove(key);
+                    latest.put(key, entry);
+                    total++;
+                }
+            }
+        }
+        closeOutput();
+        activeSegment = old.length > 0 ? old[old.length - 1] + 1 : 0;
+        activeSize = 0;
+        long previouslyAppended = appended;
+        for (Entry entry : latest.values()) {
+            append(entry);
+        }
+        appended = previouslyAppended;
+        for (int index : old) {
+            deleteSegment(index);
+        }
+        return total - latest.size();
+    }
+
+    /** Deletes every entry. */
+    synchronized void clear() throws IOException {
+        closeOutput();
+        for (int index : segments()) {
+            deleteSegment(index);
+        }
+        activeSegment = 0;
+        activeSize = 0;
+    }
+
+    synchronized int segmentCount() {
+        return segments().length;
+    }
+
+    /** Total size of the segment files in bytes. */
+    synchronized long sizeBytes() {
+        long size = 0;
+        for (int index : segments()) {
+            size += segmentFile(index).length();
+        }
+        return size;
+    }
+
+    /** Entries appended since the journal was opened. */
+    synchronized long appendedCount() {
+        return appended;
+    }
+
+    synchronized void close() {
+        try {
+            closeOutput();
+        } catch (IOException ignored) {
+            // Every record was already flushed
+        }
+    }
+
+    private void closeOutput() throws IOException {
+        if (output != null) {
+            DataOutputStream stream = output;
+            output = null;
+            stream.close();
+        }
+    }
+
+    private void deleteSegment(int index) throws IOException {
+        File file = segmentFile(index);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete journal segment " + file);
+        }
+    }
+
+    private File segmentFile(int index) {
+        return new File(directory, String.format(Locale.ROOT, "%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /** Indexes of the segment files, oldest first. */
+    private int[] segments() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] indexes = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    indexes[count] = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    count++;
+                } catch (NumberFormatException ignored) {
+                    // Not a segment
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(indexes, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    static byte[] encode(Entry entry) {
+        byte[] tech = entry.tech.getBytes(StandardCharsets.US_ASCII);
+        int uidLength = Math.min(entry.uid.length, 255);
+        int techLength = Math.min(tech.length, 255);
+        int ndefLength = entry.ndef != null ? entry.ndef.length : 0;
+        byte[] body = new byte[1 + 8 + 1 + uidLength + 1 + techLength + 4 + ndefLength];
+        int position = 0;
+        body[position++] = FORMAT_VERSION;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            body[position++] = (byte) (entry.timestampMs >>> shift);
+        }
+        body[position++] = (byte) uidLength;
+        System.arraycopy(entry.uid, 0, body, position, uidLength);
+        position += uidLength;
+        body[position++] = (byte) techLength;
+        System.arraycopy(tech, 0, body, position, techLength);
+        position += techLength;
+        int storedLength = entry.ndef != null ? ndefLength : -1;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            body[position++] = (byte) (storedLength >>> shift);
+        }
+        if (entry.ndef != null) {
+            System.arraycopy(entry.ndef, 0, body, position, ndefLength);
+        }
+        return body;
+    }
+
+    static Entry decode(byte[] body) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+        try {
+            if (input.readUnsignedByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported journal record version");
+            }
+            long timestampMs = input.readLong();
+            byte[] uid = new byte[input.readUnsignedByte()];
+            input.readFully(uid);
+            byte[] tech = new byte[input.readUnsignedByte()];
+            input.readFully(tech);
+            int ndefLength = input.readInt();
+            byte[] ndef = null;
+            if (ndefLength >= 0) {
+                ndef = new byte[ndefLength];
+                input.readFully(ndef);
+            }
+            return new Entry(timestampMs, uid, new String(tech, StandardCharsets.US_ASCII), ndef);
+        } catch (EOFException e) {
+            throw new IOException("Truncated journal record", e);
+        }
+    }
+
+    /**
+     * @return the next entry, or {@code null} at the end of the segment or at a torn record.
+     */
+    private static Entry readEntry(CountingInput input) throws IOException {
+        byte[] body = readBody(input);
+        return body != null ? decode(body) : null;
+    }
+
+    private static byte[] readBody(CountingInput input) throws IOException {
+        DataInputStream data = input.data;
+        long start = input.count;
+        try {
+            int length = data.readInt();
+            if (length <= 0 || length > MAX_BODY_SIZE) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            data.readFully(body);
+            int expected = data.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != expected) {
+                return null;
+            }
+            input.count = start + length + 8;
+            return body;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /** Length of the prefix of {@code file} made of complete, valid records. */
+    private static long validLength(File file) throws IOException {
+        try (CountingInput input = open(file, 0)) {
+            while (readBody(input) != null) {
+                // Advances input.count
+            }
+            return input.count;
+        }
+    }
+
+    private static CountingInput open(File file, long offset) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            stream.getChannel().position(offset);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return new CountingInput(new BufferedInputStream(stream, 64 * 1024));
+    }
+
+    /** Stream over a segment that tracks the bytes consumed by complete records. */
+    private static final class CountingInput implements AutoCloseable {
+
+        final DataInputStream data;
+        long count;
+
+        CountingInput(InputStream stream) {
+            this.data = new DataInputStream(stream);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Bounded buffer of discovery events that no listener received yet.
+ *
+ * Capacitor's {@code retainUntilConsumed} keeps every event until a listener attaches, so a WebView that is slow to
+ * load can pile up any number of tag payloads. This buffer holds at most {@code capacity} events and applies the
+ * overflow policy when it is full:
+ * - {@code dropOldest}: evict the oldest event
+ * - {@code dropNewest}: discard the incoming event
+ * - {@code coalesceUid}: keep only the latest event per UID, evicting the oldest when a new UID does not fit
+ *
+ * Events leave the buffer through {@code drainTagHistory} or when a listener that can receive them attaches.
+ */
+final class TagEventBuffer<T> {
+
+    static final int DEFAULT_CAPACITY = 32;
+    static final String OVERFLOW_DROP_OLDEST = "dropOldest";
+    static final String OVERFLOW_DROP_NEWEST = "dropNewest";
+    static final String OVERFLOW_COALESCE_UID = "coalesceUid";
+
+    private static final class Entry<T> {
+
+        final String uid;
+        final T event;
+
+        Entry(String uid, T event) {
+            this.uid = uid;
+            this.event = event;
+        }
+    }
+
+    private final ArrayDeque<Entry<T>> entries = new ArrayDeque<>();
+    private int capacity = DEFAULT_CAPACITY;
+    private String overflow = OVERFLOW_DROP_OLDEST;
+    private long droppedOldest;
+    private long droppedNewest;
+    private long coalesced;
+
+    /**
+     * @throws IllegalArgumentException when {@code overflow} is not a known policy.
+     */
+    static void checkOverflow(String overflow) {
+        if (
+            !OVERFLOW_DROP_OLDEST.equals(overflow) && !OVERFLOW_DROP_NEWEST.equals(overflow) && !OVERFLOW_COALESCE_UID.equals(overflow)
+        ) {
+            throw new IllegalArgumentException("Unsupported androidEventBufferOverflow: " + overflow);
+        }
+    }
+
+    /**
+     * Applies new settings, evicting the oldest events that no longer fit.
+     *
+     * @throws IllegalArgumentException when {@code overflow} is not a known policy; nothing changes then.
+     */
+    synchronized void configure(int capacity, String overflow) {
+        checkOverflow(overflow);
+        this.capacity = Math.max(1, capacity);
+        this.overflow = overflow;
+        while (entries.size() > this.capacity) {
+            entries.removeFirst();
+            droppedOldest++;
+        }
+    }
+
+    /**
+     * @param uid hex UID of the tag, used by {@code coalesceUid}.
+     */
+    synchronized void add(String uid, T event) {
+        if (OVERFLOW_COALESCE_UID.equals(overflow) && uid != null) {
+            Iterator<Entry<T>> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                if (uid.equals(iterator.next().uid)) {
+                    iterator.remove();
+                    coalesced++;
+                    break;
+                }
+            }
+        }
+        if (entries.size() >= capacity) {
+            if (OVERFLOW_DROP_NEWEST.equals(overflow)) {
+                droppedNewest++;
+                return;
+            }
+            entries.removeFirst();
+            droppedOldest++;
+        }
+        entries.addLast(new Entry<>(uid, event));
+    }
+
+    /**
+     * Removes and returns up to {@code max} events, oldest first. A {@code max} of zero or less drains everything.
+     */
+    synchronized List<T> drain(int max) {
+        return drain(max, (event) -> true);
+    }
+
+    /**
+     * Removes and returns up to {@code max} events accepted by {@code filter}, oldest first. Other events keep their
+     * place.
+     */
+    synchronized List<T> drain(int max, Predicate<T> filter) {
+        List<T> events = new ArrayList<>(Math.min(entries.size(), max > 0 ? max : entries.size()));
+        Iterator<Entry<T>> iterator = entries.iterator();
+        while (iterator.hasNext() && (max <= 0 || events.size() < max)) {
+            Entry<T> entry = iterator.next();
+            if (filter.test(entry.event)) {
+                iterator.remove();
+                events.add(entry.event);
+            }
+        }
+        return events;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long droppedCount() {
+        return droppedOldest + droppedNewest;
+    }
+
+    synchronized long coalescedCount() {
+        return coalesced;
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("size", entries.size());
+        result.put("capacity", capacity);
+        result.put("overflow", overflow);
+        result.put("droppedOldest", droppedOldest);
+        result.put("droppedNewest", droppedNewest);
+        result.put("coalesced", coalesced);
+        return result;
+    }
+}
@@ -0,0 +1,347 @@
+package app.capgo.nfc;
+
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tag I/O one operation at a time, in priority order, with deadlines and cancellation.
+ *
+ * The NFC controller talks to one tag at a time, so operations stay serialized on a single worker thread. On top of
+ * that the scheduler:
+ * - runs {@link #PRIORITY_NORMAL} operations (calls from JavaScript) before {@link #PRIORITY_BACKGROUND} ones
+ *   (presence checks), first-in first-out within a priority;
+ * - rejects an operation that is still queued when its deadline passes, and aborts a running one at its deadline
+ *   by invoking its canceller, which closes the open {@code TagTechnology} and makes blocked I/O return;
+ * - cancels queued and running operations on {@link #cancelAll(String, String)} and {@link #cancelForTag};
+ * - rejects operations whose target tag is already gone without touching the tag.
+ */
+final class TagIoScheduler implements Executor {
+
+    static final int PRIORITY_BACKGROUND = 0;
+    static final int PRIORITY_NORMAL = 1;
+
+    static final String CODE_TIMEOUT = "TIMEOUT";
+    static final String CODE_CANCELLED = "CANCELLED";
+    static final String CODE_TAG_LOST = "TAG_LOST";
+
+    private static final String TAG = "CapacitorNfcScheduler";
+
+    interface Task {
+        void run(Operation operation);
+    }
+
+    /** Called at most once when the operation does not get to run, or was aborted while running. */
+    interface Rejection {
+        void reject(String message, String code);
+    }
+
+    /**
+     * A queued unit of tag I/O. Tasks read {@link #remainingMs()} to size technology timeouts and register a
+     * canceller for the resources they open.
+     */
+    static final class Operation implements Comparable<Operation> {
+
+        private final int priority;
+        private final long sequence;
+        private final long enqueuedNanos;
+        private final long deadlineNanos;
+        private final TagSession target;
+        private final Task task;
+        private final Rejection rejection;
+
+        private volatile Runnable canceller;
+        private volatile String cancelMessage;
+        private volatile String cancelCode;
+
+        private Operation(int priority, long sequence, long timeoutMs, TagSession target, Task task, Rejection rejection) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedNanos = System.nanoTime();
+            this.deadlineNanos = timeoutMs > 0 ? enqueuedNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0;
+            this.target = target;
+            this.task = task;
+            this.rejection = rejection;
+        }
+
+        /**
+         * @return milliseconds left before the deadline (at least 1), or {@code 0} when the operation has none.
+         */
+        long remainingMs() {
+            if (deadlineNanos == 0) {
+                return 0;
+            }
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+        }
+
+        /**
+         * Registers the action that aborts in-flight I/O, typically closing the connected technology.
+         */
+        void setCanceller(Runnable canceller) {
+            this.canceller = canceller;
+            if (cancelCode != null) {
+                // Cancelled before the resource was registered
+                canceller.run();
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelCode != null;
+        }
+
+        /** @return why the operation was cancelled, or {@code null}. */
+        String cancelMessage() {
+            return cancelMessage;
+        }
+
+        /**
+         * Rejects the operation with its cancellation reason if it was cancelled.
+         *
+         * @return {@code true} if the operation was cancelled and has been rejected.
+         */
+        boolean rejectIfCancelled() {
+            if (cancelCode == null) {
+                return false;
+            }
+            rejection.reject(cancelMessage, cancelCode);
+            return true;
+        }
+
+        private void cancel(String message, String code) {
+            if (cancelCode != null) {
+                return;
+            }
+            cancelMessage = message;
+            cancelCode = code;
+            Runnable current = canceller;
+            if (current != null) {
+                try {
+                    current.run();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Canceller failed", e);
+                }
+            }
+        }
+
+        private boolean targets(byte[] uid) {
+            return target != null && Arrays.equals(target.uid, uid);
+        }
+
+        @Override
+        public int compareTo(Operation other) {
+            if (priority != other.priority) {
+                return other.priority - priority;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityBlockingQueue<Operation> queue = new PriorityBlockingQueue<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+    private final Thread worker;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile Operation running;
+    private volatile boolean shutdown;
+
+    // Metrics, guarded by this
+    private long submitted;
+    private long completed;
+    private long timedOut;
+    private long cancelled;
+    private long failedFast;
+    private int maxQueueDepth;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long started;
+
+    TagIoScheduler() {
+        worker = new Thread(this::loop, "CapacitorNfcIo");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues {@code task}.
+     *
+     * @param timeoutMs deadline relative to now, or {@code 0} for none.
+     * @param target    tag the operation talks to, or {@code null}.
+     */
+    void submit(int priority, long timeoutMs, TagSession target, Task task, Rejection rejection) {
+        if (shutdown) {
+            rejection.reject("NFC I/O has been shut down.", CODE_CANCELLED);
+            return;
+        }
+        if (target != null && target.isLost()) {
+            countFailedFast();
+            rejection.reject("Tag connection lost.", CODE_TAG_LOST);
+            return;
+        }
+        Operation operation = new Operation(priority, sequence.incrementAndGet(), timeoutMs, target, task, rejection);
+        queue.add(operation);
+        synchronized (this) {
+            submitted++;
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+    }
+
+    /**
+     * Runs {@code command} as a background operation without deadline, e.g. a presence check.
+     */
+    @Override
+    public void execute(Runnable command) {
+        submit(PRIORITY_BACKGROUND, 0, null, (operation) -> command.run(), (message, code) -> {});
+    }
+
+    /**
+     * Rejects every queued operation and aborts the running one.
+     */
+    void cancelAll(String message, String code) {
+        List<Operation> drained = new ArrayList<>();
+        queue.drainTo(drained);
+        for (Operation operation : drained) {
+            rejectQueued(operation, message, code);
+        }
+        Operation current = running;
+        if (current != null) {
+            abort(current, message, code);
+        }
+    }
+
+    /**
+     * Rejects queued operations that target the tag with {@code uid} and aborts the running one if it does.
+     */
+    void cancelForTag(byte[] uid, String message, String code) {
+        Iterator<Operation> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Operation operation = iterator.next();
+            if (operation.targets(uid) && queue.remove(operation)) {
+                rejectQueued(operation, message, code);
+            }
+        }
+        Operation current = running;
+        if (current != null && current.targets(uid)) {
+            abort(current, message, code);
+        }
+    }
+
+    void shutdown() {
+        shutdown = true;
+        cancelAll("NFC I/O has been shut down.", CODE_CANCELLED);
+        worker.interrupt();
+        watchdog.shutdownNow();
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("queueDepth", queue.size());
+        result.put("maxQueueDepth", maxQueueDepth);
+        result.put("submitted", submitted);
+        result.put("completed", completed);
+        result.put("timedOut", timedOut);
+        result.put("cancelled", cancelled);
+        result.put("failedFast", failedFast);
+        result.put("averageWaitMs", started > 0 ? totalWaitNanos / (double) started / 1_000_000.0 : 0);
+        result.put("maxWaitMs", maxWaitNanos / 1_000_000.0);
+        return result;
+    }
+
+    private void loop() {
+        while (!shutdown) {
+            Operation operation;
+            try {
+                operation = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (operation.deadlineNanos != 0 && now >= operation.deadlineNanos) {
+                rejectQueued(operation, "Operation timed out before it could start.", CODE_TIMEOUT);
+                continue;
+            }
+            if (operation.target != null && operation.target.isLost()) {
+                countFailedFast();
+                operation.rejection.reject("Tag connection lost.", CODE_TAG_LOST);
+                continue;
+            }
+            run(operation, now);
+        }
+    }
+
+    private void run(Operation operation, long startNanos) {
+        synchronized (this) {
+            long wait = startNanos - operation.enqueuedNanos;
+            started++;
+            totalWaitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+        }
+        ScheduledFuture<?> timer = null;
+        if (operation.deadlineNanos != 0 && !watchdog.isShutdown()) {
+            timer = watchdog.schedule(
+                () -> abort(operation, "Operation timed out.", CODE_TIMEOUT),
+                operation.deadlineNanos - startNanos,
+                TimeUnit.NANOSECONDS
+            );
+        }
+        running = operation;
+        try {
+            operation.task.run(operation);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unexpected failure in NFC operation", e);
+            if (!operation.rejectIfCancelled()) {
+                operation.rejection.reject("Unexpected NFC error: " + e.getMessage(), null);
+            }
+        } finally {
+            running = null;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            synchronized (this) {
+                completed++;
+            }
+        }
+    }
+
+    private void abort(Operation operation, String message, String code) {
+        if (operation.isCancelled()) {
+            return;
+        }
+        synchronized (this) {
+            if (CODE_TIMEOUT.equals(code)) {
+                timedOut++;
+            } else {
+                cancelled++;
+            }
+        }
+        operation.cancel(message, code);
+    }
+
+    private void rejectQueued(Operation operation, String message, String code) {
+        synchronized (this) {
+            if (CODE_TIMEOUT.equals(code)) {
+                timedOut++;
+            } else {
+                cancelled++;
+            }
+        }
+        operation.rejection.reject(message, code);
+    }
+
+    private synchronized void countFailedFast() {
+        failedFast++;
+    }
+}
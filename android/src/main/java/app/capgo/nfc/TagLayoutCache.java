@@ -0,0 +1,134 @@
+package app.capgo.nfc;
+
+import android.content.SharedPreferences;
+import com.getcapacitor.JSObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of Type 2 tag memory layouts keyed by tag UID and GET_VERSION response.
+ *
+ * Lets a repeat tap skip capability container parsing and the TLV walk and go straight to the NDEF pages.
+ * When constructed with {@link SharedPreferences}, entries are also persisted so the cache survives restarts.
+ */
+final class TagLayoutCache {
+
+    static final String PREFERENCES_NAME = "CapacitorNfcLayoutCache";
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final SharedPreferences preferences;
+    private final LinkedHashMap<String, Type2TagLayout> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    TagLayoutCache(int capacity, SharedPreferences preferences) {
+        this.capacity = Math.max(1, capacity);
+        this.preferences = preferences;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Type2TagLayout> eldest) {
+                if (size() <= TagLayoutCache.this.capacity) {
+                    return false;
+                }
+                evictions++;
+                if (TagLayoutCache.this.preferences != null) {
+                    TagLayoutCache.this.preferences.edit().remove(eldest.getKey()).apply();
+                }
+                return true;
+            }
+        };
+        loadPersisted();
+    }
+
+    /**
+     * @param version GET_VERSION response, or {@code null} for tags that do not support it.
+     */
+    static String key(byte[] uid, byte[] version) {
+        String uidHex = uid == null ? "" : PayloadEncoding.toHex(uid);
+        return uidHex + "/" + (version == null ? "-" : PayloadEncoding.toHex(version));
+    }
+
+    synchronized Type2TagLayout get(String key) {
+        Type2TagLayout layout = entries.get(key);
+        if (layout != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return layout;
+    }
+
+    /**
+     * Looks up an entry without touching the hit/miss counters or the LRU order.
+     */
+    synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(String key, Type2TagLayout layout) {
+        entries.put(key, layout);
+        if (preferences != null) {
+            preferences.edit().putString(key, layout.serialize()).apply();
+        }
+    }
+
+    /**
+     * Drops an entry whose layout no longer matches the tag, e.g. after it was reformatted.
+     */
+    synchronized void remove(String key) {
+        if (entries.remove(key) != null && preferences != null) {
+            preferences.edit().remove(key).apply();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isPersistent() {
+        return preferences != null;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("size", entries.size());
+        result.put("capacity", capacity);
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("evictions", evictions);
+        result.put("persistent", preferences != null);
+        return result;
+    }
+
+    private void loadPersisted() {
+        if (preferences == null) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            Type2TagLayout layout = entry.getValue() instanceof String ? Type2TagLayout.deserialize((String) entry.getValue()) : null;
+            if (layout != null && entries.size() < capacity) {
+                entries.put(entry.getKey(), layout);
+            } else {
+                preferences.edit().remove(entry.getKey()).apply();
+            }
+        }
+    }
+}
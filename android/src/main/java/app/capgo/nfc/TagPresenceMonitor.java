@@ -0,0 +1,193 @@
+package app.capgo.nfc;
+
+import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
+import android.nfc.tech.MifareUltralight;
+import android.nfc.tech.Ndef;
+import android.nfc.tech.NfcA;
+import android.nfc.tech.NfcB;
+import android.nfc.tech.NfcF;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the most recently discovered tag and reports when it leaves the RF field.
+ *
+ * Reader mode re-discovers tags but never reports removal, so the monitor periodically re-connects to the tag.
+ * Checks run on the plugin I/O executor so they never overlap with a write or lock on the same tag.
+ */
+final class TagPresenceMonitor {
+
+    interface Listener {
+        void onTagLost(Tag tag);
+    }
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Executor ioExecutor;
+    private final Listener listener;
+
+    // Held while a check is connected to the tag
+    private final Object checkLock = new Object();
+
+    private Tag current;
+    private long intervalMs;
+    private boolean suspended;
+    private ScheduledFuture<?> pending;
+
+    TagPresenceMonitor(Executor ioExecutor, Listener listener) {
+        this.ioExecutor = ioExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching {@code tag}. A different tag that was being watched is reported as lost right away.
+     */
+    void watch(Tag tag, long intervalMs) {
+        Tag replaced = null;
+        synchronized (this) {
+            if (current != null && !Arrays.equals(current.getId(), tag.getId())) {
+                replaced = current;
+            }
+            cancelPending();
+            current = tag;
+            suspended = false;
+            this.intervalMs = intervalMs;
+            schedule();
+        }
+        if (replaced != null) {
+            listener.onTagLost(replaced);
+        }
+    }
+
+    /**
+     * Pauses checks and waits for an in-flight check to release the tag, so the caller can connect to it.
+     * Checks resume on the next {@link #watch(Tag, long)}.
+     */
+    void suspend() {
+        synchronized (this) {
+            cancelPending();
+            suspended = true;
+        }
+        synchronized (checkLock) {
+            // Nothing to do: acquiring the lock is enough to wait for a running check
+        }
+    }
+
+    /**
+     * Resumes checks on the tag watched before {@link #suspend()}, when the tag discovered meanwhile is not watched.
+     */
+    synchronized void resume() {
+        if (!suspended) {
+            return;
+        }
+        suspended = false;
+        if (current != null) {
+            cancelPending();
+            schedule();
+        }
+    }
+
+    synchronized void stop() {
+        cancelPending();
+        current = null;
+    }
+
+    void shutdown() {
+        stop();
+        timer.shutdownNow();
+    }
+
+    private void schedule() {
+        if (timer.isShutdown()) {
+            return;
+        }
+        pending = timer.schedule(() -> ioExecutor.execute(this::check), intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private void check() {
+        Tag tag;
+        boolean present;
+        synchronized (checkLock) {
+            synchronized (this) {
+                if (suspended || current == null) {
+                    return;
+                }
+                tag = current;
+            }
+            present = isPresent(tag);
+        }
+
+        synchronized (this) {
+            if (current != tag || suspended) {
+                // Replaced, stopped or suspended while the check was running
+                return;
+            }
+            if (present) {
+                schedule();
+                return;
+            }
+            current = null;
+        }
+        listener.onTagLost(tag);
+    }
+
+    static boolean isPresent(Tag tag) {
+        TagTechnology technology = anyTechnology(tag);
+        if (technology == null) {
+            return false;
+        }
+        try {
+            technology.connect();
+            return true;
+        } catch (IOException | SecurityException e) {
+            // TagLostException, or the Tag object went stale because the tag left the field
+            return false;
+        } catch (IllegalStateException e) {
+            // Another technology is connected, so the tag is in use and therefore present
+            return true;
+        } finally {
+            try {
+                technology.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+
+    private static TagTechnology anyTechnology(Tag tag) {
+        TagTechnology technology = NfcA.get(tag);
+        if (technology == null) {
+            technology = NfcB.get(tag);
+        }
+        if (technology == null) {
+            technology = NfcF.get(tag);
+        }
+        if (technology == null) {
+            technology = NfcV.get(tag);
+        }
+        if (technology == null) {
+            technology = IsoDep.get(tag);
+        }
+        if (technology == null) {
+            technology = MifareUltralight.get(tag);
+        }
+        if (technology == null) {
+            technology = Ndef.get(tag);
+        }
+        return technology;
+    }
+}
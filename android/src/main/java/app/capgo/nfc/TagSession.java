@@ -0,0 +1,78 @@
+package app.capgo.nfc;
+
+import android.nfc.Tag;
+
+/**
+ * A tag that is (or recently was) in the field, identified to JavaScript by an opaque handle.
+ *
+ * Re-discovering the same UID refreshes the session in place, so the handle keeps pointing at the physical tag and
+ * at the freshest {@link Tag} object while the tag stays on the reader.
+ */
+final class TagSession {
+
+    final String handle;
+    final byte[] uid;
+
+    private volatile Tag tag;
+    private volatile byte[] ndef;
+    private volatile Type2TagImage type2Image;
+    private volatile boolean contentKnown;
+    private volatile boolean lost;
+    volatile long lastSeenMs;
+
+    TagSession(String handle, byte[] uid, Tag tag, long nowMs) {
+        this.handle = handle;
+        this.uid = uid;
+        this.tag = tag;
+        this.lastSeenMs = nowMs;
+    }
+
+    Tag tag() {
+        return tag;
+    }
+
+    /** Last known encoded NDEF message of the tag, or {@code null} if unknown or empty. */
+    byte[] ndef() {
+        return ndef;
+    }
+
+    /**
+     * @return {@code true} once the NDEF content was read or written; {@code false} after a lazy discovery that
+     *     left the message on the tag.
+     */
+    boolean hasContent() {
+        return contentKnown;
+    }
+
+    /** Raw Type 2 content matching {@link #ndef()}, used by differential writes. */
+    Type2TagImage type2Image() {
+        return type2Image;
+    }
+
+    void refresh(Tag tag, long nowMs) {
+        this.tag = tag;
+        this.lastSeenMs = nowMs;
+    }
+
+    /** Set once the tag left the field; queued operations on a lost session fail without I/O. */
+    boolean isLost() {
+        return lost;
+    }
+
+    void markLost() {
+        lost = true;
+    }
+
+    void setContent(byte[] ndef, Type2TagImage type2Image) {
+        this.ndef = ndef;
+        this.type2Image = type2Image;
+        this.contentKnown = true;
+    }
+
+    /** Forgets the content of a previous tap until it is read again. */
+    void clearContent() {
+        this.contentKnown = false;
+        this.ndef = null;
+        this.type2Image = null;
+    }
+}
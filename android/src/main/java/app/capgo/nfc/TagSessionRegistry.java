@@ -0,0 +1,132 @@
+package app.capgo.nfc;
+
+import android.nfc.Tag;
+import com.getcapacitor.JSObject;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Bounded registry of {@link TagSession}s so tag operations can target a specific tag instead of the last one seen.
+ *
+ * Sessions expire {@code ttlMs} after their tag was last discovered, are dropped when their tag leaves the field, and
+ * the oldest session is evicted once {@code capacity} tags are tracked. Looking up a stale handle never touches the tag.
+ */
+final class TagSessionRegistry {
+
+    static final int DEFAULT_CAPACITY = 16;
+    static final long DEFAULT_TTL_MS = 60_000;
+
+    // Ordered by last discovery because refreshed sessions are re-inserted
+    private final LinkedHashMap<String, TagSession> byHandle = new LinkedHashMap<>();
+    private final Map<String, TagSession> byUid = new HashMap<>();
+    // Keeps handles from a previous plugin instance from matching new sessions
+    private final String handlePrefix = Integer.toHexString(new Random().nextInt() & 0x7FFFFFFF);
+    private int capacity = DEFAULT_CAPACITY;
+    private long ttlMs = DEFAULT_TTL_MS;
+    private long nextId;
+    private long expired;
+    private long evicted;
+    private long staleLookups;
+
+    synchronized void configure(int capacity, long ttlMs) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlMs = Math.max(1, ttlMs);
+        trim();
+    }
+
+    /**
+     * Returns the session for {@code uid}, refreshed with the newly discovered {@code tag}, or starts a new one.
+     */
+    synchronized TagSession register(byte[] uid, Tag tag, long nowMs) {
+        evictExpired(nowMs);
+        String key = PayloadEncoding.toHex(uid);
+        TagSession session = byUid.get(key);
+        if (session != null) {
+            byHandle.remove(session.handle);
+            session.refresh(tag, nowMs);
+        } else {
+            session = new TagSession(handlePrefix + "-" + Long.toString(++nextId, 36), uid, tag, nowMs);
+            byUid.put(key, session);
+        }
+        byHandle.put(session.handle, session);
+        trim();
+        return session;
+    }
+
+    /**
+     * @return the live session for {@code handle}, or {@code null} when it is unknown, expired, evicted or its tag
+     *     was lost.
+     */
+    synchronized TagSession get(String handle, long nowMs) {
+        evictExpired(nowMs);
+        TagSession session = byHandle.get(handle);
+        if (session == null) {
+            staleLookups++;
+        }
+        return session;
+    }
+
+    /**
+     * Drops the session of a tag that left the field, unless the UID was re-discovered with a newer {@link Tag} since.
+     *
+     * @return the dropped session, or {@code null}.
+     */
+    synchronized TagSession invalidate(byte[] uid, Tag tag) {
+        TagSession session = byUid.get(PayloadEncoding.toHex(uid));
+        if (session == null || session.tag() != tag) {
+            return null;
+        }
+        remove(session);
+        session.markLost();
+        return session;
+    }
+
+    synchronized void clear() {
+        byHandle.clear();
+        byUid.clear();
+    }
+
+    synchronized int size() {
+        return byHandle.size();
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("active", byHandle.size());
+        result.put("capacity", capacity);
+        result.put("ttlMs", ttlMs);
+        result.put("expired", expired);
+        result.put("evicted", evicted);
+        result.put("staleLookups", staleLookups);
+        return result;
+    }
+
+    private void evictExpired(long nowMs) {
+        Iterator<TagSession> iterator = byHandle.values().iterator();
+        while (iterator.hasNext()) {
+            TagSession session = iterator.next();
+            if (nowMs - session.lastSeenMs < ttlMs) {
+                // Everything after this one was discovered later
+                break;
+            }
+            iterator.remove();
+            byUid.remove(PayloadEncoding.toHex(session.uid));
+            expired++;
+        }
+    }
+
+    private void trim() {
+        while (byHandle.size() > capacity) {
+            remove(byHandle.values().iterator().next());
+            evicted++;
+        }
+    }
+
+    private void remove(TagSession session) {
+        byHandle.remove(session.handle);
+        byUid.remove(PayloadEncoding.toHex(session.uid));
+    }
+}
@@ -0,0 +1,167 @@
+package app.capgo.nfc;
+
+import android.nfc.NdefMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a sequence of NDEF operations against one tag connection, stopping at the first failure.
+ *
+ * "Write, verify, lock" then costs a single connect instead of three, which leaves the tag less time to drift out of
+ * range. A freshly formatted tag cannot be reopened as {@code Ndef} on the same tap, so on a tag that still needs
+ * formatting a write followed by a lock, with only verify steps in between, is sent as one {@code formatReadOnly}
+ * command, and verify steps right after the format are satisfied by its success.
+ */
+final class TagTransaction {
+
+    static final String STEP_WRITE = "write";
+    static final String STEP_ERASE = "erase";
+    static final String STEP_READ = "read";
+    static final String STEP_VERIFY = "verify";
+    static final String STEP_MAKE_READ_ONLY = "makeReadOnly";
+
+    /** The operations a transaction needs from the connected tag. Implemented by {@link NdefTagWriter}. */
+    interface Target {
+        void write(NdefMessage message, boolean allowFormat) throws NfcOperationException;
+
+        NdefMessage read() throws NfcOperationException;
+
+        void makeReadOnly() throws NfcOperationException;
+
+        /** @return {@code true} when the tag is not NDEF formatted yet but can be. */
+        boolean needsFormat();
+
+        void formatReadOnly(NdefMessage message) throws NfcOperationException;
+    }
+
+    static final class Step {
+
+        final String op;
+        /** Message to write, for write and erase steps. */
+        final NdefMessage message;
+        final boolean allowFormat;
+
+        Step(String op, NdefMessage message, boolean allowFormat) {
+            this.op = op;
+            this.message = message;
+            this.allowFormat = allowFormat;
+        }
+
+        boolean writes() {
+            return STEP_WRITE.equals(op) || STEP_ERASE.equals(op);
+        }
+    }
+
+    static final class StepResult {
+
+        final String op;
+        /** Failure reason, or {@code null} on success. */
+        final String error;
+        /** Message read by read and verify steps. */
+        final NdefMessage message;
+        final double durationMs;
+
+        StepResult(String op, String error, NdefMessage message, double durationMs) {
+            this.op = op;
+            this.error = error;
+            this.message = message;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private TagTransaction() {}
+
+    /**
+     * Checks step ordering before any I/O.
+     *
+     * @return the problem, or {@code null} when the steps can run.
+     */
+    static String validate(List<Step> steps) {
+        boolean written = false;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (STEP_VERIFY.equals(step.op) && !written) {
+                return "Step " + i + ": verify must follow a write or erase step";
+            }
+            written |= step.writes();
+        }
+        return null;
+    }
+
+    /**
+     * @return one result per step that ran; the last one carries the error when the transaction stopped early.
+     */
+    static List<StepResult> run(Target target, List<Step> steps) {
+        List<StepResult> results = new ArrayList<>(steps.size());
+        NdefMessage written = null;
+        boolean formatted = false;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            long start = System.nanoTime();
+            NdefMessage read = null;
+            try {
+                if (step.writes()) {
+                    boolean format = step.allowFormat && target.needsFormat();
+                    int lock = format ? lockAfter(steps, i) : -1;
+                    if (lock >= 0) {
+                        target.formatReadOnly(step.message);
+                        results.add(new StepResult(step.op, null, null, elapsedMs(start)));
+                        for (int j = i + 1; j <= lock; j++) {
+                            results.add(new StepResult(steps.get(j).op, null, null, 0));
+                        }
+                        written = step.message;
+                        i = lock;
+                        continue;
+                    }
+                    target.write(step.message, step.allowFormat);
+                    written = step.message;
+                    formatted = format;
+                } else if (STEP_READ.equals(step.op)) {
+                    read = target.read();
+                } else if (STEP_VERIFY.equals(step.op)) {
+                    if (formatted) {
+                        // The format command only succeeds once the tag holds the message, and the tag cannot be read
+                        // back before it is discovered again
+                        results.add(new StepResult(step.op, null, null, elapsedMs(start)));
+                        continue;
+                    }
+                    read = target.read();
+                    if (!sameContent(read, written)) {
+                        throw new NfcOperationException("Verification failed: the tag content does not match the written message.");
+                    }
+                } else if (STEP_MAKE_READ_ONLY.equals(step.op)) {
+                    target.makeReadOnly();
+                }
+                results.add(new StepResult(step.op, null, read, elapsedMs(start)));
+            } catch (NfcOperationException e) {
+                results.add(new StepResult(step.op, e.getMessage(), null, elapsedMs(start)));
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the index of the lock step following the write at {@code writeIndex}, skipping verify steps, or
+     *     {@code -1} when the write is not followed by a lock.
+     */
+    private static int lockAfter(List<Step> steps, int writeIndex) {
+        int next = writeIndex + 1;
+        while (next < steps.size() && STEP_VERIFY.equals(steps.get(next).op)) {
+            next++;
+        }
+        return next < steps.size() && STEP_MAKE_READ_ONLY.equals(steps.get(next).op) ? next : -1;
+    }
+
+    private static boolean sameContent(NdefMessage read, NdefMessage written) {
+        if (read == written) {
+            return true;
+        }
+        return read != null && written != null && Arrays.equals(read.toByteArray(), written.toByteArray());
+    }
+
+    private static double elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,131 @@
+package app.capgo.nfc;
+
+import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
+import android.nfc.tech.MifareClassic;
+import android.nfc.tech.MifareUltralight;
+import android.nfc.tech.NfcA;
+import android.nfc.tech.NfcB;
+import android.nfc.tech.NfcF;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
+import java.io.IOException;
+
+/**
+ * Raw command access to one of the tag technologies that expose {@code transceive}.
+ *
+ * {@link TagTechnology} does not declare {@code transceive} or {@code setTimeout}, so each supported class is
+ * wrapped here once instead of switching on the technology at every call site.
+ */
+final class TagTransceiver implements TransceiveBatch.Channel {
+
+    private interface Exchange {
+        byte[] transceive(byte[] command) throws IOException;
+    }
+
+    private interface TimeoutSetter {
+        void setTimeout(int timeoutMs);
+    }
+
+    private final TagTechnology technology;
+    private final Exchange exchange;
+    // null for technologies whose timeout cannot be changed (NfcB, NfcV)
+    private final TimeoutSetter timeoutSetter;
+
+    private TagTransceiver(TagTechnology technology, Exchange exchange, TimeoutSetter timeoutSetter) {
+        this.technology = technology;
+        this.exchange = exchange;
+        this.timeoutSetter = timeoutSetter;
+    }
+
+    /**
+     * @param tech simple class name of the technology, e.g. {@code IsoDep} or {@code NfcA}.
+     */
+    static TagTransceiver get(Tag tag, String tech) throws NfcOperationException {
+        TagTransceiver transceiver = create(tag, tech);
+        if (transceiver == null) {
+            throw new NfcOperationException("Tag does not support " + tech + ".");
+        }
+        return transceiver;
+    }
+
+    static boolean isSupportedTech(String tech) {
+        switch (tech) {
+            case "NfcA":
+            case "NfcB":
+            case "NfcF":
+            case "NfcV":
+            case "IsoDep":
+            case "MifareUltralight":
+            case "MifareClassic":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static TagTransceiver create(Tag tag, String tech) {
+        switch (tech) {
+            case "NfcA": {
+                NfcA nfcA = NfcA.get(tag);
+                return nfcA == null ? null : new TagTransceiver(nfcA, nfcA::transceive, nfcA::setTimeout);
+            }
+            case "NfcB": {
+                NfcB nfcB = NfcB.get(tag);
+                return nfcB == null ? null : new TagTransceiver(nfcB, nfcB::transceive, null);
+            }
+            case "NfcF": {
+                NfcF nfcF = NfcF.get(tag);
+                return nfcF == null ? null : new TagTransceiver(nfcF, nfcF::transceive, nfcF::setTimeout);
+            }
+            case "NfcV": {
+                NfcV nfcV = NfcV.get(tag);
+                return nfcV == null ? null : new TagTransceiver(nfcV, nfcV::transceive, null);
+            }
+            case "IsoDep": {
+                IsoDep isoDep = IsoDep.get(tag);
+                return isoDep == null ? null : new TagTransceiver(isoDep, isoDep::transceive, isoDep::setTimeout);
+            }
+            case "MifareUltralight": {
+                MifareUltralight ultralight = MifareUltralight.get(tag);
+                return ultralight == null ? null : new TagTransceiver(ultralight, ultralight::transceive, ultralight::setTimeout);
+            }
+            case "MifareClassic": {
+                MifareClassic classic = MifareClassic.get(tag);
+                return classic == null ? null : new TagTransceiver(classic, classic::transceive, classic::setTimeout);
+            }
+            default:
+                return null;
+        }
+    }
+
+    void connect() throws IOException {
+        if (!technology.isConnected()) {
+            technology.connect();
+        }
+    }
+
+    @Override
+    public byte[] transceive(byte[] command) throws IOException {
+        return exchange.transceive(command);
+    }
+
+    /**
+     * @return {@code false} when the technology does not support changing its timeout.
+     */
+    boolean setTimeout(int timeoutMs) {
+        if (timeoutSetter == null) {
+            return false;
+        }
+        timeoutSetter.setTimeout(timeoutMs);
+        return true;
+    }
+
+    void close() {
+        try {
+            technology.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+}
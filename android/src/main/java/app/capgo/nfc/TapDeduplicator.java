@@ -0,0 +1,118 @@
+package app.capgo.nfc;
+
+import com.getcapacitor.JSObject;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses repeated discoveries of the same tag within a time window.
+ *
+ * Reader mode re-discovers a tag that is held near the phone or re-enters the field. With the {@code uid} key the
+ * check runs before any tag I/O. With the {@code uid+contentHash} key the tag is still read, but an unchanged
+ * message is dropped before it is serialized and sent across the bridge.
+ *
+ * The window slides: every sighting of a key extends it, so a tag resting on the reader stays suppressed.
+ */
+final class TapDeduplicator {
+
+    static final String KEY_UID = "uid";
+    static final String KEY_UID_AND_CONTENT = "uid+contentHash";
+
+    private static final int MAX_ENTRIES = 64;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long windowMs;
+    private final boolean includeContent;
+    // Insertion order equals last-seen order because entries are removed before being re-inserted
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<>();
+    private long suppressed;
+
+    TapDeduplicator(long windowMs, String key) {
+        if (!KEY_UID.equals(key) && !KEY_UID_AND_CONTENT.equals(key)) {
+            throw new IllegalArgumentException("Unsupported androidDedupKey: " + key);
+        }
+        this.windowMs = windowMs;
+        this.includeContent = KEY_UID_AND_CONTENT.equals(key);
+    }
+
+    boolean includesContent() {
+        return includeContent;
+    }
+
+    /**
+     * Checked before any tag I/O. Always {@code false} when the key includes the content hash.
+     */
+    synchronized boolean isDuplicateTap(byte[] uid, long nowMs) {
+        if (includeContent) {
+            return false;
+        }
+        return check(PayloadEncoding.toHex(uid), nowMs);
+    }
+
+    /**
+     * Checked after the tag was read and before it is serialized. Always {@code false} for the {@code uid} key.
+     *
+     * @param ndefBytes encoded NDEF message, or {@code null} when the tag has none.
+     */
+    synchronized boolean isDuplicateContent(byte[] uid, byte[] ndefBytes, long nowMs) {
+        if (!includeContent) {
+            return false;
+        }
+        return check(PayloadEncoding.toHex(uid) + "#" + Long.toHexString(contentHash(ndefBytes)), nowMs);
+    }
+
+    synchronized long suppressedCount() {
+        return suppressed;
+    }
+
+    synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("windowMs", windowMs);
+        result.put("key", includeContent ? KEY_UID_AND_CONTENT : KEY_UID);
+        result.put("suppressed", suppressed);
+        return result;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the message bytes.
+     */
+    static long contentHash(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        if (bytes != null) {
+            for (byte b : bytes) {
+                hash ^= b & 0xFF;
+                hash *= FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    private boolean check(String key, long nowMs) {
+        evictExpired(nowMs);
+        Long previous = lastSeen.remove(key);
+        lastSeen.put(key, nowMs);
+        if (lastSeen.size() > MAX_ENTRIES) {
+            Iterator<String> eldest = lastSeen.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        if (previous != null) {
+            suppressed++;
+            return true;
+        }
+        return false;
+    }
+
+    private void evictExpired(long nowMs) {
+        Iterator<Map.Entry<String, Long>> iterator = lastSeen.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (nowMs - iterator.next().getValue() < windowMs) {
+                // Entries are ordered by last sighting, so everything after this one is newer
+                break;
+            }
+            iterator.remove();
+        }
+    }
+}
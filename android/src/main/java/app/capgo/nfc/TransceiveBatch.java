@@ -0,0 +1,64 @@
+package app.capgo.nfc;
+
+import android.nfc.TagLostException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a list of raw commands back to back over an already connected channel.
+ */
+final class TransceiveBatch {
+
+    interface Channel {
+        byte[] transceive(byte[] command) throws IOException;
+    }
+
+    static final class Result {
+
+        /** Tag response, or {@code null} when the command failed. */
+        final byte[] response;
+        /** Failure reason, or {@code null} on success. */
+        final String error;
+        final double durationMs;
+
+        Result(byte[] response, String error, double durationMs) {
+            this.response = response;
+            this.error = error;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private TransceiveBatch() {}
+
+    /**
+     * Sends {@code commands} in order. A failed command ends the batch when {@code stopOnError} is set; a lost tag
+     * always ends it since no further command can succeed.
+     *
+     * @return one result per command that was sent.
+     */
+    static List<Result> run(Channel channel, List<byte[]> commands, boolean stopOnError) {
+        List<Result> results = new ArrayList<>(commands.size());
+        for (byte[] command : commands) {
+            long start = System.nanoTime();
+            try {
+                byte[] response = channel.transceive(command);
+                results.add(new Result(response != null ? response : new byte[0], null, elapsedMs(start)));
+            } catch (TagLostException | SecurityException e) {
+                results.add(new Result(null, "Tag connection lost.", elapsedMs(start)));
+                break;
+            } catch (IOException | IllegalStateException e) {
+                String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                results.add(new Result(null, reason, elapsedMs(start)));
+                if (stopOnError) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static double elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
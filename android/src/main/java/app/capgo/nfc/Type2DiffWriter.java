@@ -0,0 +1,178 @@
+package app.capgo.nfc;
+
+import android.nfc.tech.MifareUltralight;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes an NDEF message to a Type 2 tag by rewriting only the 4-byte pages that differ from the known content.
+ *
+ * The new NDEF TLV is laid over the {@link Type2TagImage} captured by the last read at the same TLV offset, and every
+ * page whose bytes are unchanged is skipped. An identical message therefore costs no WRITE command at all.
+ *
+ * Crash safety follows the NFC Forum Type 2 Tag Operation procedure: when message pages change, the TLV length is
+ * first set to zero, the changed pages are written, and the page holding the length byte is committed last. A tag
+ * removed half way through holds an empty NDEF message rather than a torn one.
+ */
+final class Type2DiffWriter {
+
+    static final class PageWrite {
+
+        final int page;
+        final byte[] bytes;
+
+        PageWrite(int page, byte[] bytes) {
+            this.page = page;
+            this.bytes = bytes;
+        }
+    }
+
+    static final class Plan {
+
+        /** WRITE commands in the order they must be sent. */
+        final List<PageWrite> writes;
+        /** Pages covered by the new TLV that already hold the right bytes. */
+        final int pagesSkipped;
+        /** Tag content once every write succeeded. */
+        final Type2TagImage result;
+
+        Plan(List<PageWrite> writes, int pagesSkipped, Type2TagImage result) {
+            this.writes = writes;
+            this.pagesSkipped = pagesSkipped;
+            this.result = result;
+        }
+    }
+
+    private Type2DiffWriter() {}
+
+    /**
+     * @return the NDEF TLV header and value for {@code ndef}, without a terminator.
+     */
+    static byte[] encodeTlv(byte[] ndef) {
+        int headerSize = ndef.length < 0xFF ? 2 : 4;
+        byte[] tlv = new byte[headerSize + ndef.length];
+        tlv[0] = (byte) Type2TagReader.TLV_NDEF;
+        if (headerSize == 2) {
+            tlv[1] = (byte) ndef.length;
+        } else {
+            tlv[1] = (byte) 0xFF;
+            tlv[2] = (byte) (ndef.length >> 8);
+            tlv[3] = (byte) ndef.length;
+        }
+        System.arraycopy(ndef, 0, tlv, headerSize, ndef.length);
+        return tlv;
+    }
+
+    /**
+     * Computes the page writes that turn the content of {@code image} into the NDEF message {@code ndef}.
+     *
+     * @return the plan, or {@code null} when the message must be written in full instead: the bytes preceding the
+     *     NDEF TLV in its first page are unknown, or the new TLV would cross a lock or reserved area.
+     */
+    static Plan plan(Type2TagImage image, byte[] ndef) throws NfcOperationException {
+        int pageSize = Type2TagReader.PAGE_SIZE;
+        int offset = image.layout.ndefTlvOffset;
+        int firstPage = offset / pageSize;
+        if (!image.isKnown(firstPage * pageSize, offset + 2)) {
+            return null;
+        }
+
+        byte[] tlv = encodeTlv(ndef);
+        int areaSize = image.layout.dataAreaSize();
+        if (offset + tlv.length > areaSize) {
+            throw new NfcOperationException("Tag capacity is insufficient for the provided message.");
+        }
+        byte[] current = image.copyData();
+        byte[] target = image.copyData();
+        System.arraycopy(tlv, 0, target, offset, tlv.length);
+        int end = offset + tlv.length;
+        if (end < areaSize) {
+            target[end++] = (byte) Type2TagReader.TLV_TERMINATOR;
+        }
+        if (Type2TlvWalker.intersects(image.layout.reservedAreas, offset, end)) {
+            return null;
+        }
+        int lastPage = (end - 1) / pageSize;
+        int lengthByte = offset + 1;
+        int commitPage = lengthByte / pageSize;
+
+        List<PageWrite> body = new ArrayList<>();
+        boolean commitChanged = false;
+        int skipped = 0;
+        for (int page = firstPage; page <= lastPage; page++) {
+            int start = page * pageSize;
+            boolean unchanged =
+                image.isKnown(start, start + pageSize) &&
+                Arrays.equals(Arrays.copyOfRange(current, start, start + pageSize), Arrays.copyOfRange(target, start, start + pageSize));
+            if (page == commitPage) {
+                commitChanged = !unchanged;
+            } else if (unchanged) {
+                skipped++;
+            } else {
+                body.add(pageWrite(target, page));
+            }
+        }
+
+        List<PageWrite> writes = new ArrayList<>();
+        if (!body.isEmpty() && (!image.isKnown(lengthByte, lengthByte + 1) || current[lengthByte] != 0)) {
+            // Invalidate the message before touching its pages
+            byte[] invalidated = Arrays.copyOf(target, target.length);
+            invalidated[lengthByte] = 0;
+            writes.add(pageWrite(invalidated, commitPage));
+            commitChanged = true;
+        }
+        writes.addAll(body);
+        if (commitChanged) {
+            writes.add(pageWrite(target, commitPage));
+        } else {
+            skipped++;
+        }
+
+        Type2TagImage result = new Type2TagImage(
+            image.uid,
+            image.layout,
+            target,
+            image.knownStart(),
+            Math.max(image.knownEnd(), (lastPage + 1) * pageSize)
+        );
+        return new Plan(Collections.unmodifiableList(writes), skipped, result);
+    }
+
+    /**
+     * Sends the planned WRITE commands over a fresh connection.
+     *
+     * @param timeoutMs per-command timeout, or {@code 0} to keep the platform default.
+     */
+    static void apply(MifareUltralight mifare, Plan plan, int timeoutMs) throws NfcOperationException {
+        if (plan.writes.isEmpty()) {
+            return;
+        }
+        try {
+            mifare.connect();
+            if (timeoutMs > 0) {
+                mifare.setTimeout(timeoutMs);
+            }
+            for (PageWrite write : plan.writes) {
+                mifare.writePage(write.page, write.bytes);
+            }
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        } finally {
+            try {
+                mifare.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+
+    private static PageWrite pageWrite(byte[] data, int page) {
+        int start = page * Type2TagReader.PAGE_SIZE;
+        return new PageWrite(Type2TagLayout.FIRST_DATA_PAGE + page, Arrays.copyOfRange(data, start, start + Type2TagReader.PAGE_SIZE));
+    }
+}
@@ -0,0 +1,47 @@
+package app.capgo.nfc;
+
+import java.util.Arrays;
+
+/**
+ * The bytes of a Type 2 tag data area that are known from the last read or write, used to plan differential writes.
+ *
+ * Offsets are relative to the start of page 4, like {@link Type2TagLayout#ndefTlvOffset}. Only bytes in
+ * {@code [knownStart, knownEnd)} reflect the tag content; the rest of the array is unspecified.
+ */
+final class Type2TagImage {
+
+    final byte[] uid;
+    final Type2TagLayout layout;
+    private final byte[] data;
+    private final int knownStart;
+    private final int knownEnd;
+
+    Type2TagImage(byte[] uid, Type2TagLayout layout, byte[] data, int knownStart, int knownEnd) {
+        this.uid = uid;
+        this.layout = layout;
+        this.data = data;
+        this.knownStart = knownStart;
+        this.knownEnd = knownEnd;
+    }
+
+    boolean belongsTo(byte[] tagUid) {
+        return Arrays.equals(uid, tagUid);
+    }
+
+    boolean isKnown(int start, int end) {
+        return start >= knownStart && end <= knownEnd;
+    }
+
+    int knownStart() {
+        return knownStart;
+    }
+
+    int knownEnd() {
+        return knownEnd;
+    }
+
+    /** Copy of the whole data area; unknown bytes are zero or stale. */
+    byte[] copyData() {
+        return Arrays.copyOf(data, data.length);
+    }
+}
@@ -0,0 +1,217 @@
+package app.capgo.nfc;
+
+/**
+ * Memory layout of an NFC Forum Type 2 tag (MIFARE Ultralight / NTAG), as discovered on a previous tap.
+ *
+ * Pages are 4 bytes. The user data area starts at page 4 and ends at {@link #userEndPage} (inclusive).
+ * Offsets such as {@link #ndefTlvOffset} are byte offsets from the start of page 4.
+ */
+final class Type2TagLayout {
+
+    static final int FIRST_DATA_PAGE = 4;
+    static final int CC_PAGE = 3;
+    static final byte CC_MAGIC = (byte) 0xE1;
+    // READ and FAST_READ address pages with a single byte
+    static final int MAX_ADDRESSABLE_PAGE = 0xFF;
+
+    private static final String SERIAL_VERSION = "2";
+
+    /** GET_VERSION response, or {@code null} when the tag does not support the command. */
+    final byte[] version;
+    /** Data area size announced by the capability container (CC byte 2 * 8). */
+    final int ccDataSize;
+    /** Total number of pages, or {@code -1} when the product is unknown. */
+    final int totalPages;
+    /** Last page of the user data area, inclusive. */
+    final int userEndPage;
+    /** Page holding the dynamic lock bytes, or {@code -1} when the tag has none or the product is unknown. */
+    final int dynamicLockPage;
+    /** First configuration page, or {@code -1} when the product is unknown. */
+    final int configPage;
+    /** Byte offset of the NDEF TLV from the start of page 4. */
+    final int ndefTlvOffset;
+    /**
+     * Lock and reserved bytes inside the data area announced by Lock Control and Memory Control TLVs, as sorted
+     * {@code [start, end)} pairs. TLV contents skip them.
+     */
+    final int[] reservedAreas;
+
+    Type2TagLayout(
+        byte[] version,
+        int ccDataSize,
+        int totalPages,
+        int userEndPage,
+        int dynamicLockPage,
+        int configPage,
+        int ndefTlvOffset,
+        int[] reservedAreas
+    ) {
+        this.version = version;
+        this.ccDataSize = ccDataSize;
+        this.totalPages = totalPages;
+        this.userEndPage = userEndPage;
+        this.dynamicLockPage = dynamicLockPage;
+        this.configPage = configPage;
+        this.ndefTlvOffset = ndefTlvOffset;
+        this.reservedAreas = reservedAreas;
+    }
+
+    /**
+     * Builds the layout from the GET_VERSION response (may be {@code null}) and the capability container page.
+     *
+     * @return the layout, or {@code null} when the CC does not describe an NDEF formatted tag.
+     */
+    static Type2TagLayout fromCapabilityContainer(byte[] version, byte[] cc, int ndefTlvOffset) {
+        if (cc == null || cc.length < 4 || cc[0] != CC_MAGIC) {
+            return null;
+        }
+        int ccDataSize = (cc[2] & 0xFF) * 8;
+        int[] product = productLayout(version);
+        int totalPages = -1;
+        int dynamicLockPage = -1;
+        int configPage = -1;
+        int userEndPage;
+        if (product != null) {
+            totalPages = product[0];
+            dynamicLockPage = product[1];
+            configPage = product[2];
+            userEndPage = (dynamicLockPage >= 0 ? dynamicLockPage : configPage) - 1;
+        } else {
+            userEndPage = CC_PAGE + ccDataSize / 4;
+        }
+        userEndPage = Math.min(userEndPage, MAX_ADDRESSABLE_PAGE);
+        return new Type2TagLayout(
+            version,
+            ccDataSize,
+            totalPages,
+            userEndPage,
+            dynamicLockPage,
+            configPage,
+            ndefTlvOffset,
+            Type2TlvWalker.NO_RESERVED_AREAS
+        );
+    }
+
+    /**
+     * Known NXP products keyed by GET_VERSION product type and storage size byte.
+     *
+     * @return {@code {totalPages, dynamicLockPage, configPage}} or {@code null} for unknown products.
+     */
+    static int[] productLayout(byte[] version) {
+        if (version == null || version.length < 8 || version[1] != 0x04) {
+            return null;
+        }
+        int productType = version[2] & 0xFF;
+        int storageSize = version[6] & 0xFF;
+        if (productType != 0x03 && productType != 0x04) {
+            return null;
+        }
+        switch (storageSize) {
+            case 0x0B:
+                // NTAG210 / MF0UL11
+                return new int[] { 20, -1, 0x10 };
+            case 0x0E:
+                // NTAG212 / MF0UL21
+                return new int[] { 41, 0x24, 0x25 };
+            case 0x0F:
+                // NTAG213
+                return productType == 0x04 ? new int[] { 45, 0x28, 0x29 } : null;
+            case 0x11:
+                // NTAG215
+                return productType == 0x04 ? new int[] { 135, 0x82, 0x83 } : null;
+            case 0x13:
+                // NTAG216
+                return productType == 0x04 ? new int[] { 231, 0xE2, 0xE3 } : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Tags that answer GET_VERSION (Ultralight EV1, NTAG21x) also implement FAST_READ.
+     */
+    boolean supportsFastRead() {
+        return version != null;
+    }
+
+    /** Size of the user data area in bytes. */
+    int dataAreaSize() {
+        return (userEndPage - FIRST_DATA_PAGE + 1) * 4;
+    }
+
+    Type2TagLayout withNdefTlvOffset(int offset) {
+        return withTlvLayout(offset, reservedAreas);
+    }
+
+    Type2TagLayout withTlvLayout(int offset, int[] reserved) {
+        return new Type2TagLayout(version, ccDataSize, totalPages, userEndPage, dynamicLockPage, configPage, offset, reserved);
+    }
+
+    String serialize() {
+        return String.join(
+            ";",
+            SERIAL_VERSION,
+            version == null ? "" : PayloadEncoding.toHex(version),
+            String.valueOf(ccDataSize),
+            String.valueOf(totalPages),
+            String.valueOf(userEndPage),
+            String.valueOf(dynamicLockPage),
+            String.valueOf(configPage),
+            String.valueOf(ndefTlvOffset),
+            serializeAreas(reservedAreas)
+        );
+    }
+
+    /**
+     * @return the layout, or {@code null} if {@code value} was written by an incompatible version.
+     */
+    static Type2TagLayout deserialize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(";", -1);
+        if (parts.length != 9 || !SERIAL_VERSION.equals(parts[0])) {
+            return null;
+        }
+        try {
+            return new Type2TagLayout(
+                parts[1].isEmpty() ? null : PayloadEncoding.fromHex(parts[1]),
+                Integer.parseInt(parts[2]),
+                Integer.parseInt(parts[3]),
+                Integer.parseInt(parts[4]),
+                Integer.parseInt(parts[5]),
+                Integer.parseInt(parts[6]),
+                Integer.parseInt(parts[7]),
+                deserializeAreas(parts[8])
+            );
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String serializeAreas(int[] areas) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < areas.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(areas[i]);
+        }
+        return builder.toString();
+    }
+
+    private static int[] deserializeAreas(String value) {
+        if (value.isEmpty()) {
+            return Type2TlvWalker.NO_RESERVED_AREAS;
+        }
+        String[] parts = value.split(",");
+        if (parts.length % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of reserved area bounds");
+        }
+        int[] areas = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            areas[i] = Integer.parseInt(parts[i]);
+        }
+        return areas;
+    }
+}
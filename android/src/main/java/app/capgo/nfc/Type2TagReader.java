@@ -0,0 +1,413 @@
+package app.capgo.nfc;
+
+import android.nfc.tech.MifareUltralight;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the NDEF message of a MIFARE Ultralight / NTAG tag by reading raw pages.
+ *
+ * Based on NFC Forum Type 2 Tag Operation specification:
+ * - The capability container (CC) in page 3 announces the size of the data area
+ * - NDEF data is stored in TLV (Type-Length-Value) format in the data area starting at page 4
+ * - TLV Type 0x03 indicates NDEF message, NULL (0x00), Lock Control (0x01) and Memory Control (0x02) TLVs may precede it
+ * - Length encoding: single byte if < 0xFF, or 0xFF + 2-byte length if >= 0xFF
+ * - Lock Control and Memory Control TLVs can reserve bytes inside the data area, which the NDEF value skips
+ *
+ * The tag is identified with GET_VERSION (Ultralight EV1, NTAG21x) so the exact size of the user area is known.
+ * The resulting {@link Type2TagLayout} is stored in an optional {@link TagLayoutCache}, letting a repeat tap
+ * start reading at the NDEF TLV without parsing the CC again.
+ *
+ * When FAST_READ is enabled, pages are fetched with the NTAG / Ultralight EV1 FAST_READ command (0x3A), which
+ * returns as many pages per round trip as {@code getMaxTransceiveLength()} allows instead of the 4 pages returned
+ * by READ. Tags that reject FAST_READ are re-activated and read with {@link MifareUltralight#readPages(int)}.
+ *
+ * Commands go through a {@link Channel}, normally {@link #channel(MifareUltralight)}.
+ *
+ * References:
+ * - Android MifareUltralight API: https://developer.android.com/reference/android/nfc/tech/MifareUltralight
+ * - NFC Forum Type 2 Tag Operation specification
+ * - NXP NTAG213/215/216 datasheet, sections 10.1 (GET_VERSION) and 10.3 (FAST_READ)
+ */
+final class Type2TagReader {
+
+    private static final String TAG = "CapacitorNfcType2";
+
+    static final byte CMD_GET_VERSION = 0x60;
+    static final byte CMD_FAST_READ = 0x3A;
+    static final int PAGE_SIZE = 4;
+
+    static final int TLV_NDEF = Type2TlvWalker.TLV_NDEF;
+    static final int TLV_TERMINATOR = Type2TlvWalker.TLV_TERMINATOR;
+
+    // READ always returns 4 pages (16 bytes)
+    private static final int READ_PAGES_SIZE = 16;
+    // With a known layout, the first FAST_READ also fetches the start of the message
+    private static final int HEADER_PREFETCH_SIZE = 64;
+
+    /** The NfcA commands sent by the reader; {@link MifareUltralight} implements them for real tags. */
+    interface Channel extends TransceiveBatch.Channel {
+        byte[] readPages(int pageOffset) throws IOException;
+
+        void connect() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private final Channel channel;
+    private final byte[] uid;
+    private final int tagType;
+    private final int maxTransceiveLength;
+    private final boolean fastReadEnabled;
+    private final TagLayoutCache layoutCache;
+    private final ReadStats stats;
+
+    private Type2TagLayout layout;
+    // User data area (page 4 to layout.userEndPage); bytes [loadedStart, loadedEnd) have been read
+    private byte[] data;
+    private int loadedStart;
+    private int loadedEnd;
+    private boolean fastReadUsable;
+    private boolean usedFastRead;
+    private boolean ndefTlvFound;
+
+    Type2TagReader(MifareUltralight mifare, boolean fastReadEnabled, TagLayoutCache layoutCache, ReadStats stats) {
+        this(
+            channel(mifare),
+            mifare.getTag().getId(),
+            mifare.getType(),
+            mifare.getMaxTransceiveLength(),
+            fastReadEnabled,
+            layoutCache,
+            stats
+        );
+    }
+
+    /**
+     * @param tagType one of the {@link MifareUltralight} {@code TYPE_} constants.
+     */
+    Type2TagReader(
+        Channel channel,
+        byte[] uid,
+        int tagType,
+        int maxTransceiveLength,
+        boolean fastReadEnabled,
+        TagLayoutCache layoutCache,
+        ReadStats stats
+    ) {
+        this.channel = channel;
+        this.uid = uid;
+        this.tagType = tagType;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.fastReadEnabled = fastReadEnabled;
+        this.layoutCache = layoutCache;
+        this.stats = stats;
+    }
+
+    static Channel channel(MifareUltralight mifare) {
+        return new Channel() {
+            @Override
+            public byte[] transceive(byte[] command) throws IOException {
+                return mifare.transceive(command);
+            }
+
+            @Override
+            public byte[] readPages(int pageOffset) throws IOException {
+                return mifare.readPages(pageOffset);
+            }
+
+            @Override
+            public void connect() throws IOException {
+                mifare.connect();
+            }
+
+            @Override
+            public void close() throws IOException {
+                mifare.close();
+            }
+        };
+    }
+
+    /**
+     * Number of pages requested per FAST_READ so that the response fits in a single transceive frame.
+     */
+    static int fastReadPagesPerCommand(int maxTransceiveLength) {
+        if (maxTransceiveLength <= 0) {
+            return READ_PAGES_SIZE / PAGE_SIZE;
+        }
+        // Leave room for the two CRC bytes some controllers count against the frame size
+        return Math.max(1, (maxTransceiveLength - 2) / PAGE_SIZE);
+    }
+
+    /**
+     * @return the encoded NDEF message stored in the NDEF TLV, or {@code null} when there is none or the read failed.
+     *     The bytes are not validated; decode them with {@link NdefCodec}.
+     */
+    byte[] read() {
+        try {
+            // Connect immediately - tag can become stale quickly
+            long connectStart = System.nanoTime();
+            channel.connect();
+            stats.recordConnect(System.nanoTime() - connectStart);
+
+            // Log tag variant for debugging
+            Log.d(TAG, "MIFARE Ultralight tag variant: " + variantName(tagType));
+
+            byte[] version = readVersion(uid);
+            String cacheKey = TagLayoutCache.key(uid, version);
+
+            byte[] message = null;
+            boolean readFromCachedLayout = false;
+            Type2TagLayout cached = layoutCache != null ? layoutCache.get(cacheKey) : null;
+            if (cached != null) {
+                begin(cached, cached.ndefTlvOffset - cached.ndefTlvOffset % PAGE_SIZE);
+                if (isNdefTlvAt(cached.ndefTlvOffset)) {
+                    readFromCachedLayout = true;
+                    ndefTlvFound = true;
+                    message = readNdefTlv();
+                } else {
+                    // The tag was rewritten with a different TLV layout since it was cached
+                    layoutCache.remove(cacheKey);
+                }
+            }
+
+            if (!readFromCachedLayout) {
+                Type2TagLayout discovered = discoverLayout(version);
+                if (discovered != null) {
+                    ndefTlvFound = true;
+                    if (layoutCache != null) {
+                        layoutCache.put(cacheKey, discovered);
+                    }
+                    message = readNdefTlv();
+                }
+            }
+
+            channel.close();
+            stats.setMethod(usedFastRead ? ReadStats.METHOD_FAST_READ : ReadStats.METHOD_READ_PAGES);
+            Log.d(TAG, "Type 2 read " + stats + (readFromCachedLayout ? " (cached layout)" : ""));
+            return message;
+        } catch (SecurityException e) {
+            // Tag became stale - this happens if tag is removed or too much time passed
+            ndefTlvFound = false;
+            stats.setFailure("Tag connection lost.");
+            closeQuietly();
+            return null;
+        } catch (IOException e) {
+            ndefTlvFound = false;
+            stats.setFailure("Failed to read NDEF message.");
+            closeQuietly();
+            return null;
+        }
+    }
+
+    /**
+     * @return the data area bytes fetched by {@link #read()}, or {@code null} when no NDEF TLV was located.
+     */
+    Type2TagImage image() {
+        if (!ndefTlvFound) {
+            return null;
+        }
+        return new Type2TagImage(uid, layout, data, loadedStart, loadedEnd);
+    }
+
+    /**
+     * Sends GET_VERSION, skipping tags known not to support it.
+     *
+     * @return the 8-byte version, or {@code null} when the tag does not support the command.
+     */
+    private byte[] readVersion(byte[] uid) throws IOException {
+        if (tagType == MifareUltralight.TYPE_ULTRALIGHT_C) {
+            return null;
+        }
+        if (layoutCache != null && layoutCache.contains(TagLayoutCache.key(uid, null))) {
+            return null;
+        }
+        try {
+            byte[] response = channel.transceive(new byte[] { CMD_GET_VERSION });
+            stats.recordTransceive(response == null ? 0 : response.length);
+            if (response != null && response.length >= 8) {
+                return Arrays.copyOf(response, 8);
+            }
+        } catch (IOException e) {
+            // Not supported - handled below
+        }
+        // A rejected command sends NTAG/Ultralight tags back to IDLE, so re-activate before continuing
+        reactivate();
+        return null;
+    }
+
+    /**
+     * Reads the capability container and walks the TLVs at the start of the data area to find the NDEF TLV.
+     */
+    private Type2TagLayout discoverLayout(byte[] version) throws IOException {
+        // READ of page 3 returns the CC followed by the first 12 bytes of the data area
+        byte[] pages = channel.readPages(Type2TagLayout.CC_PAGE);
+        stats.recordTransceive(pages == null ? 0 : pages.length);
+        if (pages == null || pages.length < READ_PAGES_SIZE) {
+            return null;
+        }
+
+        Type2TagLayout discovered = Type2TagLayout.fromCapabilityContainer(version, pages, 0);
+        if (discovered == null) {
+            Log.d(TAG, "Tag is not NDEF formatted (missing capability container)");
+            return null;
+        }
+        begin(discovered, 0);
+        loadedEnd = Math.min(READ_PAGES_SIZE - PAGE_SIZE, data.length);
+        System.arraycopy(pages, PAGE_SIZE, data, 0, loadedEnd);
+
+        Type2TlvWalker.Result tlvs = Type2TlvWalker.walk(data, this::ensureLoaded);
+        if (tlvs == null) {
+            return null;
+        }
+        layout = discovered.withTlvLayout(tlvs.ndefTlvOffset, tlvs.reservedAreas);
+        return layout;
+    }
+
+    private boolean isNdefTlvAt(int offset) throws IOException {
+        if (offset >= data.length) {
+            return false;
+        }
+        ensureLoaded(Math.max(offset + 4, fastReadUsable ? loadedStart + HEADER_PREFETCH_SIZE : 0));
+        return (data[offset] & 0xFF) == TLV_NDEF;
+    }
+
+    private byte[] readNdefTlv() {
+        int[] areas = layout.reservedAreas;
+        int[] length;
+        try {
+            length = Type2TlvWalker.readLength(data, areas, this::ensureLoaded, layout.ndefTlvOffset);
+        } catch (IOException e) {
+            return null;
+        }
+        if (length == null || length[0] == 0) {
+            return null;
+        }
+        int ndefLength = length[0];
+        int ndefStart = length[1];
+        // Only the pages the message covers are fetched
+        int ndefEnd = Type2TlvWalker.lastPosition(areas, ndefStart, ndefLength) + 1;
+
+        if (ndefEnd > data.length) {
+            Log.w(TAG, String.format("NDEF TLV length %d exceeds the %d byte data area", ndefLength, data.length));
+            return null;
+        }
+
+        try {
+            ensureLoaded(ndefEnd);
+        } catch (IOException e) {
+            // Incomplete read - tag was removed or stopped answering
+            stats.setFailure("Failed to read NDEF message.");
+            Log.w(
+                TAG,
+                String.format(
+                    "Incomplete NDEF read: read %d bytes, needed %d bytes (stopped at page %d, variant: %s)",
+                    loadedEnd - ndefStart,
+                    ndefLength,
+                    Type2TagLayout.FIRST_DATA_PAGE + loadedEnd / PAGE_SIZE,
+                    variantName(tagType)
+                )
+            );
+            return null;
+        }
+
+        return Type2TlvWalker.extract(data, areas, ndefStart, ndefLength);
+    }
+
+    private void begin(Type2TagLayout layout, int startByte) {
+        this.layout = layout;
+        this.data = new byte[layout.dataAreaSize()];
+        this.loadedStart = startByte;
+        this.loadedEnd = startByte;
+        this.fastReadUsable = fastReadEnabled && layout.supportsFastRead();
+    }
+
+    /**
+     * Reads pages until {@code endByte} bytes of the data area are available, never past the user area.
+     */
+    private void ensureLoaded(int endByte) throws IOException {
+        endByte = Math.min(endByte, data.length);
+        if (endByte <= loadedEnd) {
+            return;
+        }
+        int lastPage = Type2TagLayout.FIRST_DATA_PAGE + (endByte - 1) / PAGE_SIZE;
+        if (fastReadUsable && fastRead(lastPage)) {
+            return;
+        }
+        while (loadedEnd < endByte) {
+            byte[] pages = channel.readPages(Type2TagLayout.FIRST_DATA_PAGE + loadedEnd / PAGE_SIZE);
+            stats.recordTransceive(pages == null ? 0 : pages.length);
+            if (pages == null || pages.length == 0) {
+                throw new IOException("Empty READ response");
+            }
+            // READ wraps around at the end of memory, so only keep what belongs to the data area
+            int count = Math.min(pages.length, data.length - loadedEnd);
+            System.arraycopy(pages, 0, data, loadedEnd, count);
+            loadedEnd += count;
+        }
+    }
+
+    /**
+     * Fills the data area up to and including {@code lastPage} with FAST_READ commands.
+     *
+     * @return {@code false} if the tag rejected FAST_READ before it ever worked on it and READ must be used
+     *     instead. Once FAST_READ worked, a failure is an I/O error rather than missing support.
+     */
+    private boolean fastRead(int lastPage) throws IOException {
+        int pagesPerCommand = fastReadPagesPerCommand(maxTransceiveLength);
+        while (Type2TagLayout.FIRST_DATA_PAGE + loadedEnd / PAGE_SIZE <= lastPage) {
+            int page = Type2TagLayout.FIRST_DATA_PAGE + loadedEnd / PAGE_SIZE;
+            int endPage = Math.min(lastPage, page + pagesPerCommand - 1);
+            int expectedLength = (endPage - page + 1) * PAGE_SIZE;
+            byte[] response;
+            try {
+                response = channel.transceive(new byte[] { CMD_FAST_READ, (byte) page, (byte) endPage });
+            } catch (IOException e) {
+                if (usedFastRead) {
+                    throw e;
+                }
+                response = null;
+            }
+            stats.recordTransceive(response == null ? 0 : response.length);
+            if (response == null || response.length < expectedLength) {
+                // A 1-byte response is a NAK
+                if (usedFastRead) {
+                    throw new IOException("Short FAST_READ response for pages " + page + "-" + endPage);
+                }
+                Log.d(TAG, "FAST_READ not supported by tag, falling back to READ");
+                fastReadUsable = false;
+                reactivate();
+                return false;
+            }
+            System.arraycopy(response, 0, data, loadedEnd, expectedLength);
+            loadedEnd += expectedLength;
+            usedFastRead = true;
+        }
+        return true;
+    }
+
+    private void reactivate() throws IOException {
+        channel.close();
+        channel.connect();
+    }
+
+    private static String variantName(int tagType) {
+        switch (tagType) {
+            case MifareUltralight.TYPE_ULTRALIGHT:
+                return "MIFARE Ultralight (standard, 64 bytes)";
+            case MifareUltralight.TYPE_ULTRALIGHT_C:
+                return "MIFARE Ultralight C (up to 192 bytes)";
+            default:
+                return "MIFARE Ultralight (type: " + tagType + ", unknown variant)";
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (Exception closeEx) {
+            // Ignore close errors
+        }
+    }
+}
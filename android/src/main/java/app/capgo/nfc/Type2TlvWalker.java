@@ -0,0 +1,231 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Walks the TLV blocks of a Type 2 tag data area, fetching bytes only as far as the walk needs them.
+ *
+ * Handles every TLV defined by the NFC Forum Type 2 Tag Operation specification: NULL, Lock Control, Memory
+ * Control, NDEF, Proprietary and Terminator. Lock Control and Memory Control TLVs describe lock bits and reserved
+ * bytes that may lie inside the data area; those ranges are not part of any TLV, so the walk and the NDEF value
+ * skip them.
+ *
+ * Positions are byte offsets from the start of page 4. Reserved areas are a sorted array of {@code [start, end)}
+ * pairs in the same coordinates.
+ */
+final class Type2TlvWalker {
+
+    static final int TLV_NULL = 0x00;
+    static final int TLV_LOCK_CONTROL = 0x01;
+    static final int TLV_MEMORY_CONTROL = 0x02;
+    static final int TLV_NDEF = 0x03;
+    static final int TLV_PROPRIETARY = 0xFD;
+    static final int TLV_TERMINATOR = 0xFE;
+
+    static final int[] NO_RESERVED_AREAS = new int[0];
+
+    // Control TLV positions count from page 0; the data area starts at page 4
+    private static final int DATA_AREA_ADDRESS = Type2TagLayout.FIRST_DATA_PAGE * Type2TagReader.PAGE_SIZE;
+
+    /** Makes bytes {@code [0, endByte)} of the data area available in the walked array. */
+    interface Loader {
+        void ensureLoaded(int endByte) throws IOException;
+    }
+
+    static final class Result {
+
+        /** Position of the NDEF TLV type byte. */
+        final int ndefTlvOffset;
+        final int[] reservedAreas;
+
+        Result(int ndefTlvOffset, int[] reservedAreas) {
+            this.ndefTlvOffset = ndefTlvOffset;
+            this.reservedAreas = reservedAreas;
+        }
+    }
+
+    private Type2TlvWalker() {}
+
+    /**
+     * Finds the first NDEF TLV, collecting the reserved areas announced by the control TLVs before it.
+     *
+     * @return the result, or {@code null} when the walk reached a Terminator TLV, the end of the data area or a
+     *     truncated TLV without finding an NDEF TLV.
+     */
+    static Result walk(byte[] data, Loader loader) throws IOException {
+        int[] areas = NO_RESERVED_AREAS;
+        int position = 0;
+        while (position < data.length) {
+            int type = byteAt(data, loader, position);
+            if (type == TLV_NDEF) {
+                return new Result(position, areas);
+            }
+            if (type == TLV_TERMINATOR) {
+                return null;
+            }
+            if (type == TLV_NULL) {
+                position = next(areas, position);
+                continue;
+            }
+            int[] length = readLength(data, areas, loader, position);
+            if (length == null) {
+                return null;
+            }
+            int valueStart = length[1];
+            if (type == TLV_LOCK_CONTROL || type == TLV_MEMORY_CONTROL) {
+                int[] area = controlArea(type, readValue(data, areas, loader, valueStart, Math.min(length[0], 3)));
+                if (area != null) {
+                    areas = addArea(areas, area[0], area[1]);
+                }
+            }
+            // Proprietary and unknown TLVs are skipped over
+            position = length[0] == 0 ? valueStart : skip(areas, lastPosition(areas, valueStart, length[0]) + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the length field of the TLV whose type byte is at {@code typePosition}.
+     *
+     * @return {@code {valueLength, valueStart}}, or {@code null} when the field runs past the data area.
+     */
+    static int[] readLength(byte[] data, int[] areas, Loader loader, int typePosition) throws IOException {
+        int position = next(areas, typePosition);
+        if (position >= data.length) {
+            return null;
+        }
+        int first = byteAt(data, loader, position);
+        if (first < 0xFF) {
+            return new int[] { first, next(areas, position) };
+        }
+        int high = next(areas, position);
+        int low = next(areas, high);
+        if (low >= data.length) {
+            return null;
+        }
+        int length = (byteAt(data, loader, high) << 8) | byteAt(data, loader, low);
+        return new int[] { length, next(areas, low) };
+    }
+
+    /**
+     * Copies {@code count} data bytes starting at {@code start}, skipping reserved areas.
+     */
+    static byte[] readValue(byte[] data, int[] areas, Loader loader, int start, int count) throws IOException {
+        if (count == 0) {
+            return new byte[0];
+        }
+        int end = lastPosition(areas, start, count) + 1;
+        if (end > data.length) {
+            throw new IOException("TLV value runs past the end of the data area");
+        }
+        loader.ensureLoaded(end);
+        return extract(data, areas, start, count);
+    }
+
+    /**
+     * @return {@code count} bytes of {@code data} from {@code start}, skipping reserved areas. The bytes must be loaded.
+     */
+    static byte[] extract(byte[] data, int[] areas, int start, int count) {
+        if (areas.length == 0) {
+            return Arrays.copyOfRange(data, start, start + count);
+        }
+        byte[] value = new byte[count];
+        int position = skip(areas, start);
+        for (int i = 0; i < count; i++) {
+            value[i] = data[position];
+            position = next(areas, position);
+        }
+        return value;
+    }
+
+    /**
+     * @return the position of the last of {@code count} data bytes starting at {@code start}.
+     */
+    static int lastPosition(int[] areas, int start, int count) {
+        int position = skip(areas, start);
+        if (areas.length == 0) {
+            return position + count - 1;
+        }
+        for (int i = 1; i < count; i++) {
+            position = next(areas, position);
+        }
+        return position;
+    }
+
+    /** @return {@code true} when any reserved area overlaps {@code [start, end)}. */
+    static boolean intersects(int[] areas, int start, int end) {
+        for (int i = 0; i < areas.length; i += 2) {
+            if (areas[i] < end && areas[i + 1] > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the first position at or after {@code position} that is not reserved. */
+    static int skip(int[] areas, int position) {
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            for (int i = 0; i < areas.length; i += 2) {
+                if (position >= areas[i] && position < areas[i + 1]) {
+                    position = areas[i + 1];
+                    moved = true;
+                }
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Decodes the 3-byte value of a Lock Control or Memory Control TLV.
+     *
+     * @return the {@code [start, end)} range it reserves, clipped to the data area, or {@code null} when it lies
+     *     outside of it (e.g. the dynamic lock bytes of an NTAG21x, which follow the user memory).
+     */
+    static int[] controlArea(int type, byte[] value) {
+        if (value.length < 3) {
+            return null;
+        }
+        int pageAddress = (value[0] & 0xF0) >>> 4;
+        int byteOffset = value[0] & 0x0F;
+        int bytesPerPage = 1 << (value[2] & 0x0F);
+        int size = value[1] & 0xFF;
+        if (size == 0) {
+            size = 256;
+        }
+        if (type == TLV_LOCK_CONTROL) {
+            // Size counts lock bits
+            size = (size + 7) / 8;
+        }
+        int start = pageAddress * bytesPerPage + byteOffset - DATA_AREA_ADDRESS;
+        int end = start + size;
+        if (end <= 0) {
+            return null;
+        }
+        return new int[] { Math.max(0, start), end };
+    }
+
+    private static int next(int[] areas, int position) {
+        return skip(areas, position + 1);
+    }
+
+    private static int byteAt(byte[] data, Loader loader, int position) throws IOException {
+        loader.ensureLoaded(position + 1);
+        return data[position] & 0xFF;
+    }
+
+    private static int[] addArea(int[] areas, int start, int end) {
+        int[] result = Arrays.copyOf(areas, areas.length + 2);
+        int index = areas.length;
+        while (index > 0 && result[index - 2] > start) {
+            result[index] = result[index - 2];
+            result[index + 1] = result[index - 1];
+            index -= 2;
+        }
+        result[index] = start;
+        result[index + 1] = end;
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the NDEF message of an NFC Forum Type 3 tag (FeliCa Lite, Lite-S) with raw Check commands.
+ *
+ * Based on NFC Forum Type 3 Tag Operation specification:
+ * - Block 0 of the NDEF service holds the Attribute Information Block (AIB): the maximum number of blocks per Check
+ *   (Nbr) and per Update (Nbw) command, the NDEF area size (Nmaxb), the write and access flags, the NDEF length (Ln)
+ *   and a checksum
+ * - The message is stored from block 1 in 16-byte blocks
+ * - An AIB with WriteF set was left by an interrupted write, so its data is not trusted
+ *
+ * The AIB is read once per tap, then the message is fetched with as many blocks per Check as Nbr and
+ * {@code getMaxTransceiveLength()} allow. Frames carry the length byte and the tag IDm, as {@code NfcF} expects.
+ */
+final class Type3TagReader {
+
+    static final byte CMD_CHECK = 0x06;
+    static final byte CMD_UPDATE = 0x08;
+    static final int SERVICE_NDEF_READ = 0x000B;
+    static final int SERVICE_NDEF_WRITE = 0x0009;
+    static final int BLOCK_SIZE = 16;
+    static final int AIB_VERSION = 0x10;
+    static final int WRITE_FLAG_OFF = 0x00;
+    static final int WRITE_FLAG_ON = 0x0F;
+    static final int ACCESS_READ_WRITE = 0x01;
+
+    // LEN, response code, IDm, status flags and block count
+    private static final int CHECK_RESPONSE_HEADER = 13;
+
+    /** Decoded Attribute Information Block. */
+    static final class AttributeInfo {
+
+        final int version;
+        final int maxBlocksPerCheck;
+        final int maxBlocksPerUpdate;
+        final int maxBlocks;
+        final boolean writing;
+        final boolean writable;
+        final int ndefLength;
+
+        AttributeInfo(
+            int version,
+            int maxBlocksPerCheck,
+            int maxBlocksPerUpdate,
+            int maxBlocks,
+            boolean writing,
+            boolean writable,
+            int ndefLength
+        ) {
+            this.version = version;
+            this.maxBlocksPerCheck = maxBlocksPerCheck;
+            this.maxBlocksPerUpdate = maxBlocksPerUpdate;
+            this.maxBlocks = maxBlocks;
+            this.writing = writing;
+            this.writable = writable;
+            this.ndefLength = ndefLength;
+        }
+
+        /**
+         * @return the attribute information, or {@code null} when {@code block} is not a valid AIB for mapping
+         *     version 1.x or its checksum does not match.
+         */
+        static AttributeInfo parse(byte[] block) {
+            if (block == null || block.length < BLOCK_SIZE || (block[0] & 0xF0) != AIB_VERSION) {
+                return null;
+            }
+            if (checksum(block) != (((block[14] & 0xFF) << 8) | (block[15] & 0xFF))) {
+                return null;
+            }
+            int ndefLength = ((block[11] & 0xFF) << 16) | ((block[12] & 0xFF) << 8) | (block[13] & 0xFF);
+            return new AttributeInfo(
+                block[0] & 0xFF,
+                block[1] & 0xFF,
+                block[2] & 0xFF,
+                ((block[3] & 0xFF) << 8) | (block[4] & 0xFF),
+                (block[9] & 0xFF) == WRITE_FLAG_ON,
+                (block[10] & 0xFF) == ACCESS_READ_WRITE,
+                ndefLength
+            );
+        }
+
+        /**
+         * @return a copy of {@code block} with the write flag, NDEF length and checksum replaced.
+         */
+        static byte[] update(byte[] block, boolean writing, int ndefLength) {
+            byte[] result = Arrays.copyOf(block, BLOCK_SIZE);
+            result[9] = (byte) (writing ? WRITE_FLAG_ON : WRITE_FLAG_OFF);
+            result[11] = (byte) (ndefLength >>> 16);
+            result[12] = (byte) (ndefLength >>> 8);
+            result[13] = (byte) ndefLength;
+            int sum = checksum(result);
+            result[14] = (byte) (sum >>> 8);
+            result[15] = (byte) sum;
+            return result;
+        }
+
+        /** Sum of bytes 0 to 13. */
+        static int checksum(byte[] block) {
+            int sum = 0;
+            for (int i = 0; i < 14; i++) {
+                sum += block[i] & 0xFF;
+            }
+            return sum & 0xFFFF;
+        }
+    }
+
+    private final TransceiveBatch.Channel channel;
+    private final byte[] idm;
+    private final int maxTransceiveLength;
+    private final ReadStats stats;
+
+    private byte[] attributeBlock;
+
+    /**
+     * @param idm the 8-byte manufacture ID, as returned by {@code Tag.getId()}.
+     * @param maxTransceiveLength {@code NfcF.getMaxTransceiveLength()}, or 0 when unknown.
+     */
+    Type3TagReader(TransceiveBatch.Channel channel, byte[] idm, int maxTransceiveLength, ReadStats stats) {
+        this.channel = channel;
+        this.idm = idm;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.stats = stats;
+    }
+
+    /**
+     * Number of blocks per Check command: at most Nbr, and few enough for the response to fit in one frame.
+     */
+    static int blocksPerCheck(int maxBlocksPerCheck, int maxTransceiveLength) {
+        int frameLimit = maxTransceiveLength > 0 ? (Math.min(maxTransceiveLength, 255) - CHECK_RESPONSE_HEADER) / BLOCK_SIZE : 1;
+        return Math.max(1, Math.min(Math.max(1, maxBlocksPerCheck), frameLimit));
+    }
+
+    /**
+     * @return a Check or Update frame for blocks {@code [firstBlock, firstBlock + count)} of {@code service}, followed
+     *     by {@code data}.
+     */
+    static byte[] command(byte code, byte[] idm, int service, int firstBlock, int count, byte[] data) {
+        int listSize = 0;
+        for (int block = firstBlock; block < firstBlock + count; block++) {
+            listSize += block < 256 ? 2 : 3;
+        }
+        int dataSize = data != null ? data.length : 0;
+        byte[] frame = new byte[1 + 1 + idm.length + 1 + 2 + 1 + listSize + dataSize];
+        frame[0] = (byte) frame.length;
+        frame[1] = code;
+        System.arraycopy(idm, 0, frame, 2, idm.length);
+        int position = 2 + idm.length;
+        frame[position++] = 1;
+        // Service codes and 3-byte block numbers are little endian
+        frame[position++] = (byte) service;
+        frame[position++] = (byte) (service >>> 8);
+        frame[position++] = (byte) count;
+        for (int block = firstBlock; block < firstBlock + count; block++) {
+            if (block < 256) {
+                frame[position++] = (byte) 0x80;
+                frame[position++] = (byte) block;
+            } else {
+                frame[position++] = 0x00;
+                frame[position++] = (byte) block;
+                frame[position++] = (byte) (block >>> 8);
+            }
+        }
+        if (data != null) {
+            System.arraycopy(data, 0, frame, position, dataSize);
+        }
+        return frame;
+    }
+
+    /**
+     * @return the encoded NDEF message, or {@code null} when the tag has no valid AIB, no message, or an interrupted
+     *     write left it inconsistent. The bytes are not validated; decode them with {@link NdefCodec}.
+     * @throws IOException when an exchange fails or the tag returns inconsistent data.
+     */
+    byte[] read() throws IOException {
+        AttributeInfo info = readAttributeInfo();
+        if (info == null || info.writing || info.ndefLength == 0) {
+            return null;
+        }
+        if (info.ndefLength > info.maxBlocks * BLOCK_SIZE) {
+            throw new IOException("NDEF length " + info.ndefLength + " exceeds the " + info.maxBlocks + " block NDEF area");
+        }
+        int blocks = (info.ndefLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int perCheck = blocksPerCheck(info.maxBlocksPerCheck, maxTransceiveLength);
+        byte[] data = new byte[blocks * BLOCK_SIZE];
+        for (int block = 0; block < blocks; block += perCheck) {
+            int count = Math.min(perCheck, blocks - block);
+            byte[] chunk = check(1 + block, count);
+            System.arraycopy(chunk, 0, data, block * BLOCK_SIZE, count * BLOCK_SIZE);
+        }
+        return Arrays.copyOf(data, info.ndefLength);
+    }
+
+    /**
+     * Reads block 0.
+     *
+     * @return the attribute information, or {@code null} when the tag has no valid AIB.
+     */
+    AttributeInfo readAttributeInfo() throws IOException {
+        try {
+            attributeBlock = check(0, 1);
+        } catch (StatusException e) {
+            // No NDEF service
+            return null;
+        }
+        return AttributeInfo.parse(attributeBlock);
+    }
+
+    /** The raw AIB read by {@link #readAttributeInfo()}. */
+    byte[] attributeBlock() {
+        return attributeBlock;
+    }
+
+    private byte[] check(int firstBlock, int count) throws IOException {
+        byte[] response = transceive(command(CMD_CHECK, idm, SERVICE_NDEF_READ, firstBlock, count, null));
+        requireSuccess(response, CMD_CHECK);
+        int expected = CHECK_RESPONSE_HEADER + count * BLOCK_SIZE;
+        if (response.length < expected || (response[12] & 0xFF) != count) {
+            throw new IOException("Short Check response for block " + firstBlock);
+        }
+        return Arrays.copyOfRange(response, CHECK_RESPONSE_HEADER, expected);
+    }
+
+    byte[] transceive(byte[] command) throws IOException {
+        byte[] response = channel.transceive(command);
+        stats.recordTransceive(response == null ? 0 : response.length);
+        return response;
+    }
+
+    /**
+     * Checks the response code and status flags of a Check or Update response.
+     */
+    static void requireSuccess(byte[] response, byte command) throws IOException {
+        if (response == null || response.length < 12 || response[1] != command + 1) {
+            throw new IOException("Unexpected response to command " + command);
+        }
+        if (response[10] != 0 || response[11] != 0) {
+            throw new StatusException(response[10], response[11]);
+        }
+    }
+
+    /** The tag answered with non-zero status flags. */
+    static final class StatusException extends IOException {
+
+        StatusException(byte status1, byte status2) {
+            super(String.format("Status flags %02X %02X", status1 & 0xFF, status2 & 0xFF));
+        }
+    }
+}
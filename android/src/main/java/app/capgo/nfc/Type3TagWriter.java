@@ -0,0 +1,88 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes an NDEF message to a Type 3 tag with batched Update commands.
+ *
+ * Follows the write procedure of the NFC Forum Type 3 Tag Operation specification: the AIB is first updated with
+ * WriteF set, the message blocks are written with as many blocks per Update as Nbw allows, and the AIB is finally
+ * updated with WriteF cleared and the new length. Each AIB update carries a recomputed checksum. A tag removed half way
+ * through keeps WriteF set, which readers treat as an inconsistent message.
+ */
+final class Type3TagWriter {
+
+    // LEN, command code, IDm, service count, service code and block count
+    private static final int UPDATE_HEADER = 14;
+    // 2-byte block list element plus the block data
+    private static final int UPDATE_BLOCK_SIZE = 2 + Type3TagReader.BLOCK_SIZE;
+
+    private final Type3TagReader reader;
+    private final byte[] idm;
+    private final int maxTransceiveLength;
+
+    /**
+     * @param reader reader over the same connection, used to read the AIB.
+     */
+    Type3TagWriter(Type3TagReader reader, byte[] idm, int maxTransceiveLength) {
+        this.reader = reader;
+        this.idm = idm;
+        this.maxTransceiveLength = maxTransceiveLength;
+    }
+
+    /**
+     * Number of blocks per Update command: at most Nbw, and few enough for the command to fit in one frame.
+     */
+    static int blocksPerUpdate(int maxBlocksPerUpdate, int maxTransceiveLength) {
+        int frameLimit = maxTransceiveLength > 0 ? (Math.min(maxTransceiveLength, 255) - UPDATE_HEADER) / UPDATE_BLOCK_SIZE : 1;
+        return Math.max(1, Math.min(Math.max(1, maxBlocksPerUpdate), frameLimit));
+    }
+
+    /**
+     * @return the number of Update commands sent, or {@code -1} when the tag has no valid AIB and must be formatted by
+     *     the platform instead.
+     */
+    int write(byte[] ndef) throws NfcOperationException {
+        try {
+            Type3TagReader.AttributeInfo info = reader.readAttributeInfo();
+            if (info == null) {
+                return -1;
+            }
+            if (!info.writable) {
+                throw new NfcOperationException("Tag is read only.");
+            }
+            if (ndef.length > info.maxBlocks * Type3TagReader.BLOCK_SIZE) {
+                throw new NfcOperationException("Tag capacity is insufficient for the provided message.");
+            }
+            byte[] attributeBlock = reader.attributeBlock();
+            int commands = 0;
+
+            update(0, Type3TagReader.AttributeInfo.update(attributeBlock, true, info.ndefLength));
+            commands++;
+
+            int blocks = (ndef.length + Type3TagReader.BLOCK_SIZE - 1) / Type3TagReader.BLOCK_SIZE;
+            byte[] data = Arrays.copyOf(ndef, blocks * Type3TagReader.BLOCK_SIZE);
+            int perUpdate = blocksPerUpdate(info.maxBlocksPerUpdate, maxTransceiveLength);
+            for (int block = 0; block < blocks; block += perUpdate) {
+                int count = Math.min(perUpdate, blocks - block);
+                int start = block * Type3TagReader.BLOCK_SIZE;
+                update(1 + block, Arrays.copyOfRange(data, start, start + count * Type3TagReader.BLOCK_SIZE));
+                commands++;
+            }
+
+            update(0, Type3TagReader.AttributeInfo.update(attributeBlock, false, ndef.length));
+            return commands + 1;
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        }
+    }
+
+    private void update(int firstBlock, byte[] data) throws IOException {
+        int count = data.length / Type3TagReader.BLOCK_SIZE;
+        byte[] command = Type3TagReader.command(Type3TagReader.CMD_UPDATE, idm, Type3TagReader.SERVICE_NDEF_WRITE, firstBlock, count, data);
+        Type3TagReader.requireSuccess(reader.transceive(command), Type3TagReader.CMD_UPDATE);
+    }
+}
@@ -0,0 +1,298 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the NDEF file of an NFC Forum Type 4 tag (DESFire, NTAG 424, JavaCard applets) with raw APDUs.
+ *
+ * Based on NFC Forum Type 4 Tag Operation specification:
+ * - SELECT the NDEF Tag Application (AID D2760000850101), then SELECT and READ BINARY the capability container
+ *   file E103
+ * - The CC announces MLe, the largest READ BINARY response the tag supports, and the NDEF File Control TLV with
+ *   the identifier and maximum size of the NDEF file
+ * - The NDEF file starts with a 2-byte NLEN (4-byte ENLEN for the extended File Control TLV of mapping 3.0)
+ *   followed by the message
+ *
+ * Each READ BINARY asks for as much as MLe, {@code getMaxTransceiveLength()} and the APDU format allow; extended
+ * length APDUs lift the 256-byte limit of short APDUs when the reader supports them. The first READ BINARY
+ * fetches the length field together with the start of the message. The capability container is kept in an
+ * optional {@link CapabilityCache}, letting a repeat tap go straight from the application SELECT to the NDEF file.
+ *
+ * READ BINARY addresses 15-bit offsets only, so messages ending past 32 KB are left to the platform reader.
+ */
+final class Type4TagReader {
+
+    static final byte[] NDEF_APPLICATION_ID = { (byte) 0xD2, 0x76, 0x00, 0x00, (byte) 0x85, 0x01, 0x01 };
+    static final int CC_FILE_ID = 0xE103;
+    static final int TLV_NDEF_FILE_CONTROL = 0x04;
+    static final int TLV_EXTENDED_NDEF_FILE_CONTROL = 0x06;
+    static final int MAX_READ_OFFSET = 0x7FFF;
+    static final int SHORT_LE_MAX = 256;
+    static final int EXTENDED_LE_MAX = 65535;
+
+    private static final byte INS_SELECT = (byte) 0xA4;
+    private static final byte INS_READ_BINARY = (byte) 0xB0;
+    // CCLEN, mapping version, MLe, MLc and a 2-byte maximum size File Control TLV
+    private static final int CC_MIN_LENGTH = 15;
+    private static final int STATUS_LENGTH = 2;
+
+    /** The parts of a capability container needed to read the NDEF file. */
+    static final class CapabilityContainer {
+
+        final int mappingVersion;
+        final int maxLe;
+        final int ndefFileId;
+        final int ndefFileSize;
+        /** Size of the NLEN (2) or ENLEN (4) field at the start of the NDEF file. */
+        final int lengthFieldSize;
+
+        CapabilityContainer(int mappingVersion, int maxLe, int ndefFileId, int ndefFileSize, int lengthFieldSize) {
+            this.mappingVersion = mappingVersion;
+            this.maxLe = maxLe;
+            this.ndefFileId = ndefFileId;
+            this.ndefFileSize = ndefFileSize;
+            this.lengthFieldSize = lengthFieldSize;
+        }
+
+        /**
+         * @return the capability container, or {@code null} when {@code cc} is too short or has no NDEF File Control
+         *     TLV.
+         */
+        static CapabilityContainer parse(byte[] cc) {
+            if (cc == null || cc.length < CC_MIN_LENGTH) {
+                return null;
+            }
+            int version = cc[2] & 0xFF;
+            int maxLe = uint16(cc, 3);
+            int type = cc[7] & 0xFF;
+            int length = cc[8] & 0xFF;
+            if (type == TLV_NDEF_FILE_CONTROL && length >= 6) {
+                return new CapabilityContainer(version, maxLe, uint16(cc, 9), uint16(cc, 11), 2);
+            }
+            if (type == TLV_EXTENDED_NDEF_FILE_CONTROL && length >= 8 && cc.length >= 9 + 8) {
+                long size = ((long) uint16(cc, 11) << 16) | uint16(cc, 13);
+                return new CapabilityContainer(version, maxLe, uint16(cc, 9), (int) Math.min(size, Integer.MAX_VALUE), 4);
+            }
+            return null;
+        }
+    }
+
+    /** Bounded LRU cache of capability containers keyed by tag UID. */
+    static final class CapabilityCache {
+
+        private final LinkedHashMap<String, CapabilityContainer> entries;
+
+        CapabilityCache(int capacity) {
+            int limit = Math.max(1, capacity);
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CapabilityContainer> eldest) {
+                    return size() > limit;
+                }
+            };
+        }
+
+        synchronized CapabilityContainer get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CapabilityContainer cc) {
+            entries.put(key, cc);
+        }
+
+        synchronized void remove(String key) {
+            entries.remove(key);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private final TransceiveBatch.Channel channel;
+    private final int maxTransceiveLength;
+    private final boolean extendedLength;
+    private final CapabilityCache cache;
+    private final ReadStats stats;
+
+    /**
+     * @param maxTransceiveLength {@code IsoDep.getMaxTransceiveLength()}, or 0 when unknown.
+     * @param extendedLength {@code IsoDep.isExtendedLengthApduSupported()}.
+     */
+    Type4TagReader(
+        TransceiveBatch.Channel channel,
+        int maxTransceiveLength,
+        boolean extendedLength,
+        CapabilityCache cache,
+        ReadStats stats
+    ) {
+        this.channel = channel;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.extendedLength = extendedLength;
+        this.cache = cache;
+        this.stats = stats;
+    }
+
+    /**
+     * Largest READ BINARY response to ask for, leaving room for the status word in the transceive frame.
+     */
+    static int chunkSize(int maxLe, int maxTransceiveLength, boolean extendedLength) {
+        int limit = extendedLength ? EXTENDED_LE_MAX : SHORT_LE_MAX;
+        if (maxLe > 0) {
+            limit = Math.min(limit, maxLe);
+        }
+        if (maxTransceiveLength > STATUS_LENGTH) {
+            limit = Math.min(limit, maxTransceiveLength - STATUS_LENGTH);
+        }
+        return Math.max(1, limit);
+    }
+
+    static byte[] selectApplication() {
+        byte[] command = new byte[6 + NDEF_APPLICATION_ID.length];
+        command[1] = INS_SELECT;
+        command[2] = 0x04;
+        command[4] = (byte) NDEF_APPLICATION_ID.length;
+        System.arraycopy(NDEF_APPLICATION_ID, 0, command, 5, NDEF_APPLICATION_ID.length);
+        // Le = 00 as required by mapping version 2.0
+        return command;
+    }
+
+    static byte[] selectFile(int fileId) {
+        return new byte[] { 0x00, INS_SELECT, 0x00, 0x0C, 0x02, (byte) (fileId >>> 8), (byte) fileId };
+    }
+
+    /**
+     * @param length 1 to 256 for a short APDU, up to 65535 for an extended length APDU.
+     */
+    static byte[] readBinary(int offset, int length) {
+        if (length <= SHORT_LE_MAX) {
+            // Le = 00 asks for 256 bytes
+            return new byte[] { 0x00, INS_READ_BINARY, (byte) (offset >>> 8), (byte) offset, (byte) length };
+        }
+        return new byte[] { 0x00, INS_READ_BINARY, (byte) (offset >>> 8), (byte) offset, 0x00, (byte) (length >>> 8), (byte) length };
+    }
+
+    /**
+     * @param cacheKey key of the tag in the capability cache, usually its UID in hex.
+     * @return the encoded NDEF message, or {@code null} when the tag has no NDEF application, its NDEF file is empty
+     *     or the message cannot be addressed with READ BINARY. The bytes are not validated; decode them with
+     *     {@link NdefCodec}.
+     * @throws IOException when an exchange fails or the tag returns inconsistent data.
+     */
+    byte[] read(String cacheKey) throws IOException {
+        if (!isSuccess(transceive(selectApplication()))) {
+            return null;
+        }
+        CapabilityContainer cc = cache != null ? cache.get(cacheKey) : null;
+        if (cc != null && !isSuccess(transceive(selectFile(cc.ndefFileId)))) {
+            // The tag was reformatted since its CC was cached
+            cache.remove(cacheKey);
+            cc = null;
+        }
+        if (cc == null) {
+            cc = readCapabilityContainer();
+            if (cc == null || !isAddressable(cc) || !isSuccess(transceive(selectFile(cc.ndefFileId)))) {
+                return null;
+            }
+            if (cache != null) {
+                cache.put(cacheKey, cc);
+            }
+        }
+        return readNdefFile(cc);
+    }
+
+    private CapabilityContainer readCapabilityContainer() throws IOException {
+        if (!isSuccess(transceive(selectFile(CC_FILE_ID)))) {
+            return null;
+        }
+        byte[] header = data(transceive(readBinary(0, CC_MIN_LENGTH)));
+        if (header == null) {
+            return null;
+        }
+        int ccLength = header.length >= 2 ? uint16(header, 0) : 0;
+        byte[] cc = header;
+        if (ccLength > header.length && ccLength <= SHORT_LE_MAX) {
+            // The extended File Control TLV is longer than the 15 bytes read first
+            byte[] rest = data(transceive(readBinary(header.length, ccLength - header.length)));
+            if (rest != null) {
+                cc = Arrays.copyOf(header, header.length + rest.length);
+                System.arraycopy(rest, 0, cc, header.length, rest.length);
+            }
+        }
+        return CapabilityContainer.parse(cc);
+    }
+
+    /**
+     * Whether every byte of the NDEF file can be read with offsets up to {@link #MAX_READ_OFFSET}; larger files need
+     * the odd-INS READ BINARY with an offset data object. Only cached when it can.
+     */
+    private boolean isAddressable(CapabilityContainer cc) {
+        return cc.ndefFileSize <= MAX_READ_OFFSET + chunkSize(cc.maxLe, maxTransceiveLength, extendedLength);
+    }
+
+    private byte[] readNdefFile(CapabilityContainer cc) throws IOException {
+        int chunk = chunkSize(cc.maxLe, maxTransceiveLength, extendedLength);
+        int lengthSize = cc.lengthFieldSize;
+        if (cc.ndefFileSize <= lengthSize) {
+            return null;
+        }
+
+        // The first READ BINARY returns the length field and as much of the message as fits
+        byte[] first = data(transceive(readBinary(0, Math.min(chunk, cc.ndefFileSize))));
+        if (first == null || first.length < lengthSize) {
+            throw new IOException("Short NDEF length read");
+        }
+        long messageLength = lengthSize == 2 ? uint16(first, 0) : ((long) uint16(first, 0) << 16) | uint16(first, 2);
+        if (messageLength == 0) {
+            return null;
+        }
+        if (messageLength > cc.ndefFileSize - lengthSize) {
+            throw new IOException("NDEF length " + messageLength + " exceeds the " + cc.ndefFileSize + " byte NDEF file");
+        }
+        int end = lengthSize + (int) messageLength;
+
+        byte[] message = new byte[(int) messageLength];
+        int copied = Math.min(first.length - lengthSize, message.length);
+        System.arraycopy(first, lengthSize, message, 0, copied);
+        int offset = lengthSize + copied;
+        while (offset < end) {
+            // Past MAX_READ_OFFSET the last read starts earlier and overlaps bytes already read
+            int start = offset <= MAX_READ_OFFSET ? offset : Math.max(0, end - chunk);
+            byte[] part = data(transceive(readBinary(start, Math.min(chunk, end - start))));
+            int next = part == null ? start : Math.min(start + part.length, end);
+            if (next <= offset) {
+                throw new IOException("READ BINARY at offset " + start + " failed");
+            }
+            System.arraycopy(part, offset - start, message, offset - lengthSize, next - offset);
+            offset = next;
+        }
+        return message;
+    }
+
+    private byte[] transceive(byte[] command) throws IOException {
+        byte[] response = channel.transceive(command);
+        stats.recordTransceive(response == null ? 0 : response.length);
+        return response;
+    }
+
+    static boolean isSuccess(byte[] response) {
+        return (
+            response != null &&
+            response.length >= STATUS_LENGTH &&
+            (response[response.length - 2] & 0xFF) == 0x90 &&
+            response[response.length - 1] == 0x00
+        );
+    }
+
+    /** @return the response without its status word, or {@code null} when the status is not 9000. */
+    private static byte[] data(byte[] response) {
+        return isSuccess(response) ? Arrays.copyOf(response, response.length - STATUS_LENGTH) : null;
+    }
+
+    private static int uint16(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
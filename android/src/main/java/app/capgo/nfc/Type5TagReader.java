@@ -0,0 +1,349 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the NDEF message of an NFC Forum Type 5 tag (ISO 15693: ICODE SLIX, ST25DV, Tag-it) with raw block commands.
+ *
+ * Based on NFC Forum Type 5 Tag Operation specification:
+ * - The capability container (CC) in the first 4 or 8 bytes of memory announces the data area size (MLEN) and
+ *   whether the tag supports READ MULTIPLE BLOCKS (MBREAD)
+ * - Magic number E2, or a data area beyond 256 blocks, requires the extended commands with 2-byte block numbers
+ * - NDEF data is stored in TLV blocks after the CC, with the same encoding as Type 2 tags
+ *
+ * The block size is taken from the READ SINGLE BLOCK response for block 0, so no GET SYSTEM INFORMATION is needed.
+ * Commands are addressed with the tag UID and use the high data rate. When MBREAD is set, blocks are fetched with
+ * READ MULTIPLE BLOCKS, as many per command as {@code getMaxTransceiveLength()} allows; tags that reject it are read
+ * one block at a time.
+ */
+final class Type5TagReader {
+
+    static final byte FLAG_ERROR = 0x01;
+    static final byte FLAG_HIGH_DATA_RATE = 0x02;
+    static final byte FLAG_ADDRESSED = 0x20;
+
+    static final byte CMD_READ_SINGLE_BLOCK = 0x20;
+    static final byte CMD_WRITE_SINGLE_BLOCK = 0x21;
+    static final byte CMD_READ_MULTIPLE_BLOCKS = 0x23;
+    static final byte CMD_EXT_READ_SINGLE_BLOCK = 0x30;
+    static final byte CMD_EXT_WRITE_SINGLE_BLOCK = 0x31;
+    static final byte CMD_EXT_READ_MULTIPLE_BLOCKS = 0x33;
+
+    static final int CC_MAGIC = 0xE1;
+    static final int CC_MAGIC_EXTENDED = 0xE2;
+    static final int CC_FEATURE_MBREAD = 0x01;
+    // 1-byte block numbers and block counts
+    static final int MAX_BLOCKS = 256;
+
+    // Blocks fetched with the first READ MULTIPLE BLOCKS after the CC, covering the TLV header and the message start
+    private static final int HEADER_PREFETCH_SIZE = 64;
+
+    /** Memory layout announced by the capability container. */
+    static final class Layout {
+
+        final int blockSize;
+        /** 4, or 8 for data areas larger than 2040 bytes. */
+        final int ccSize;
+        /** Size of the data area following the CC, in bytes. */
+        final int dataAreaSize;
+        final boolean multipleBlockRead;
+        final boolean extendedCommands;
+        final boolean writable;
+
+        Layout(int blockSize, int ccSize, int dataAreaSize, boolean multipleBlockRead, boolean extendedCommands, boolean writable) {
+            this.blockSize = blockSize;
+            this.ccSize = ccSize;
+            this.dataAreaSize = dataAreaSize;
+            this.multipleBlockRead = multipleBlockRead;
+            this.extendedCommands = extendedCommands;
+            this.writable = writable;
+        }
+
+        /** Bytes of memory holding the CC and the data area, rounded up to whole blocks. */
+        int memorySize() {
+            int size = ccSize + dataAreaSize;
+            return ((size + blockSize - 1) / blockSize) * blockSize;
+        }
+
+        /**
+         * @param cc the first 4 bytes of memory, or 8 when byte 2 (MLEN) is zero.
+         * @return the layout, or {@code null} when {@code cc} is not a readable Type 5 capability container.
+         */
+        static Layout fromCapabilityContainer(byte[] cc, int blockSize) {
+            if (cc == null || cc.length < 4 || blockSize <= 0) {
+                return null;
+            }
+            int magic = cc[0] & 0xFF;
+            int access = cc[1] & 0xFF;
+            if ((magic != CC_MAGIC && magic != CC_MAGIC_EXTENDED) || (access >>> 6) != 1 || ((access >>> 2) & 0x03) != 0) {
+                return null;
+            }
+            int ccSize = 4;
+            int dataAreaSize = (cc[2] & 0xFF) * 8;
+            if (dataAreaSize == 0) {
+                if (cc.length < 8) {
+                    return null;
+                }
+                ccSize = 8;
+                dataAreaSize = (((cc[6] & 0xFF) << 8) | (cc[7] & 0xFF)) * 8;
+            }
+            if (dataAreaSize == 0) {
+                return null;
+            }
+            int blocks = (ccSize + dataAreaSize + blockSize - 1) / blockSize;
+            boolean extended = magic == CC_MAGIC_EXTENDED || blocks > MAX_BLOCKS;
+            return new Layout(blockSize, ccSize, dataAreaSize, (cc[3] & CC_FEATURE_MBREAD) != 0, extended, (access & 0x03) == 0);
+        }
+    }
+
+    private final TransceiveBatch.Channel channel;
+    private final byte[] uid;
+    private final int maxTransceiveLength;
+    private final ReadStats stats;
+
+    private Layout layout;
+    // Tag memory from block 0; bytes [0, loadedEnd) have been read
+    private byte[] memory;
+    private int loadedEnd;
+    private boolean multipleBlockReadUsable;
+    private boolean usedMultipleBlockRead;
+
+    /**
+     * @param uid the tag UID as returned by {@code Tag.getId()}, least significant byte first.
+     * @param maxTransceiveLength {@code NfcV.getMaxTransceiveLength()}, or 0 when unknown.
+     */
+    Type5TagReader(TransceiveBatch.Channel channel, byte[] uid, int maxTransceiveLength, ReadStats stats) {
+        this.channel = channel;
+        this.uid = uid;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.stats = stats;
+    }
+
+    /**
+     * Number of blocks requested per READ MULTIPLE BLOCKS so that the response fits in a single transceive frame.
+     */
+    static int blocksPerRead(int blockSize, int maxTransceiveLength) {
+        if (maxTransceiveLength <= 0) {
+            return 1;
+        }
+        // The response starts with one flags byte
+        return Math.max(1, Math.min(MAX_BLOCKS, (maxTransceiveLength - 1) / blockSize));
+    }
+
+    /**
+     * @return an addressed, high data rate command for {@code block}, followed by {@code parameters}.
+     */
+    static byte[] command(byte code, byte[] uid, int block, boolean extended, byte... parameters) {
+        int blockBytes = extended ? 2 : 1;
+        byte[] command = new byte[2 + uid.length + blockBytes + parameters.length];
+        command[0] = FLAG_HIGH_DATA_RATE | FLAG_ADDRESSED;
+        command[1] = code;
+        System.arraycopy(uid, 0, command, 2, uid.length);
+        int position = 2 + uid.length;
+        // ISO 15693 fields are least significant byte first
+        command[position++] = (byte) block;
+        if (extended) {
+            command[position++] = (byte) (block >>> 8);
+        }
+        System.arraycopy(parameters, 0, command, position, parameters.length);
+        return command;
+    }
+
+    boolean usedMultipleBlockRead() {
+        return usedMultipleBlockRead;
+    }
+
+    /**
+     * @return the encoded NDEF message stored in the NDEF TLV, or {@code null} when the tag has no Type 5 CC, no NDEF
+     *     TLV or an empty one. The bytes are not validated; decode them with {@link NdefCodec}.
+     * @throws IOException when an exchange fails or the tag returns inconsistent data.
+     */
+    byte[] read() throws IOException {
+        if (discoverLayout() == null) {
+            return null;
+        }
+        int offset = findNdefTlv();
+        if (offset < 0) {
+            return null;
+        }
+        int[] length = Type2TlvWalker.readLength(memory, Type2TlvWalker.NO_RESERVED_AREAS, this::ensureLoaded, offset);
+        if (length == null || length[0] == 0) {
+            return null;
+        }
+        int end = length[1] + length[0];
+        if (end > layout.ccSize + layout.dataAreaSize) {
+            throw new IOException("NDEF TLV length " + length[0] + " exceeds the " + layout.dataAreaSize + " byte data area");
+        }
+        ensureLoaded(end);
+        return Arrays.copyOfRange(memory, length[1], end);
+    }
+
+    /**
+     * Reads the capability container.
+     *
+     * @return the layout, or {@code null} when the tag has no Type 5 CC.
+     */
+    Layout discoverLayout() throws IOException {
+        byte[] first = readSingleBlock(0, false);
+        if (first == null || first.length < 4) {
+            return null;
+        }
+        int blockSize = first.length;
+        byte[] cc = first;
+        if ((first[2] & 0xFF) == 0 && blockSize < 8) {
+            byte[] second = readSingleBlock(1, (first[0] & 0xFF) == CC_MAGIC_EXTENDED);
+            if (second == null) {
+                return null;
+            }
+            cc = Arrays.copyOf(first, blockSize + second.length);
+            System.arraycopy(second, 0, cc, blockSize, second.length);
+        }
+        layout = Layout.fromCapabilityContainer(cc, blockSize);
+        if (layout == null) {
+            return null;
+        }
+        memory = new byte[layout.memorySize()];
+        loadedEnd = Math.min(cc.length, memory.length);
+        System.arraycopy(cc, 0, memory, 0, loadedEnd);
+        multipleBlockReadUsable = layout.multipleBlockRead;
+        return layout;
+    }
+
+    /**
+     * Walks the TLVs of the data area. Requires {@link #discoverLayout()}.
+     *
+     * @return the position of the NDEF TLV type byte in tag memory, or {@code -1} when there is none.
+     */
+    int findNdefTlv() throws IOException {
+        int areaEnd = layout.ccSize + layout.dataAreaSize;
+        prefetch(Math.min(areaEnd, layout.ccSize + HEADER_PREFETCH_SIZE));
+        int position = layout.ccSize;
+        while (position < areaEnd) {
+            ensureLoaded(position + 1);
+            int type = memory[position] & 0xFF;
+            if (type == Type2TlvWalker.TLV_NDEF) {
+                return position;
+            }
+            if (type == Type2TlvWalker.TLV_TERMINATOR) {
+                return -1;
+            }
+            if (type == Type2TlvWalker.TLV_NULL) {
+                position++;
+                continue;
+            }
+            int[] length = Type2TlvWalker.readLength(memory, Type2TlvWalker.NO_RESERVED_AREAS, this::ensureLoaded, position);
+            if (length == null) {
+                return -1;
+            }
+            position = length[1] + length[0];
+        }
+        return -1;
+    }
+
+    /** @return bytes {@code [start, end)} of tag memory, which must have been read. */
+    byte[] loaded(int start, int end) {
+        return Arrays.copyOfRange(memory, start, Math.min(end, loadedEnd));
+    }
+
+    /**
+     * Reads blocks until {@code endByte} bytes of tag memory are available, never past the data area.
+     */
+    void ensureLoaded(int endByte) throws IOException {
+        endByte = Math.min(endByte, memory.length);
+        while (loadedEnd < endByte) {
+            int block = loadedEnd / layout.blockSize;
+            byte[] data = multipleBlockReadUsable ? readMultipleBlocks(block, endByte) : null;
+            if (data == null) {
+                data = readSingleBlock(block, layout.extendedCommands);
+                if (data == null) {
+                    throw new IOException("READ SINGLE BLOCK failed at block " + block);
+                }
+            }
+            append(data, block);
+        }
+    }
+
+    /**
+     * Fetches up to {@code endByte} with one READ MULTIPLE BLOCKS, without falling back to single blocks.
+     */
+    private void prefetch(int endByte) throws IOException {
+        endByte = Math.min(endByte, memory.length);
+        if (!multipleBlockReadUsable || loadedEnd >= endByte) {
+            return;
+        }
+        int block = loadedEnd / layout.blockSize;
+        byte[] data = readMultipleBlocks(block, endByte);
+        if (data != null) {
+            append(data, block);
+        }
+    }
+
+    private void append(byte[] data, int block) throws IOException {
+        int count = Math.min(data.length, memory.length - loadedEnd);
+        if (count <= 0) {
+            throw new IOException("Empty block read at block " + block);
+        }
+        System.arraycopy(data, 0, memory, loadedEnd, count);
+        loadedEnd += count;
+    }
+
+    /**
+     * @return the block data without the flags byte, or {@code null} when the tag answered with an error.
+     */
+    private byte[] readSingleBlock(int block, boolean extended) throws IOException {
+        byte code = extended ? CMD_EXT_READ_SINGLE_BLOCK : CMD_READ_SINGLE_BLOCK;
+        return data(transceive(command(code, uid, block, extended)));
+    }
+
+    /**
+     * Reads from {@code block} towards {@code endByte} with READ MULTIPLE BLOCKS, as far as one frame allows.
+     *
+     * @return the blocks, or {@code null} when the tag rejected the first such command and single blocks must be used.
+     */
+    private byte[] readMultipleBlocks(int block, int endByte) throws IOException {
+        int blockSize = layout.blockSize;
+        int count = Math.min((endByte - 1) / blockSize - block + 1, blocksPerRead(blockSize, maxTransceiveLength));
+        if (count <= 1) {
+            return null;
+        }
+        boolean extended = layout.extendedCommands;
+        byte[] command = extended
+            ? command(CMD_EXT_READ_MULTIPLE_BLOCKS, uid, block, true, (byte) (count - 1), (byte) ((count - 1) >>> 8))
+            : command(CMD_READ_MULTIPLE_BLOCKS, uid, block, false, (byte) (count - 1));
+        byte[] data;
+        try {
+            data = data(transceive(command));
+        } catch (IOException e) {
+            if (usedMultipleBlockRead) {
+                throw e;
+            }
+            // Some tags stay silent instead of answering with an error
+            data = null;
+        }
+        if (data == null || data.length < count * blockSize) {
+            if (usedMultipleBlockRead) {
+                throw new IOException("READ MULTIPLE BLOCKS failed at block " + block);
+            }
+            // MBREAD announced but rejected: the tag stays selected, so carry on with single blocks
+            multipleBlockReadUsable = false;
+            return null;
+        }
+        usedMultipleBlockRead = true;
+        return data;
+    }
+
+    byte[] transceive(byte[] command) throws IOException {
+        byte[] response = channel.transceive(command);
+        stats.recordTransceive(response == null ? 0 : response.length);
+        return response;
+    }
+
+    /** @return the response without its flags byte, or {@code null} when the error flag is set. */
+    static byte[] data(byte[] response) {
+        if (response == null || response.length < 1 || (response[0] & FLAG_ERROR) != 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(response, 1, response.length);
+    }
+}
@@ -0,0 +1,114 @@
+package app.capgo.nfc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes an NDEF message to a Type 5 tag with WRITE SINGLE BLOCK commands.
+ *
+ * The NDEF TLV is rewritten in place, after any TLV that precedes it, and followed by a Terminator TLV when there is
+ * room. A tag without an NDEF TLV gets one at the start of the data area. Only the blocks the new TLV covers are
+ * written. When the message spans more blocks than its TLV header, the header is first written with a zero length and
+ * committed last, so a tag removed half way through holds an empty NDEF message rather than a torn one.
+ *
+ * Some tags only accept the write command variant the platform sends. A tag that rejects the first block write is
+ * left to the platform writer, since nothing has changed on it yet.
+ */
+final class Type5TagWriter {
+
+    private final Type5TagReader reader;
+    private final byte[] uid;
+    private int written;
+
+    /**
+     * @param reader reader over the same connection, used to locate the NDEF TLV.
+     */
+    Type5TagWriter(Type5TagReader reader, byte[] uid) {
+        this.reader = reader;
+        this.uid = uid;
+    }
+
+    /**
+     * @return the number of blocks written, or {@code -1} when the tag has no Type 5 CC or rejected the first block
+     *     write, and the platform must write it instead.
+     */
+    int write(byte[] ndef) throws NfcOperationException {
+        written = 0;
+        try {
+            Type5TagReader.Layout layout = reader.discoverLayout();
+            if (layout == null) {
+                return -1;
+            }
+            if (!layout.writable) {
+                throw new NfcOperationException("Tag is read only.");
+            }
+            int offset = reader.findNdefTlv();
+            if (offset < 0) {
+                offset = layout.ccSize;
+            }
+
+            byte[] tlv = Type2DiffWriter.encodeTlv(ndef);
+            int areaEnd = layout.ccSize + layout.dataAreaSize;
+            if (offset + tlv.length > areaEnd) {
+                throw new NfcOperationException("Tag capacity is insufficient for the provided message.");
+            }
+            int blockSize = layout.blockSize;
+            int firstBlock = offset / blockSize;
+            int end = offset + tlv.length + (offset + tlv.length < areaEnd ? 1 : 0);
+            int lastBlock = (end - 1) / blockSize;
+
+            // Bytes before the TLV in its first block were read by the TLV walk; bytes after the terminator do not matter
+            byte[] target = new byte[(lastBlock - firstBlock + 1) * blockSize];
+            int base = firstBlock * blockSize;
+            byte[] prefix = reader.loaded(base, offset);
+            System.arraycopy(prefix, 0, target, 0, prefix.length);
+            System.arraycopy(tlv, 0, target, offset - base, tlv.length);
+            if (end > offset + tlv.length) {
+                target[end - 1 - base] = (byte) Type2TlvWalker.TLV_TERMINATOR;
+            }
+
+            int headerSize = ndef.length < 0xFF ? 2 : 4;
+            int headerLastBlock = (offset + headerSize - 1) / blockSize;
+            if (lastBlock > headerLastBlock) {
+                byte[] invalidated = Arrays.copyOf(target, target.length);
+                for (int i = offset + 1 - base; i < offset + headerSize - base; i++) {
+                    invalidated[i] = i == offset + 1 - base && headerSize == 4 ? (byte) 0xFF : 0;
+                }
+                if (!writeBlocks(layout, invalidated, firstBlock, firstBlock, headerLastBlock)) {
+                    return -1;
+                }
+                writeBlocks(layout, target, firstBlock, headerLastBlock + 1, lastBlock);
+            }
+            if (!writeBlocks(layout, target, firstBlock, firstBlock, headerLastBlock)) {
+                return -1;
+            }
+            return written;
+        } catch (SecurityException | IllegalStateException e) {
+            throw new NfcOperationException("Tag connection lost.", e);
+        } catch (IOException e) {
+            throw new NfcOperationException("Failed to write NDEF message.", e);
+        }
+    }
+
+    /**
+     * @return {@code false} when the tag rejected the first block write, before any block was written.
+     */
+    private boolean writeBlocks(Type5TagReader.Layout layout, byte[] target, int targetBlock, int from, int to)
+        throws IOException, NfcOperationException {
+        int blockSize = layout.blockSize;
+        boolean extended = layout.extendedCommands;
+        byte code = extended ? Type5TagReader.CMD_EXT_WRITE_SINGLE_BLOCK : Type5TagReader.CMD_WRITE_SINGLE_BLOCK;
+        for (int block = from; block <= to; block++) {
+            int start = (block - targetBlock) * blockSize;
+            byte[] command = Type5TagReader.command(code, uid, block, extended, Arrays.copyOfRange(target, start, start + blockSize));
+            if (Type5TagReader.data(reader.transceive(command)) == null) {
+                if (written == 0) {
+                    return false;
+                }
+                throw new NfcOperationException("Failed to write NDEF message.");
+            }
+            written++;
+        }
+        return true;
+    }
+}
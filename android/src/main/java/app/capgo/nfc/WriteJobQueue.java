@@ -0,0 +1,104 @@
+package app.capgo.nfc;
+
+import android.nfc.NdefMessage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Messages waiting to be written by the encoding mode, in submission order.
+ *
+ * The reader thread takes the head job on every discovery and only removes it once it succeeded, so a failed job
+ * is retried on the next tap. Jobs are numbered when they are queued and keep their index across retries.
+ */
+final class WriteJobQueue {
+
+    static final class Job {
+
+        final int index;
+        final NdefMessage message;
+        final boolean allowFormat;
+        final boolean verify;
+        final boolean makeReadOnly;
+        int attempts;
+
+        Job(int index, NdefMessage message, boolean allowFormat, boolean verify, boolean makeReadOnly) {
+            this.index = index;
+            this.message = message;
+            this.allowFormat = allowFormat;
+            this.verify = verify;
+            this.makeReadOnly = makeReadOnly;
+        }
+    }
+
+    /** Options of a job that has not been numbered yet. */
+    static final class Spec {
+
+        final NdefMessage message;
+        final boolean allowFormat;
+        final boolean verify;
+        final boolean makeReadOnly;
+
+        Spec(NdefMessage message, boolean allowFormat, boolean verify, boolean makeReadOnly) {
+            this.message = message;
+            this.allowFormat = allowFormat;
+            this.verify = verify;
+            this.makeReadOnly = makeReadOnly;
+        }
+    }
+
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private int nextIndex;
+    private byte[] lastWrittenUid;
+
+    /**
+     * Appends all specs atomically.
+     *
+     * @return the index assigned to the first spec.
+     */
+    synchronized int enqueue(List<Spec> specs) {
+        int first = nextIndex;
+        for (Spec spec : specs) {
+            jobs.addLast(new Job(nextIndex++, spec.message, spec.allowFormat, spec.verify, spec.makeReadOnly));
+        }
+        return first;
+    }
+
+    /**
+     * @return the job to run for a tag with {@code uid}, or {@code null} when the queue is empty or the tag is the
+     *     one the previous job was just written to. Without that check a tag that briefly leaves and re-enters the
+     *     field would receive the next message as well.
+     */
+    synchronized Job next(byte[] uid) {
+        Job head = jobs.peekFirst();
+        if (head == null || (lastWrittenUid != null && Arrays.equals(lastWrittenUid, uid))) {
+            return null;
+        }
+        head.attempts++;
+        return head;
+    }
+
+    /**
+     * Removes {@code job} after it was written to the tag with {@code uid}. No-op if the queue was cleared meanwhile.
+     */
+    synchronized void complete(Job job, byte[] uid) {
+        if (jobs.peekFirst() == job) {
+            jobs.removeFirst();
+        }
+        lastWrittenUid = uid;
+    }
+
+    synchronized int size() {
+        return jobs.size();
+    }
+
+    /**
+     * @return the number of jobs that were dropped.
+     */
+    synchronized int clear() {
+        int cleared = jobs.size();
+        jobs.clear();
+        lastWrittenUid = null;
+        return cleared;
+    }
+}
@@ -0,0 +1,121 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class DiscoveryFilterTest {
+
+    private static final String[] NTAG_TECHS = { "android.nfc.tech.NfcA", "android.nfc.tech.MifareUltralight", "android.nfc.tech.Ndef" };
+    private static final String[] DESFIRE_TECHS = { "android.nfc.tech.NfcA", "android.nfc.tech.IsoDep" };
+    private static final byte[] NXP_UID = { 0x04, 0x5A, 0x11, 0x22, 0x33, 0x44, 0x55 };
+    private static final byte[] OTHER_UID = { 0x08, 0x11, 0x22, 0x33 };
+
+    private static NdefCodec.Record uriRecord(int prefix, String rest) {
+        byte[] body = rest.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[body.length + 1];
+        payload[0] = (byte) prefix;
+        System.arraycopy(body, 0, payload, 1, body.length);
+        return NdefCodec.Record.of(NdefCodec.TNF_WELL_KNOWN, new byte[] { 'U' }, null, payload);
+    }
+
+    private static NdefCodec.Record mimeRecord(String mimeType) {
+        return NdefCodec.Record.of(NdefCodec.TNF_MIME_MEDIA, mimeType.getBytes(StandardCharsets.US_ASCII), null, new byte[] { 1 });
+    }
+
+    @Test
+    public void tagRulesRunOnTechnologiesAndUid() {
+        DiscoveryFilter filter = new DiscoveryFilter(
+            Arrays.asList(
+                DiscoveryFilter.Rule.techTypes(Collections.singletonList("MifareUltralight")),
+                DiscoveryFilter.Rule.uidPrefixes(Collections.singletonList(new byte[] { 0x04 }))
+            )
+        );
+        assertTrue(filter.acceptsTag(NTAG_TECHS, NXP_UID));
+        assertFalse(filter.acceptsTag(DESFIRE_TECHS, NXP_UID));
+        assertFalse(filter.acceptsTag(NTAG_TECHS, OTHER_UID));
+        assertFalse(filter.hasRecordRules());
+        assertEquals(1, filter.passedCount());
+        assertEquals(1, filter.droppedCount(DiscoveryFilter.RULE_TECH_TYPES));
+        assertEquals(1, filter.droppedCount(DiscoveryFilter.RULE_UID_PREFIXES));
+    }
+
+    @Test
+    public void uidMaskComparesOnlyMaskedBits() {
+        DiscoveryFilter filter = new DiscoveryFilter(
+            Collections.singletonList(DiscoveryFilter.Rule.uidMask(new byte[] { 0x04, 0x50 }, new byte[] { (byte) 0xFF, (byte) 0xF0 }))
+        );
+        assertTrue(filter.acceptsTag(NTAG_TECHS, NXP_UID));
+        assertFalse(filter.acceptsTag(NTAG_TECHS, new byte[] { 0x04, 0x60, 0x00 }));
+        assertFalse(filter.acceptsTag(NTAG_TECHS, new byte[] { 0x04 }));
+    }
+
+    @Test
+    public void uriPrefixesMatchTheExpandedUri() {
+        DiscoveryFilter filter = new DiscoveryFilter(
+            Collections.singletonList(DiscoveryFilter.Rule.uriPrefixes(Collections.singletonList("https://www.example.com/")))
+        );
+        assertTrue(filter.hasRecordRules());
+        assertTrue(filter.acceptsTag(NTAG_TECHS, NXP_UID));
+        // 0x02 abbreviates https://www.
+        assertTrue(filter.acceptsRecords(Collections.singletonList(uriRecord(0x02, "example.com/item"))));
+        assertFalse(filter.acceptsRecords(Collections.singletonList(uriRecord(0x04, "example.com/item"))));
+        assertFalse(filter.acceptsRecords(null));
+        assertEquals(1, filter.passedCount());
+        assertEquals(2, filter.droppedCount(DiscoveryFilter.RULE_URI_PREFIXES));
+    }
+
+    @Test
+    public void mimeTypesIgnoreCaseParametersAndSupportWildcards() {
+        DiscoveryFilter filter = new DiscoveryFilter(
+            Collections.singletonList(DiscoveryFilter.Rule.mimeTypes(Arrays.asList("application/vnd.example", "image/*")))
+        );
+        assertTrue(filter.acceptsRecords(Collections.singletonList(mimeRecord("Application/Vnd.Example; charset=utf-8"))));
+        assertTrue(filter.acceptsRecords(Collections.singletonList(mimeRecord("image/png"))));
+        assertFalse(filter.acceptsRecords(Collections.singletonList(mimeRecord("text/plain"))));
+    }
+
+    @Test
+    public void ndefTypesMatchAnyRecordOfTheMessage() {
+        DiscoveryFilter filter = new DiscoveryFilter(
+            Collections.singletonList(
+                DiscoveryFilter.Rule.ndefTypes(
+                    new short[] { NdefCodec.TNF_WELL_KNOWN, NdefCodec.TNF_EXTERNAL_TYPE },
+                    Arrays.asList("T".getBytes(StandardCharsets.US_ASCII), null)
+                )
+            )
+        );
+        NdefCodec.Record text = NdefCodec.Record.of(NdefCodec.TNF_WELL_KNOWN, new byte[] { 'T' }, null, new byte[] { 2, 'e', 'n' });
+        NdefCodec.Record external = NdefCodec.Record.of(
+            NdefCodec.TNF_EXTERNAL_TYPE,
+            "example.com:item".getBytes(StandardCharsets.US_ASCII),
+            null,
+            null
+        );
+        List<NdefCodec.Record> uriThenText = Arrays.asList(uriRecord(0x01, "example.com"), text);
+
+        assertTrue(filter.acceptsRecords(uriThenText));
+        assertTrue(filter.acceptsRecords(Collections.singletonList(external)));
+        assertFalse(filter.acceptsRecords(Collections.singletonList(uriRecord(0x01, "example.com"))));
+    }
+
+    @Test
+    public void uriOfAbsoluteUriRecordIsItsType() {
+        NdefCodec.Record absolute = NdefCodec.Record.of(
+            NdefCodec.TNF_ABSOLUTE_URI,
+            "urn:example:1".getBytes(StandardCharsets.US_ASCII),
+            null,
+            null
+        );
+        assertEquals("urn:example:1", NdefCodec.uri(absolute));
+        assertEquals("tel:+123", NdefCodec.uri(uriRecord(0x05, "+123")));
+        assertNull(NdefCodec.uri(mimeRecord("text/plain")));
+    }
+}
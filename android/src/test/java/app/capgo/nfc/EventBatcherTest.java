@@ -0,0 +1,34 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class EventBatcherTest {
+
+    @Test
+    public void firstEventSchedulesTheOnlyFlush() {
+        EventBatcher<String> batcher = new EventBatcher<>(50, EventBatcher.DEFAULT_MAX_SIZE);
+        assertEquals(EventBatcher.Action.SCHEDULE, batcher.add("a"));
+        assertEquals(EventBatcher.Action.NONE, batcher.add("b"));
+        assertEquals(EventBatcher.Action.NONE, batcher.add("c"));
+        assertEquals(Arrays.asList("a", "b", "c"), batcher.drain());
+
+        // The next event opens a new window
+        assertEquals(EventBatcher.Action.SCHEDULE, batcher.add("d"));
+    }
+
+    @Test
+    public void fullBatchIsFlushedRightAway() {
+        EventBatcher<Integer> batcher = new EventBatcher<>(50, 3);
+        assertEquals(EventBatcher.Action.SCHEDULE, batcher.add(1));
+        assertEquals(EventBatcher.Action.NONE, batcher.add(2));
+        assertEquals(EventBatcher.Action.FLUSH, batcher.add(3));
+        assertEquals(Arrays.asList(1, 2, 3), batcher.drain());
+
+        // The flush scheduled for the first event then finds nothing left
+        assertTrue(batcher.drain().isEmpty());
+    }
+}
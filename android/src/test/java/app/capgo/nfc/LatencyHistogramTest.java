@@ -0,0 +1,60 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.bucketLowerBound(i);
+            assertEquals(i, LatencyHistogram.bucketIndex(lower));
+            assertEquals(i - 1, LatencyHistogram.bucketIndex(lower - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKED_MICROS));
+    }
+
+    @Test
+    public void percentilesStayWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.recordNanos(ms * 1_000_000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count);
+        assertEquals(100_000, snapshot.maxMicros);
+        assertWithin(50_000, snapshot.percentileMicros(50));
+        assertWithin(95_000, snapshot.percentileMicros(95));
+        assertWithin(99_000, snapshot.percentileMicros(99));
+        assertEquals(50_500, snapshot.meanMicros(), 0.001);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000L);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.maxMicros);
+        assertEquals(0, snapshot.percentileMicros(99));
+    }
+
+    @Test
+    public void clampsNegativeAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-1);
+        histogram.recordNanos(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.count);
+        assertEquals(LatencyHistogram.MAX_TRACKED_MICROS, snapshot.maxMicros);
+        assertEquals(0, snapshot.percentileMicros(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+}
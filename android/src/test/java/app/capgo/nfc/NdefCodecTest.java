@@ -0,0 +1,108 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class NdefCodecTest {
+
+    // Well-known URI record "https://capgo.app": SR, MB, ME
+    private static final byte[] URI_MESSAGE = {
+        (byte) 0xD1, 0x01, 0x0A, 0x55, 0x04, 'c', 'a', 'p', 'g', 'o', '.', 'a', 'p', 'p',
+    };
+
+    @Test
+    public void parsesWithoutCopying() throws Exception {
+        List<NdefCodec.Record> records = NdefCodec.parse(URI_MESSAGE);
+        assertEquals(1, records.size());
+        NdefCodec.Record record = records.get(0);
+        assertEquals(NdefCodec.TNF_WELL_KNOWN, record.tnf);
+        assertSame(URI_MESSAGE, record.buffer);
+        assertArrayEquals(new byte[] { 'U' }, record.type());
+        assertEquals(0, record.idLength);
+        assertEquals(4, record.payloadOffset);
+        assertEquals(10, record.payloadLength);
+    }
+
+    @Test
+    public void parsesFromAnOffsetOrByteBuffer() throws Exception {
+        byte[] padded = new byte[URI_MESSAGE.length + 5];
+        System.arraycopy(URI_MESSAGE, 0, padded, 3, URI_MESSAGE.length);
+        assertEquals(7, NdefCodec.parse(padded, 3, URI_MESSAGE.length).get(0).payloadOffset);
+
+        ByteBuffer buffer = ByteBuffer.wrap(padded);
+        buffer.position(3);
+        assertSame(padded, NdefCodec.parse(buffer).get(0).buffer);
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void encodesShortAndLongRecords() throws Exception {
+        assertArrayEquals(URI_MESSAGE, NdefCodec.encode(NdefCodec.parse(URI_MESSAGE)));
+
+        byte[] payload = new byte[300];
+        Arrays.fill(payload, (byte) 7);
+        NdefCodec.Record small = NdefCodec.Record.of(NdefCodec.TNF_MIME_MEDIA, bytes("text/plain"), bytes("a"), bytes("hi"));
+        NdefCodec.Record large = NdefCodec.Record.of(NdefCodec.TNF_EXTERNAL_TYPE, bytes("capgo.app:t"), null, payload);
+        byte[] encoded = NdefCodec.encode(Arrays.asList(small, large));
+
+        assertEquals(NdefCodec.encodedSize(Arrays.asList(small, large), Integer.MAX_VALUE), encoded.length);
+        // First record: MB + SR + IL, second: ME without SR
+        assertEquals(0x80 | 0x10 | 0x08 | NdefCodec.TNF_MIME_MEDIA, encoded[0] & 0xFF);
+        int second = 1 + 1 + 1 + 1 + 10 + 1 + 2;
+        assertEquals(0x40 | NdefCodec.TNF_EXTERNAL_TYPE, encoded[second] & 0xFF);
+
+        List<NdefCodec.Record> decoded = NdefCodec.parse(encoded);
+        assertArrayEquals(bytes("a"), decoded.get(0).id());
+        assertArrayEquals(payload, decoded.get(1).payload());
+    }
+
+    @Test
+    public void chunkedRecordsRoundTrip() throws Exception {
+        byte[] payload = new byte[25];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        NdefCodec.Record record = NdefCodec.Record.of(NdefCodec.TNF_MIME_MEDIA, bytes("a/b"), bytes("x"), payload);
+        byte[] encoded = NdefCodec.encode(Arrays.asList(record), 10);
+
+        // Three chunks: CF on all but the last, TNF_UNCHANGED after the first
+        assertEquals(0x80 | 0x20 | 0x10 | 0x08 | NdefCodec.TNF_MIME_MEDIA, encoded[0] & 0xFF);
+        List<NdefCodec.Record> decoded = NdefCodec.parse(encoded);
+        assertEquals(1, decoded.size());
+        assertEquals(NdefCodec.TNF_MIME_MEDIA, decoded.get(0).tnf);
+        assertArrayEquals(bytes("a/b"), decoded.get(0).type());
+        assertArrayEquals(bytes("x"), decoded.get(0).id());
+        assertArrayEquals(payload, decoded.get(0).payload());
+    }
+
+    @Test
+    public void rejectsMalformedMessages() {
+        assertMalformed(new byte[] { 0x11, 0x01, 0x00, 0x54 });
+        assertMalformed(Arrays.copyOf(URI_MESSAGE, URI_MESSAGE.length - 1));
+        assertMalformed(new byte[] { (byte) 0xD6, 0x00, 0x00 });
+        assertMalformed(new byte[] { (byte) 0xD0, 0x01, 0x00, 0x54 });
+        // Not flagged ME and nothing follows
+        assertMalformed(new byte[] { (byte) 0x91, 0x01, 0x00, 0x54 });
+    }
+
+    private static void assertMalformed(byte[] message) {
+        try {
+            NdefCodec.parse(message);
+            fail("Expected " + PayloadEncoding.toHex(message) + " to be rejected");
+        } catch (NdefCodec.MalformedMessageException expected) {
+            // Expected
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
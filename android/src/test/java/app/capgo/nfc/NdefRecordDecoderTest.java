@@ -0,0 +1,98 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class NdefRecordDecoderTest {
+
+    private static NdefCodec.Record wellKnown(String type, byte[] payload) {
+        return NdefCodec.Record.of(NdefCodec.TNF_WELL_KNOWN, type.getBytes(StandardCharsets.US_ASCII), null, payload);
+    }
+
+    private static byte[] concat(byte[] head, byte[] tail) {
+        byte[] result = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, result, head.length, tail.length);
+        return result;
+    }
+
+    private static NdefCodec.Record uri(int prefix, String rest) {
+        return wellKnown("U", concat(new byte[] { (byte) prefix }, rest.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static NdefCodec.Record text(String lang, String text, boolean utf16) {
+        byte[] status = { (byte) ((utf16 ? 0x80 : 0) | lang.length()) };
+        byte[] body = text.getBytes(utf16 ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_8);
+        return wellKnown("T", concat(concat(status, lang.getBytes(StandardCharsets.US_ASCII)), body));
+    }
+
+    @Test
+    public void expandsUriAbbreviations() {
+        assertEquals("https://example.com/a", NdefRecordDecoder.decode(uri(0x04, "example.com/a")).uri);
+        assertEquals("mailto:a@example.com", NdefRecordDecoder.decode(uri(0x06, "a@example.com")).uri);
+        // Reserved codes add no prefix
+        assertEquals("x", NdefRecordDecoder.decode(uri(0x7F, "x")).uri);
+    }
+
+    @Test
+    public void decodesUtf8AndUtf16Text() {
+        NdefRecordDecoder.Decoded english = NdefRecordDecoder.decode(text("en", "Hello", false));
+        assertEquals("en", english.lang);
+        assertEquals("Hello", english.text);
+
+        NdefRecordDecoder.Decoded japanese = NdefRecordDecoder.decode(text("ja", "\u3053\u3093\u306b\u3061\u306f", true));
+        assertEquals("ja", japanese.lang);
+        assertEquals("\u3053\u3093\u306b\u3061\u306f", japanese.text);
+    }
+
+    @Test
+    public void rejectsTextWithALanguageLongerThanThePayload() {
+        assertNull(NdefRecordDecoder.decode(wellKnown("T", new byte[] { 0x05, 'e', 'n' })));
+    }
+
+    @Test
+    public void decodesSmartPosterInPlace() {
+        byte[] nested = NdefCodec.encode(Arrays.asList(text("en", "Shop", false), uri(0x02, "example.com")));
+        NdefRecordDecoder.Decoded poster = NdefRecordDecoder.decode(wellKnown("Sp", nested));
+
+        assertEquals("https://www.example.com", poster.uri);
+        assertEquals("Shop", poster.text);
+        assertEquals("en", poster.lang);
+        assertEquals(2, poster.records.size());
+        assertEquals(NdefCodec.TNF_WELL_KNOWN, poster.records.get(1).tnf);
+    }
+
+    @Test
+    public void reportsMimeTypesAndSkipsUnknownRecords() {
+        NdefCodec.Record mime = NdefCodec.Record.of(NdefCodec.TNF_MIME_MEDIA, "text/vcard".getBytes(StandardCharsets.US_ASCII), null, null);
+        assertEquals("text/vcard", NdefRecordDecoder.decode(mime).mimeType);
+        assertNull(NdefRecordDecoder.decode(NdefCodec.Record.of(NdefCodec.TNF_EXTERNAL_TYPE, new byte[] { 'x' }, null, null)));
+        assertNull(NdefRecordDecoder.decode(wellKnown("Sp", new byte[] { 0x01 })));
+    }
+
+    @Test
+    public void decodedOnlyKeepsPayloadsNothingReplaces() {
+        byte[] nested = NdefCodec.encode(Arrays.asList(uri(0x02, "example.com")));
+        NdefRecordDecoder.Decoded poster = NdefRecordDecoder.decode(wellKnown("Sp", nested));
+        NdefRecordDecoder.Decoded link = NdefRecordDecoder.decode(uri(0x02, "example.com"));
+        NdefRecordDecoder.Mode decodedOnly = NdefRecordDecoder.Mode.DECODED_ONLY;
+
+        assertFalse(NdefRecordDecoder.keepsPayload(decodedOnly, link, NdefRecordDecoder.MAX_DEPTH));
+        assertFalse(NdefRecordDecoder.keepsPayload(decodedOnly, poster, NdefRecordDecoder.MAX_DEPTH - 1));
+        // The records of a poster at the depth limit are not sent, so its payload is the only copy of them
+        assertTrue(NdefRecordDecoder.keepsPayload(decodedOnly, poster, NdefRecordDecoder.MAX_DEPTH));
+        assertTrue(NdefRecordDecoder.keepsPayload(decodedOnly, null, 0));
+        assertTrue(NdefRecordDecoder.keepsPayload(NdefRecordDecoder.Mode.DECODED, poster, 0));
+    }
+
+    @Test
+    public void parsesModeNames() {
+        assertEquals(NdefRecordDecoder.Mode.NONE, NdefRecordDecoder.Mode.fromString(null));
+        assertEquals(NdefRecordDecoder.Mode.DECODED_ONLY, NdefRecordDecoder.Mode.fromString("decodedOnly"));
+    }
+}
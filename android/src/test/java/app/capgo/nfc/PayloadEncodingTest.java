@@ -0,0 +1,33 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PayloadEncodingTest {
+
+    @Test
+    public void parsesJavaScriptNamesAndDefaultsToArray() {
+        assertEquals(PayloadEncoding.ARRAY, PayloadEncoding.fromString(null));
+        assertEquals(PayloadEncoding.BASE64, PayloadEncoding.fromString("base64"));
+        assertEquals(PayloadEncoding.HEX, PayloadEncoding.fromString("HEX"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownEncoding() {
+        PayloadEncoding.fromString("utf8");
+    }
+
+    @Test
+    public void hexRoundTripsEveryByteValue() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        String hex = PayloadEncoding.toHex(bytes);
+        assertEquals("00010203", hex.substring(0, 8));
+        assertEquals("fdfeff", hex.substring(hex.length() - 6));
+        assertArrayEquals(bytes, PayloadEncoding.fromHex(hex));
+    }
+}
@@ -0,0 +1,124 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class PhaseMetricsTest {
+
+    /** Keeps the open sections like the per-thread stack of {@code android.os.Trace}. */
+    private static final class StackTracer implements PhaseMetrics.Tracer {
+
+        final List<String> open = new ArrayList<>();
+        int unbalancedEnds;
+
+        @Override
+        public void beginSection(String name) {
+            open.add(name);
+        }
+
+        @Override
+        public void endSection() {
+            if (open.isEmpty()) {
+                unbalancedEnds++;
+            } else {
+                open.remove(open.size() - 1);
+            }
+        }
+    }
+
+    @Test
+    public void picksTheMostSpecificTechnology() {
+        assertEquals(
+            "MifareUltralight",
+            PhaseMetrics.techOf(new String[] { "android.nfc.tech.NfcA", "android.nfc.tech.MifareUltralight", "android.nfc.tech.Ndef" })
+        );
+        assertEquals("IsoDep", PhaseMetrics.techOf(new String[] { "android.nfc.tech.NfcA", "android.nfc.tech.IsoDep" }));
+        assertEquals("NfcV", PhaseMetrics.techOf(new String[] { "android.nfc.tech.NfcV" }));
+        assertEquals(PhaseMetrics.TECH_UNKNOWN, PhaseMetrics.techOf(new String[0]));
+    }
+
+    @Test
+    public void keepsPhasesAndFailuresPerTechnology() {
+        PhaseMetrics metrics = new PhaseMetrics();
+        metrics.record("NfcA", PhaseMetrics.PHASE_READ, 2_000_000L);
+        metrics.record("NfcA", PhaseMetrics.PHASE_READ, 4_000_000L);
+        metrics.record("IsoDep", PhaseMetrics.PHASE_WRITE, 1_000_000L);
+        metrics.recordFailure("NfcA", "Tag connection lost.");
+        metrics.recordFailure("NfcA", "Tag connection lost.");
+
+        assertEquals(2, metrics.snapshot("NfcA", PhaseMetrics.PHASE_READ).count);
+        assertEquals(1, metrics.snapshot("IsoDep", PhaseMetrics.PHASE_WRITE).count);
+        assertNull(metrics.snapshot("IsoDep", PhaseMetrics.PHASE_READ));
+        assertEquals(2, metrics.failureCount("NfcA", "Tag connection lost."));
+        assertEquals(0, metrics.failureCount("IsoDep", "Tag connection lost."));
+    }
+
+    @Test
+    public void resetZeroesCounters() {
+        PhaseMetrics metrics = new PhaseMetrics();
+        metrics.record("NfcA", PhaseMetrics.PHASE_READ, 2_000_000L);
+        metrics.recordFailure("NfcA", "Tag connection lost.");
+        metrics.reset();
+
+        assertEquals(0, metrics.snapshot("NfcA", PhaseMetrics.PHASE_READ).count);
+        assertEquals(0, metrics.failureCount("NfcA", "Tag connection lost."));
+    }
+
+    @Test
+    public void nestedSpansCloseTheirOwnSections() {
+        StackTracer tracer = new StackTracer();
+        PhaseMetrics metrics = new PhaseMetrics(tracer);
+        metrics.setTracing(true);
+
+        PhaseMetrics.Span discover = metrics.begin(PhaseMetrics.PHASE_DISCOVER);
+        PhaseMetrics.Span read = metrics.begin(PhaseMetrics.PHASE_READ);
+        assertEquals(Arrays.asList("CapacitorNfc:discover", "CapacitorNfc:read"), tracer.open);
+        read.end("NfcA");
+        assertEquals(Arrays.asList("CapacitorNfc:discover"), tracer.open);
+        discover.end("NfcA");
+
+        assertTrue(tracer.open.isEmpty());
+        assertEquals(0, tracer.unbalancedEnds);
+        assertEquals(1, metrics.snapshot("NfcA", PhaseMetrics.PHASE_READ).count);
+        assertEquals(1, metrics.snapshot("NfcA", PhaseMetrics.PHASE_DISCOVER).count);
+    }
+
+    @Test
+    public void spanEndsItsSectionOnceWhateverTheNumberOfStops() {
+        StackTracer tracer = new StackTracer();
+        PhaseMetrics metrics = new PhaseMetrics(tracer);
+        metrics.setTracing(true);
+
+        // A batch: one section for the delivery, one latency per event
+        PhaseMetrics.Span dispatch = metrics.begin(PhaseMetrics.PHASE_DISPATCH);
+        for (int i = 0; i < 3; i++) {
+            metrics.record("NfcA", PhaseMetrics.PHASE_DISPATCH, 1_000_000L);
+            dispatch.endTrace();
+        }
+        dispatch.end("NfcA");
+        dispatch.end("NfcA");
+
+        assertTrue(tracer.open.isEmpty());
+        assertEquals(0, tracer.unbalancedEnds);
+        assertEquals(4, metrics.snapshot("NfcA", PhaseMetrics.PHASE_DISPATCH).count);
+    }
+
+    @Test
+    public void spanBegunWithoutTracingNeverEndsASection() {
+        StackTracer tracer = new StackTracer();
+        PhaseMetrics metrics = new PhaseMetrics(tracer);
+
+        PhaseMetrics.Span write = metrics.begin(PhaseMetrics.PHASE_WRITE);
+        metrics.setTracing(true);
+        write.end("NfcA");
+
+        assertEquals(0, tracer.unbalancedEnds);
+        assertEquals(1, metrics.snapshot("NfcA", PhaseMetrics.PHASE_WRITE).count);
+    }
+}
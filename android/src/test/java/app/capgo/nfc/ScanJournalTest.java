@@ -0,0 +1,111 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScanJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ScanJournal.Entry entry(int uid, long timestampMs, byte[] ndef) {
+        return new ScanJournal.Entry(timestampMs, new byte[] { 0x04, (byte) uid }, "MifareUltralight", ndef);
+    }
+
+    @Test
+    public void pagesThroughEntriesAcrossSegments() throws Exception {
+        ScanJournal journal = new ScanJournal(folder.getRoot(), 1024);
+        for (int i = 0; i < 40; i++) {
+            journal.append(entry(i, 1000 + i, new byte[40]));
+        }
+        assertTrue(journal.segmentCount() > 1);
+
+        List<ScanJournal.Entry> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            ScanJournal.Page page = journal.query(cursor, 15, null);
+            all.addAll(page.entries);
+            cursor = page.nextCursor;
+        } while (cursor != null);
+
+        assertEquals(40, all.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(1000 + i, all.get(i).timestampMs);
+        }
+    }
+
+    @Test
+    public void keepsEntriesWithoutMessage() throws Exception {
+        ScanJournal journal = new ScanJournal(folder.getRoot(), ScanJournal.DEFAULT_SEGMENT_BYTES);
+        journal.append(entry(1, 5, null));
+        journal.append(entry(2, 6, new byte[] { (byte) 0xD0, 0x00, 0x00 }));
+
+        List<ScanJournal.Entry> entries = journal.query(null, 10, (e) -> e.uid[1] == 2).entries;
+        assertEquals(1, entries.size());
+        assertArrayEquals(new byte[] { (byte) 0xD0, 0x00, 0x00 }, entries.get(0).ndef);
+        assertNull(journal.query(null, 10, null).entries.get(0).ndef);
+    }
+
+    @Test
+    public void reopeningCutsOffATornRecord() throws Exception {
+        ScanJournal journal = new ScanJournal(folder.getRoot(), ScanJournal.DEFAULT_SEGMENT_BYTES);
+        journal.append(entry(1, 10, new byte[8]));
+        journal.append(entry(2, 20, new byte[8]));
+        journal.close();
+        File segment = folder.getRoot().listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        ScanJournal reopened = new ScanJournal(folder.getRoot(), ScanJournal.DEFAULT_SEGMENT_BYTES);
+        reopened.append(entry(3, 30, new byte[8]));
+        List<ScanJournal.Entry> entries = reopened.query(null, 10, null).entries;
+        assertEquals(2, entries.size());
+        assertEquals(10, entries.get(0).timestampMs);
+        assertEquals(30, entries.get(1).timestampMs);
+    }
+
+    @Test
+    public void compactionKeepsTheLatestEntryPerUid() throws Exception {
+        ScanJournal journal = new ScanJournal(folder.getRoot(), 1024);
+        for (int i = 0; i < 30; i++) {
+            journal.append(entry(i % 3, i, new byte[] { (byte) i }));
+        }
+        assertEquals(27, journal.compact());
+
+        List<ScanJournal.Entry> entries = journal.query(null, 10, null).entries;
+        assertEquals(3, entries.size());
+        assertEquals(27, entries.get(0).timestampMs);
+        assertEquals(29, entries.get(2).timestampMs);
+
+        // Appends continue after the compacted segments
+        journal.append(entry(7, 100, null));
+        assertEquals(4, journal.query(null, 10, null).entries.size());
+    }
+
+    @Test
+    public void exportsJsonLines() throws Exception {
+        ScanJournal journal = new ScanJournal(folder.getRoot(), ScanJournal.DEFAULT_SEGMENT_BYTES);
+        journal.append(entry(0x1F, 42, new byte[] { (byte) 0xD0, 0x00, 0x00 }));
+        journal.append(entry(0x20, 43, null));
+        StringWriter writer = new StringWriter();
+
+        assertEquals(2, journal.exportJsonLines(writer));
+        assertEquals(
+            "{\"uid\":\"041f\",\"timestamp\":42,\"tech\":\"MifareUltralight\",\"ndef\":\"d00000\"}\n" +
+            "{\"uid\":\"0420\",\"timestamp\":43,\"tech\":\"MifareUltralight\",\"ndef\":null}\n",
+            writer.toString()
+        );
+    }
+}
@@ -0,0 +1,75 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TagEventBufferTest {
+
+    private static TagEventBuffer<String> buffer(int capacity, String overflow) {
+        TagEventBuffer<String> buffer = new TagEventBuffer<>();
+        buffer.configure(capacity, overflow);
+        return buffer;
+    }
+
+    @Test
+    public void dropOldestKeepsTheMostRecentEvents() {
+        TagEventBuffer<String> buffer = buffer(2, TagEventBuffer.OVERFLOW_DROP_OLDEST);
+        buffer.add("01", "a");
+        buffer.add("02", "b");
+        buffer.add("03", "c");
+        assertEquals(1, buffer.droppedCount());
+        assertEquals(Arrays.asList("b", "c"), buffer.drain(0));
+    }
+
+    @Test
+    public void dropNewestKeepsTheFirstEvents() {
+        TagEventBuffer<String> buffer = buffer(2, TagEventBuffer.OVERFLOW_DROP_NEWEST);
+        buffer.add("01", "a");
+        buffer.add("02", "b");
+        buffer.add("03", "c");
+        assertEquals(1, buffer.droppedCount());
+        assertEquals(Arrays.asList("a", "b"), buffer.drain(0));
+    }
+
+    @Test
+    public void coalesceUidKeepsTheLatestEventPerTag() {
+        TagEventBuffer<String> buffer = buffer(2, TagEventBuffer.OVERFLOW_COALESCE_UID);
+        buffer.add("01", "a1");
+        buffer.add("02", "b1");
+        buffer.add("01", "a2");
+        assertEquals(0, buffer.droppedCount());
+        assertEquals(1, buffer.coalescedCount());
+        assertEquals(Arrays.asList("b1", "a2"), buffer.drain(0));
+    }
+
+    @Test
+    public void drainHonoursMaxAndFilter() {
+        TagEventBuffer<String> buffer = buffer(8, TagEventBuffer.OVERFLOW_DROP_OLDEST);
+        for (String event : new String[] { "ndef1", "tag1", "ndef2", "ndef3" }) {
+            buffer.add(null, event);
+        }
+        assertEquals(Arrays.asList("ndef1", "ndef2"), buffer.drain(2, (event) -> event.startsWith("ndef")));
+        assertEquals(Arrays.asList("tag1", "ndef3"), buffer.drain(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOverflowPolicy() {
+        buffer(2, "dropAll");
+    }
+
+    @Test
+    public void rejectedConfigurationKeepsBufferedEvents() {
+        TagEventBuffer<String> buffer = buffer(4, TagEventBuffer.OVERFLOW_DROP_OLDEST);
+        buffer.add("01", "a");
+        buffer.add("02", "b");
+        try {
+            buffer.configure(1, "dropAll");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        assertEquals(Arrays.asList("a", "b"), buffer.drain(0));
+        assertEquals(0, buffer.droppedCount());
+    }
+}
@@ -0,0 +1,132 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class TagIoSchedulerTest {
+
+    private final TagIoScheduler scheduler = new TagIoScheduler();
+    private final BlockingQueue<String> rejections = new LinkedBlockingQueue<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private TagIoScheduler.Rejection recordRejection() {
+        return (message, code) -> rejections.add(code);
+    }
+
+    /** Occupies the worker until the returned latch is released. */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(
+            TagIoScheduler.PRIORITY_NORMAL,
+            0,
+            null,
+            (operation) -> {
+                started.countDown();
+                await(release);
+            },
+            recordRejection()
+        );
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void runsNormalOperationsBeforeBackgroundOnes() throws Exception {
+        CountDownLatch release = blockWorker();
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.execute(() -> {
+            order.add("presence");
+            done.countDown();
+        });
+        for (String name : Arrays.asList("write", "lock")) {
+            scheduler.submit(
+                TagIoScheduler.PRIORITY_NORMAL,
+                0,
+                null,
+                (operation) -> {
+                    order.add(name);
+                    done.countDown();
+                },
+                recordRejection()
+            );
+        }
+        assertEquals(3, scheduler.queueDepth());
+        release.countDown();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("write", "lock", "presence"), order);
+    }
+
+    @Test
+    public void rejectsQueuedOperationsPastTheirDeadline() throws Exception {
+        CountDownLatch release = blockWorker();
+        scheduler.submit(TagIoScheduler.PRIORITY_NORMAL, 1, null, (operation) -> rejections.add("ran"), recordRejection());
+        Thread.sleep(20);
+        release.countDown();
+        assertEquals(TagIoScheduler.CODE_TIMEOUT, rejections.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void abortsRunningOperationsAtTheirDeadline() throws Exception {
+        scheduler.submit(
+            TagIoScheduler.PRIORITY_NORMAL,
+            30,
+            null,
+            (operation) -> {
+                CountDownLatch closed = new CountDownLatch(1);
+                // Stands in for closing the TagTechnology, which makes blocked I/O return
+                operation.setCanceller(closed::countDown);
+                await(closed);
+                operation.rejectIfCancelled();
+            },
+            recordRejection()
+        );
+        assertEquals(TagIoScheduler.CODE_TIMEOUT, rejections.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failsFastWhenTheTargetTagIsGone() throws Exception {
+        TagSession session = new TagSession("h", new byte[] { 1 }, null, 0);
+        session.markLost();
+        scheduler.submit(TagIoScheduler.PRIORITY_NORMAL, 0, session, (operation) -> rejections.add("ran"), recordRejection());
+        assertEquals(TagIoScheduler.CODE_TAG_LOST, rejections.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelsQueuedOperationsForALostTag() throws Exception {
+        CountDownLatch release = blockWorker();
+        TagSession lost = new TagSession("a", new byte[] { 1 }, null, 0);
+        TagSession other = new TagSession("b", new byte[] { 2 }, null, 0);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        scheduler.submit(TagIoScheduler.PRIORITY_NORMAL, 0, lost, (operation) -> rejections.add("ran"), recordRejection());
+        scheduler.submit(TagIoScheduler.PRIORITY_NORMAL, 0, other, (operation) -> otherRan.countDown(), recordRejection());
+
+        scheduler.cancelForTag(new byte[] { 1 }, "Tag connection lost.", TagIoScheduler.CODE_TAG_LOST);
+        release.countDown();
+        assertEquals(TagIoScheduler.CODE_TAG_LOST, rejections.poll(1, TimeUnit.SECONDS));
+        assertTrue(otherRan.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,80 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TagLayoutCacheTest {
+
+    private static final byte[] NTAG216_VERSION = { 0x00, 0x04, 0x04, 0x02, 0x01, 0x00, 0x13, 0x03 };
+    private static final byte[] NTAG216_CC = { (byte) 0xE1, 0x10, 0x6D, 0x00 };
+
+    @Test
+    public void knownProductsUseTheirExactUserArea() {
+        Type2TagLayout layout = Type2TagLayout.fromCapabilityContainer(NTAG216_VERSION, NTAG216_CC, 0);
+        assertEquals(231, layout.totalPages);
+        assertEquals(0xE1, layout.userEndPage);
+        assertEquals(888, layout.dataAreaSize());
+        assertTrue(layout.supportsFastRead());
+    }
+
+    @Test
+    public void unknownProductsFallBackToCapabilityContainerSize() {
+        byte[] ultralightCc = { (byte) 0xE1, 0x10, 0x06, 0x00 };
+        Type2TagLayout layout = Type2TagLayout.fromCapabilityContainer(null, ultralightCc, 0);
+        assertEquals(-1, layout.totalPages);
+        assertEquals(48, layout.dataAreaSize());
+        assertFalse(layout.supportsFastRead());
+    }
+
+    @Test
+    public void rejectsTagsWithoutCapabilityContainer() {
+        assertNull(Type2TagLayout.fromCapabilityContainer(null, new byte[] { 0, 0, 0, 0 }, 0));
+    }
+
+    @Test
+    public void serializedLayoutRoundTrips() {
+        Type2TagLayout layout = Type2TagLayout.fromCapabilityContainer(NTAG216_VERSION, NTAG216_CC, 5);
+        Type2TagLayout restored = Type2TagLayout.deserialize(layout.serialize());
+        assertArrayEquals(NTAG216_VERSION, restored.version);
+        assertEquals(layout.userEndPage, restored.userEndPage);
+        assertEquals(layout.dynamicLockPage, restored.dynamicLockPage);
+        assertEquals(5, restored.ndefTlvOffset);
+        assertNull(Type2TagLayout.deserialize("0;garbage"));
+    }
+
+    @Test
+    public void serializedReservedAreasRoundTrip() {
+        Type2TagLayout layout = Type2TagLayout.fromCapabilityContainer(null, NTAG216_CC, 0).withTlvLayout(5, new int[] { 8, 12, 144, 146 });
+        assertArrayEquals(new int[] { 8, 12, 144, 146 }, Type2TagLayout.deserialize(layout.serialize()).reservedAreas);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndCountsHits() {
+        TagLayoutCache cache = new TagLayoutCache(2, null);
+        Type2TagLayout layout = Type2TagLayout.fromCapabilityContainer(NTAG216_VERSION, NTAG216_CC, 0);
+        cache.put("a", layout);
+        cache.put("b", layout);
+        assertSame(layout, cache.get("a"));
+        cache.put("c", layout);
+
+        assertNull(cache.get("b"));
+        assertTrue(cache.contains("a"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void keyDistinguishesProductVersion() {
+        byte[] uid = { 0x04, 0x11, 0x22 };
+        assertEquals("041122/-", TagLayoutCache.key(uid, null));
+        assertEquals("041122/0004040201001303", TagLayoutCache.key(uid, NTAG216_VERSION));
+    }
+}
@@ -0,0 +1,71 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TagSessionRegistryTest {
+
+    private static final byte[] FIRST_UID = { 0x04, 0x01 };
+    private static final byte[] SECOND_UID = { 0x04, 0x02 };
+
+    @Test
+    public void rediscoveryKeepsTheHandle() {
+        TagSessionRegistry registry = new TagSessionRegistry();
+        TagSession first = registry.register(FIRST_UID, null, 0);
+        assertSame(first, registry.register(FIRST_UID, null, 100));
+        assertNotEquals(first.handle, registry.register(SECOND_UID, null, 200).handle);
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void handlesExpireAfterTheTtl() {
+        TagSessionRegistry registry = new TagSessionRegistry();
+        registry.configure(4, 1000);
+        TagSession session = registry.register(FIRST_UID, null, 0);
+        assertSame(session, registry.get(session.handle, 999));
+        assertNull(registry.get(session.handle, 1000));
+        // A new discovery after expiry starts a new session
+        assertNotEquals(session.handle, registry.register(FIRST_UID, null, 1100).handle);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyDiscoveredTag() {
+        TagSessionRegistry registry = new TagSessionRegistry();
+        registry.configure(2, 60_000);
+        TagSession first = registry.register(FIRST_UID, null, 0);
+        TagSession second = registry.register(SECOND_UID, null, 10);
+        registry.register(FIRST_UID, null, 20);
+        registry.register(new byte[] { 0x04, 0x03 }, null, 30);
+        assertSame(first, registry.get(first.handle, 40));
+        assertNull(registry.get(second.handle, 40));
+    }
+
+    @Test
+    public void unknownHandlesAreRejected() {
+        TagSessionRegistry registry = new TagSessionRegistry();
+        assertNull(registry.get("missing", 0));
+    }
+
+    @Test
+    public void lazyDiscoveryForgetsThePreviousContent() {
+        TagSession session = new TagSessionRegistry().register(FIRST_UID, null, 0);
+        assertFalse(session.hasContent());
+
+        // An empty tag is known content too
+        session.setContent(null, null);
+        assertTrue(session.hasContent());
+        session.setContent(new byte[] { (byte) 0xD0, 0x00, 0x00 }, null);
+        assertArrayEquals(new byte[] { (byte) 0xD0, 0x00, 0x00 }, session.ndef());
+
+        session.clearContent();
+        assertFalse(session.hasContent());
+        assertNull(session.ndef());
+    }
+}
@@ -0,0 +1,128 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.nfc.NdefMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TagTransactionTest {
+
+    // Records the calls it receives; messages are null since NdefMessage is not available in unit tests
+    private static final class FakeTarget implements TagTransaction.Target {
+
+        final List<String> calls = new ArrayList<>();
+        boolean unformatted;
+        boolean failLock;
+
+        @Override
+        public void write(NdefMessage message, boolean allowFormat) {
+            calls.add("write");
+        }
+
+        @Override
+        public NdefMessage read() {
+            calls.add("read");
+            return null;
+        }
+
+        @Override
+        public void makeReadOnly() throws NfcOperationException {
+            calls.add("makeReadOnly");
+            if (failLock) {
+                throw new NfcOperationException("Failed to make the tag read only.");
+            }
+        }
+
+        @Override
+        public boolean needsFormat() {
+            return unformatted;
+        }
+
+        @Override
+        public void formatReadOnly(NdefMessage message) {
+            calls.add("formatReadOnly");
+        }
+    }
+
+    private static TagTransaction.Step step(String op) {
+        return new TagTransaction.Step(op, null, true);
+    }
+
+    @Test
+    public void runsEveryStepInOrder() {
+        FakeTarget target = new FakeTarget();
+        List<TagTransaction.StepResult> results = TagTransaction.run(
+            target,
+            Arrays.asList(step(TagTransaction.STEP_WRITE), step(TagTransaction.STEP_VERIFY), step(TagTransaction.STEP_MAKE_READ_ONLY))
+        );
+        assertEquals(Arrays.asList("write", "read", "makeReadOnly"), target.calls);
+        assertEquals(3, results.size());
+        assertNull(results.get(2).error);
+    }
+
+    @Test
+    public void stopsAtTheFirstFailure() {
+        FakeTarget target = new FakeTarget();
+        target.failLock = true;
+        List<TagTransaction.StepResult> results = TagTransaction.run(
+            target,
+            Arrays.asList(step(TagTransaction.STEP_MAKE_READ_ONLY), step(TagTransaction.STEP_READ))
+        );
+        assertEquals(1, results.size());
+        assertEquals("Failed to make the tag read only.", results.get(0).error);
+        assertEquals(Arrays.asList("makeReadOnly"), target.calls);
+    }
+
+    @Test
+    public void mergesWriteAndLockOnUnformattedTags() {
+        FakeTarget target = new FakeTarget();
+        target.unformatted = true;
+        List<TagTransaction.StepResult> results = TagTransaction.run(
+            target,
+            Arrays.asList(step(TagTransaction.STEP_WRITE), step(TagTransaction.STEP_MAKE_READ_ONLY))
+        );
+        assertEquals(Arrays.asList("formatReadOnly"), target.calls);
+        assertEquals(2, results.size());
+        assertEquals(TagTransaction.STEP_MAKE_READ_ONLY, results.get(1).op);
+        assertNull(results.get(1).error);
+    }
+
+    @Test
+    public void mergesWriteAndLockAcrossVerifyOnUnformattedTags() {
+        FakeTarget target = new FakeTarget();
+        target.unformatted = true;
+        List<TagTransaction.StepResult> results = TagTransaction.run(
+            target,
+            Arrays.asList(step(TagTransaction.STEP_WRITE), step(TagTransaction.STEP_VERIFY), step(TagTransaction.STEP_MAKE_READ_ONLY))
+        );
+        assertEquals(Arrays.asList("formatReadOnly"), target.calls);
+        assertEquals(3, results.size());
+        assertNull(results.get(1).error);
+        assertNull(results.get(2).error);
+    }
+
+    @Test
+    public void formatSatisfiesTheVerifyThatFollowsIt() {
+        FakeTarget target = new FakeTarget();
+        target.unformatted = true;
+        List<TagTransaction.StepResult> results = TagTransaction.run(
+            target,
+            Arrays.asList(step(TagTransaction.STEP_WRITE), step(TagTransaction.STEP_VERIFY))
+        );
+        // The formatted tag is not read back on the same tap
+        assertEquals(Arrays.asList("write"), target.calls);
+        assertEquals(2, results.size());
+        assertNull(results.get(1).error);
+    }
+
+    @Test
+    public void rejectsVerifyWithoutPrecedingWrite() {
+        assertNotNull(TagTransaction.validate(Arrays.asList(step(TagTransaction.STEP_READ), step(TagTransaction.STEP_VERIFY))));
+        assertNull(TagTransaction.validate(Arrays.asList(step(TagTransaction.STEP_ERASE), step(TagTransaction.STEP_VERIFY))));
+    }
+}
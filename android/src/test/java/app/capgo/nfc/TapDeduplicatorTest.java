@@ -0,0 +1,46 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TapDeduplicatorTest {
+
+    private static final byte[] UID = { 0x04, 0x5A, 0x11 };
+
+    @Test
+    public void suppressesRepeatTapsInsideTheWindow() {
+        TapDeduplicator dedup = new TapDeduplicator(500, TapDeduplicator.KEY_UID);
+        assertFalse(dedup.isDuplicateTap(UID, 1000));
+        assertTrue(dedup.isDuplicateTap(UID, 1400));
+        // The window slides with every sighting
+        assertTrue(dedup.isDuplicateTap(UID, 1800));
+        assertFalse(dedup.isDuplicateTap(UID, 2400));
+        assertEquals(2, dedup.suppressedCount());
+    }
+
+    @Test
+    public void contentKeyOnlySuppressesUnchangedMessages() {
+        TapDeduplicator dedup = new TapDeduplicator(500, TapDeduplicator.KEY_UID_AND_CONTENT);
+        byte[] first = { (byte) 0xD1, 0x01, 0x01, 0x54 };
+        byte[] second = { (byte) 0xD1, 0x01, 0x01, 0x55 };
+        assertFalse(dedup.isDuplicateTap(UID, 1000));
+        assertFalse(dedup.isDuplicateContent(UID, first, 1000));
+        assertTrue(dedup.isDuplicateContent(UID, first, 1100));
+        assertFalse(dedup.isDuplicateContent(UID, second, 1200));
+        assertEquals(1, dedup.suppressedCount());
+    }
+
+    @Test
+    public void contentHashSeparatesEmptyAndMissingContent() {
+        assertNotEquals(TapDeduplicator.contentHash(new byte[] { 0 }), TapDeduplicator.contentHash(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownKey() {
+        new TapDeduplicator(100, "serial");
+    }
+}
@@ -0,0 +1,49 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TransceiveBatchTest {
+
+    private static final byte[] READ_SIG = { 0x3C, 0x00 };
+    private static final byte[] READ_CNT = { 0x39, 0x02 };
+    private static final byte[] BAD = { 0x00 };
+
+    // Echoes every command back, except BAD which fails
+    private static final TransceiveBatch.Channel ECHO = (command) -> {
+        if (Arrays.equals(command, BAD)) {
+            throw new IOException("Transceive failed");
+        }
+        return command;
+    };
+
+    @Test
+    public void returnsOneResponsePerCommand() {
+        List<TransceiveBatch.Result> results = TransceiveBatch.run(ECHO, Arrays.asList(READ_SIG, READ_CNT), true);
+        assertEquals(2, results.size());
+        assertArrayEquals(READ_CNT, results.get(1).response);
+        assertNull(results.get(1).error);
+    }
+
+    @Test
+    public void stopsAtTheFirstFailureWhenRequested() {
+        List<TransceiveBatch.Result> results = TransceiveBatch.run(ECHO, Arrays.asList(READ_SIG, BAD, READ_CNT), true);
+        assertEquals(2, results.size());
+        assertNull(results.get(1).response);
+        assertEquals("Transceive failed", results.get(1).error);
+    }
+
+    @Test
+    public void continuesAfterFailuresOtherwise() {
+        List<TransceiveBatch.Result> results = TransceiveBatch.run(ECHO, Arrays.asList(BAD, READ_CNT), false);
+        assertEquals(2, results.size());
+        assertNotNull(results.get(1).response);
+    }
+}
@@ -0,0 +1,86 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class Type2DiffWriterTest {
+
+    private static final byte[] UID = { 0x04, 0x22, 0x33 };
+    // 48-byte data area, NDEF TLV at the start of page 4
+    private static final Type2TagLayout LAYOUT = Type2TagLayout.fromCapabilityContainer(
+        null,
+        new byte[] { (byte) 0xE1, 0x10, 0x06, 0x00 },
+        0
+    );
+
+    private static byte[] ndef(int size, byte fill) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, fill);
+        return bytes;
+    }
+
+    private static Type2TagImage imageHolding(byte[] ndef) {
+        byte[] data = new byte[LAYOUT.dataAreaSize()];
+        byte[] tlv = Type2DiffWriter.encodeTlv(ndef);
+        System.arraycopy(tlv, 0, data, 0, tlv.length);
+        data[tlv.length] = (byte) Type2TagReader.TLV_TERMINATOR;
+        return new Type2TagImage(UID, LAYOUT, data, 0, 16);
+    }
+
+    @Test
+    public void identicalMessageNeedsNoWrite() throws Exception {
+        byte[] message = ndef(10, (byte) 0x11);
+        Type2DiffWriter.Plan plan = Type2DiffWriter.plan(imageHolding(message), message);
+        assertEquals(0, plan.writes.size());
+        // TLV header + 10 bytes + terminator span 4 pages
+        assertEquals(4, plan.pagesSkipped);
+    }
+
+    @Test
+    public void changedPageIsWrittenBetweenInvalidationAndCommit() throws Exception {
+        byte[] before = ndef(10, (byte) 0x11);
+        byte[] after = before.clone();
+        after[9] = 0x12;
+        Type2DiffWriter.Plan plan = Type2DiffWriter.plan(imageHolding(before), after);
+
+        assertEquals(3, plan.writes.size());
+        assertEquals(4, plan.writes.get(0).page);
+        assertEquals(0, plan.writes.get(0).bytes[1]);
+        assertEquals(6, plan.writes.get(1).page);
+        assertEquals(4, plan.writes.get(2).page);
+        assertArrayEquals(new byte[] { 0x03, 0x0A, 0x11, 0x11 }, plan.writes.get(2).bytes);
+        assertEquals(2, plan.pagesSkipped);
+    }
+
+    @Test
+    public void changeInsideTheLengthPageIsASingleWrite() throws Exception {
+        byte[] before = ndef(10, (byte) 0x11);
+        byte[] after = before.clone();
+        after[0] = 0x12;
+        Type2DiffWriter.Plan plan = Type2DiffWriter.plan(imageHolding(before), after);
+        assertEquals(1, plan.writes.size());
+        assertEquals(4, plan.writes.get(0).page);
+    }
+
+    @Test
+    public void longMessagesUseTheThreeByteLengthFormat() {
+        byte[] tlv = Type2DiffWriter.encodeTlv(new byte[300]);
+        assertEquals(304, tlv.length);
+        assertArrayEquals(new byte[] { 0x03, (byte) 0xFF, 0x01, 0x2C }, Arrays.copyOf(tlv, 4));
+    }
+
+    @Test(expected = NfcOperationException.class)
+    public void rejectsMessagesLargerThanTheDataArea() throws Exception {
+        Type2DiffWriter.plan(imageHolding(ndef(4, (byte) 0)), ndef(47, (byte) 0));
+    }
+
+    @Test
+    public void unknownTlvPageFallsBackToAFullWrite() throws Exception {
+        Type2TagImage image = new Type2TagImage(UID, LAYOUT.withNdefTlvOffset(6), new byte[LAYOUT.dataAreaSize()], 8, 16);
+        assertNull(Type2DiffWriter.plan(image, ndef(4, (byte) 0)));
+    }
+}
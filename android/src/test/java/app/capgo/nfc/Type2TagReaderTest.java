@@ -0,0 +1,210 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class Type2TagReaderTest {
+
+    private static final byte[] UID = { 0x04, 0x11, 0x22, 0x33, 0x44, 0x55, 0x66 };
+    // NTAG213: 45 pages, dynamic lock bytes in page 0x28, so the user area ends at page 0x27
+    private static final byte[] NTAG213_VERSION = { 0x00, 0x04, 0x04, 0x02, 0x01, 0x00, 0x0F, 0x03 };
+    private static final int USER_END_PAGE = 0x27;
+
+    /** NTAG213 answering GET_VERSION, READ and FAST_READ from an in-memory page array. */
+    private static final class FakeTag implements Type2TagReader.Channel {
+
+        final byte[] memory = new byte[45 * Type2TagReader.PAGE_SIZE];
+        boolean fastReadSupported = true;
+        // FAST_READ commands answered before the tag stops responding, or -1 to answer all of them
+        int fastReadsBeforeFailure = -1;
+        int fastReads;
+        int pageReads;
+        int connects;
+        int lastPageRequested;
+        // A rejected command sends the tag back to IDLE until it is re-activated
+        boolean idle = true;
+        long connectDelayMs;
+
+        @Override
+        public byte[] transceive(byte[] command) throws IOException {
+            checkActive();
+            switch (command[0]) {
+                case Type2TagReader.CMD_GET_VERSION:
+                    return NTAG213_VERSION.clone();
+                case Type2TagReader.CMD_FAST_READ:
+                    fastReads++;
+                    if (!fastReadSupported) {
+                        idle = true;
+                        return new byte[] { 0x00 };
+                    }
+                    if (fastReadsBeforeFailure >= 0 && fastReads > fastReadsBeforeFailure) {
+                        throw new IOException("Tag was lost.");
+                    }
+                    int start = command[1] & 0xFF;
+                    int end = command[2] & 0xFF;
+                    lastPageRequested = Math.max(lastPageRequested, end);
+                    return Arrays.copyOfRange(memory, start * Type2TagReader.PAGE_SIZE, (end + 1) * Type2TagReader.PAGE_SIZE);
+                default:
+                    idle = true;
+                    return new byte[] { 0x00 };
+            }
+        }
+
+        @Override
+        public byte[] readPages(int pageOffset) throws IOException {
+            checkActive();
+            pageReads++;
+            lastPageRequested = Math.max(lastPageRequested, pageOffset);
+            byte[] pages = new byte[16];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = memory[(pageOffset * Type2TagReader.PAGE_SIZE + i) % memory.length];
+            }
+            return pages;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            connects++;
+            idle = false;
+            sleep(connectDelayMs);
+        }
+
+        @Override
+        public void close() {
+            idle = true;
+        }
+
+        private void checkActive() throws IOException {
+            if (idle) {
+                throw new IOException("Tag is not connected.");
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FakeTag tag(byte[] ndef) {
+        FakeTag tag = new FakeTag();
+        tag.memory[12] = (byte) 0xE1;
+        tag.memory[13] = 0x10;
+        tag.memory[14] = 0x12;
+        byte[] tlv = Type2DiffWriter.encodeTlv(ndef);
+        System.arraycopy(tlv, 0, tag.memory, 16, tlv.length);
+        if (tlv.length < 144) {
+            tag.memory[16 + tlv.length] = (byte) 0xFE;
+        }
+        return tag;
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (i + 1);
+        }
+        return message;
+    }
+
+    private static Type2TagReader reader(FakeTag tag, int maxTransceiveLength, ReadStats stats) {
+        return new Type2TagReader(tag, UID, 0, maxTransceiveLength, true, null, stats);
+    }
+
+    @Test
+    public void fastReadFitsResponseInOneFrame() {
+        // Typical NfcA controllers report 253 bytes: 62 pages = 248 bytes per FAST_READ
+        assertEquals(62, Type2TagReader.fastReadPagesPerCommand(253));
+        assertEquals(1, Type2TagReader.fastReadPagesPerCommand(5));
+    }
+
+    @Test
+    public void fastReadFallsBackToReadSizeWhenLimitUnknown() {
+        assertEquals(4, Type2TagReader.fastReadPagesPerCommand(0));
+    }
+
+    @Test
+    public void readsWithFastRead() {
+        byte[] ndef = message(60);
+        FakeTag tag = tag(ndef);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_PAGES);
+
+        assertArrayEquals(ndef, reader(tag, 253, stats).read());
+        assertEquals(ReadStats.METHOD_FAST_READ, stats.getMethod());
+        assertEquals(1, tag.fastReads);
+        assertEquals(1, tag.connects);
+    }
+
+    @Test
+    public void fallsBackToReadWhenTheFirstFastReadIsRejected() {
+        byte[] ndef = message(60);
+        FakeTag tag = tag(ndef);
+        tag.fastReadSupported = false;
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_PAGES);
+
+        assertArrayEquals(ndef, reader(tag, 253, stats).read());
+        assertEquals(ReadStats.METHOD_READ_PAGES, stats.getMethod());
+        assertEquals(1, tag.fastReads);
+        // The NAK sent the tag back to IDLE, so it was re-activated before READ
+        assertEquals(2, tag.connects);
+        assertNull(stats.getFailure());
+    }
+
+    @Test
+    public void failureAfterFastReadWorkedIsAnIoError() {
+        FakeTag tag = tag(message(60));
+        // 4 pages per FAST_READ, the tag is lost on the second one
+        tag.fastReadsBeforeFailure = 1;
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_PAGES);
+        Type2TagReader reader = reader(tag, 18, stats);
+
+        assertNull(reader.read());
+        assertNotNull(stats.getFailure());
+        assertEquals(2, tag.fastReads);
+        // No re-activation and no READ retry: only the capability container was read with READ
+        assertEquals(1, tag.connects);
+        assertEquals(1, tag.pageReads);
+    }
+
+    @Test
+    public void neverReadsPastTheUserArea() {
+        // TLV header and message fill the 144-byte user area exactly
+        byte[] ndef = message(142);
+        FakeTag tag = tag(ndef);
+
+        assertArrayEquals(ndef, reader(tag, 253, new ReadStats(ReadStats.METHOD_READ_PAGES)).read());
+        assertEquals(USER_END_PAGE, tag.lastPageRequested);
+
+        FakeTag slow = tag(ndef);
+        slow.fastReadSupported = false;
+        assertArrayEquals(ndef, reader(slow, 253, new ReadStats(ReadStats.METHOD_READ_PAGES)).read());
+        assertTrue(slow.lastPageRequested <= USER_END_PAGE);
+    }
+
+    @Test
+    public void durationCoversConnectAndTheParseAfterTheRead() {
+        FakeTag tag = tag(message(60));
+        tag.connectDelayMs = 5;
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_PAGES);
+        reader(tag, 253, stats).read();
+
+        // The plugin decodes the bytes after the reader returns, then finishes the stats
+        long parseStart = System.nanoTime();
+        sleep(5);
+        stats.recordParse(System.nanoTime() - parseStart);
+        stats.finish();
+
+        assertTrue(stats.getConnectNanos() > 0);
+        assertTrue(stats.getDurationNanos() >= stats.getConnectNanos() + stats.getParseNanos());
+    }
+}
@@ -0,0 +1,85 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class Type2TlvWalkerTest {
+
+    private static final Type2TlvWalker.Loader LOADED = (endByte) -> {};
+
+    private static byte[] area(int size, int... bytes) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < bytes.length; i++) {
+            data[i] = (byte) bytes[i];
+        }
+        return data;
+    }
+
+    @Test
+    public void skipsNullAndLockControlTlvs() throws Exception {
+        // NULL, then the Lock Control TLV of an Ultralight C: 16 lock bits at byte 160 of the tag
+        byte[] data = area(144 + 8, 0x00, 0x01, 0x03, 0xA0, 0x10, 0x44, 0x03, 0x00, 0xFE);
+        Type2TlvWalker.Result result = Type2TlvWalker.walk(data, LOADED);
+        assertEquals(6, result.ndefTlvOffset);
+        assertArrayEquals(new int[] { 144, 146 }, result.reservedAreas);
+    }
+
+    @Test
+    public void decodesPageControlAsInTheSpecExample() {
+        // Ultralight C Lock Control TLV: page 10 of 16-byte pages, 12 lock bits, 3 bytes locked per bit
+        int[] area = Type2TlvWalker.controlArea(Type2TlvWalker.TLV_LOCK_CONTROL, new byte[] { (byte) 0xA0, 0x0C, 0x34 });
+        assertArrayEquals(new int[] { 144, 146 }, area);
+    }
+
+    @Test
+    public void ignoresControlAreasOutsideTheDataArea() {
+        // Page 2 with 4-byte pages is in the header
+        assertNull(Type2TlvWalker.controlArea(Type2TlvWalker.TLV_MEMORY_CONTROL, new byte[] { 0x20, 0x04, 0x02 }));
+    }
+
+    @Test
+    public void ndefValueSkipsReservedBytes() throws Exception {
+        // Memory Control TLV reserving 4 bytes at page 6 (data offset 8), then a 6-byte NDEF TLV around it
+        byte[] data = area(32, 0x02, 0x03, 0x60, 0x04, 0x02, 0x03, 0x06, 0xA1, 0xEE, 0xEE, 0xEE, 0xEE, 0xA2, 0xA3, 0xA4, 0xA5, 0xA6);
+        Type2TlvWalker.Result result = Type2TlvWalker.walk(data, LOADED);
+        assertEquals(5, result.ndefTlvOffset);
+        assertArrayEquals(new int[] { 8, 12 }, result.reservedAreas);
+
+        int[] length = Type2TlvWalker.readLength(data, result.reservedAreas, LOADED, result.ndefTlvOffset);
+        assertEquals(6, length[0]);
+        assertEquals(7, length[1]);
+        assertEquals(16, Type2TlvWalker.lastPosition(result.reservedAreas, length[1], length[0]));
+        assertArrayEquals(
+            area(6, 0xA1, 0xA2, 0xA3, 0xA4, 0xA5, 0xA6),
+            Type2TlvWalker.extract(data, result.reservedAreas, length[1], length[0])
+        );
+        assertTrue(Type2TlvWalker.intersects(result.reservedAreas, 5, 17));
+        assertFalse(Type2TlvWalker.intersects(result.reservedAreas, 12, 17));
+    }
+
+    @Test
+    public void skipsProprietaryTlvsWithExtendedLength() throws Exception {
+        byte[] data = area(300, 0xFD, 0xFF, 0x01, 0x00);
+        data[4 + 256] = 0x03;
+        assertEquals(260, Type2TlvWalker.walk(data, LOADED).ndefTlvOffset);
+    }
+
+    @Test
+    public void stopsAtTheTerminatorAndLoadsOnlyWhatItNeeds() throws Exception {
+        int[] requested = { 0 };
+        byte[] data = area(64, 0x00, 0xFE);
+        assertNull(Type2TlvWalker.walk(data, (endByte) -> requested[0] = Math.max(requested[0], endByte)));
+        assertEquals(2, requested[0]);
+    }
+
+    @Test
+    public void returnsNullForTruncatedTlvs() throws Exception {
+        assertNull(Type2TlvWalker.walk(area(4, 0x01, 0xFF, 0x00), LOADED));
+        assertNull(Type2TlvWalker.walk(area(4, 0xFD, 0x09), LOADED));
+    }
+}
@@ -0,0 +1,162 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class Type3TagReaderTest {
+
+    private static final byte[] IDM = { 0x01, 0x2E, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF };
+
+    /** FeliCa Lite-S like tag: Nbr 4, Nbw 1, NDEF area of 13 blocks. */
+    private static final class FakeTag implements TransceiveBatch.Channel {
+
+        final byte[][] blocks = new byte[14][Type3TagReader.BLOCK_SIZE];
+        final List<Integer> checkCounts = new ArrayList<>();
+        final List<byte[]> aibWrites = new ArrayList<>();
+        int updates;
+
+        @Override
+        public byte[] transceive(byte[] command) throws IOException {
+            assertEquals(command.length, command[0] & 0xFF);
+            assertArrayEquals(IDM, Arrays.copyOfRange(command, 2, 10));
+            int count = command[13] & 0xFF;
+            int list = 14;
+            if (command[1] == Type3TagReader.CMD_CHECK) {
+                checkCounts.add(count);
+                if (count > (blocks[0][1] & 0xFF)) {
+                    return status(command[1], (byte) 0xFF);
+                }
+                byte[] response = Arrays.copyOf(status(command[1], (byte) 0), 13 + count * 16);
+                response[0] = (byte) response.length;
+                response[12] = (byte) count;
+                for (int i = 0; i < count; i++) {
+                    System.arraycopy(blocks[command[list + 2 * i + 1]], 0, response, 13 + i * 16, 16);
+                }
+                return response;
+            }
+            updates++;
+            int data = list + 2 * count;
+            for (int i = 0; i < count; i++) {
+                int block = command[list + 2 * i + 1];
+                System.arraycopy(command, data + i * 16, blocks[block], 0, 16);
+                if (block == 0) {
+                    aibWrites.add(blocks[0].clone());
+                }
+            }
+            return status(command[1], (byte) 0);
+        }
+
+        private static byte[] status(byte command, byte status) {
+            byte[] response = new byte[12];
+            response[0] = 12;
+            response[1] = (byte) (command + 1);
+            System.arraycopy(IDM, 0, response, 2, 8);
+            response[10] = status;
+            response[11] = status;
+            return response;
+        }
+    }
+
+    private static FakeTag tag(byte[] ndef) {
+        FakeTag tag = new FakeTag();
+        byte[] aib = { 0x10, 0x04, 0x01, 0x00, 0x0D, 0, 0, 0, 0, 0x00, 0x01, 0, 0, 0, 0, 0 };
+        tag.blocks[0] = Type3TagReader.AttributeInfo.update(aib, false, ndef.length);
+        for (int i = 0; i < ndef.length; i++) {
+            tag.blocks[1 + i / 16][i % 16] = ndef[i];
+        }
+        return tag;
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (i * 3 + 1);
+        }
+        return message;
+    }
+
+    @Test
+    public void parsesTheAttributeInformationBlock() {
+        byte[] aib = Type3TagReader.AttributeInfo.update(
+            new byte[] { 0x10, 0x04, 0x01, 0x00, 0x0D, 0, 0, 0, 0, 0, 0x01, 0, 0, 0, 0, 0 },
+            true,
+            0x0102
+        );
+        Type3TagReader.AttributeInfo info = Type3TagReader.AttributeInfo.parse(aib);
+        assertEquals(4, info.maxBlocksPerCheck);
+        assertEquals(1, info.maxBlocksPerUpdate);
+        assertEquals(13, info.maxBlocks);
+        assertEquals(0x0102, info.ndefLength);
+        assertTrue(info.writing);
+        assertTrue(info.writable);
+
+        aib[14]++;
+        assertNull(Type3TagReader.AttributeInfo.parse(aib));
+    }
+
+    @Test
+    public void batchSizesFitTheFrame() {
+        assertEquals(4, Type3TagReader.blocksPerCheck(4, 255));
+        assertEquals(15, Type3TagReader.blocksPerCheck(32, 255));
+        assertEquals(13, Type3TagWriter.blocksPerUpdate(32, 255));
+        assertEquals(1, Type3TagWriter.blocksPerUpdate(1, 255));
+    }
+
+    @Test
+    public void readsWithNbrBlocksPerCheck() throws Exception {
+        byte[] ndef = message(150);
+        FakeTag tag = tag(ndef);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_CHECK);
+
+        assertArrayEquals(ndef, new Type3TagReader(tag, IDM, 255, stats).read());
+        // The AIB, then 10 blocks in Checks of 4, 4 and 2
+        assertEquals(Arrays.asList(1, 4, 4, 2), tag.checkCounts);
+        assertEquals(4, stats.getTransceiveCount());
+    }
+
+    @Test
+    public void ignoresAnInterruptedWrite() throws Exception {
+        FakeTag tag = tag(message(20));
+        tag.blocks[0] = Type3TagReader.AttributeInfo.update(tag.blocks[0], true, 20);
+        assertNull(new Type3TagReader(tag, IDM, 255, new ReadStats(ReadStats.METHOD_CHECK)).read());
+    }
+
+    @Test
+    public void writeSetsAndClearsTheWriteFlag() throws Exception {
+        FakeTag tag = tag(message(5));
+        byte[] ndef = message(40);
+        Type3TagReader reader = new Type3TagReader(tag, IDM, 255, new ReadStats(ReadStats.METHOD_CHECK));
+
+        // AIB with WriteF, 3 data blocks one per Update (Nbw 1), AIB with the new length
+        assertEquals(5, new Type3TagWriter(reader, IDM, 255).write(ndef));
+        assertEquals(2, tag.aibWrites.size());
+        assertTrue(Type3TagReader.AttributeInfo.parse(tag.aibWrites.get(0)).writing);
+        Type3TagReader.AttributeInfo committed = Type3TagReader.AttributeInfo.parse(tag.aibWrites.get(1));
+        assertFalse(committed.writing);
+        assertEquals(40, committed.ndefLength);
+        assertArrayEquals(ndef, new Type3TagReader(tag, IDM, 255, new ReadStats(ReadStats.METHOD_CHECK)).read());
+    }
+
+    @Test
+    public void writeRejectsMessagesLargerThanTheNdefArea() throws Exception {
+        FakeTag tag = tag(message(5));
+        Type3TagReader reader = new Type3TagReader(tag, IDM, 255, new ReadStats(ReadStats.METHOD_CHECK));
+        try {
+            new Type3TagWriter(reader, IDM, 255).write(message(13 * 16 + 1));
+        } catch (NfcOperationException expected) {
+            assertEquals("Tag capacity is insufficient for the provided message.", expected.getMessage());
+            assertEquals(0, tag.updates);
+            return;
+        }
+        throw new AssertionError("Expected the write to be rejected");
+    }
+}
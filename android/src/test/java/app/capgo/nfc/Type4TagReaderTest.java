@@ -0,0 +1,216 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class Type4TagReaderTest {
+
+    private static final int NDEF_FILE_ID = 0xE104;
+
+    /** Minimal Type 4 tag answering SELECT and READ BINARY from an in-memory file system. */
+    private static final class FakeTag implements TransceiveBatch.Channel {
+
+        final List<byte[]> commands = new ArrayList<>();
+        byte[] cc;
+        byte[] ndefFile;
+        int ndefFileId = NDEF_FILE_ID;
+        private byte[] selected;
+
+        @Override
+        public byte[] transceive(byte[] command) throws IOException {
+            commands.add(command);
+            if (command[1] == (byte) 0xA4 && command[2] == 0x04) {
+                return ok(new byte[0]);
+            }
+            if (command[1] == (byte) 0xA4) {
+                int id = ((command[5] & 0xFF) << 8) | (command[6] & 0xFF);
+                selected = id == Type4TagReader.CC_FILE_ID ? cc : id == ndefFileId ? ndefFile : null;
+                return selected != null ? ok(new byte[0]) : new byte[] { 0x6A, (byte) 0x82 };
+            }
+            int offset = ((command[2] & 0xFF) << 8) | (command[3] & 0xFF);
+            int length = command.length == 5
+                ? (command[4] == 0 ? 256 : command[4] & 0xFF)
+                : ((command[5] & 0xFF) << 8) | (command[6] & 0xFF);
+            int end = Math.min(selected.length, offset + length);
+            return ok(Arrays.copyOfRange(selected, offset, end));
+        }
+
+        int readCount() {
+            int count = 0;
+            for (byte[] command : commands) {
+                if (command[1] == (byte) 0xB0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static byte[] ok(byte[] data) {
+            byte[] response = Arrays.copyOf(data, data.length + 2);
+            response[data.length] = (byte) 0x90;
+            return response;
+        }
+    }
+
+    private static byte[] cc(int maxLe, int fileSize) {
+        return new byte[] {
+            0x00,
+            0x0F,
+            0x20,
+            (byte) (maxLe >>> 8),
+            (byte) maxLe,
+            0x00,
+            (byte) 0xFF,
+            0x04,
+            0x06,
+            (byte) (NDEF_FILE_ID >>> 8),
+            (byte) NDEF_FILE_ID,
+            (byte) (fileSize >>> 8),
+            (byte) fileSize,
+            0x00,
+            0x00,
+        };
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (i * 7);
+        }
+        return message;
+    }
+
+    private static FakeTag tag(int maxLe, int fileSize, byte[] message) {
+        FakeTag tag = new FakeTag();
+        tag.cc = cc(maxLe, fileSize);
+        tag.ndefFile = new byte[fileSize];
+        tag.ndefFile[0] = (byte) (message.length >>> 8);
+        tag.ndefFile[1] = (byte) message.length;
+        System.arraycopy(message, 0, tag.ndefFile, 2, message.length);
+        return tag;
+    }
+
+    @Test
+    public void chunkSizeHonoursMleFrameAndApduLimits() {
+        assertEquals(256, Type4TagReader.chunkSize(0xFFFF, 0, false));
+        assertEquals(59, Type4TagReader.chunkSize(59, 261, false));
+        assertEquals(65277, Type4TagReader.chunkSize(0xFFFF, 65279, true));
+        assertEquals(1024, Type4TagReader.chunkSize(1024, 65279, true));
+    }
+
+    @Test
+    public void encodesShortAndExtendedReadBinary() {
+        assertArrayEquals(new byte[] { 0x00, (byte) 0xB0, 0x01, 0x02, 0x00 }, Type4TagReader.readBinary(0x0102, 256));
+        assertArrayEquals(new byte[] { 0x00, (byte) 0xB0, 0x00, 0x02, 0x00, 0x10, 0x00 }, Type4TagReader.readBinary(2, 4096));
+    }
+
+    @Test
+    public void readsLengthAndMessageInLargeChunks() throws Exception {
+        byte[] message = message(6000);
+        FakeTag tag = tag(0xFFFF, 8192, message);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_ISO_DEP);
+
+        byte[] read = new Type4TagReader(tag, 65279, true, null, stats).read("04A1");
+
+        assertArrayEquals(message, read);
+        // SELECT app, SELECT CC, READ CC, SELECT NDEF, one READ for NLEN and the whole message
+        assertEquals(5, stats.getTransceiveCount());
+        assertEquals(2, tag.readCount());
+    }
+
+    @Test
+    public void shortApdusAreCappedByMle() throws Exception {
+        byte[] message = message(1000);
+        FakeTag tag = tag(0x00FF, 2048, message);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_ISO_DEP);
+
+        assertArrayEquals(message, new Type4TagReader(tag, 261, false, null, stats).read("04A1"));
+        // The CC, then 1002 bytes in 255-byte READ BINARY responses
+        assertEquals(5, tag.readCount());
+    }
+
+    @Test
+    public void cachedCapabilityContainerSkipsTheCcFile() throws Exception {
+        byte[] message = message(40);
+        Type4TagReader.CapabilityCache cache = new Type4TagReader.CapabilityCache(4);
+        new Type4TagReader(tag(0xFFFF, 256, message), 261, false, cache, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1");
+        assertNotNull(cache.get("04A1"));
+
+        FakeTag repeat = tag(0xFFFF, 256, message);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_ISO_DEP);
+        assertArrayEquals(message, new Type4TagReader(repeat, 261, false, cache, stats).read("04A1"));
+        // SELECT app, SELECT NDEF, READ
+        assertEquals(3, stats.getTransceiveCount());
+    }
+
+    @Test
+    public void staleCacheEntryIsReplaced() throws Exception {
+        byte[] message = message(40);
+        Type4TagReader.CapabilityCache cache = new Type4TagReader.CapabilityCache(4);
+        cache.put("04A1", new Type4TagReader.CapabilityContainer(0x20, 0xFF, 0xE105, 256, 2));
+
+        FakeTag tag = tag(0xFFFF, 256, message);
+        assertArrayEquals(message, new Type4TagReader(tag, 261, false, cache, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1"));
+        assertEquals(NDEF_FILE_ID, cache.get("04A1").ndefFileId);
+    }
+
+    @Test
+    public void returnsNullWithoutNdefApplicationOrMessage() throws Exception {
+        TransceiveBatch.Channel notNdef = (command) -> new byte[] { 0x6A, (byte) 0x82 };
+        assertNull(new Type4TagReader(notNdef, 261, false, null, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1"));
+
+        FakeTag empty = tag(0xFFFF, 256, new byte[0]);
+        assertNull(new Type4TagReader(empty, 261, false, null, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1"));
+    }
+
+    @Test
+    public void rejectsUnaddressableFilesBeforeSelectingThem() throws Exception {
+        FakeTag tag = tag(0x00FF, Type4TagReader.MAX_READ_OFFSET + 256, message(10));
+        Type4TagReader.CapabilityCache cache = new Type4TagReader.CapabilityCache(4);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_ISO_DEP);
+
+        assertNull(new Type4TagReader(tag, 261, false, cache, stats).read("04A1"));
+        // SELECT app, SELECT CC, READ CC
+        assertEquals(3, stats.getTransceiveCount());
+        assertNull(cache.get("04A1"));
+    }
+
+    @Test
+    public void readsTheLastChunkOfTheLargestAddressableFile() throws Exception {
+        int fileSize = Type4TagReader.MAX_READ_OFFSET + 255;
+        byte[] message = message(fileSize - 2);
+        FakeTag tag = tag(0x00FF, fileSize, message);
+
+        assertArrayEquals(message, new Type4TagReader(tag, 261, false, null, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1"));
+        for (byte[] command : tag.commands) {
+            if (command[1] == (byte) 0xB0) {
+                assertTrue((((command[2] & 0xFF) << 8) | (command[3] & 0xFF)) <= Type4TagReader.MAX_READ_OFFSET);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsLengthLargerThanTheFile() throws Exception {
+        FakeTag tag = tag(0xFFFF, 256, message(10));
+        tag.ndefFile[0] = 0x01;
+        new Type4TagReader(tag, 261, false, null, new ReadStats(ReadStats.METHOD_ISO_DEP)).read("04A1");
+    }
+
+    @Test
+    public void parsesExtendedFileControlTlv() {
+        byte[] cc = { 0x00, 0x11, 0x30, 0x00, (byte) 0xFF, 0x00, (byte) 0xFF, 0x06, 0x08, (byte) 0xE1, 0x04, 0x00, 0x01, 0x00, 0x00, 0, 0 };
+        Type4TagReader.CapabilityContainer parsed = Type4TagReader.CapabilityContainer.parse(cc);
+        assertEquals(0x10000, parsed.ndefFileSize);
+        assertEquals(4, parsed.lengthFieldSize);
+        assertEquals(0xE104, parsed.ndefFileId);
+    }
+}
@@ -0,0 +1,184 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class Type5TagReaderTest {
+
+    private static final byte[] UID = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, (byte) 0xE0 };
+
+    /** ISO 15693 tag answering addressed READ and WRITE commands from an in-memory block array. */
+    private static final class FakeTag implements TransceiveBatch.Channel {
+
+        final byte[] memory;
+        final int blockSize;
+        boolean multipleBlockRead = true;
+        boolean acceptsWrites = true;
+        int singleReads;
+        int multipleReads;
+        int writes;
+
+        FakeTag(byte[] memory, int blockSize) {
+            this.memory = memory;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        public byte[] transceive(byte[] command) throws IOException {
+            assertEquals(Type5TagReader.FLAG_HIGH_DATA_RATE | Type5TagReader.FLAG_ADDRESSED, command[0]);
+            assertArrayEquals(UID, Arrays.copyOfRange(command, 2, 10));
+            int block = command[10] & 0xFF;
+            switch (command[1]) {
+                case Type5TagReader.CMD_READ_SINGLE_BLOCK:
+                    singleReads++;
+                    return ok(Arrays.copyOfRange(memory, block * blockSize, (block + 1) * blockSize));
+                case Type5TagReader.CMD_READ_MULTIPLE_BLOCKS:
+                    if (!multipleBlockRead) {
+                        return new byte[] { Type5TagReader.FLAG_ERROR, 0x01 };
+                    }
+                    multipleReads++;
+                    int count = (command[11] & 0xFF) + 1;
+                    return ok(Arrays.copyOfRange(memory, block * blockSize, (block + count) * blockSize));
+                case Type5TagReader.CMD_WRITE_SINGLE_BLOCK:
+                    if (!acceptsWrites) {
+                        return new byte[] { Type5TagReader.FLAG_ERROR, 0x0F };
+                    }
+                    writes++;
+                    System.arraycopy(command, 11, memory, block * blockSize, blockSize);
+                    return new byte[] { 0x00 };
+                default:
+                    return new byte[] { Type5TagReader.FLAG_ERROR, 0x01 };
+            }
+        }
+
+        private static byte[] ok(byte[] data) {
+            byte[] response = new byte[data.length + 1];
+            System.arraycopy(data, 0, response, 1, data.length);
+            return response;
+        }
+    }
+
+    /** An ICODE SLIX-like tag: 4-byte blocks, 4-byte CC with MBREAD, 80-byte data area. */
+    private static FakeTag tag(byte[] ndef) {
+        byte[] memory = new byte[84];
+        memory[0] = (byte) 0xE1;
+        memory[1] = 0x40;
+        memory[2] = 10;
+        memory[3] = Type5TagReader.CC_FEATURE_MBREAD;
+        byte[] tlv = Type2DiffWriter.encodeTlv(ndef);
+        System.arraycopy(tlv, 0, memory, 4, tlv.length);
+        memory[4 + tlv.length] = (byte) 0xFE;
+        return new FakeTag(memory, 4);
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (i + 1);
+        }
+        return message;
+    }
+
+    @Test
+    public void parsesFourAndEightByteCapabilityContainers() {
+        Type5TagReader.Layout small = Type5TagReader.Layout.fromCapabilityContainer(new byte[] { (byte) 0xE1, 0x40, 0x0A, 0x01 }, 4);
+        assertEquals(4, small.ccSize);
+        assertEquals(80, small.dataAreaSize);
+        assertTrue(small.multipleBlockRead);
+        assertFalse(small.extendedCommands);
+        assertTrue(small.writable);
+
+        byte[] cc = { (byte) 0xE2, 0x43, 0x00, 0x00, 0x00, 0x00, 0x03, (byte) 0xFF };
+        Type5TagReader.Layout large = Type5TagReader.Layout.fromCapabilityContainer(cc, 4);
+        assertEquals(8, large.ccSize);
+        assertEquals(0x3FF * 8, large.dataAreaSize);
+        assertTrue(large.extendedCommands);
+        assertFalse(large.writable);
+
+        assertNull(Type5TagReader.Layout.fromCapabilityContainer(new byte[] { (byte) 0xE1, 0x48, 0x0A, 0x01 }, 4));
+    }
+
+    @Test
+    public void blocksPerReadFitsTheFrame() {
+        assertEquals(63, Type5TagReader.blocksPerRead(4, 253));
+        assertEquals(1, Type5TagReader.blocksPerRead(4, 0));
+        assertEquals(256, Type5TagReader.blocksPerRead(4, 4096));
+    }
+
+    @Test
+    public void readsWithMultipleBlockCommands() throws Exception {
+        byte[] ndef = message(70);
+        FakeTag tag = tag(ndef);
+        ReadStats stats = new ReadStats(ReadStats.METHOD_READ_BLOCKS);
+        Type5TagReader reader = new Type5TagReader(tag, UID, 253, stats);
+
+        assertArrayEquals(ndef, reader.read());
+        assertTrue(reader.usedMultipleBlockRead());
+        // Block 0 for the CC, then the TLV header prefetch and the rest of the message
+        assertEquals(1, tag.singleReads);
+        assertEquals(2, tag.multipleReads);
+    }
+
+    @Test
+    public void fallsBackToSingleBlockReads() throws Exception {
+        byte[] ndef = message(10);
+        FakeTag tag = tag(ndef);
+        tag.multipleBlockRead = false;
+        Type5TagReader reader = new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS));
+
+        assertArrayEquals(ndef, reader.read());
+        assertFalse(reader.usedMultipleBlockRead());
+        // CC plus the 12 bytes of the TLV in 4-byte blocks
+        assertEquals(4, tag.singleReads);
+    }
+
+    @Test
+    public void returnsNullWithoutCapabilityContainer() throws Exception {
+        FakeTag tag = new FakeTag(new byte[16], 4);
+        assertNull(new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS)).read());
+    }
+
+    @Test
+    public void writesTheTlvAndCommitsTheLengthLast() throws Exception {
+        FakeTag tag = tag(message(3));
+        byte[] ndef = message(20);
+        Type5TagReader reader = new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS));
+
+        // 2-byte header, 20 bytes of message and a terminator in blocks 1 to 6; block 1 is written twice
+        assertEquals(7, new Type5TagWriter(reader, UID).write(ndef));
+        assertEquals(7, tag.writes);
+        assertArrayEquals(ndef, new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS)).read());
+        assertEquals((byte) 0xFE, tag.memory[4 + 22]);
+    }
+
+    @Test
+    public void leavesTagsRejectingTheFirstBlockWriteToThePlatform() throws Exception {
+        FakeTag tag = tag(message(3));
+        tag.acceptsWrites = false;
+        byte[] before = tag.memory.clone();
+        Type5TagReader reader = new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS));
+
+        assertEquals(-1, new Type5TagWriter(reader, UID).write(message(20)));
+        assertArrayEquals(before, tag.memory);
+    }
+
+    @Test
+    public void writeRejectsMessagesLargerThanTheDataArea() throws Exception {
+        FakeTag tag = tag(message(3));
+        Type5TagReader reader = new Type5TagReader(tag, UID, 253, new ReadStats(ReadStats.METHOD_READ_BLOCKS));
+        try {
+            new Type5TagWriter(reader, UID).write(message(79));
+        } catch (NfcOperationException expected) {
+            assertEquals("Tag capacity is insufficient for the provided message.", expected.getMessage());
+            return;
+        }
+        throw new AssertionError("Expected the write to be rejected");
+    }
+}
@@ -0,0 +1,64 @@
+package app.capgo.nfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class WriteJobQueueTest {
+
+    private static final byte[] FIRST_UID = { 0x04, 0x01 };
+    private static final byte[] SECOND_UID = { 0x04, 0x02 };
+
+    private static WriteJobQueue.Spec spec() {
+        return new WriteJobQueue.Spec(null, true, false, false);
+    }
+
+    @Test
+    public void numbersJobsAcrossBatches() {
+        WriteJobQueue queue = new WriteJobQueue();
+        assertEquals(0, queue.enqueue(Arrays.asList(spec(), spec())));
+        assertEquals(2, queue.enqueue(Collections.singletonList(spec())));
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.next(FIRST_UID).index);
+    }
+
+    @Test
+    public void failedJobStaysAtTheHead() {
+        WriteJobQueue queue = new WriteJobQueue();
+        queue.enqueue(Arrays.asList(spec(), spec()));
+        WriteJobQueue.Job first = queue.next(FIRST_UID);
+        // Not completed: the next tap retries the same job
+        WriteJobQueue.Job retry = queue.next(SECOND_UID);
+        assertSame(first, retry);
+        assertEquals(2, retry.attempts);
+
+        queue.complete(retry, SECOND_UID);
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.next(FIRST_UID).index);
+    }
+
+    @Test
+    public void doesNotWriteTheSameTagTwiceInARow() {
+        WriteJobQueue queue = new WriteJobQueue();
+        queue.enqueue(Arrays.asList(spec(), spec()));
+        queue.complete(queue.next(FIRST_UID), FIRST_UID);
+        assertNull(queue.next(FIRST_UID));
+        assertEquals(1, queue.next(SECOND_UID).index);
+    }
+
+    @Test
+    public void clearDropsPendingJobs() {
+        WriteJobQueue queue = new WriteJobQueue();
+        queue.enqueue(Arrays.asList(spec(), spec()));
+        WriteJobQueue.Job job = queue.next(FIRST_UID);
+        assertEquals(2, queue.clear());
+        // Completing a job that was cleared while it was being written must not drop anything else
+        queue.enqueue(Collections.singletonList(spec()));
+        queue.complete(job, FIRST_UID);
+        assertEquals(1, queue.size());
+    }
+}
@@ -19,6 +19,7 @@ func nfcSessionEndReason(for error: Error) -> String? {
 public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
     private let pluginVersion: String = "8.2.5"
     static let defaultIosPollingOptions = ["iso14443", "iso15693"]
+    static let supportedPayloadEncodings = ["array", "base64", "hex"]
 
     public let identifier = "NfcPlugin"
     public let jsName = "CapacitorNfc"
@@ -28,10 +29,22 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
         CAPPluginMethod(name: "write", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "erase", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "makeReadOnly", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "transceiveBatch", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "readNdef", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "runTransaction", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "enqueueWriteJobs", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "clearWriteJobs", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "share", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "unshare", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "getStatus", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "showSettings", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "getMetrics", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "resetMetrics", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "drainTagHistory", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "queryJournal", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "exportJournal", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "compactJournal", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "clearJournal", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "getPluginVersion", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "isSupported", returnType: CAPPluginReturnPromise)
     ]
@@ -41,6 +54,7 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
     private let sessionQueue = DispatchQueue(label: "app.capgo.nfc.session")
     private var currentTag: NFCNDEFTag?
     private var invalidateAfterFirstRead = true
+    private var payloadEncoding = "array"
     private var sessionType: String = "ndef"
     private var pendingStartCall: CAPPluginCall?
     private var pendingStartSession: NFCTagReaderSession?
@@ -132,6 +146,13 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        let requestedPayloadEncoding = call.getString("payloadEncoding", "array").lowercased()
+        guard Self.supportedPayloadEncodings.contains(requestedPayloadEncoding) else {
+            call.reject("Unsupported payloadEncoding: \(requestedPayloadEncoding)")
+            return
+        }
+        payloadEncoding = requestedPayloadEncoding
+
         invalidateAfterFirstRead = call.getBool("invalidateAfterFirstRead", true)
         let alertMessage = call.getString("alertMessage")
 
@@ -214,8 +235,18 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        if let encodedMessage = call.getString("message") {
+            guard let messageData = Data(base64Encoded: encodedMessage),
+                  let message = NFCNDEFMessage(data: messageData) else {
+                call.reject("Invalid NDEF records payload.")
+                return
+            }
+            performWriteToCurrentTag(message: message, call: call)
+            return
+        }
+
         guard let rawRecords = call.getArray("records") as? [[String: Any]] else {
-            call.reject("records is required and must be an array.")
+            call.reject("records or message is required.")
             return
         }
 
@@ -261,6 +292,26 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
         call.reject("Making tags read only is not supported on iOS.", "UNSUPPORTED")
     }
 
+    @objc public func transceiveBatch(_ call: CAPPluginCall) {
+        call.reject("Raw transceive is not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func readNdef(_ call: CAPPluginCall) {
+        call.reject("Lazy NDEF reads are not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func runTransaction(_ call: CAPPluginCall) {
+        call.reject("Transactions are not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func enqueueWriteJobs(_ call: CAPPluginCall) {
+        call.reject("The encoding mode is not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func clearWriteJobs(_ call: CAPPluginCall) {
+        call.reject("The encoding mode is not supported on iOS.", "UNSUPPORTED")
+    }
+
     @objc public func share(_ call: CAPPluginCall) {
         call.reject("Peer-to-peer NFC sharing is not available on iOS.", "UNSUPPORTED")
     }
@@ -288,6 +339,34 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
         call.resolve()
     }
 
+    @objc public func getMetrics(_ call: CAPPluginCall) {
+        call.resolve([:])
+    }
+
+    @objc public func resetMetrics(_ call: CAPPluginCall) {
+        call.resolve()
+    }
+
+    @objc public func drainTagHistory(_ call: CAPPluginCall) {
+        call.resolve(["events": [], "remaining": 0])
+    }
+
+    @objc public func queryJournal(_ call: CAPPluginCall) {
+        call.reject("The scan journal is not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func exportJournal(_ call: CAPPluginCall) {
+        call.reject("The scan journal is not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func compactJournal(_ call: CAPPluginCall) {
+        call.reject("The scan journal is not supported on iOS.", "UNSUPPORTED")
+    }
+
+    @objc public func clearJournal(_ call: CAPPluginCall) {
+        call.reject("The scan journal is not supported on iOS.", "UNSUPPORTED")
+    }
+
     @objc public func getPluginVersion(_ call: CAPPluginCall) {
         call.resolve([
             "version": pluginVersion
@@ -381,9 +460,9 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
 
             let payload = NFCNDEFPayload(
                 format: NFCTypeNameFormat(rawValue: UInt8(truncating: tnfValue)) ?? .unknown,
-                type: data(from: typeArray),
-                identifier: data(from: idArray),
-                payload: data(from: payloadArray)
+                type: try data(from: typeArray),
+                identifier: try data(from: idArray),
+                payload: try data(from: payloadArray)
             )
             return payload
         }
@@ -391,7 +470,13 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
         return NFCNDEFMessage(records: payloads)
     }
 
-    private func data(from any: Any) -> Data {
+    private func data(from any: Any) throws -> Data {
+        if let string = any as? String {
+            guard let decoded = Data(base64Encoded: string) else {
+                throw NfcPluginError.invalidPayload
+            }
+            return decoded
+        }
         guard let numbers = any as? [NSNumber] else {
             return Data()
         }
@@ -410,6 +495,20 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
         return data.map { NSNumber(value: $0) }
     }
 
+    private func encoded(_ data: Data?) -> Any? {
+        guard let data else {
+            return nil
+        }
+        switch payloadEncoding {
+        case "base64":
+            return data.base64EncodedString()
+        case "hex":
+            return data.map { String(format: "%02x", $0) }.joined()
+        default:
+            return array(from: data)
+        }
+    }
+
     private func notify(event: [String: Any]) {
         DispatchQueue.main.async {
             self.notifyListeners("nfcEvent", data: event, retainUntilConsumed: true)
@@ -428,8 +527,9 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
     private func buildEvent(tag: NFCNDEFTag, status: NFCNDEFStatus, capacity: Int, message: NFCNDEFMessage?) -> [String: Any] {
         var tagInfo: [String: Any] = [:]
         if let identifierData = extractIdentifier(from: tag) {
-            tagInfo["id"] = array(from: identifierData)
+            tagInfo["id"] = encoded(identifierData)
         }
+        tagInfo["payloadEncoding"] = payloadEncoding
         tagInfo["techTypes"] = detectTechTypes(for: tag)
         tagInfo["isWritable"] = status == .readWrite
         tagInfo["maxSize"] = capacity
@@ -439,9 +539,9 @@ public class NfcPlugin: CAPPlugin, CAPBridgedPlugin {
             tagInfo["ndefMessage"] = message.records.map { record in
                 [
                     "tnf": NSNumber(value: record.typeNameFormat.rawValue),
-                    "type": array(from: record.type),
-                    "id": array(from: record.identifier),
-                    "payload": array(from: record.payload)
+                    "type": encoded(record.type),
+                    "id": encoded(record.identifier),
+                    "payload": encoded(record.payload)
                 ].compactMapValues { $0 }
             }
         }
@@ -577,12 +677,13 @@ extension NfcPlugin: NFCNDEFReaderSessionDelegate {
         let event: [String: Any] = [
             "type": "ndef",
             "tag": [
+                "payloadEncoding": payloadEncoding,
                 "ndefMessage": messages.first?.records.map { record in
                     [
                         "tnf": NSNumber(value: record.typeNameFormat.rawValue),
-                        "type": array(from: record.type) ?? [],
-                        "id": array(from: record.identifier) ?? [],
-                        "payload": array(from: record.payload) ?? []
+                        "type": encoded(record.type) ?? [NSNumber](),
+                        "id": encoded(record.identifier) ?? [NSNumber](),
+                        "payload": encoded(record.payload) ?? [NSNumber]()
                     ]
                 } ?? []
             ]
@@ -777,9 +878,10 @@ extension NfcPlugin: NFCTagReaderSessionDelegate {
 
         // Extract and add the tag ID (UID)
         if let identifierData = extractIdentifier(from: tag) {
-            tagInfo["id"] = array(from: identifierData)
+            tagInfo["id"] = encoded(identifierData)
         }
 
+        tagInfo["payloadEncoding"] = payloadEncoding
         tagInfo["techTypes"] = detectTechTypes(for: tag)
         tagInfo["type"] = translateType(for: tag)
 
@@ -793,9 +895,9 @@ extension NfcPlugin: NFCTagReaderSessionDelegate {
             tagInfo["ndefMessage"] = message.records.map { record in
                 [
                     "tnf": NSNumber(value: record.typeNameFormat.rawValue),
-                    "type": array(from: record.type),
-                    "id": array(from: record.identifier),
-                    "payload": array(from: record.payload)
+                    "type": encoded(record.type),
+                    "id": encoded(record.identifier),
+                    "payload": encoded(record.payload)
                 ].compactMapValues { $0 }
             }
         }
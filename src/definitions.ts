@@ -30,30 +30,98 @@ export type NfcEventType = 'tag' | 'ndef' | 'ndef-mime' | 'ndef-formatable';
  */
 export type NfcIosPollingOption = 'iso14443' | 'iso15693' | 'iso18092' | 'pace';
 
+/**
+ * Wire format used for byte fields (tag id, record type, id and payload) in discovery events.
+ *
+ * - `array`: One number per byte (`number[]`). Matches the legacy Cordova format.
+ * - `base64`: A single standard base64 string per field.
+ * - `hex`: A single lowercase hexadecimal string per field.
+ */
+export type PayloadEncoding = 'array' | 'base64' | 'hex';
+
 /**
  * JSON structure representing a single NDEF record.
  *
  * Mirrors the data format returned by the legacy Cordova implementation and
  * uses integer arrays instead of strings to preserve the original payload
- * bytes.
+ * bytes. When scanning with a string {@link PayloadEncoding}, use
+ * `NdefRecord<string>`.
  */
-export interface NdefRecord {
+export interface NdefRecord<TBytes = number[]> {
   /**
    * Type Name Format identifier.
    */
   tnf: number;
   /**
-   * Type field expressed as an array of byte values.
+   * Type field expressed as an array of byte values, or as a string when a string payload encoding is used.
+   */
+  type: TBytes;
+  /**
+   * Record identifier expressed as an array of byte values, or as a string when a string payload encoding is used.
+   */
+  id: TBytes;
+  /**
+   * Raw payload expressed as an array of byte values, or as a string when a string payload encoding is used.
+   * Left out of decoded records when `androidDecodeRecords` is `'decodedOnly'`.
+   */
+  payload: TBytes;
+  /**
+   * Android-only, with `androidDecodeRecords`: URI of a URI or Absolute URI record with its abbreviation expanded,
+   * or the URI of a Smart Poster.
+   */
+  uri?: string;
+  /**
+   * Android-only, with `androidDecodeRecords`: text of a Text record, or the first title of a Smart Poster.
+   */
+  text?: string;
+  /**
+   * Android-only, with `androidDecodeRecords`: language code of `text`.
    */
-  type: number[];
+  lang?: string;
   /**
-   * Record identifier expressed as an array of byte values.
+   * Android-only, with `androidDecodeRecords`: MIME type of a MIME media record.
    */
-  id: number[];
+  mimeType?: string;
   /**
-   * Raw payload expressed as an array of byte values.
+   * Android-only, with `androidDecodeRecords`: records nested in a Smart Poster. Posters nested deeper than
+   * four levels keep their `payload` instead.
    */
-  payload: number[];
+  records?: NdefRecord<TBytes>[];
+}
+
+/**
+ * Android-only: describes how the NDEF content of a tag was read.
+ */
+export interface NfcReadStats {
+  /**
+   * Read path used for this tap.
+   *
+   * - `fastRead`: Raw Type 2 read using the FAST_READ command.
+   * - `readPages`: Raw Type 2 read using 16-byte READ commands.
+   * - `isoDep`: Raw Type 4 read using READ BINARY APDUs sized from the capability container.
+   * - `readMultipleBlocks`: Raw Type 5 read using READ MULTIPLE BLOCKS.
+   * - `readBlocks`: Raw Type 5 read using READ SINGLE BLOCK, for tags without READ MULTIPLE BLOCKS.
+   * - `check`: Raw Type 3 read using Check commands with as many blocks as the tag allows.
+   * - `ndef`: Android's generic `Ndef` read.
+   * - `cached`: The message Android cached during discovery, no extra I/O.
+   */
+  method: 'fastRead' | 'readPages' | 'isoDep' | 'readMultipleBlocks' | 'readBlocks' | 'check' | 'ndef' | 'cached';
+  /**
+   * Number of RF command/response exchanges. Only reported for raw reads.
+   */
+  transceiveCount?: number;
+  /**
+   * Number of bytes returned by the tag. Only reported for raw reads.
+   */
+  bytesRead?: number;
+  /**
+   * Read throughput in bytes per second, connect time included. Only reported for raw reads.
+   */
+  bytesPerSecond?: number;
+  /**
+   * Wall-clock time spent reading, in milliseconds.
+   */
+  durationMs: number;
 }
 
 /**
@@ -63,11 +131,11 @@ export interface NdefRecord {
  * EV1 and NTAG variants). NDEF data is automatically extracted from MIFARE Ultralight
  * tags when available.
  */
-export interface NfcTag {
+export interface NfcTag<TBytes = number[]> {
   /**
    * Raw identifier bytes for the tag.
    */
-  id?: number[];
+  id?: TBytes;
   /**
    * List of Android tech strings (e.g. `android.nfc.tech.Ndef`).
    */
@@ -91,15 +159,44 @@ export interface NfcTag {
   /**
    * Array of NDEF records discovered on the tag.
    */
-  ndefMessage?: NdefRecord[] | null;
+  ndefMessage?: NdefRecord<TBytes>[] | null;
+  /**
+   * Encoding used for `id` and for the byte fields of every record in `ndefMessage`.
+   */
+  payloadEncoding?: PayloadEncoding;
+  /**
+   * Android-only: how the NDEF content was read, including the number of RF round trips.
+   */
+  readStats?: NfcReadStats;
+  /**
+   * Android-only: size in bytes of the encoded NDEF message, reported by lazy discovery events
+   * (`androidLazyRead`) when Android already read the message during discovery.
+   */
+  ndefSize?: number;
+  /**
+   * Android-only: opaque session handle for this tag. Pass it to `write`, `erase` or `makeReadOnly` so the
+   * operation targets this tag even if another tag was discovered in the meantime. The handle stays the same while
+   * the tag remains on the reader and becomes stale once the tag is lost or the session expires.
+   */
+  handle?: string;
 }
 
 /**
  * Generic NFC discovery event dispatched by the plugin.
  */
-export interface NfcEvent {
+export interface NfcEvent<TBytes = number[]> {
   type: NfcEventType;
-  tag: NfcTag;
+  tag: NfcTag<TBytes>;
+}
+
+/**
+ * Android-only: discovery events delivered together when `androidEventBatchWindowMs` is set.
+ */
+export interface NfcEventBatch<TBytes = number[]> {
+  /**
+   * Events in discovery order.
+   */
+  events: NfcEvent<TBytes>[];
 }
 
 /**
@@ -138,28 +235,493 @@ export interface StartScanningOptions {
    * detected tags remain available for writing and formatting.
    */
   androidReaderModeFlags?: number;
+  /**
+   * Android-only: add `FLAG_READER_SKIP_NDEF_CHECK` to the reader mode flags. Android then no longer reads the
+   * message during discovery and tags do not list `Ndef`; the plugin reads Type 4 tags itself with APDUs sized from
+   * their capability container, Type 5 tags with multi-block reads and Type 3 tags with batched Check commands,
+   * instead. Every `IsoDep` tag, payment and transit cards included, then receives a SELECT of the NDEF application,
+   * and tags the plugin cannot read raw report no message. Ignored with `androidForegroundDispatch`. Defaults to `false`.
+   */
+  androidSkipNdefCheck?: boolean;
+  /**
+   * Encoding used for tag ids and record bytes in discovery events.
+   * String encodings avoid building one JSON number per byte and are much cheaper for large payloads.
+   * Defaults to `'array'`.
+   */
+  payloadEncoding?: PayloadEncoding;
+  /**
+   * Android-only: decode well-known records natively and add `uri`, `text`/`lang`, `mimeType` and nested Smart
+   * Poster `records` to them, so JavaScript does not have to parse payload bytes.
+   *
+   * - `none`: raw record fields only.
+   * - `decoded`: raw fields plus the decoded ones.
+   * - `decodedOnly`: decoded fields; `payload` is only sent for records that could not be decoded, and for
+   *   Smart Posters nested too deep for their `records` to be sent.
+   *
+   * Defaults to `'none'`.
+   */
+  androidDecodeRecords?: 'none' | 'decoded' | 'decodedOnly';
+  /**
+   * Android-only: read MIFARE Ultralight EV1 / NTAG tags with the FAST_READ command, fetching the whole
+   * NDEF area in as few RF round trips as the controller allows. Tags that reject FAST_READ fall back to
+   * regular 16-byte reads. Defaults to `false`.
+   */
+  androidFastRead?: boolean;
+  /**
+   * Android-only: emit discovery events without reading the NDEF message. Events carry the UID, technologies and
+   * NDEF attributes (`type`, `maxSize`, `isWritable`) but no `ndefMessage`; call `readNdef` with the tag `handle`
+   * while the tag is still in the field to fetch it. Cuts the per-tap latency and bridge traffic of apps that only
+   * need the UID. Defaults to `false`.
+   */
+  androidLazyRead?: boolean;
+  /**
+   * Android-only: receive tags through foreground dispatch instead of reader mode while scanning. Tags then arrive
+   * as intents, so other apps' intent filters and the platform sound behave as without reader mode, and
+   * `androidReaderModeFlags` and `androidPresenceCheckDelay` are ignored. Defaults to `false`.
+   *
+   * Independently of this option, a tap that launched the app through an `NDEF_DISCOVERED`, `TECH_DISCOVERED` or
+   * `TAG_DISCOVERED` intent filter is reported as soon as the plugin loads and held until a listener attaches.
+   */
+  androidForegroundDispatch?: boolean;
+  /**
+   * Android-only: merge discovery events that arrive within this many milliseconds into one `nfcEventBatch`
+   * event, instead of one bridge call per tag. While batching, `nfcEvent` and the type-specific discovery events
+   * are not emitted. A batch is delivered early once it holds 64 events. Defaults to `0` (disabled).
+   */
+  androidEventBatchWindowMs?: number;
+  /**
+   * Android-only: maximum number of discovery events kept while no listener receives them, for example while the
+   * WebView is still loading. Buffered events are delivered when a matching listener attaches, or fetched with
+   * {@link CapacitorNfcPlugin.drainTagHistory}. Defaults to `32`.
+   */
+  androidEventBufferSize?: number;
+  /**
+   * Android-only: what happens when the event buffer is full.
+   *
+   * - `dropOldest`: evict the oldest event.
+   * - `dropNewest`: discard the incoming event.
+   * - `coalesceUid`: keep only the latest event per tag UID, evicting the oldest event when a new tag does not fit.
+   *
+   * Defaults to `'dropOldest'`.
+   */
+  androidEventBufferOverflow?: 'dropOldest' | 'dropNewest' | 'coalesceUid';
+  /**
+   * Android-only: append every emitted scan (UID, timestamp, technology and NDEF bytes) to a binary journal in the
+   * app's files directory, so results survive a WebView crash. Read it back with
+   * {@link CapacitorNfcPlugin.queryJournal} or {@link CapacitorNfcPlugin.exportJournal}. Defaults to `false`.
+   */
+  androidJournal?: boolean;
+  /**
+   * Android-only: size in bytes at which the journal starts a new segment file. Defaults to 4 MiB.
+   */
+  androidJournalSegmentBytes?: number;
+  /**
+   * Android-only: emit `android.os.Trace` sections (`CapacitorNfc:read`, `CapacitorNfc:serialize`, ...) for each
+   * phase reported in {@link NfcMetrics.phases}, so they show up in systrace and Perfetto captures.
+   * Defaults to `false`.
+   */
+  androidTrace?: boolean;
+  /**
+   * Android-only: number of Type 2 tag memory layouts (keyed by UID and GET_VERSION) kept in memory so that
+   * repeat taps of the same tag can go straight to the NDEF pages. Set to `0` to disable the cache.
+   * Defaults to `64`.
+   */
+  androidLayoutCacheSize?: number;
+  /**
+   * Android-only: also persist the layout cache in the app's shared preferences so it survives restarts.
+   * The cache stores tag UIDs. Defaults to `false`.
+   */
+  androidPersistLayoutCache?: boolean;
+  /**
+   * Android-only: suppress repeated discoveries of the same tag within this many milliseconds.
+   * The window slides, so a tag resting on the reader keeps being suppressed. Suppressed taps do not
+   * emit events, but the tag stays available for `write`, `erase` and `makeReadOnly`.
+   * Defaults to `0` (disabled).
+   */
+  androidDedupWindowMs?: number;
+  /**
+   * Android-only: what identifies a duplicate tap when `androidDedupWindowMs` is set.
+   *
+   * - `uid`: Same tag UID. Checked before any tag I/O, so duplicates cost nothing.
+   * - `uid+contentHash`: Same UID and same NDEF content. The tag is read, but unchanged content is not emitted.
+   *
+   * Defaults to `'uid'`.
+   */
+  androidDedupKey?: 'uid' | 'uid+contentHash';
+  /**
+   * Android-only: only emit tags that pass every one of these filters. Tags that fail the technology or UID filters
+   * are dropped before any tag I/O; tags that fail the record filters are dropped after the read but before they are
+   * converted and sent to JavaScript. See {@link NfcMetrics.filters} for the number of tags each filter dropped.
+   */
+  androidFilters?: DiscoveryFilters;
+  /**
+   * Android-only: presence-check interval in milliseconds, passed to reader mode as
+   * `EXTRA_READER_PRESENCE_CHECK_DELAY`. It is also the polling interval used to detect removal for the
+   * `tagLost` event. Lower values detect removal faster and use more power.
+   * Defaults to `100`.
+   */
+  androidPresenceCheckDelay?: number;
+  /**
+   * Android-only: maximum number of tag session handles kept at once. The least recently discovered tag is
+   * dropped first. Defaults to `16`.
+   */
+  androidSessionCapacity?: number;
+  /**
+   * Android-only: time in milliseconds after the last discovery of a tag before its handle expires.
+   * Defaults to `60000`.
+   */
+  androidSessionTtlMs?: number;
+}
+
+/**
+ * Selects the tag an operation applies to and how long it may take.
+ */
+export interface TagOperationOptions {
+  /**
+   * Android-only: session handle from {@link NfcTag.handle}. Calls with a stale handle are rejected with the
+   * `STALE_HANDLE` code without touching any tag. When omitted, the most recently discovered tag is used.
+   */
+  handle?: string;
+  /**
+   * Android-only: deadline in milliseconds, counted from the call, including the time spent waiting behind other
+   * tag operations. The call is rejected with the `TIMEOUT` code once it passes; in-flight I/O is aborted.
+   * `0` disables the deadline. Defaults to `5000`.
+   *
+   * Operations are also rejected with `CANCELLED` when `stopScanning` is called, and with `TAG_LOST` when their
+   * tag leaves the field.
+   */
+  timeout?: number;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.readNdef}.
+ */
+export interface ReadNdefResult<TBytes = number[]> {
+  /**
+   * The tag with its `ndefMessage`. `ndefMessage` is absent when the tag holds no NDEF message.
+   */
+  tag: NfcTag<TBytes>;
+  /**
+   * `true` when the message was already known (read during discovery or by an earlier call, or just written) and no
+   * tag I/O was needed.
+   */
+  buffered: boolean;
 }
 
 /**
  * Options used when writing an NDEF message on the current tag.
  */
-export interface WriteTagOptions {
+export interface WriteTagOptions extends TagOperationOptions {
   /**
    * Array of records that compose the NDEF message to be written.
+   *
+   * Each byte field (`type`, `id`, `payload`) can be an array of byte values or a base64 string.
+   * Base64 strings are decoded natively and are much cheaper for large payloads.
+   * Required unless `message` is provided.
+   */
+  records?: NdefRecord<number[] | string>[];
+  /**
+   * Complete, already encoded NDEF message as a base64 string.
+   * When provided, it is written as-is and `records` is ignored.
    */
-  records: NdefRecord[];
+  message?: string;
   /**
    * When `true`, the plugin attempts to format NDEF-formattable tags before writing.
    * Defaults to `true`.
    */
   allowFormat?: boolean;
+  /**
+   * Android-only: how the message is written.
+   *
+   * - `full`: rewrite the whole message with the platform NDEF API.
+   * - `differential`: compare with the content read when the tag was discovered. An identical message is not written
+   *   at all; on Type 2 tags (NTAG, MIFARE Ultralight) only the changed 4-byte pages are written, and the NDEF
+   *   length is committed last so an interrupted write leaves an empty message instead of a corrupted one. Falls
+   *   back to `full` when the previous content is unknown.
+   *
+   * Defaults to `full`.
+   */
+  androidWriteStrategy?: 'full' | 'differential';
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.write}. Only populated on Android.
+ */
+export interface WriteTagResult {
+  /**
+   * Strategy that was actually used.
+   */
+  strategy?: 'full' | 'differential';
+  /**
+   * `true` when the tag already held the message and nothing was written.
+   */
+  skipped?: boolean;
+  /**
+   * Number of page WRITE commands sent by a differential write.
+   */
+  pagesWritten?: number;
+  /**
+   * Number of pages of the new message that already held the right bytes. Absent when the write was skipped
+   * without knowing the page layout.
+   */
+  pagesSkipped?: number;
 }
 
 /**
  * Options used when sharing an NDEF message with another device using Android Beam / P2P mode.
  */
 export interface ShareTagOptions {
-  records: NdefRecord[];
+  /**
+   * Records to share. Byte fields accept arrays of byte values or base64 strings.
+   * Required unless `message` is provided.
+   */
+  records?: NdefRecord<number[] | string>[];
+  /**
+   * Complete, already encoded NDEF message as a base64 string. Takes precedence over `records`.
+   */
+  message?: string;
+}
+
+/**
+ * Android tag technologies that accept raw commands.
+ */
+export type NfcTransceiveTech = 'NfcA' | 'NfcB' | 'NfcF' | 'NfcV' | 'IsoDep' | 'MifareUltralight' | 'MifareClassic';
+
+/**
+ * Options for {@link CapacitorNfcPlugin.transceiveBatch}.
+ */
+export interface TransceiveBatchOptions extends TagOperationOptions {
+  /**
+   * Technology used to talk to the tag, e.g. `NfcA` for NTAG vendor commands or `IsoDep` for APDUs.
+   */
+  tech: NfcTransceiveTech;
+  /**
+   * Raw commands sent in order. Each command is an array of byte values or a base64 string.
+   */
+  commands: (number[] | string)[];
+  /**
+   * Stop at the first command that fails. Defaults to `true`. A lost tag always ends the batch.
+   */
+  stopOnError?: boolean;
+}
+
+/**
+ * Outcome of one command of a batch. Exactly one of `response` and `error` is set.
+ */
+export interface TransceiveResponse<TBytes = number[]> {
+  /**
+   * Raw response bytes, using the scanning {@link PayloadEncoding}. Status words and NAKs are returned as-is.
+   */
+  response?: TBytes;
+  /**
+   * Why the command failed at the transport level.
+   */
+  error?: string;
+  durationMs: number;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.transceiveBatch}.
+ */
+export interface TransceiveBatchResult<TBytes = number[]> {
+  /**
+   * One entry per command that was sent. Shorter than `commands` when the batch stopped early.
+   */
+  responses: TransceiveResponse<TBytes>[];
+  /**
+   * `true` when every command received a response.
+   */
+  completed: boolean;
+  /**
+   * Total time including connecting to the tag.
+   */
+  durationMs: number;
+}
+
+/**
+ * One step of a {@link CapacitorNfcPlugin.runTransaction} call.
+ *
+ * - `write`: write `records` or `message`, formatting the tag first when `allowFormat` is not `false`.
+ * - `erase`: write an empty NDEF message.
+ * - `read`: read the NDEF message from the tag, bypassing the copy captured at discovery.
+ * - `verify`: read the message back and fail when it differs from the last `write` or `erase` step.
+ * - `makeReadOnly`: permanently lock the tag.
+ */
+export type TransactionStep =
+  | {
+      op: 'write';
+      /**
+       * Records to write. Byte fields accept arrays of byte values or base64 strings.
+       * Required unless `message` is provided.
+       */
+      records?: NdefRecord<number[] | string>[];
+      /**
+       * Complete, already encoded NDEF message as a base64 string. Takes precedence over `records`.
+       */
+      message?: string;
+      allowFormat?: boolean;
+    }
+  | { op: 'erase' | 'read' | 'verify' | 'makeReadOnly' };
+
+/**
+ * Options for {@link CapacitorNfcPlugin.runTransaction}.
+ */
+export interface RunTransactionOptions extends TagOperationOptions {
+  /**
+   * Steps run in order over one connection. The transaction stops at the first step that fails.
+   */
+  steps: TransactionStep[];
+}
+
+/**
+ * Outcome of one transaction step.
+ */
+export interface TransactionStepResult<TBytes = number[]> {
+  op: TransactionStep['op'];
+  success: boolean;
+  /**
+   * Why the step failed.
+   */
+  error?: string;
+  /**
+   * Message read by a `read` or `verify` step. Absent when the tag holds no NDEF message.
+   */
+  message?: NdefRecord<TBytes>[];
+  durationMs: number;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.runTransaction}.
+ */
+export interface TransactionResult<TBytes = number[]> {
+  /**
+   * One entry per step that ran. Shorter than `steps` when the transaction stopped early.
+   */
+  steps: TransactionStepResult<TBytes>[];
+  /**
+   * `true` when every step succeeded.
+   */
+  completed: boolean;
+  /**
+   * Total time including connecting to the tag.
+   */
+  durationMs: number;
+}
+
+/**
+ * One message queued for the Android encoding mode. Per-job flags override the defaults of {@link EnqueueWriteJobsOptions}.
+ */
+export interface WriteJob {
+  /**
+   * Records to write. Byte fields accept arrays of byte values or base64 strings.
+   * Required unless `message` is provided.
+   */
+  records?: NdefRecord<number[] | string>[];
+  /**
+   * Complete, already encoded NDEF message as a base64 string. Takes precedence over `records`.
+   */
+  message?: string;
+  allowFormat?: boolean;
+  verify?: boolean;
+  makeReadOnly?: boolean;
+}
+
+/**
+ * Options for {@link CapacitorNfcPlugin.enqueueWriteJobs}.
+ */
+export interface EnqueueWriteJobsOptions {
+  /**
+   * Messages to write, one per tapped tag, in order.
+   */
+  jobs: WriteJob[];
+  /**
+   * Format NDEF-formattable tags before writing. Defaults to `true`.
+   */
+  allowFormat?: boolean;
+  /**
+   * Read the message back after writing and fail the job when it differs. A tag that had to be formatted cannot be
+   * read back on the same tap, so there a successful format counts as verified. Defaults to `false`.
+   */
+  verify?: boolean;
+  /**
+   * Permanently lock the tag after a successful write (and verification). A tag that still needs formatting is
+   * formatted and locked in a single command. Defaults to `false`.
+   */
+  makeReadOnly?: boolean;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.enqueueWriteJobs}.
+ */
+export interface EnqueueWriteJobsResult {
+  /**
+   * Index assigned to the first submitted job. The following jobs are numbered consecutively.
+   */
+  firstIndex: number;
+  /**
+   * Number of jobs waiting in the queue, including the submitted ones.
+   */
+  pending: number;
+}
+
+/**
+ * Android-only: event emitted after the encoding mode processed a queued write job.
+ */
+export interface WriteJobResultEvent<TBytes = number[]> {
+  /**
+   * Index returned for the job by {@link CapacitorNfcPlugin.enqueueWriteJobs}.
+   */
+  index: number;
+  /**
+   * Identifier of the tag the job was written to, using the scanning {@link PayloadEncoding}.
+   */
+  id: TBytes;
+  /**
+   * Session handle of the tag, usable with the other tag operations.
+   */
+  handle: string;
+  success: boolean;
+  /**
+   * Failure reason. The job stays at the head of the queue and is retried on the next tap.
+   */
+  error?: string;
+  /**
+   * Number of taps the job has been attempted on, including this one.
+   */
+  attempts: number;
+  /**
+   * Number of jobs still waiting in the queue.
+   */
+  pending: number;
+  /**
+   * Duration of each completed step in milliseconds.
+   */
+  timing: {
+    writeMs?: number;
+    verifyMs?: number;
+    lockMs?: number;
+    totalMs: number;
+  };
+}
+
+/**
+ * Android-only: event emitted when the most recently discovered tag leaves the RF field.
+ *
+ * Presence is only monitored while at least one `tagLost` listener is registered.
+ */
+export interface NfcTagLostEvent<TBytes = number[]> {
+  /**
+   * Identifier of the tag that was removed, using the scanning {@link PayloadEncoding}.
+   */
+  id: TBytes;
+  /**
+   * Session handle of the removed tag. It is stale from now on.
+   */
+  handle?: string;
+  /**
+   * Android tech strings of the removed tag.
+   */
+  techTypes: string[];
 }
 
 /**
@@ -179,6 +741,330 @@ export interface NfcSessionEndEvent {
   reason: 'userCancelled' | 'sessionTimeout' | 'invalidated';
 }
 
+/**
+ * Native discovery filters for {@link StartScanningOptions.androidFilters}. Every filter that is set must pass; each
+ * filter passes when any of its entries matches.
+ */
+export interface DiscoveryFilters {
+  /**
+   * Tag technologies, e.g. `MifareUltralight` or `android.nfc.tech.IsoDep`. The tag must expose at least one.
+   */
+  techTypes?: string[];
+  /**
+   * Hex UID prefixes, e.g. `'04'` for NXP tags.
+   */
+  uidPrefixes?: string[];
+  /**
+   * The leading UID bytes, masked with `mask`, must equal `value` masked the same way. Both are hex strings of the
+   * same length.
+   */
+  uidMask?: { value: string; mask: string };
+  /**
+   * A record must have one of these TNF and type pairs. Without `type`, any record of that TNF matches.
+   */
+  ndefTypes?: { tnf: number; type?: string }[];
+  /**
+   * A MIME record must have one of these types. Case and parameters are ignored, and `image/*` matches every
+   * image type.
+   */
+  mimeTypes?: string[];
+  /**
+   * A URI record, with its abbreviation expanded, must start with one of these prefixes.
+   */
+  uriPrefixes?: string[];
+}
+
+/**
+ * Hit/miss counters of the Type 2 tag memory-layout cache.
+ */
+export interface LayoutCacheMetrics {
+  size: number;
+  capacity: number;
+  hits: number;
+  misses: number;
+  evictions: number;
+  persistent: boolean;
+}
+
+/**
+ * Duplicate-tap suppression counters.
+ */
+export interface DedupMetrics {
+  windowMs: number;
+  key: 'uid' | 'uid+contentHash';
+  /**
+   * Number of discoveries suppressed since scanning started.
+   */
+  suppressed: number;
+}
+
+/**
+ * Discovery filter counters.
+ */
+export interface FilterMetrics {
+  /**
+   * Number of tags that passed every filter.
+   */
+  passed: number;
+  /**
+   * Number of tags dropped by each filter. A tag is only counted by the first filter it fails.
+   */
+  dropped: Partial<Record<keyof DiscoveryFilters, number>>;
+}
+
+/**
+ * Options for {@link CapacitorNfcPlugin.queryJournal}.
+ */
+export interface QueryJournalOptions {
+  /**
+   * `nextCursor` of the previous page. Omit to start at the oldest entry.
+   */
+  cursor?: string;
+  /**
+   * Maximum number of entries in the page, up to 1000. Defaults to `100`.
+   */
+  limit?: number;
+  /**
+   * Only return scans at or after this time, in milliseconds since the epoch.
+   */
+  sinceMs?: number;
+  /**
+   * Only return scans of this tag, as a hex UID.
+   */
+  uid?: string;
+}
+
+/**
+ * One journaled scan.
+ */
+export interface JournalEntry<TBytes = number[]> {
+  uid: TBytes;
+  /**
+   * Time of the scan in milliseconds since the epoch.
+   */
+  timestamp: number;
+  /**
+   * Most specific tag technology, e.g. `MifareUltralight`.
+   */
+  tech: string;
+  /**
+   * Encoded NDEF message, or `null` when the tag had none.
+   */
+  ndef: TBytes | null;
+}
+
+/**
+ * One page of {@link CapacitorNfcPlugin.queryJournal}.
+ */
+export interface QueryJournalResult<TBytes = number[]> {
+  entries: JournalEntry<TBytes>[];
+  /**
+   * Encoding of `uid` and `ndef`, taken from the last `startScanning` call.
+   */
+  payloadEncoding: PayloadEncoding;
+  /**
+   * Cursor of the next page, or `null` once the end of the journal was reached.
+   */
+  nextCursor: string | null;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.exportJournal}.
+ */
+export interface ExportJournalResult {
+  /**
+   * Absolute path of the JSON Lines file in the app's cache directory. Each line holds `uid`, `timestamp`, `tech`
+   * and `ndef`, with bytes as hex strings.
+   */
+  path: string;
+  count: number;
+}
+
+/**
+ * Options for {@link CapacitorNfcPlugin.drainTagHistory}.
+ */
+export interface DrainTagHistoryOptions {
+  /**
+   * Maximum number of events to return. Defaults to all buffered events.
+   */
+  max?: number;
+}
+
+/**
+ * Result of {@link CapacitorNfcPlugin.drainTagHistory}.
+ */
+export interface DrainTagHistoryResult<TBytes = number[]> {
+  /**
+   * Buffered discovery events, oldest first.
+   */
+  events: NfcEvent<TBytes>[];
+  /**
+   * Number of events still buffered.
+   */
+  remaining: number;
+}
+
+/**
+ * Undelivered discovery event buffer counters.
+ */
+export interface EventBufferMetrics {
+  size: number;
+  capacity: number;
+  overflow: 'dropOldest' | 'dropNewest' | 'coalesceUid';
+  /**
+   * Number of events evicted by `dropOldest` (also used by `coalesceUid` for new tags) and discarded by
+   * `dropNewest`.
+   */
+  droppedOldest: number;
+  droppedNewest: number;
+  /**
+   * Number of events replaced by a newer event of the same tag.
+   */
+  coalesced: number;
+}
+
+/**
+ * Discovery event batching counters.
+ */
+export interface EventBatchMetrics {
+  windowMs: number;
+  /**
+   * Number of `nfcEventBatch` deliveries and the events they carried.
+   */
+  batches: number;
+  events: number;
+  largestBatch: number;
+}
+
+/**
+ * Tag session handle registry counters.
+ */
+export interface SessionMetrics {
+  active: number;
+  capacity: number;
+  ttlMs: number;
+  expired: number;
+  evicted: number;
+  /**
+   * Number of lookups of unknown or stale handles.
+   */
+  staleLookups: number;
+}
+
+/**
+ * Tag I/O scheduler counters.
+ */
+export interface SchedulerMetrics {
+  /**
+   * Operations currently waiting to run.
+   */
+  queueDepth: number;
+  maxQueueDepth: number;
+  submitted: number;
+  completed: number;
+  /**
+   * Operations rejected or aborted because their deadline passed.
+   */
+  timedOut: number;
+  /**
+   * Operations cancelled by `stopScanning` or because their tag was lost.
+   */
+  cancelled: number;
+  /**
+   * Operations rejected without I/O because their tag was already gone.
+   */
+  failedFast: number;
+  /**
+   * Average and maximum time operations spent queued before running.
+   */
+  averageWaitMs: number;
+  maxWaitMs: number;
+}
+
+/**
+ * Latency distribution of one phase. Percentiles are accurate to about 6%.
+ */
+export interface LatencyStats {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p95Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+/**
+ * Phases timed by the Android plugin.
+ *
+ * - `discover`: from the reader callback until tag I/O starts.
+ * - `connect`, `read`, `parse`: connecting to the tag, fetching the NDEF bytes and decoding them. The platform
+ *   `Ndef` API also decodes while reading; that part stays under `read`.
+ * - `serialize`: converting the tag to the event payload.
+ * - `dispatch`: the hop to the UI thread plus notifying listeners.
+ * - `write`, `verify`, `lock`: `write` calls and encoding mode jobs. Failed attempts are included.
+ */
+export type NfcPhase =
+  | 'discover'
+  | 'connect'
+  | 'read'
+  | 'parse'
+  | 'serialize'
+  | 'dispatch'
+  | 'write'
+  | 'verify'
+  | 'lock';
+
+/**
+ * Per-phase latency and failure counts, keyed by the most specific tag technology (e.g. `MifareUltralight`,
+ * `IsoDep`, `NfcV`).
+ */
+export interface PhaseMetrics {
+  latency: Record<string, Partial<Record<NfcPhase, LatencyStats>>>;
+  /**
+   * Number of failed reads and writes per technology and reason.
+   */
+  failures: Record<string, Record<string, number>>;
+}
+
+/**
+ * Runtime counters returned by {@link CapacitorNfcPlugin.getMetrics}.
+ */
+export interface NfcMetrics {
+  /**
+   * Android-only: layout cache statistics, or `null` when the cache is disabled.
+   */
+  layoutCache?: LayoutCacheMetrics | null;
+  /**
+   * Android-only: duplicate-tap suppression statistics, or `null` when deduplication is disabled.
+   */
+  dedup?: DedupMetrics | null;
+  /**
+   * Android-only: discovery filter statistics, or `null` when `androidFilters` is not set.
+   */
+  filters?: FilterMetrics | null;
+  /**
+   * Android-only: event batching statistics, or `null` when `androidEventBatchWindowMs` is not set.
+   */
+  eventBatch?: EventBatchMetrics | null;
+  /**
+   * Android-only: statistics of the buffer holding discovery events no listener received yet.
+   */
+  eventBuffer?: EventBufferMetrics;
+  /**
+   * Android-only: tag session handle statistics.
+   */
+  sessions?: SessionMetrics;
+  /**
+   * Android-only: tag I/O queue statistics.
+   */
+  scheduler?: SchedulerMetrics;
+  /**
+   * Android-only: where time goes between a tag entering the field and the listener running. Cleared by
+   * {@link CapacitorNfcPlugin.resetMetrics}.
+   */
+  phases?: PhaseMetrics;
+}
+
 /**
  * Public API surface for the Capacitor NFC plugin.
  *
@@ -195,17 +1081,52 @@ export interface CapacitorNfcPlugin {
    */
   stopScanning(): Promise<void>;
   /**
-   * Writes the provided NDEF records to the last discovered tag.
+   * Writes the provided NDEF records to the last discovered tag, or to the tag identified by `handle`.
+   */
+  write(options: WriteTagOptions): Promise<WriteTagResult>;
+  /**
+   * Attempts to erase the last discovered tag (or the tag identified by `handle`) by writing an empty NDEF message.
+   */
+  erase(options?: TagOperationOptions): Promise<void>;
+  /**
+   * Attempts to make the last discovered tag (or the tag identified by `handle`) read-only.
+   */
+  makeReadOnly(options?: TagOperationOptions): Promise<void>;
+  /**
+   * Android-only: returns the NDEF message of the last discovered tag, or of the tag identified by `handle`.
+   *
+   * Meant for `androidLazyRead` discovery events: the message is read from the tag while it is still in the field,
+   * or returned from the copy buffered at discovery without any tag I/O.
+   */
+  readNdef<TBytes = number[]>(options?: TagOperationOptions): Promise<ReadNdefResult<TBytes>>;
+  /**
+   * Android-only: sends raw commands to the tag over a single connection and returns all responses at once.
+   *
+   * Use it for vendor commands (NTAG `READ_SIG`, `READ_CNT`, `PWD_AUTH`) or ISO-DEP APDU sequences that must run
+   * while the tag is still in the field, without one bridge round trip per command.
    */
-  write(options: WriteTagOptions): Promise<void>;
+  transceiveBatch<TBytes = number[]>(options: TransceiveBatchOptions): Promise<TransceiveBatchResult<TBytes>>;
   /**
-   * Attempts to erase the last discovered tag by writing an empty NDEF message.
+   * Android-only: runs NDEF steps (write, erase, read, verify, makeReadOnly) against one tag over a single
+   * connection, e.g. write, verify and lock a tag while it is still in the field.
+   *
+   * The call resolves with the outcome of every step that ran; it only rejects when the transaction could not start
+   * or was cancelled by its deadline, `stopScanning` or the tag leaving the field.
+   */
+  runTransaction<TBytes = number[]>(options: RunTransactionOptions): Promise<TransactionResult<TBytes>>;
+  /**
+   * Android-only: queues messages for the encoding mode.
+   *
+   * While scanning and while the queue is not empty, each discovered tag immediately receives the next message on
+   * the native side, without a JavaScript round trip. Discovery events are not emitted for those taps; a
+   * `writeJobResult` event is emitted instead. A failed job stays at the head of the queue for the next tap, and a
+   * tag is never written twice in a row so it does not receive the following message when it re-enters the field.
    */
-  erase(): Promise<void>;
+  enqueueWriteJobs(options: EnqueueWriteJobsOptions): Promise<EnqueueWriteJobsResult>;
   /**
-   * Attempts to make the last discovered tag read-only.
+   * Android-only: drops all queued write jobs and returns to normal discovery.
    */
-  makeReadOnly(): Promise<void>;
+  clearWriteJobs(): Promise<{ cleared: number }>;
   /**
    * Shares an NDEF message with another device via peer-to-peer (Android only).
    */
@@ -222,6 +1143,37 @@ export interface CapacitorNfcPlugin {
    * Opens the system settings page where the user can enable NFC.
    */
   showSettings(): Promise<void>;
+  /**
+   * Returns runtime counters collected by the native layer.
+   *
+   * Fields are only populated on platforms that collect them; on iOS and web the result is empty.
+   */
+  getMetrics(): Promise<NfcMetrics>;
+  /**
+   * Clears the phase latency histograms and failure counters reported in {@link NfcMetrics.phases}.
+   */
+  resetMetrics(): Promise<void>;
+  /**
+   * Android-only: removes and returns the discovery events buffered while no listener received them, in one call.
+   * Resolves with no events on other platforms.
+   */
+  drainTagHistory<TBytes = number[]>(options?: DrainTagHistoryOptions): Promise<DrainTagHistoryResult<TBytes>>;
+  /**
+   * Android-only: reads one page of the scan journal enabled by `androidJournal`, oldest first.
+   */
+  queryJournal<TBytes = number[]>(options?: QueryJournalOptions): Promise<QueryJournalResult<TBytes>>;
+  /**
+   * Android-only: writes the whole scan journal to a JSON Lines file without sending it through the bridge.
+   */
+  exportJournal(): Promise<ExportJournalResult>;
+  /**
+   * Android-only: rewrites the scan journal keeping only the latest scan of each tag.
+   */
+  compactJournal(): Promise<{ removed: number }>;
+  /**
+   * Android-only: deletes every scan journal entry.
+   */
+  clearJournal(): Promise<void>;
   /**
    * Returns the version string baked into the native plugin.
    */
@@ -238,10 +1190,25 @@ export interface CapacitorNfcPlugin {
    */
   isSupported(): Promise<{ supported: boolean }>;
 
-  addListener(eventName: 'nfcEvent', listenerFunc: (event: NfcEvent) => void): Promise<PluginListenerHandle>;
-  addListener(
+  addListener<TBytes = number[]>(
+    eventName: 'nfcEvent',
+    listenerFunc: (event: NfcEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
     eventName: 'tagDiscovered' | 'ndefDiscovered' | 'ndefMimeDiscovered' | 'ndefFormatableDiscovered',
-    listenerFunc: (event: NfcEvent) => void,
+    listenerFunc: (event: NfcEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
+    eventName: 'nfcEventBatch',
+    listenerFunc: (event: NfcEventBatch<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
+    eventName: 'tagLost',
+    listenerFunc: (event: NfcTagLostEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
+    eventName: 'writeJobResult',
+    listenerFunc: (event: WriteJobResultEvent<TBytes>) => void,
   ): Promise<PluginListenerHandle>;
   addListener(
     eventName: 'nfcStateChange',
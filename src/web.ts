@@ -2,12 +2,29 @@ import { WebPlugin } from '@capacitor/core';
 
 import type {
   CapacitorNfcPlugin,
+  DrainTagHistoryOptions,
+  DrainTagHistoryResult,
+  EnqueueWriteJobsOptions,
+  EnqueueWriteJobsResult,
+  ExportJournalResult,
   NfcSessionEndEvent,
   NfcStateChangeEvent,
   NfcEvent,
+  NfcMetrics,
+  NfcTagLostEvent,
+  QueryJournalOptions,
+  QueryJournalResult,
+  ReadNdefResult,
+  RunTransactionOptions,
   ShareTagOptions,
   StartScanningOptions,
+  TagOperationOptions,
+  TransceiveBatchOptions,
+  TransceiveBatchResult,
+  TransactionResult,
+  WriteJobResultEvent,
   WriteTagOptions,
+  WriteTagResult,
   PluginListenerHandle,
 } from './definitions';
 
@@ -24,18 +41,38 @@ export class CapacitorNfcWeb extends WebPlugin implements CapacitorNfcPlugin {
     this.unsupported('stopScanning');
   }
 
-  async write(_options: WriteTagOptions): Promise<void> {
+  async write(_options: WriteTagOptions): Promise<WriteTagResult> {
     this.unsupported('write');
   }
 
-  async erase(): Promise<void> {
+  async erase(_options?: TagOperationOptions): Promise<void> {
     this.unsupported('erase');
   }
 
-  async makeReadOnly(): Promise<void> {
+  async makeReadOnly(_options?: TagOperationOptions): Promise<void> {
     this.unsupported('makeReadOnly');
   }
 
+  async readNdef<TBytes = number[]>(_options?: TagOperationOptions): Promise<ReadNdefResult<TBytes>> {
+    this.unsupported('readNdef');
+  }
+
+  async transceiveBatch<TBytes = number[]>(_options: TransceiveBatchOptions): Promise<TransceiveBatchResult<TBytes>> {
+    this.unsupported('transceiveBatch');
+  }
+
+  async runTransaction<TBytes = number[]>(_options: RunTransactionOptions): Promise<TransactionResult<TBytes>> {
+    this.unsupported('runTransaction');
+  }
+
+  async enqueueWriteJobs(_options: EnqueueWriteJobsOptions): Promise<EnqueueWriteJobsResult> {
+    this.unsupported('enqueueWriteJobs');
+  }
+
+  async clearWriteJobs(): Promise<{ cleared: number }> {
+    this.unsupported('clearWriteJobs');
+  }
+
   async share(_options: ShareTagOptions): Promise<void> {
     this.unsupported('share');
   }
@@ -52,6 +89,34 @@ export class CapacitorNfcWeb extends WebPlugin implements CapacitorNfcPlugin {
     this.unsupported('showSettings');
   }
 
+  async getMetrics(): Promise<NfcMetrics> {
+    return {};
+  }
+
+  async resetMetrics(): Promise<void> {
+    return;
+  }
+
+  async drainTagHistory<TBytes = number[]>(_options?: DrainTagHistoryOptions): Promise<DrainTagHistoryResult<TBytes>> {
+    return { events: [], remaining: 0 };
+  }
+
+  async queryJournal<TBytes = number[]>(_options?: QueryJournalOptions): Promise<QueryJournalResult<TBytes>> {
+    this.unsupported('queryJournal');
+  }
+
+  async exportJournal(): Promise<ExportJournalResult> {
+    this.unsupported('exportJournal');
+  }
+
+  async compactJournal(): Promise<{ removed: number }> {
+    this.unsupported('compactJournal');
+  }
+
+  async clearJournal(): Promise<void> {
+    this.unsupported('clearJournal');
+  }
+
   async getPluginVersion(): Promise<{ version: string }> {
     return { version: '0.0.0-web' };
   }
@@ -60,10 +125,21 @@ export class CapacitorNfcWeb extends WebPlugin implements CapacitorNfcPlugin {
     return { supported: false };
   }
 
-  addListener(eventName: 'nfcEvent', listenerFunc: (event: NfcEvent) => void): Promise<PluginListenerHandle>;
-  addListener(
+  addListener<TBytes = number[]>(
+    eventName: 'nfcEvent',
+    listenerFunc: (event: NfcEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
     eventName: 'tagDiscovered' | 'ndefDiscovered' | 'ndefMimeDiscovered' | 'ndefFormatableDiscovered',
-    listenerFunc: (event: NfcEvent) => void,
+    listenerFunc: (event: NfcEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
+    eventName: 'tagLost',
+    listenerFunc: (event: NfcTagLostEvent<TBytes>) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener<TBytes = number[]>(
+    eventName: 'writeJobResult',
+    listenerFunc: (event: WriteJobResultEvent<TBytes>) => void,
   ): Promise<PluginListenerHandle>;
   addListener(
     eventName: 'nfcStateChange',